@@ -17,6 +17,8 @@
 
 package io.openmessaging;
 
+import java.util.concurrent.CompletionStage;
+
 /**
  * <p>
  * A {@code Future} represents the result of an asynchronous computation.  Methods are provided to check if the
@@ -102,4 +104,17 @@ public interface Future<V> {
      * @return the cause of the failure. {@code null} if succeeded or this future is not completed yet.
      */
     Throwable getThrowable();
+
+    /**
+     * Returns a {@code CompletionStage} completed with the outcome of this future.
+     * <p>
+     * The stage is completed by the thread completing this future, without any thread hop, and cancelling its {@link
+     * CompletionStage#toCompletableFuture() CompletableFuture} cancels this future as well. A future cancelled on its
+     * own completes the stage with a {@link java.util.concurrent.CancellationException}.
+     *
+     * @return the {@code CompletionStage} view of this future
+     */
+    default CompletionStage<V> toCompletionStage() {
+        return OMS.toCompletionStage(this);
+    }
 }
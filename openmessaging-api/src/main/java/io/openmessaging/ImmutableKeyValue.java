@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging;
+
+/**
+ * An {@code ImmutableKeyValue} is a {@link KeyValue} whose entries never change after creation, so a single instance
+ * can be shared freely between threads and messages.
+ * <p>
+ * Instead of {@code put}, the {@code with} methods return a new {@code ImmutableKeyValue} which contains the extra
+ * entry and shares all the other entries with this one. For example, the attributes common to every message of an
+ * application can be frozen once, and each message only pays for the entries it adds:
+ * <pre>
+ * ImmutableKeyValue base = OMS.freeze(OMS.newKeyValue().put("TENANT", "t1").put("REGION", "us-east"));
+ * KeyValue properties = base.with("ORDER_ID", orderId);
+ * </pre>
+ * <p>
+ * All the {@code put} methods of an {@code ImmutableKeyValue} throw {@link UnsupportedOperationException}, and the
+ * {@link #keySet()} view is unmodifiable.
+ *
+ * @version OMS 1.0.0
+ * @see OMS#freeze(KeyValue)
+ * @since OMS 1.0.0
+ */
+public interface ImmutableKeyValue extends KeyValue {
+
+    /**
+     * Returns an {@code ImmutableKeyValue} containing all the entries of this one, with the specified key mapped to
+     * the {@code boolean} value.
+     *
+     * @param key the key to be placed into the returned {@code KeyValue} object
+     * @param value the value corresponding to <tt>key</tt>
+     * @return the new {@code ImmutableKeyValue}
+     */
+    ImmutableKeyValue with(String key, boolean value);
+
+    /**
+     * Returns an {@code ImmutableKeyValue} containing all the entries of this one, with the specified key mapped to
+     * the {@code short} value.
+     *
+     * @param key the key to be placed into the returned {@code KeyValue} object
+     * @param value the value corresponding to <tt>key</tt>
+     * @return the new {@code ImmutableKeyValue}
+     */
+    ImmutableKeyValue with(String key, short value);
+
+    /**
+     * Returns an {@code ImmutableKeyValue} containing all the entries of this one, with the specified key mapped to
+     * the {@code int} value.
+     *
+     * @param key the key to be placed into the returned {@code KeyValue} object
+     * @param value the value corresponding to <tt>key</tt>
+     * @return the new {@code ImmutableKeyValue}
+     */
+    ImmutableKeyValue with(String key, int value);
+
+    /**
+     * Returns an {@code ImmutableKeyValue} containing all the entries of this one, with the specified key mapped to
+     * the {@code long} value.
+     *
+     * @param key the key to be placed into the returned {@code KeyValue} object
+     * @param value the value corresponding to <tt>key</tt>
+     * @return the new {@code ImmutableKeyValue}
+     */
+    ImmutableKeyValue with(String key, long value);
+
+    /**
+     * Returns an {@code ImmutableKeyValue} containing all the entries of this one, with the specified key mapped to
+     * the {@code double} value.
+     *
+     * @param key the key to be placed into the returned {@code KeyValue} object
+     * @param value the value corresponding to <tt>key</tt>
+     * @return the new {@code ImmutableKeyValue}
+     */
+    ImmutableKeyValue with(String key, double value);
+
+    /**
+     * Returns an {@code ImmutableKeyValue} containing all the entries of this one, with the specified key mapped to
+     * the {@code String} value.
+     *
+     * @param key the key to be placed into the returned {@code KeyValue} object
+     * @param value the value corresponding to <tt>key</tt>
+     * @return the new {@code ImmutableKeyValue}
+     */
+    ImmutableKeyValue with(String key, String value);
+}
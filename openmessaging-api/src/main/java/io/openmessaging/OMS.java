@@ -17,13 +17,45 @@
 
 package io.openmessaging;
 
+import io.openmessaging.consumer.AckAggregator;
+import io.openmessaging.consumer.BatchMessageListener;
+import io.openmessaging.consumer.Consumer;
+import io.openmessaging.consumer.DispatchingMessageListener;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.consumer.OrderingKey;
+import io.openmessaging.consumer.PullConsumer;
+import io.openmessaging.consumer.PushConsumer;
+import io.openmessaging.consumer.RangeAcknowledger;
 import io.openmessaging.exception.OMSRuntimeException;
-import io.openmessaging.internal.DefaultKeyValue;
+import io.openmessaging.interceptor.AsyncConsumerInterceptor;
+import io.openmessaging.interceptor.AsyncProducerInterceptor;
+import io.openmessaging.internal.AdaptiveBatchListener;
+import io.openmessaging.internal.AsyncInterceptingListener;
+import io.openmessaging.internal.AsyncInterceptingProducer;
+import io.openmessaging.internal.BatchingProducer;
+import io.openmessaging.internal.CompactKeyValue;
+import io.openmessaging.internal.CompletableFuturePromise;
+import io.openmessaging.internal.CreditFlowController;
+import io.openmessaging.internal.DefaultAckAggregator;
+import io.openmessaging.internal.DefaultPromise;
+import io.openmessaging.internal.FutureCompletionStage;
+import io.openmessaging.internal.HashedWheelTimer;
+import io.openmessaging.internal.IndexedKeyValue;
+import io.openmessaging.internal.KeyOrderedDispatcher;
+import io.openmessaging.internal.LayeredKeyValue;
 import io.openmessaging.internal.MessagingAccessPointAdapter;
+import io.openmessaging.internal.PrefetchingPullConsumer;
+import io.openmessaging.internal.TypedKeyValue;
+import io.openmessaging.internal.VirtualThreadDispatcher;
 import io.openmessaging.manager.ResourceManager;
+import io.openmessaging.producer.BufferedProducer;
+import io.openmessaging.producer.Producer;
+import io.openmessaging.timer.Timer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 /**
  * The oms class provides some static methods to create a {@code MessagingAccessPoint} from the specified OMS driver url
@@ -73,11 +105,288 @@ public final class OMS {
 
     /**
      * Returns a default and internal {@code KeyValue} implementation instance.
+     * <p>
+     * The returned instance is safe for concurrent use and keeps the values in their native types, so primitive
+     * values are neither formatted nor parsed on the way in and out.
      *
      * @return a {@code KeyValue} instance
      */
     public static KeyValue newKeyValue() {
-        return new DefaultKeyValue();
+        return new TypedKeyValue();
+    }
+
+    /**
+     * Returns a compact and internal {@code KeyValue} implementation instance for per-message properties.
+     * <p>
+     * The returned instance is <strong>not</strong> safe for concurrent use, it must be confined to a single thread
+     * at a time. In exchange its footprint is a few small arrays, which suits the properties of a {@code Message}
+     * created by {@link io.openmessaging.message.MessageFactory#createMessage(String, byte[])}.
+     *
+     * @return a thread-confined {@code KeyValue} instance
+     */
+    public static KeyValue newCompactKeyValue() {
+        return new CompactKeyValue();
+    }
+
+    /**
+     * Returns an indexed and internal {@code KeyValue} implementation instance, storing the keys interned by the OMS
+     * key registry in arrays indexed by their ids.
+     * <p>
+     * The returned instance is <strong>not</strong> safe for concurrent use, it must be confined to a single thread
+     * at a time. Reading or writing one of the {@link OMSBuiltinKeys} or of the standard header field names costs an
+     * array access instead of a hash lookup, other keys fall back to a compact map.
+     *
+     * @return a thread-confined {@code KeyValue} instance
+     */
+    public static KeyValue newIndexedKeyValue() {
+        return new IndexedKeyValue();
+    }
+
+    /**
+     * Returns an immutable snapshot of the specified {@code KeyValue}, which can be shared between threads and
+     * extended through {@link ImmutableKeyValue#with(String, String)} without copying its entries again.
+     *
+     * @param keyValue the {@code KeyValue} to be frozen
+     * @return the {@code ImmutableKeyValue} snapshot, or the argument itself if it is already immutable
+     */
+    public static ImmutableKeyValue freeze(KeyValue keyValue) {
+        return LayeredKeyValue.copyOf(keyValue);
+    }
+
+    /**
+     * Returns a {@code Producer} grouping the messages of {@link Producer#sendAsync(io.openmessaging.message.Message)}
+     * per destination into batches, sent through {@link Producer#sendAsync(java.util.List)} of the specified producer.
+     * <p>
+     * The batches are bounded by the {@link OMSBuiltinKeys#PRODUCER_BATCH_BYTES}, {@link
+     * OMSBuiltinKeys#PRODUCER_BATCH_MESSAGES} and {@link OMSBuiltinKeys#PRODUCER_LINGER_MS} attributes, and the future
+     * of each message is still completed individually. The in-flight window of the returned producer is set by the
+     * {@link OMSBuiltinKeys#PRODUCER_MAX_IN_FLIGHT_MESSAGES}, {@link OMSBuiltinKeys#PRODUCER_MAX_IN_FLIGHT_BYTES},
+     * {@link OMSBuiltinKeys#PRODUCER_OVERFLOW_POLICY} and {@link OMSBuiltinKeys#PRODUCER_MAX_BLOCK_MS} attributes. The
+     * returned producer owns the specified one, starting and stopping it.
+     *
+     * @param producer the producer sending the batches
+     * @param attributes the batching attributes
+     * @return the batching {@code BufferedProducer}
+     */
+    public static BufferedProducer newBatchingProducer(Producer producer, KeyValue attributes) {
+        return new BatchingProducer(producer, attributes);
+    }
+
+    /**
+     * Returns a {@code PullConsumer} prefetching messages from the specified consumer on a background thread, and
+     * serving {@link PullConsumer#receive(long)} and {@link PullConsumer#batchReceive(long)} from memory.
+     * <p>
+     * The messages are buffered per queue, bounded by the {@link OMSBuiltinKeys#CONSUMER_PREFETCH_QUEUE_MESSAGES} and
+     * {@link OMSBuiltinKeys#CONSUMER_PREFETCH_MAX_BYTES} attributes. The number of messages kept buffered adapts to the
+     * consumption rate, within the {@link OMSBuiltinKeys#CONSUMER_FETCH_MIN_MESSAGES} and {@link
+     * OMSBuiltinKeys#CONSUMER_FETCH_MAX_MESSAGES} attributes. The returned consumer owns the specified one, starting
+     * and stopping it.
+     *
+     * @param consumer the consumer fetching the messages
+     * @param attributes the prefetch attributes
+     * @return the prefetching {@code PullConsumer}
+     */
+    public static PullConsumer newPrefetchingPullConsumer(PullConsumer consumer, KeyValue attributes) {
+        return new PrefetchingPullConsumer(consumer, attributes);
+    }
+
+    /**
+     * Returns a {@code MessageListener} processing the received messages on {@link
+     * OMSBuiltinKeys#CONSUMER_DISPATCH_THREADS} threads, in parallel across the keys extracted by the specified {@code
+     * OrderingKey} and in order for each key.
+     * <p>
+     * At most {@link OMSBuiltinKeys#CONSUMER_DISPATCH_KEY_MESSAGES} messages are queued per key and {@link
+     * OMSBuiltinKeys#CONSUMER_DISPATCH_MAX_PENDING} messages in total, the messages without a key included, the consume
+     * thread blocks beyond. The threads are released by {@link DispatchingMessageListener#shutdown()}.
+     *
+     * @param listener the listener processing the messages
+     * @param orderingKey the key of the messages processed in order
+     * @param attributes the dispatch attributes
+     * @return the dispatching {@code MessageListener}
+     */
+    public static DispatchingMessageListener newKeyOrderedListener(MessageListener listener, OrderingKey orderingKey,
+        KeyValue attributes) {
+        return new KeyOrderedDispatcher(listener, orderingKey, attributes);
+    }
+
+    /**
+     * Returns a {@code MessageListener} processing each received message on its own virtual thread, for listeners
+     * blocking on I/O.
+     * <p>
+     * At most {@link OMSBuiltinKeys#CONSUMER_DISPATCH_MAX_CONCURRENCY} messages are processed concurrently, the consume
+     * thread blocks beyond. On a JDK without virtual threads, the messages are processed by {@link
+     * OMSBuiltinKeys#CONSUMER_DISPATCH_THREADS} platform threads. The threads are released by {@link
+     * DispatchingMessageListener#shutdown()}.
+     *
+     * @param listener the listener processing the messages
+     * @param attributes the dispatch attributes
+     * @return the dispatching {@code MessageListener}
+     */
+    public static DispatchingMessageListener newVirtualThreadListener(MessageListener listener, KeyValue attributes) {
+        return new VirtualThreadDispatcher(listener, attributes);
+    }
+
+    /**
+     * Returns a {@code MessageListener} gathering the received messages into batches delivered to the specified {@code
+     * BatchMessageListener}, whose size adapts so that a batch takes about {@link
+     * OMSBuiltinKeys#CONSUMER_BATCH_TARGET_LATENCY_MS} to process.
+     * <p>
+     * The batch size stays within the {@link OMSBuiltinKeys#CONSUMER_BATCH_MIN_MESSAGES} and {@link
+     * OMSBuiltinKeys#CONSUMER_BATCH_MAX_MESSAGES} attributes, and a batch waits at most {@link
+     * OMSBuiltinKeys#CONSUMER_BATCH_MAX_WAIT_MS} to fill up. The delivery thread is released by {@link
+     * DispatchingMessageListener#shutdown()}.
+     *
+     * @param listener the listener processing the batches
+     * @param attributes the batching attributes
+     * @return the batching {@code MessageListener}
+     */
+    public static DispatchingMessageListener newAdaptiveBatchListener(BatchMessageListener listener,
+        KeyValue attributes) {
+        return new AdaptiveBatchListener(listener, attributes);
+    }
+
+    /**
+     * Returns a {@code MessageListener} suspending the specified consumer while too many received messages are not yet
+     * acknowledged, and resuming it once enough of them are.
+     * <p>
+     * A queue has {@link OMSBuiltinKeys#CONSUMER_FLOW_QUEUE_CREDITS} credits and all the queues together {@link
+     * OMSBuiltinKeys#CONSUMER_FLOW_TOTAL_CREDITS}, a received message taking one until it is acknowledged. The consumer
+     * is resumed once {@link OMSBuiltinKeys#CONSUMER_FLOW_RESUME_PERCENT} percent of the credits at most are in use.
+     * <p>
+     * The credit of a message comes back only when the message is acknowledged through the {@code Context} it was
+     * delivered with, or when the listener throws. The credit of a message left unacknowledged or acknowledged through
+     * the consumer must be given back by {@link #releaseCredit(MessageListener.Context)}.
+     *
+     * @param consumer the consumer to suspend and resume
+     * @param listener the listener processing the messages
+     * @param attributes the flow control attributes
+     * @return the flow-controlled {@code MessageListener}
+     */
+    public static MessageListener newCreditFlowListener(PushConsumer consumer, MessageListener listener,
+        KeyValue attributes) {
+        return new CreditFlowController(consumer, listener, attributes);
+    }
+
+    /**
+     * Gives back the flow control credit of a message delivered by a listener of {@link
+     * #newCreditFlowListener(PushConsumer, MessageListener, KeyValue)}, for a message which is not acknowledged through
+     * the specified context. The credit is given back at most once.
+     *
+     * @param context the context the message was delivered with
+     * @return {@code true} if the context is the one of a flow-controlled delivery
+     */
+    public static boolean releaseCredit(MessageListener.Context context) {
+        return CreditFlowController.release(context);
+    }
+
+    /**
+     * Returns a {@code Producer} running the specified asynchronous interceptors before handing the messages to the
+     * specified producer, in the order they were submitted, without blocking on the interceptors.
+     * <p>
+     * The messages are handed to the specified producer by a thread owned by the returned producer, released by
+     * {@link Producer#stop()}.
+     *
+     * @param producer the producer sending the messages
+     * @param interceptors the interceptors, in order
+     * @return the intercepting {@code Producer}
+     */
+    public static Producer newAsyncInterceptingProducer(Producer producer, AsyncProducerInterceptor... interceptors) {
+        AsyncInterceptingProducer intercepting = new AsyncInterceptingProducer(producer);
+        for (AsyncProducerInterceptor interceptor : interceptors) {
+            intercepting.addAsyncInterceptor(interceptor);
+        }
+        return intercepting;
+    }
+
+    /**
+     * Returns a {@code MessageListener} running the specified asynchronous interceptors before handing the messages to
+     * the specified listener, in the order they were received, without blocking on the interceptors.
+     * <p>
+     * The messages are delivered one at a time by a thread owned by the returned listener, released by {@link
+     * DispatchingMessageListener#shutdown()}. At most {@link OMSBuiltinKeys#CONSUMER_INTERCEPT_MAX_PENDING} messages
+     * are pending, the consume thread blocks beyond.
+     *
+     * @param listener the listener processing the messages
+     * @param attributes the interception attributes
+     * @param interceptors the interceptors, in order
+     * @return the intercepting {@code MessageListener}
+     */
+    public static DispatchingMessageListener newAsyncInterceptingListener(MessageListener listener,
+        KeyValue attributes, AsyncConsumerInterceptor... interceptors) {
+        AsyncInterceptingListener intercepting = new AsyncInterceptingListener(listener, attributes);
+        for (AsyncConsumerInterceptor interceptor : interceptors) {
+            intercepting.addAsyncInterceptor(interceptor);
+        }
+        return intercepting;
+    }
+
+    /**
+     * Returns an {@code AckAggregator} coalescing the acknowledgements of the specified consumer into batches bounded
+     * by the {@link OMSBuiltinKeys#CONSUMER_ACK_BATCH_MESSAGES} and {@link OMSBuiltinKeys#CONSUMER_ACK_LINGER_MS}
+     * attributes, with the {@link io.openmessaging.consumer.AckDurability} named by the {@link
+     * OMSBuiltinKeys#CONSUMER_ACK_DURABILITY} attribute.
+     *
+     * @param consumer the consumer acknowledging the receipts
+     * @param rangeAcknowledger the vendor support for acknowledging offset ranges, or {@code null} to acknowledge the
+     * receipts one by one
+     * @param attributes the aggregation attributes
+     * @return the {@code AckAggregator}
+     */
+    public static AckAggregator newAckAggregator(Consumer consumer, RangeAcknowledger rangeAcknowledger,
+        KeyValue attributes) {
+        return new DefaultAckAggregator(consumer, rangeAcknowledger, attributes);
+    }
+
+    /**
+     * Returns a lock-free {@code Promise} implementation, whose listeners are notified on the thread completing it.
+     *
+     * @return a {@code Promise} instance
+     */
+    public static <V> Promise<V> newPromise() {
+        return new DefaultPromise<V>();
+    }
+
+    /**
+     * Returns a lock-free {@code Promise} implementation, whose listeners are notified by the specified executor.
+     *
+     * @param listenerExecutor the executor notifying the listeners
+     * @return a {@code Promise} instance
+     */
+    public static <V> Promise<V> newPromise(Executor listenerExecutor) {
+        return new DefaultPromise<V>(listenerExecutor);
+    }
+
+    /**
+     * Returns the {@code Timer} shared by the whole process, a hashed wheel with a tick of 10 milliseconds, for the
+     * timeouts of promises and sends. Scheduling and cancelling a timeout are O(1) and do not take any lock. The
+     * returned timer cannot be stopped, its {@link Timer#stop()} throws an {@link UnsupportedOperationException}.
+     *
+     * @return the shared {@code Timer}
+     */
+    public static Timer timer() {
+        return HashedWheelTimer.shared();
+    }
+
+    /**
+     * Returns a {@code Promise} backed by the {@code CompletableFuture} of the specified stage, whose {@link
+     * Promise#toCompletionStage()} returns that {@code CompletableFuture} again.
+     *
+     * @param stage the stage to be viewed as a {@code Promise}
+     * @return the {@code Promise} view of the stage
+     */
+    public static <V> Promise<V> fromCompletionStage(CompletionStage<V> stage) {
+        return new CompletableFuturePromise<V>(stage.toCompletableFuture());
+    }
+
+    /**
+     * Returns a {@code CompletionStage} completed with the outcome of the specified future, see {@link
+     * Future#toCompletionStage()}.
+     *
+     * @param future the future to be viewed as a {@code CompletionStage}
+     * @return the {@code CompletionStage} view of the future
+     */
+    public static <V> CompletionStage<V> toCompletionStage(Future<V> future) {
+        return new FutureCompletionStage<V>(future);
     }
 
     /**
@@ -50,4 +50,179 @@ public interface OMSBuiltinKeys {
      * The {@code REGION} key shows the specified region in OMS driver schema.
      */
     String REGION = "REGION";
+
+    /**
+     * The {@code PRODUCER_BATCH_BYTES} key shows the maximum number of body bytes a batching producer accumulates per
+     * destination before sending them as one batch.
+     */
+    String PRODUCER_BATCH_BYTES = "PRODUCER_BATCH_BYTES";
+
+    /**
+     * The {@code PRODUCER_BATCH_MESSAGES} key shows the maximum number of messages a batching producer accumulates per
+     * destination before sending them as one batch.
+     */
+    String PRODUCER_BATCH_MESSAGES = "PRODUCER_BATCH_MESSAGES";
+
+    /**
+     * The {@code PRODUCER_LINGER_MS} key shows how long in milliseconds a batching producer waits for more messages
+     * before sending an incomplete batch, {@code 0} disables batching.
+     */
+    String PRODUCER_LINGER_MS = "PRODUCER_LINGER_MS";
+
+    /**
+     * The {@code PRODUCER_MAX_IN_FLIGHT_MESSAGES} key shows the maximum number of messages a buffered producer holds
+     * in flight, see {@link io.openmessaging.producer.BufferedProducer}.
+     */
+    String PRODUCER_MAX_IN_FLIGHT_MESSAGES = "PRODUCER_MAX_IN_FLIGHT_MESSAGES";
+
+    /**
+     * The {@code PRODUCER_MAX_IN_FLIGHT_BYTES} key shows the maximum number of body bytes a buffered producer holds in
+     * flight.
+     */
+    String PRODUCER_MAX_IN_FLIGHT_BYTES = "PRODUCER_MAX_IN_FLIGHT_BYTES";
+
+    /**
+     * The {@code PRODUCER_OVERFLOW_POLICY} key shows the name of the {@link io.openmessaging.producer.OverflowPolicy}
+     * applied when the in-flight window of a buffered producer is full.
+     */
+    String PRODUCER_OVERFLOW_POLICY = "PRODUCER_OVERFLOW_POLICY";
+
+    /**
+     * The {@code PRODUCER_MAX_BLOCK_MS} key shows how long in milliseconds a send waits for room in the in-flight
+     * window under the {@code BLOCK} policy.
+     */
+    String PRODUCER_MAX_BLOCK_MS = "PRODUCER_MAX_BLOCK_MS";
+
+    /**
+     * The {@code PRODUCER_SEND_TIMEOUT_MS} key shows how long in milliseconds an asynchronous send of a buffered
+     * producer may take before its future fails with an {@link io.openmessaging.exception.OMSTimeOutException}, {@code
+     * 0} means no timeout.
+     */
+    String PRODUCER_SEND_TIMEOUT_MS = "PRODUCER_SEND_TIMEOUT_MS";
+
+    /**
+     * The {@code CONSUMER_PREFETCH_QUEUE_MESSAGES} key shows the maximum number of messages a prefetching consumer
+     * buffers per queue.
+     */
+    String CONSUMER_PREFETCH_QUEUE_MESSAGES = "CONSUMER_PREFETCH_QUEUE_MESSAGES";
+
+    /**
+     * The {@code CONSUMER_PREFETCH_MAX_BYTES} key shows the maximum number of body bytes a prefetching consumer buffers
+     * over all its queues.
+     */
+    String CONSUMER_PREFETCH_MAX_BYTES = "CONSUMER_PREFETCH_MAX_BYTES";
+
+    /**
+     * The {@code CONSUMER_FETCH_MIN_MESSAGES} key shows the lower bound of the adaptive fetch size of a prefetching
+     * consumer.
+     */
+    String CONSUMER_FETCH_MIN_MESSAGES = "CONSUMER_FETCH_MIN_MESSAGES";
+
+    /**
+     * The {@code CONSUMER_FETCH_MAX_MESSAGES} key shows the upper bound of the adaptive fetch size of a prefetching
+     * consumer.
+     */
+    String CONSUMER_FETCH_MAX_MESSAGES = "CONSUMER_FETCH_MAX_MESSAGES";
+
+    /**
+     * The {@code CONSUMER_FETCH_TIMEOUT_MS} key shows how long in milliseconds a single fetch of a prefetching consumer
+     * waits for messages.
+     */
+    String CONSUMER_FETCH_TIMEOUT_MS = "CONSUMER_FETCH_TIMEOUT_MS";
+
+    /**
+     * The {@code CONSUMER_DISPATCH_THREADS} key shows the number of threads a dispatching message listener processes
+     * the messages with.
+     */
+    String CONSUMER_DISPATCH_THREADS = "CONSUMER_DISPATCH_THREADS";
+
+    /**
+     * The {@code CONSUMER_DISPATCH_KEY_MESSAGES} key shows the maximum number of messages a key-ordered message
+     * listener queues per ordering key.
+     */
+    String CONSUMER_DISPATCH_KEY_MESSAGES = "CONSUMER_DISPATCH_KEY_MESSAGES";
+
+    /**
+     * The {@code CONSUMER_DISPATCH_MAX_PENDING} key shows the maximum number of messages a key-ordered message listener
+     * holds in total, whether they have an ordering key or not.
+     */
+    String CONSUMER_DISPATCH_MAX_PENDING = "CONSUMER_DISPATCH_MAX_PENDING";
+
+    /**
+     * The {@code CONSUMER_DISPATCH_MAX_CONCURRENCY} key shows the maximum number of messages a dispatching message
+     * listener processes concurrently.
+     */
+    String CONSUMER_DISPATCH_MAX_CONCURRENCY = "CONSUMER_DISPATCH_MAX_CONCURRENCY";
+
+    /**
+     * The {@code CONSUMER_DISPATCH_VIRTUAL_THREADS} key shows whether a dispatching message listener processes the
+     * messages on virtual threads, when the running JDK supports them.
+     */
+    String CONSUMER_DISPATCH_VIRTUAL_THREADS = "CONSUMER_DISPATCH_VIRTUAL_THREADS";
+
+    /**
+     * The {@code CONSUMER_ACK_BATCH_MESSAGES} key shows the number of acknowledgements an ack aggregator coalesces
+     * before flushing them.
+     */
+    String CONSUMER_ACK_BATCH_MESSAGES = "CONSUMER_ACK_BATCH_MESSAGES";
+
+    /**
+     * The {@code CONSUMER_ACK_LINGER_MS} key shows how long in milliseconds an ack aggregator holds an acknowledgement
+     * before flushing it.
+     */
+    String CONSUMER_ACK_LINGER_MS = "CONSUMER_ACK_LINGER_MS";
+
+    /**
+     * The {@code CONSUMER_ACK_DURABILITY} key shows the name of the {@link io.openmessaging.consumer.AckDurability} of
+     * an ack aggregator.
+     */
+    String CONSUMER_ACK_DURABILITY = "CONSUMER_ACK_DURABILITY";
+
+    /**
+     * The {@code CONSUMER_BATCH_MIN_MESSAGES} key shows the lower bound of the adaptive batch size of a batching
+     * message listener.
+     */
+    String CONSUMER_BATCH_MIN_MESSAGES = "CONSUMER_BATCH_MIN_MESSAGES";
+
+    /**
+     * The {@code CONSUMER_BATCH_MAX_MESSAGES} key shows the upper bound of the adaptive batch size of a batching
+     * message listener.
+     */
+    String CONSUMER_BATCH_MAX_MESSAGES = "CONSUMER_BATCH_MAX_MESSAGES";
+
+    /**
+     * The {@code CONSUMER_BATCH_MAX_WAIT_MS} key shows how long in milliseconds a batching message listener waits to
+     * fill a batch before delivering it anyway.
+     */
+    String CONSUMER_BATCH_MAX_WAIT_MS = "CONSUMER_BATCH_MAX_WAIT_MS";
+
+    /**
+     * The {@code CONSUMER_BATCH_TARGET_LATENCY_MS} key shows the processing time in milliseconds of a batch a batching
+     * message listener sizes its batches for.
+     */
+    String CONSUMER_BATCH_TARGET_LATENCY_MS = "CONSUMER_BATCH_TARGET_LATENCY_MS";
+
+    /**
+     * The {@code CONSUMER_FLOW_QUEUE_CREDITS} key shows the number of unacknowledged messages per queue suspending a
+     * flow-controlled push consumer.
+     */
+    String CONSUMER_FLOW_QUEUE_CREDITS = "CONSUMER_FLOW_QUEUE_CREDITS";
+
+    /**
+     * The {@code CONSUMER_FLOW_TOTAL_CREDITS} key shows the number of unacknowledged messages over all the queues
+     * suspending a flow-controlled push consumer.
+     */
+    String CONSUMER_FLOW_TOTAL_CREDITS = "CONSUMER_FLOW_TOTAL_CREDITS";
+
+    /**
+     * The {@code CONSUMER_FLOW_RESUME_PERCENT} key shows the percentage of the credits a flow-controlled push consumer
+     * must have back before resuming.
+     */
+    String CONSUMER_FLOW_RESUME_PERCENT = "CONSUMER_FLOW_RESUME_PERCENT";
+
+    /**
+     * The {@code CONSUMER_INTERCEPT_MAX_PENDING} key shows the maximum number of received messages waiting for their
+     * asynchronous interceptors or their ordered delivery.
+     */
+    String CONSUMER_INTERCEPT_MAX_PENDING = "CONSUMER_INTERCEPT_MAX_PENDING";
 }
@@ -37,7 +37,7 @@ import io.openmessaging.exception.OMSRuntimeException;
  * 150x: The server failed to fulfill an apparently valid request
  * </p>
  * <p>
- * 1000x: OpenMessaging internal status code for create {@link MessagingAccessPoint}
+ * 1000x: OpenMessaging internal status code for create {@link MessagingAccessPoint} and for the internal codecs
  * </p>
  */
 public enum OMSResponseStatus {
@@ -99,7 +99,15 @@ public enum OMSResponseStatus {
 
     STATUS_10002(10002, "The implementation version [%s] is illegal."),
 
-    STATUS_10003(10003, "The implementation version [%s] isn't compatible with the specification version [%s].");
+    STATUS_10003(10003, "The implementation version [%s] isn't compatible with the specification version [%s]."),
+
+    STATUS_10004(10004, "The encoded data is malformed: %s."),
+
+    STATUS_10005(10005, "The compression codec [%s] is unknown."),
+
+    STATUS_10006(10006, "The in-flight window of the producer is full: %s."),
+
+    STATUS_10007(10007, "The message listener [%s] has been shut down.");
 
     private int statusCode;
 
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.compression;
+
+import io.openmessaging.message.Header;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@code CompressionCodec} is a message body compression algorithm, identified on the wire by the value of {@link
+ * Header#getCompression()}.
+ * <p>
+ * Codecs are registered in {@link CompressionCodecs}, either explicitly or through the {@link java.util.ServiceLoader}
+ * mechanism by listing the implementation class in {@code META-INF/services/io.openmessaging.compression.CompressionCodec}.
+ * The ids from {@code 0} to {@code 127} are reserved for the codecs defined by OMS.
+ * <p>
+ * Implementations must be thread-safe and should not allocate per call, so that callers can compress into and from
+ * pooled buffers.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public interface CompressionCodec {
+    /**
+     * Returns the id of this codec, as carried by {@link Header#setCompression(short)}.
+     *
+     * @return the codec id
+     */
+    short id();
+
+    /**
+     * Returns the name of this codec, like {@code deflate}.
+     *
+     * @return the codec name
+     */
+    String name();
+
+    /**
+     * Returns the maximum number of bytes {@link #compress(ByteBuffer, ByteBuffer)} may write for the specified input
+     * length.
+     *
+     * @param length the length of the uncompressed data
+     * @return the worst-case compressed length
+     */
+    int maxCompressedLength(int length);
+
+    /**
+     * Compresses the remaining bytes of the source into the target. On return the source has been consumed and the
+     * position of the target is after the last compressed byte.
+     *
+     * @param source the data to be compressed
+     * @param target the buffer receiving the compressed data, with at least {@link #maxCompressedLength(int)} bytes
+     * remaining
+     */
+    void compress(ByteBuffer source, ByteBuffer target);
+
+    /**
+     * Decompresses the remaining bytes of the source into the target, which must have exactly the uncompressed length
+     * remaining. On return the source has been consumed and the target is full.
+     *
+     * @param source the compressed data
+     * @param target the buffer receiving the uncompressed data
+     * @throws io.openmessaging.exception.OMSMessageFormatException if the compressed data is malformed
+     */
+    void decompress(ByteBuffer source, ByteBuffer target);
+}
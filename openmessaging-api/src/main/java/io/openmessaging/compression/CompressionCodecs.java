@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.compression;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The registry of the {@link CompressionCodec}s known to this process.
+ * <p>
+ * OMS defines the following codecs, all implemented in pure Java without any extra dependency:
+ * <ul>
+ * <li> {@link #NONE}, id {@code 0}, the body is not compressed.
+ * <li> {@link #DEFLATE}, id {@code 1}, the zlib format, a good ratio at a moderate CPU cost.
+ * <li> {@link #LZ4}, id {@code 2}, the LZ4 block format, a lower ratio but much cheaper on both sides.
+ * </ul>
+ * The built-in codecs and the other ones are discovered through {@link ServiceLoader} when this class is initialized,
+ * other codecs may also be registered by {@link #register(CompressionCodec)}. A discovered codec whose id or name is
+ * already taken is skipped with a warning.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public final class CompressionCodecs {
+    /**
+     * The id carried by uncompressed messages.
+     */
+    public static final short NONE = 0;
+
+    /**
+     * The id of the built-in deflate codec.
+     */
+    public static final short DEFLATE = 1;
+
+    /**
+     * The id of the built-in LZ4 codec.
+     */
+    public static final short LZ4 = 2;
+
+    private static final Logger LOGGER = Logger.getLogger(CompressionCodecs.class.getName());
+
+    private static final ConcurrentMap<Short, CompressionCodec> CODECS_BY_ID =
+        new ConcurrentHashMap<Short, CompressionCodec>();
+
+    private static final ConcurrentMap<String, CompressionCodec> CODECS_BY_NAME =
+        new ConcurrentHashMap<String, CompressionCodec>();
+
+    static {
+        for (CompressionCodec codec : ServiceLoader.load(CompressionCodec.class,
+            CompressionCodecs.class.getClassLoader())) {
+            try {
+                register(codec);
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "The codec " + codec.getClass().getName() + " is skipped", e);
+            }
+        }
+    }
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * Registers the specified codec.
+     *
+     * @param codec the codec to be registered
+     * @throws IllegalArgumentException if the id or the name of the codec is already taken by another codec
+     */
+    public static void register(CompressionCodec codec) {
+        if (codec.id() == NONE) {
+            throw new IllegalArgumentException("The codec id " + NONE + " is reserved for uncompressed messages");
+        }
+        CompressionCodec previous = CODECS_BY_ID.putIfAbsent(codec.id(), codec);
+        if (previous != null && previous != codec) {
+            throw new IllegalArgumentException("The codec id " + codec.id() + " is already taken by " + previous.name());
+        }
+        previous = CODECS_BY_NAME.putIfAbsent(codec.name(), codec);
+        if (previous != null && previous != codec) {
+            CODECS_BY_ID.remove(codec.id(), codec);
+            throw new IllegalArgumentException("The codec name " + codec.name() + " is already taken");
+        }
+    }
+
+    /**
+     * Returns the codec with the specified id.
+     *
+     * @param id the codec id
+     * @return the codec, or {@code null} if no codec is registered with the id
+     */
+    public static CompressionCodec codec(short id) {
+        return CODECS_BY_ID.get(id);
+    }
+
+    /**
+     * Returns the codec with the specified name.
+     *
+     * @param name the codec name
+     * @return the codec, or {@code null} if no codec is registered with the name
+     */
+    public static CompressionCodec codec(String name) {
+        return CODECS_BY_NAME.get(name);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.compression;
+
+/**
+ * A {@code CompressionPolicy} decides whether and how a message body is compressed: bodies shorter than the threshold
+ * are sent as is, since compressing them costs more CPU than it saves bandwidth.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public final class CompressionPolicy {
+    /**
+     * The policy never compressing anything.
+     */
+    public static final CompressionPolicy NONE = new CompressionPolicy(null, Integer.MAX_VALUE);
+
+    private final CompressionCodec codec;
+    private final int threshold;
+
+    private CompressionPolicy(CompressionCodec codec, int threshold) {
+        this.codec = codec;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Creates a policy compressing the bodies of at least {@code threshold} bytes with the specified codec.
+     *
+     * @param codec the codec
+     * @param threshold the minimum body length to be compressed
+     * @return the policy
+     */
+    public static CompressionPolicy of(CompressionCodec codec, int threshold) {
+        if (codec == null) {
+            throw new NullPointerException("codec");
+        }
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Illegal compression threshold: " + threshold);
+        }
+        return new CompressionPolicy(codec, threshold);
+    }
+
+    /**
+     * Creates a policy compressing the bodies of at least {@code threshold} bytes with the codec registered under the
+     * specified name in {@link CompressionCodecs}.
+     *
+     * @param codecName the codec name
+     * @param threshold the minimum body length to be compressed
+     * @return the policy
+     * @throws IllegalArgumentException if no codec is registered with the name
+     */
+    public static CompressionPolicy of(String codecName, int threshold) {
+        CompressionCodec codec = CompressionCodecs.codec(codecName);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown compression codec: " + codecName);
+        }
+        return of(codec, threshold);
+    }
+
+    /**
+     * Returns the codec of this policy.
+     *
+     * @return the codec, or {@code null} for {@link #NONE}
+     */
+    public CompressionCodec codec() {
+        return codec;
+    }
+
+    /**
+     * Returns the minimum body length compressed by this policy.
+     *
+     * @return the threshold in bytes
+     */
+    public int threshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns whether a body of the specified length should be compressed.
+     *
+     * @param length the body length
+     * @return {@code true} if the body should be compressed
+     */
+    public boolean shouldCompress(int length) {
+        return codec != null && length >= threshold;
+    }
+}
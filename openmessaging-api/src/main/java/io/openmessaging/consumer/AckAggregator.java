@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.consumer;
+
+import io.openmessaging.Future;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.exception.OMSRuntimeException;
+
+/**
+ * An {@code AckAggregator} coalesces the acknowledgements of a {@link Consumer} into batches, to save a round trip per
+ * message.
+ * <p>
+ * A batch is flushed once it holds {@link OMSBuiltinKeys#CONSUMER_ACK_BATCH_MESSAGES} acknowledgements, or {@link
+ * OMSBuiltinKeys#CONSUMER_ACK_LINGER_MS} after its first one. With a {@link RangeAcknowledger}, the contiguous offsets
+ * of a partition are acknowledged as a single range, the other receipts one by one through {@link
+ * Consumer#ack(MessageReceipt)}.
+ * <p>
+ * The application flushes the aggregator before unbinding queues, so the acknowledgements reach the server before
+ * the queues are handed over to another consumer, and stops it before stopping the consumer. A push consumer returned
+ * by {@link #decorate(PushConsumer)} does both by itself.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public interface AckAggregator {
+    /**
+     * Queues the acknowledgement of the specified receipt, returning according to the {@link AckDurability} of this
+     * aggregator.
+     *
+     * @param receipt the receipt of a consumed message
+     * @return the future of the batch holding the acknowledgement, completed once the batch is flushed
+     * @throws OMSRuntimeException if the durability is {@link AckDurability#SYNC} and the flush failed
+     */
+    Future<Void> ack(MessageReceipt receipt);
+
+    /**
+     * Returns a listener delegating to the specified one, whose {@link MessageListener.Context#ack()} goes through this
+     * aggregator.
+     *
+     * @param listener the listener processing the messages
+     * @return the decorated listener
+     */
+    MessageListener decorate(MessageListener listener);
+
+    /**
+     * Returns a consumer delegating to the specified one, which acknowledges through this aggregator, binds the
+     * message listeners decorated by {@link #decorate(MessageListener)}, flushes this aggregator before unbinding
+     * queues and stops it before stopping the specified consumer.
+     *
+     * @param consumer the consumer receiving the messages
+     * @return the decorated consumer
+     */
+    PushConsumer decorate(PushConsumer consumer);
+
+    /**
+     * Flushes the queued acknowledgements, returning once they have been handed over to the consumer.
+     */
+    void flush();
+
+    /**
+     * Returns the number of queued acknowledgements.
+     *
+     * @return the pending acknowledgements
+     */
+    int pendingAcks();
+
+    /**
+     * Flushes the queued acknowledgements and releases the linger thread, the later acknowledgements are passed to the
+     * consumer directly.
+     */
+    void stop();
+}
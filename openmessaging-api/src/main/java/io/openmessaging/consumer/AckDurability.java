@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.consumer;
+
+/**
+ * Defines when {@link AckAggregator#ack(MessageReceipt)} returns, relative to the flush of the acknowledgement.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public enum AckDurability {
+    /**
+     * Returns as soon as the acknowledgement is queued, the returned future completes once it is flushed. The
+     * acknowledgements queued when the process dies are lost, so the messages are redelivered.
+     */
+    ASYNC,
+
+    /**
+     * Returns once the acknowledgement has been flushed, together with the others of the same batch, and throws if the
+     * flush failed.
+     */
+    SYNC
+}
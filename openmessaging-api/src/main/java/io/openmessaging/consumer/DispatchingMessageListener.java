@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.consumer;
+
+/**
+ * A {@code DispatchingMessageListener} is a {@link MessageListener} handing each message over to another listener on
+ * its own threads, so the consume thread of the {@link PushConsumer} is released as soon as the message is queued.
+ * <p>
+ * The messages queued but not yet processed are not acknowledged, so they are redelivered if the process stops. A
+ * dispatching listener bounds the messages it queues, blocking the consume thread once the bound is reached.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public interface DispatchingMessageListener extends MessageListener {
+    /**
+     * Returns the number of messages queued or being processed.
+     *
+     * @return the pending messages
+     */
+    int pendingMessages();
+
+    /**
+     * Stops accepting messages and releases the threads owned by this listener once the pending messages have been
+     * processed. Messages received afterwards are rejected with an {@link io.openmessaging.exception.OMSRuntimeException},
+     * so they are redelivered.
+     */
+    void shutdown();
+}
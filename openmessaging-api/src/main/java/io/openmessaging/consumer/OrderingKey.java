@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.consumer;
+
+import io.openmessaging.extension.ExtensionHeader;
+import io.openmessaging.message.Message;
+
+/**
+ * An {@code OrderingKey} extracts from a message the key whose messages a {@link DispatchingMessageListener} processes
+ * in order.
+ * <p>
+ * Messages of different keys are processed in parallel, and a message without a key, for which {@link #of(Message)}
+ * returns {@code null}, is processed without any ordering constraint.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public interface OrderingKey {
+    /**
+     * Orders the messages sharing the same {@link ExtensionHeader#getMessageKey()}, the messages without a key are
+     * unordered.
+     */
+    OrderingKey MESSAGE_KEY = new OrderingKey() {
+        @Override
+        public Object of(Message message) {
+            ExtensionHeader header = message.extensionHeader();
+            return header == null ? null : header.getMessageKey();
+        }
+    };
+
+    /**
+     * Orders the messages of the same partition of the same queue, as delivered by the server.
+     */
+    OrderingKey PARTITION = new OrderingKey() {
+        @Override
+        public Object of(Message message) {
+            ExtensionHeader header = message.extensionHeader();
+            int partition = header == null ? 0 : header.getPartiton();
+            return message.header().getDestination() + '#' + partition;
+        }
+    };
+
+    /**
+     * Returns the ordering key of the specified message.
+     *
+     * @param message the received message
+     * @return the ordering key, or {@code null} if the message may be processed in any order
+     */
+    Object of(Message message);
+}
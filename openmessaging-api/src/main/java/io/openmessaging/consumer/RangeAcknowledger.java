@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.consumer;
+
+/**
+ * A {@code RangeAcknowledger} is implemented by vendors whose receipts map to offsets within partitions, to
+ * acknowledge a range of contiguous offsets at once.
+ * <p>
+ * An {@link AckAggregator} only passes the ranges whose every offset has been acknowledged, so a vendor acknowledging
+ * offsets cumulatively must still only commit up to the end of the contiguous acknowledged prefix.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public interface RangeAcknowledger {
+    /**
+     * Returns the partition of the specified receipt, such as the queue name and partition number of the message.
+     *
+     * @param receipt the receipt of a consumed message
+     * @return the partition, compared with {@code equals}, or {@code null} if the receipt must be acknowledged alone
+     * through {@link Consumer#ack(MessageReceipt)}
+     */
+    Object partitionOf(MessageReceipt receipt);
+
+    /**
+     * Returns the offset of the specified receipt within its partition.
+     *
+     * @param receipt the receipt of a consumed message, whose partition is not {@code null}
+     * @return the offset
+     */
+    long offsetOf(MessageReceipt receipt);
+
+    /**
+     * Acknowledges the messages of the specified partition whose offsets lie within the specified range.
+     *
+     * @param partition the partition
+     * @param fromOffset the first offset of the range, inclusive
+     * @param toOffset the last offset of the range, inclusive
+     */
+    void ack(Object partition, long fromOffset, long toOffset);
+}
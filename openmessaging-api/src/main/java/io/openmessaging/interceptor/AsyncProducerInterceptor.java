@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.interceptor;
+
+import io.openmessaging.message.Message;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * An {@code AsyncProducerInterceptor} is the non-blocking variant of {@link ProducerInterceptor}, for interceptors
+ * waiting on I/O, such as enriching the messages from a remote cache.
+ * <p>
+ * The message is sent once the stage returned by {@link #preSend(Message, Context)} completes, without any thread
+ * waiting for it, and the messages of a producer are still sent in the order they were submitted.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public interface AsyncProducerInterceptor {
+    /**
+     * Invoked before the message is actually sent to the network.
+     * <p>
+     * This allows for modification of the message, which must be complete when the returned stage completes.
+     *
+     * @param message a message will be sent.
+     * @param attributes the extensible attributes delivered to the intercept thread.
+     * @return a stage completing when the message may be sent, or failing the send exceptionally.
+     */
+    CompletionStage<Void> preSend(Message message, Context attributes);
+
+    /**
+     * Invoked after the successful send invocation.
+     *
+     * @param message the message is actually sent.
+     * @param attributes the extensible attributes delivered to the intercept thread.
+     * @return a stage completing when the post-processing is done.
+     */
+    CompletionStage<Void> postSend(Message message, Context attributes);
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+/**
+ * Sizes batches so that their processing time approaches a target latency, used by OMS internally.
+ * <p>
+ * After each batch, the controller moves the batch size halfway towards the size scaled by the ratio of the target
+ * latency to the observed one, which damps the noise and grows the size by half at most per batch. A fixed per-batch
+ * overhead makes the observed latency grow slower than the batch size, so the size settles where a batch takes about
+ * the target latency, which is where the overhead is best amortized without delaying the messages any longer.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class AdaptiveBatchController {
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetLatencyNanos;
+    private volatile int batchSize;
+
+    public AdaptiveBatchController(int minBatchSize, int maxBatchSize, long targetLatencyNanos) {
+        if (minBatchSize <= 0 || maxBatchSize < minBatchSize || targetLatencyNanos <= 0) {
+            throw new IllegalArgumentException("Illegal batch settings: " + minBatchSize + " to " + maxBatchSize
+                + " messages, " + targetLatencyNanos + " ns target latency");
+        }
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.batchSize = minBatchSize;
+    }
+
+    /**
+     * Returns the size of the next batch.
+     *
+     * @return the batch size, within the bounds of this controller
+     */
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Records the processing time of a batch, adjusting the size of the next batches.
+     * <p>
+     * A batch smaller than the current size, delivered because the wait time elapsed, only lowers the size when it
+     * exceeded the target latency, since it says nothing about larger batches otherwise.
+     *
+     * @param size the number of messages of the batch
+     * @param latencyNanos the processing time of the batch
+     */
+    public synchronized void record(int size, long latencyNanos) {
+        int current = batchSize;
+        if (size < current && latencyNanos <= targetLatencyNanos) {
+            return;
+        }
+        double scaled = (double) size * targetLatencyNanos / Math.max(1L, latencyNanos);
+        double next = current + (Math.min(scaled, 2.0 * current) - current) / 2;
+        batchSize = (int) Math.max(minBatchSize, Math.min(maxBatchSize, Math.round(next)));
+    }
+}
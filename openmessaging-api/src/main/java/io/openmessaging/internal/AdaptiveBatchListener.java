@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.OMSResponseStatus;
+import io.openmessaging.consumer.BatchMessageListener;
+import io.openmessaging.consumer.DispatchingMessageListener;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.consumer.MessageReceipt;
+import io.openmessaging.message.Message;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link DispatchingMessageListener} gathering the received messages into batches delivered to a {@link
+ * BatchMessageListener}, sized by an {@link AdaptiveBatchController}, used by OMS internally.
+ * <p>
+ * A batch is delivered once it reaches the current batch size, or {@link OMSBuiltinKeys#CONSUMER_BATCH_MAX_WAIT_MS}
+ * after the arrival of its first message. The batches are delivered one at a time on a dedicated thread, and the time
+ * {@link BatchMessageListener#onReceived(List, BatchMessageListener.Context)} takes sizes the next batches towards
+ * {@link OMSBuiltinKeys#CONSUMER_BATCH_TARGET_LATENCY_MS}, within {@link OMSBuiltinKeys#CONSUMER_BATCH_MIN_MESSAGES}
+ * and {@link OMSBuiltinKeys#CONSUMER_BATCH_MAX_MESSAGES}. The consume thread blocks while twice the maximum batch size
+ * of messages are waiting.
+ * <p>
+ * {@link BatchMessageListener.Context#success(MessageReceipt...)} acknowledges the given messages through their own
+ * {@link MessageListener.Context}, and {@link BatchMessageListener.Context#ack()} the rest of the batch, so the
+ * messages a listener neither succeeded nor acknowledged are redelivered.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class AdaptiveBatchListener implements DispatchingMessageListener {
+    public static final int DEFAULT_MIN_MESSAGES = 1;
+    public static final int DEFAULT_MAX_MESSAGES = 1000;
+    public static final long DEFAULT_MAX_WAIT_MS = 50;
+    public static final long DEFAULT_TARGET_LATENCY_MS = 100;
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveBatchListener.class.getName());
+
+    private final BatchMessageListener listener;
+    private final AdaptiveBatchController controller;
+    private final int maxMessages;
+    private final long maxWaitNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Delivery> deliveries = new ArrayDeque<Delivery>();
+    private int processing;
+    private volatile boolean shutdown;
+
+    public AdaptiveBatchListener(BatchMessageListener listener, KeyValue attributes) {
+        this(listener, attributes.getInt(OMSBuiltinKeys.CONSUMER_BATCH_MIN_MESSAGES, DEFAULT_MIN_MESSAGES),
+            attributes.getInt(OMSBuiltinKeys.CONSUMER_BATCH_MAX_MESSAGES, DEFAULT_MAX_MESSAGES),
+            attributes.getLong(OMSBuiltinKeys.CONSUMER_BATCH_MAX_WAIT_MS, DEFAULT_MAX_WAIT_MS),
+            attributes.getLong(OMSBuiltinKeys.CONSUMER_BATCH_TARGET_LATENCY_MS, DEFAULT_TARGET_LATENCY_MS));
+    }
+
+    public AdaptiveBatchListener(BatchMessageListener listener, int minMessages, int maxMessages, long maxWaitMs,
+        long targetLatencyMs) {
+        if (maxWaitMs < 0) {
+            throw new IllegalArgumentException("Illegal batch wait time: " + maxWaitMs + " ms");
+        }
+        this.listener = listener;
+        this.controller = new AdaptiveBatchController(minMessages, maxMessages,
+            TimeUnit.MILLISECONDS.toNanos(targetLatencyMs));
+        this.maxMessages = maxMessages;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        Thread dispatcher = new Thread(new Runnable() {
+            @Override public void run() {
+                dispatch();
+            }
+        }, "OMS-AdaptiveBatchListener-Dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @Override
+    public void onReceived(Message message, Context context) {
+        lock.lock();
+        try {
+            while (!shutdown && deliveries.size() >= 2 * maxMessages) {
+                notFull.awaitUninterruptibly();
+            }
+            if (shutdown) {
+                throw OMSResponseStatus.generateException(OMSResponseStatus.STATUS_10007, toString());
+            }
+            deliveries.add(new Delivery(message, context));
+            if (deliveries.size() == 1 || deliveries.size() >= controller.batchSize()) {
+                ready.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the size of the next batch.
+     *
+     * @return the current adaptive batch size
+     */
+    public int batchSize() {
+        return controller.batchSize();
+    }
+
+    @Override
+    public int pendingMessages() {
+        lock.lock();
+        try {
+            return deliveries.size() + processing;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            ready.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatch() {
+        for (; ; ) {
+            List<Delivery> batch;
+            lock.lock();
+            try {
+                batch = nextBatch();
+                if (batch == null) {
+                    return;
+                }
+                processing = batch.size();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            deliver(batch);
+            lock.lock();
+            try {
+                processing = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private List<Delivery> nextBatch() {
+        for (; ; ) {
+            int size = controller.batchSize();
+            if (deliveries.size() >= size) {
+                return take(size);
+            }
+            if (!deliveries.isEmpty()) {
+                long remaining = deliveries.peek().arrivalNanos + maxWaitNanos - System.nanoTime();
+                if (remaining <= 0 || shutdown) {
+                    return take(size);
+                }
+                try {
+                    ready.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    shutdown = true;
+                }
+            } else if (shutdown) {
+                return null;
+            } else {
+                ready.awaitUninterruptibly();
+            }
+        }
+    }
+
+    private List<Delivery> take(int size) {
+        int count = Math.min(size, deliveries.size());
+        List<Delivery> batch = new ArrayList<Delivery>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(deliveries.poll());
+        }
+        return batch;
+    }
+
+    private void deliver(List<Delivery> batch) {
+        List<Message> messages = new ArrayList<Message>(batch.size());
+        for (Delivery delivery : batch) {
+            messages.add(delivery.message);
+        }
+        long start = System.nanoTime();
+        try {
+            listener.onReceived(messages, new BatchContext(batch));
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "The listener " + listener + " failed to process a batch of " + batch.size()
+                + " messages", t);
+        }
+        controller.record(batch.size(), System.nanoTime() - start);
+    }
+
+    private static class Delivery {
+        private final Message message;
+        private final Context context;
+        private final long arrivalNanos = System.nanoTime();
+        private boolean acked;
+
+        Delivery(Message message, Context context) {
+            this.message = message;
+            this.context = context;
+        }
+
+        void ack() {
+            if (!acked) {
+                acked = true;
+                context.ack();
+            }
+        }
+    }
+
+    private static class BatchContext implements BatchMessageListener.Context {
+        private final List<Delivery> batch;
+        private Map<MessageReceipt, Delivery> byReceipt;
+
+        BatchContext(List<Delivery> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public synchronized void success(MessageReceipt... receipts) {
+            if (byReceipt == null) {
+                byReceipt = new HashMap<MessageReceipt, Delivery>();
+                for (Delivery delivery : batch) {
+                    byReceipt.put(delivery.message.getMessageReceipt(), delivery);
+                }
+            }
+            for (MessageReceipt receipt : receipts) {
+                Delivery delivery = byReceipt.get(receipt);
+                if (delivery == null) {
+                    throw new IllegalArgumentException("The receipt " + receipt + " is not part of the batch");
+                }
+                delivery.ack();
+            }
+        }
+
+        @Override
+        public synchronized void ack() {
+            for (Delivery delivery : batch) {
+                delivery.ack();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.interceptor.AsyncConsumerInterceptor;
+import io.openmessaging.interceptor.Context;
+import io.openmessaging.message.Message;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * An {@link InterceptorChain} of {@link AsyncConsumerInterceptor}s, used by OMS internally.
+ * <p>
+ * The interceptors of a message run one after the other, each one once the stage of the previous one completed, and
+ * no thread waits for them. A failed stage, an exception thrown or a {@code null} stage returned by an interceptor
+ * skips the remaining interceptors and fails the whole stage.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class AsyncConsumerInterceptorChain extends InterceptorChain<AsyncConsumerInterceptor> {
+
+    /**
+     * Invokes {@link AsyncConsumerInterceptor#preReceive(Message, Context)} of every interceptor.
+     *
+     * @param message the received message
+     * @return a stage completing with the invocation to hand to {@link #postReceive(Message, Invocation)}, or to {@link
+     * #release(Invocation)} if the message is not processed
+     */
+    public CompletionStage<Invocation> preReceive(Message message) {
+        Invocation invocation = acquire();
+        AsyncConsumerInterceptor interceptor = interceptor(invocation);
+        if (interceptor == null) {
+            return CompletableFuture.completedFuture(invocation);
+        }
+        return AsyncStages.bind(this, invocation, preReceive(interceptor, message, invocation));
+    }
+
+    /**
+     * Invokes {@link AsyncConsumerInterceptor#postReceive(Message, Context)} of the interceptors the message was
+     * pre-processed by, then gives back the invocation.
+     *
+     * @param message the received message
+     * @param invocation the invocation the stage of {@link #preReceive(Message)} completed with
+     * @return a stage completing once the post-processing is done
+     */
+    public CompletionStage<Void> postReceive(Message message, Invocation invocation) {
+        AsyncConsumerInterceptor interceptor = interceptor(invocation);
+        if (interceptor == null) {
+            release(invocation);
+            return CompletableFuture.completedFuture(null);
+        }
+        return AsyncStages.release(this, invocation, postReceive(interceptor, message, invocation));
+    }
+
+    @Override
+    protected AsyncConsumerInterceptor compile(List<AsyncConsumerInterceptor> interceptors) {
+        switch (interceptors.size()) {
+            case 0:
+                return null;
+            case 1:
+                return interceptors.get(0);
+            default:
+                return new Composite(interceptors.toArray(new AsyncConsumerInterceptor[interceptors.size()]));
+        }
+    }
+
+    private static CompletionStage<Void> preReceive(AsyncConsumerInterceptor interceptor, Message message,
+        Context attributes) {
+        try {
+            CompletionStage<Void> stage = interceptor.preReceive(message, attributes);
+            return stage != null ? stage : AsyncStages.<Void>failed(
+                new NullPointerException(interceptor + " returned no stage"));
+        } catch (RuntimeException | Error e) {
+            return AsyncStages.failed(e);
+        }
+    }
+
+    private static CompletionStage<Void> postReceive(AsyncConsumerInterceptor interceptor, Message message,
+        Context attributes) {
+        try {
+            CompletionStage<Void> stage = interceptor.postReceive(message, attributes);
+            return stage != null ? stage : AsyncStages.<Void>failed(
+                new NullPointerException(interceptor + " returned no stage"));
+        } catch (RuntimeException | Error e) {
+            return AsyncStages.failed(e);
+        }
+    }
+
+    private static final class Composite implements AsyncConsumerInterceptor {
+        private final AsyncConsumerInterceptor[] interceptors;
+
+        private Composite(AsyncConsumerInterceptor[] interceptors) {
+            this.interceptors = interceptors;
+        }
+
+        @Override
+        public CompletionStage<Void> preReceive(final Message message, final Context attributes) {
+            CompletionStage<Void> stage =
+                AsyncConsumerInterceptorChain.preReceive(interceptors[0], message, attributes);
+            for (int i = 1; i < interceptors.length; i++) {
+                final AsyncConsumerInterceptor interceptor = interceptors[i];
+                stage = stage.thenCompose(new Function<Void, CompletionStage<Void>>() {
+                    @Override public CompletionStage<Void> apply(Void ignored) {
+                        return AsyncConsumerInterceptorChain.preReceive(interceptor, message, attributes);
+                    }
+                });
+            }
+            return stage;
+        }
+
+        @Override
+        public CompletionStage<Void> postReceive(final Message message, final Context attributes) {
+            CompletionStage<Void> stage =
+                AsyncConsumerInterceptorChain.postReceive(interceptors[0], message, attributes);
+            for (int i = 1; i < interceptors.length; i++) {
+                final AsyncConsumerInterceptor interceptor = interceptors[i];
+                stage = stage.thenCompose(new Function<Void, CompletionStage<Void>>() {
+                    @Override public CompletionStage<Void> apply(Void ignored) {
+                        return AsyncConsumerInterceptorChain.postReceive(interceptor, message, attributes);
+                    }
+                });
+            }
+            return stage;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.OMSResponseStatus;
+import io.openmessaging.consumer.DispatchingMessageListener;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.interceptor.AsyncConsumerInterceptor;
+import io.openmessaging.internal.InterceptorChain.Invocation;
+import io.openmessaging.message.Message;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link DispatchingMessageListener} running {@link AsyncConsumerInterceptor}s before handing the messages to
+ * another listener, used by OMS internally.
+ * <p>
+ * The interceptors of different messages run concurrently and no thread waits for them: the consume thread returns
+ * once the interceptors are started. The messages are handed to the listener in the order they were received, a
+ * message whose interceptors complete early waiting for the previous ones, by a delivery thread owned by this listener
+ * or by the executor given to the constructor. The thread completing the interceptors, typically the I/O thread of an
+ * asynchronous client, never runs the listener. A message whose interceptors fail is not processed nor acknowledged,
+ * so it is redelivered. The post-processing runs once the listener returned, its failures are only logged.
+ * <p>
+ * Keeping the order means the listener is called one message at a time. A listener with slow work should acknowledge
+ * asynchronously, or be decorated by {@link io.openmessaging.OMS#newKeyOrderedListener} to process the messages of
+ * different keys in parallel. At most {@link OMSBuiltinKeys#CONSUMER_INTERCEPT_MAX_PENDING} messages are pending, the
+ * consume thread blocks beyond. {@link #shutdown()} releases the delivery thread, the messages whose interceptors
+ * complete afterwards are delivered by the completing thread.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class AsyncInterceptingListener implements DispatchingMessageListener {
+    public static final int DEFAULT_MAX_PENDING = 10000;
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncInterceptingListener.class.getName());
+
+    private final MessageListener listener;
+    private final AsyncConsumerInterceptorChain chain = new AsyncConsumerInterceptorChain();
+    private final ExecutorService ownedExecutor;
+    private final Sequencer sequencer;
+    private final Semaphore permits;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    public AsyncInterceptingListener(MessageListener listener, KeyValue attributes) {
+        this(listener, attributes.getInt(OMSBuiltinKeys.CONSUMER_INTERCEPT_MAX_PENDING, DEFAULT_MAX_PENDING));
+    }
+
+    public AsyncInterceptingListener(MessageListener listener, int maxPending) {
+        this(listener, maxPending, null);
+    }
+
+    /**
+     * @param listener the listener processing the messages
+     * @param maxPending the maximum number of pending messages
+     * @param executor the executor delivering the messages in order, or {@code null} for a delivery thread owned by
+     * this listener
+     */
+    public AsyncInterceptingListener(MessageListener listener, int maxPending, Executor executor) {
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("maxPending must be positive: " + maxPending);
+        }
+        this.listener = listener;
+        this.permits = new Semaphore(maxPending);
+        this.ownedExecutor = executor == null ? Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "OMS-AsyncInterceptingListener-Delivery");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }) : null;
+        this.sequencer = new Sequencer(executor == null ? ownedExecutor : executor);
+    }
+
+    /**
+     * Appends the specified interceptor to the asynchronous interceptors of this listener.
+     *
+     * @param interceptor the interceptor to append
+     */
+    public void addAsyncInterceptor(AsyncConsumerInterceptor interceptor) {
+        chain.addInterceptor(interceptor);
+    }
+
+    /**
+     * Removes the specified interceptor from the asynchronous interceptors of this listener.
+     *
+     * @param interceptor the interceptor to remove
+     */
+    public void removeAsyncInterceptor(AsyncConsumerInterceptor interceptor) {
+        chain.removeInterceptor(interceptor);
+    }
+
+    @Override
+    public void onReceived(final Message message, final Context context) {
+        if (shutdown) {
+            throw OMSResponseStatus.generateException(OMSResponseStatus.STATUS_10007, toString());
+        }
+        permits.acquireUninterruptibly();
+        pending.incrementAndGet();
+        final Sequencer.Slot slot = sequencer.reserve();
+        chain.preReceive(message).whenComplete(new BiConsumer<Invocation, Throwable>() {
+            @Override public void accept(final Invocation invocation, final Throwable failure) {
+                slot.run(new Runnable() {
+                    @Override public void run() {
+                        process(message, context, invocation, failure);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public int pendingMessages() {
+        return pending.get();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private void process(Message message, Context context, Invocation invocation, Throwable failure) {
+        try {
+            if (failure != null) {
+                LOGGER.log(Level.WARNING, "The pre-processing of a received message failed, it is not processed",
+                    failure);
+                return;
+            }
+            try {
+                listener.onReceived(message, context);
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "The listener " + listener + " failed to process a message", t);
+            }
+            chain.postReceive(message, invocation).whenComplete(new BiConsumer<Void, Throwable>() {
+                @Override public void accept(Void ignored, Throwable failure) {
+                    if (failure != null) {
+                        LOGGER.log(Level.WARNING, "The post-processing of a received message failed", failure);
+                    }
+                }
+            });
+        } finally {
+            pending.decrementAndGet();
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.Future;
+import io.openmessaging.FutureListener;
+import io.openmessaging.ServiceLifeState;
+import io.openmessaging.extension.Extension;
+import io.openmessaging.extension.QueueMetaData;
+import io.openmessaging.interceptor.AsyncProducerInterceptor;
+import io.openmessaging.interceptor.ProducerInterceptor;
+import io.openmessaging.internal.InterceptorChain.Invocation;
+import io.openmessaging.message.Message;
+import io.openmessaging.producer.Producer;
+import io.openmessaging.producer.SendResult;
+import io.openmessaging.producer.TransactionalResult;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link Producer} decorator running {@link AsyncProducerInterceptor}s before handing the messages to the
+ * underlying producer, used by OMS internally.
+ * <p>
+ * The interceptors of different messages run concurrently and no thread waits for them: {@link #sendAsync(Message)}
+ * returns at once. The messages are handed to the underlying producer in the order they were submitted to this
+ * producer, a message whose interceptors complete early waiting for the previous ones, by a dispatch thread owned by
+ * this producer or by the executor given to the constructor. The thread completing the interceptors, typically the
+ * I/O thread of an asynchronous client, so never blocks in the underlying producer, for instance on a full send window.
+ * A message whose interceptors fail is not sent, its future fails with the cause, or the failure is logged for a
+ * one-way send. The post-processing runs once the underlying producer completed the send, its failures are only
+ * logged.
+ * <p>
+ * The synchronous sends wait for the interceptors, and so for the previous messages. The messages waiting for their
+ * interceptors are not bounded, a {@link io.openmessaging.producer.BufferedProducer} bounds them once handed over.
+ * {@link #stop()} releases the dispatch thread, the messages whose interceptors complete afterwards are handed over
+ * by the completing thread. The {@link ProducerInterceptor}s are those of the underlying producer.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class AsyncInterceptingProducer implements Producer {
+    private static final Logger LOGGER = Logger.getLogger(AsyncInterceptingProducer.class.getName());
+
+    private static final FutureListener<SendResult> ONEWAY_FAILURE_LOGGER = new FutureListener<SendResult>() {
+        @Override public void operationComplete(Future<SendResult> future) {
+            if (future.getThrowable() != null) {
+                LOGGER.log(Level.WARNING, "A one-way message was not sent", future.getThrowable());
+            }
+        }
+    };
+
+    private final Producer delegate;
+    private final AsyncProducerInterceptorChain chain = new AsyncProducerInterceptorChain();
+    private final ExecutorService ownedExecutor;
+    private final Sequencer sequencer;
+
+    public AsyncInterceptingProducer(Producer delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * @param delegate the producer sending the messages
+     * @param executor the executor handing the messages over in order, or {@code null} for a dispatch thread owned by
+     * this producer
+     */
+    public AsyncInterceptingProducer(Producer delegate, Executor executor) {
+        this.delegate = delegate;
+        this.ownedExecutor = executor == null ? Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "OMS-AsyncInterceptingProducer-Dispatch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }) : null;
+        this.sequencer = new Sequencer(executor == null ? ownedExecutor : executor);
+    }
+
+    /**
+     * Appends the specified interceptor to the asynchronous interceptors of this producer.
+     *
+     * @param interceptor the interceptor to append
+     */
+    public void addAsyncInterceptor(AsyncProducerInterceptor interceptor) {
+        chain.addInterceptor(interceptor);
+    }
+
+    /**
+     * Removes the specified interceptor from the asynchronous interceptors of this producer.
+     *
+     * @param interceptor the interceptor to remove
+     */
+    public void removeAsyncInterceptor(AsyncProducerInterceptor interceptor) {
+        chain.removeInterceptor(interceptor);
+    }
+
+    /**
+     * Returns the number of messages submitted to this producer and not yet handed to the underlying producer.
+     *
+     * @return the pending messages
+     */
+    public int pendingMessages() {
+        return sequencer.size();
+    }
+
+    @Override
+    public void start() {
+        delegate.start();
+    }
+
+    @Override
+    public void stop() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+        delegate.stop();
+    }
+
+    @Override
+    public ServiceLifeState currentState() {
+        return delegate.currentState();
+    }
+
+    @Override
+    public Set<QueueMetaData> getQueueMetaData(String queueName) {
+        return delegate.getQueueMetaData(queueName);
+    }
+
+    @Override
+    public Optional<Extension> getExtension() {
+        return delegate.getExtension();
+    }
+
+    @Override
+    public Message createMessage(String queueName, byte[] body) {
+        return delegate.createMessage(queueName, body);
+    }
+
+    @Override
+    public SendResult send(Message message) {
+        return sendAsync(message).get();
+    }
+
+    @Override
+    public Future<SendResult> sendAsync(Message message) {
+        return submit(Collections.singletonList(message), new Dispatch<SendResult>() {
+            @Override public void dispatch(List<Message> messages, DefaultPromise<SendResult> promise) {
+                bridge(delegate.sendAsync(messages.get(0)), promise);
+            }
+        });
+    }
+
+    @Override
+    public void sendOneway(Message message) {
+        submit(Collections.singletonList(message), new Dispatch<SendResult>() {
+            @Override public void dispatch(List<Message> messages, DefaultPromise<SendResult> promise) {
+                delegate.sendOneway(messages.get(0));
+                promise.set(null);
+            }
+        }).addListener(ONEWAY_FAILURE_LOGGER);
+    }
+
+    @Override
+    public void send(List<Message> messages) {
+        sendAsync(messages).get();
+    }
+
+    @Override
+    public Future<SendResult> sendAsync(List<Message> messages) {
+        return submit(messages, new Dispatch<SendResult>() {
+            @Override public void dispatch(List<Message> messages, DefaultPromise<SendResult> promise) {
+                bridge(delegate.sendAsync(messages), promise);
+            }
+        });
+    }
+
+    @Override
+    public void sendOneway(List<Message> messages) {
+        submit(messages, new Dispatch<SendResult>() {
+            @Override public void dispatch(List<Message> messages, DefaultPromise<SendResult> promise) {
+                delegate.sendOneway(messages);
+                promise.set(null);
+            }
+        }).addListener(ONEWAY_FAILURE_LOGGER);
+    }
+
+    @Override
+    public void addInterceptor(ProducerInterceptor interceptor) {
+        delegate.addInterceptor(interceptor);
+    }
+
+    @Override
+    public void removeInterceptor(ProducerInterceptor interceptor) {
+        delegate.removeInterceptor(interceptor);
+    }
+
+    @Override
+    public TransactionalResult prepare(Message message) {
+        return submit(Collections.singletonList(message), new Dispatch<TransactionalResult>() {
+            @Override public void dispatch(List<Message> messages, DefaultPromise<TransactionalResult> promise) {
+                promise.set(delegate.prepare(messages.get(0)));
+            }
+        }).get();
+    }
+
+    private <R> DefaultPromise<R> submit(final List<Message> messages, final Dispatch<R> dispatch) {
+        final Sequencer.Slot slot = sequencer.reserve();
+        final DefaultPromise<R> promise = new DefaultPromise<R>();
+        final Invocation[] invocations = new Invocation[messages.size()];
+        CompletableFuture<?>[] stages = new CompletableFuture<?>[invocations.length];
+        for (int i = 0; i < invocations.length; i++) {
+            final int index = i;
+            stages[i] = chain.preSend(messages.get(i)).thenAccept(new Consumer<Invocation>() {
+                @Override public void accept(Invocation invocation) {
+                    invocations[index] = invocation;
+                }
+            }).toCompletableFuture();
+        }
+        CompletableFuture.allOf(stages).whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override public void accept(Void ignored, final Throwable failure) {
+                slot.run(new Runnable() {
+                    @Override public void run() {
+                        if (failure != null) {
+                            release(invocations);
+                            promise.setFailure(AsyncStages.unwrap(failure));
+                            return;
+                        }
+                        promise.addListener(new FutureListener<R>() {
+                            @Override public void operationComplete(Future<R> future) {
+                                if (future.isCancelled() || future.getThrowable() != null) {
+                                    release(invocations);
+                                } else {
+                                    postSend(messages, invocations);
+                                }
+                            }
+                        });
+                        try {
+                            dispatch.dispatch(messages, promise);
+                        } catch (RuntimeException | Error e) {
+                            promise.setFailure(e);
+                        }
+                    }
+                });
+            }
+        });
+        return promise;
+    }
+
+    private void postSend(List<Message> messages, Invocation[] invocations) {
+        for (int i = 0; i < invocations.length; i++) {
+            CompletionStage<Void> stage = chain.postSend(messages.get(i), invocations[i]);
+            stage.whenComplete(new BiConsumer<Void, Throwable>() {
+                @Override public void accept(Void ignored, Throwable failure) {
+                    if (failure != null) {
+                        LOGGER.log(Level.WARNING, "The post-processing of a sent message failed", failure);
+                    }
+                }
+            });
+        }
+    }
+
+    private void release(Invocation[] invocations) {
+        for (Invocation invocation : invocations) {
+            if (invocation != null) {
+                chain.release(invocation);
+            }
+        }
+    }
+
+    private static <R> void bridge(Future<R> future, final DefaultPromise<R> promise) {
+        future.addListener(new FutureListener<R>() {
+            @Override public void operationComplete(Future<R> future) {
+                if (future.isCancelled()) {
+                    promise.setFailure(new CancellationException("send cancelled"));
+                } else if (future.getThrowable() != null) {
+                    promise.setFailure(future.getThrowable());
+                } else {
+                    promise.set(future.get());
+                }
+            }
+        });
+    }
+
+    /**
+     * Hands the intercepted messages to the underlying producer and completes the promise with the outcome.
+     */
+    private interface Dispatch<R> {
+        void dispatch(List<Message> messages, DefaultPromise<R> promise);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.interceptor.AsyncProducerInterceptor;
+import io.openmessaging.interceptor.Context;
+import io.openmessaging.message.Message;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * An {@link InterceptorChain} of {@link AsyncProducerInterceptor}s, used by OMS internally.
+ * <p>
+ * The interceptors of a message run one after the other, each one once the stage of the previous one completed, and
+ * no thread waits for them. A failed stage, an exception thrown or a {@code null} stage returned by an interceptor
+ * skips the remaining interceptors and fails the whole stage.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class AsyncProducerInterceptorChain extends InterceptorChain<AsyncProducerInterceptor> {
+
+    /**
+     * Invokes {@link AsyncProducerInterceptor#preSend(Message, Context)} of every interceptor.
+     *
+     * @param message the message to send
+     * @return a stage completing with the invocation to hand to {@link #postSend(Message, Invocation)}, or to {@link
+     * #release(Invocation)} if the send fails
+     */
+    public CompletionStage<Invocation> preSend(Message message) {
+        Invocation invocation = acquire();
+        AsyncProducerInterceptor interceptor = interceptor(invocation);
+        if (interceptor == null) {
+            return CompletableFuture.completedFuture(invocation);
+        }
+        return AsyncStages.bind(this, invocation, preSend(interceptor, message, invocation));
+    }
+
+    /**
+     * Invokes {@link AsyncProducerInterceptor#postSend(Message, Context)} of the interceptors the message was
+     * pre-processed by, then gives back the invocation.
+     *
+     * @param message the sent message
+     * @param invocation the invocation the stage of {@link #preSend(Message)} completed with
+     * @return a stage completing once the post-processing is done
+     */
+    public CompletionStage<Void> postSend(Message message, Invocation invocation) {
+        AsyncProducerInterceptor interceptor = interceptor(invocation);
+        if (interceptor == null) {
+            release(invocation);
+            return CompletableFuture.completedFuture(null);
+        }
+        return AsyncStages.release(this, invocation, postSend(interceptor, message, invocation));
+    }
+
+    @Override
+    protected AsyncProducerInterceptor compile(List<AsyncProducerInterceptor> interceptors) {
+        switch (interceptors.size()) {
+            case 0:
+                return null;
+            case 1:
+                return interceptors.get(0);
+            default:
+                return new Composite(interceptors.toArray(new AsyncProducerInterceptor[interceptors.size()]));
+        }
+    }
+
+    private static CompletionStage<Void> preSend(AsyncProducerInterceptor interceptor, Message message,
+        Context attributes) {
+        try {
+            CompletionStage<Void> stage = interceptor.preSend(message, attributes);
+            return stage != null ? stage : AsyncStages.<Void>failed(
+                new NullPointerException(interceptor + " returned no stage"));
+        } catch (RuntimeException | Error e) {
+            return AsyncStages.failed(e);
+        }
+    }
+
+    private static CompletionStage<Void> postSend(AsyncProducerInterceptor interceptor, Message message,
+        Context attributes) {
+        try {
+            CompletionStage<Void> stage = interceptor.postSend(message, attributes);
+            return stage != null ? stage : AsyncStages.<Void>failed(
+                new NullPointerException(interceptor + " returned no stage"));
+        } catch (RuntimeException | Error e) {
+            return AsyncStages.failed(e);
+        }
+    }
+
+    private static final class Composite implements AsyncProducerInterceptor {
+        private final AsyncProducerInterceptor[] interceptors;
+
+        private Composite(AsyncProducerInterceptor[] interceptors) {
+            this.interceptors = interceptors;
+        }
+
+        @Override
+        public CompletionStage<Void> preSend(final Message message, final Context attributes) {
+            CompletionStage<Void> stage = AsyncProducerInterceptorChain.preSend(interceptors[0], message, attributes);
+            for (int i = 1; i < interceptors.length; i++) {
+                final AsyncProducerInterceptor interceptor = interceptors[i];
+                stage = stage.thenCompose(new Function<Void, CompletionStage<Void>>() {
+                    @Override public CompletionStage<Void> apply(Void ignored) {
+                        return AsyncProducerInterceptorChain.preSend(interceptor, message, attributes);
+                    }
+                });
+            }
+            return stage;
+        }
+
+        @Override
+        public CompletionStage<Void> postSend(final Message message, final Context attributes) {
+            CompletionStage<Void> stage = AsyncProducerInterceptorChain.postSend(interceptors[0], message, attributes);
+            for (int i = 1; i < interceptors.length; i++) {
+                final AsyncProducerInterceptor interceptor = interceptors[i];
+                stage = stage.thenCompose(new Function<Void, CompletionStage<Void>>() {
+                    @Override public CompletionStage<Void> apply(Void ignored) {
+                        return AsyncProducerInterceptorChain.postSend(interceptor, message, attributes);
+                    }
+                });
+            }
+            return stage;
+        }
+    }
+}
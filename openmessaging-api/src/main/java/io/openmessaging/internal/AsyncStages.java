@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.internal.InterceptorChain.Invocation;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+
+/**
+ * Helpers for the asynchronous interceptor chains.
+ */
+final class AsyncStages {
+    private AsyncStages() {
+    }
+
+    static <T> CompletableFuture<T> failed(Throwable cause) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        future.completeExceptionally(cause);
+        return future;
+    }
+
+    static Throwable unwrap(Throwable cause) {
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+            && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Returns a stage completing with the specified invocation after the specified pre-processing, which gives the
+     * invocation back to its chain if it fails.
+     */
+    static CompletionStage<Invocation> bind(final InterceptorChain<?> chain, final Invocation invocation,
+        CompletionStage<Void> stage) {
+        final CompletableFuture<Invocation> result = new CompletableFuture<Invocation>();
+        stage.whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override public void accept(Void ignored, Throwable failure) {
+                if (failure != null) {
+                    chain.release(invocation);
+                    result.completeExceptionally(unwrap(failure));
+                } else {
+                    result.complete(invocation);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns a stage completing like the specified post-processing, once the invocation is given back to its chain.
+     */
+    static CompletionStage<Void> release(final InterceptorChain<?> chain, final Invocation invocation,
+        CompletionStage<Void> stage) {
+        final CompletableFuture<Void> result = new CompletableFuture<Void>();
+        stage.whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override public void accept(Void ignored, Throwable failure) {
+                chain.release(invocation);
+                if (failure != null) {
+                    result.completeExceptionally(unwrap(failure));
+                } else {
+                    result.complete(null);
+                }
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,662 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.Future;
+import io.openmessaging.FutureListener;
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.OMSResponseStatus;
+import io.openmessaging.ServiceLifeState;
+import io.openmessaging.exception.OMSRuntimeException;
+import io.openmessaging.exception.OMSTimeOutException;
+import io.openmessaging.extension.Extension;
+import io.openmessaging.extension.QueueMetaData;
+import io.openmessaging.interceptor.ProducerInterceptor;
+import io.openmessaging.message.Message;
+import io.openmessaging.producer.BufferedProducer;
+import io.openmessaging.producer.OverflowPolicy;
+import io.openmessaging.producer.Producer;
+import io.openmessaging.producer.SendResult;
+import io.openmessaging.producer.TransactionalResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link BufferedProducer} decorator accumulating the messages of {@link #sendAsync(Message)} and {@link
+ * #sendOneway(Message)} per destination and sending them through {@link Producer#sendAsync(List)} of the underlying
+ * producer, used by OMS internally.
+ * <p>
+ * A batch is sent once it holds {@link OMSBuiltinKeys#PRODUCER_BATCH_MESSAGES} messages or {@link
+ * OMSBuiltinKeys#PRODUCER_BATCH_BYTES} body bytes, or {@link OMSBuiltinKeys#PRODUCER_LINGER_MS} after its first
+ * message, whichever comes first. The future of each message is completed individually when the batch completes, with
+ * the message id of the message if the underlying producer set one, or else the message id of the batch. With a linger
+ * time of {@code 0} the messages are sent one by one through {@link Producer#sendAsync(Message)}, still within the
+ * in-flight window.
+ * <p>
+ * The batches of a destination are handed to the underlying producer in order. The synchronous sends and the sends of
+ * a list are not batched: they send the pending batches of their destinations first and wait for their turn, so they
+ * are not reordered with the previous asynchronous sends of the same thread. {@link #stop()} sends all the pending
+ * batches before stopping the underlying producer.
+ * <p>
+ * With {@link OMSBuiltinKeys#PRODUCER_SEND_TIMEOUT_MS} set, the future of an asynchronous send fails with an {@link
+ * OMSTimeOutException} once the timeout elapses, scheduled on the shared {@link HashedWheelTimer}. The message still
+ * counts in the in-flight window until the underlying producer completes it.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class BatchingProducer implements BufferedProducer {
+    public static final int DEFAULT_BATCH_BYTES = 16 * 1024;
+    public static final int DEFAULT_BATCH_MESSAGES = 1000;
+    public static final long DEFAULT_LINGER_MS = 5;
+    public static final int DEFAULT_MAX_IN_FLIGHT_MESSAGES = Integer.MAX_VALUE;
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 32 * 1024 * 1024;
+    public static final long DEFAULT_MAX_BLOCK_MS = 60 * 1000;
+
+    private static final HandOver<Void> NO_SEND = new HandOver<Void>() {
+        @Override public Void send() {
+            return null;
+        }
+    };
+
+    private final Producer delegate;
+    private final int batchBytes;
+    private final int batchMessages;
+    private final long lingerMs;
+    private final SendWindow window;
+    private final OverflowPolicy overflowPolicy;
+    private final long maxBlockMs;
+    private final long sendTimeoutMs;
+    private final AtomicLong overflowed = new AtomicLong();
+    private final ConcurrentMap<String, Accumulator> accumulators = new ConcurrentHashMap<String, Accumulator>();
+    private volatile boolean running;
+    private volatile ScheduledThreadPoolExecutor scheduler;
+
+    public BatchingProducer(Producer delegate, KeyValue attributes) {
+        this(delegate, attributes.getInt(OMSBuiltinKeys.PRODUCER_BATCH_BYTES, DEFAULT_BATCH_BYTES),
+            attributes.getInt(OMSBuiltinKeys.PRODUCER_BATCH_MESSAGES, DEFAULT_BATCH_MESSAGES),
+            attributes.getLong(OMSBuiltinKeys.PRODUCER_LINGER_MS, DEFAULT_LINGER_MS),
+            attributes.getInt(OMSBuiltinKeys.PRODUCER_MAX_IN_FLIGHT_MESSAGES, DEFAULT_MAX_IN_FLIGHT_MESSAGES),
+            attributes.getLong(OMSBuiltinKeys.PRODUCER_MAX_IN_FLIGHT_BYTES, DEFAULT_MAX_IN_FLIGHT_BYTES),
+            OverflowPolicy.valueOf(attributes.getString(OMSBuiltinKeys.PRODUCER_OVERFLOW_POLICY,
+                OverflowPolicy.BLOCK.name())),
+            attributes.getLong(OMSBuiltinKeys.PRODUCER_MAX_BLOCK_MS, DEFAULT_MAX_BLOCK_MS),
+            attributes.getLong(OMSBuiltinKeys.PRODUCER_SEND_TIMEOUT_MS, 0L));
+    }
+
+    public BatchingProducer(Producer delegate, int batchBytes, int batchMessages, long lingerMs) {
+        this(delegate, batchBytes, batchMessages, lingerMs, DEFAULT_MAX_IN_FLIGHT_MESSAGES,
+            DEFAULT_MAX_IN_FLIGHT_BYTES, OverflowPolicy.BLOCK, DEFAULT_MAX_BLOCK_MS);
+    }
+
+    public BatchingProducer(Producer delegate, int batchBytes, int batchMessages, long lingerMs,
+        int maxInFlightMessages, long maxInFlightBytes, OverflowPolicy overflowPolicy, long maxBlockMs) {
+        this(delegate, batchBytes, batchMessages, lingerMs, maxInFlightMessages, maxInFlightBytes, overflowPolicy,
+            maxBlockMs, 0L);
+    }
+
+    public BatchingProducer(Producer delegate, int batchBytes, int batchMessages, long lingerMs,
+        int maxInFlightMessages, long maxInFlightBytes, OverflowPolicy overflowPolicy, long maxBlockMs,
+        long sendTimeoutMs) {
+        if (batchBytes <= 0 || batchMessages <= 0 || lingerMs < 0 || maxBlockMs < 0 || sendTimeoutMs < 0) {
+            throw new IllegalArgumentException("Illegal batch settings: " + batchBytes + " bytes, "
+                + batchMessages + " messages, " + lingerMs + " ms linger, " + maxBlockMs + " ms block, "
+                + sendTimeoutMs + " ms timeout");
+        }
+        this.delegate = delegate;
+        this.batchBytes = batchBytes;
+        this.batchMessages = batchMessages;
+        this.lingerMs = lingerMs;
+        this.window = new SendWindow(maxInFlightMessages, maxInFlightBytes);
+        this.overflowPolicy = overflowPolicy;
+        this.maxBlockMs = maxBlockMs;
+        this.sendTimeoutMs = sendTimeoutMs;
+    }
+
+    @Override
+    public void start() {
+        if (lingerMs > 0 && scheduler == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "OMS-BatchingProducer-Linger");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            scheduler = executor;
+        }
+        delegate.start();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        ScheduledThreadPoolExecutor executor = scheduler;
+        scheduler = null;
+        if (executor != null) {
+            // Shut down before the final flush: a concurrent append either schedules its linger before, and its batch
+            // is flushed below, or is rejected and sends its batch right away.
+            executor.shutdownNow();
+        }
+        flush();
+        delegate.stop();
+    }
+
+    @Override
+    public ServiceLifeState currentState() {
+        return delegate.currentState();
+    }
+
+    @Override
+    public Set<QueueMetaData> getQueueMetaData(String queueName) {
+        return delegate.getQueueMetaData(queueName);
+    }
+
+    @Override
+    public Optional<Extension> getExtension() {
+        return delegate.getExtension();
+    }
+
+    @Override
+    public Message createMessage(String queueName, byte[] body) {
+        return delegate.createMessage(queueName, body);
+    }
+
+    @Override
+    public SendResult send(final Message message) {
+        return handOver(Collections.singletonList(message), new HandOver<SendResult>() {
+            @Override public SendResult send() {
+                return delegate.send(message);
+            }
+        });
+    }
+
+    @Override
+    public Future<SendResult> sendAsync(Message message) {
+        if (!running) {
+            return delegate.sendAsync(message);
+        }
+        DefaultPromise<SendResult> promise = new DefaultPromise<SendResult>();
+        if (sendTimeoutMs > 0) {
+            promise.failAfter(sendTimeoutMs, TimeUnit.MILLISECONDS, HashedWheelTimer.shared());
+        }
+        send(message, promise);
+        return promise;
+    }
+
+    @Override
+    public void sendOneway(Message message) {
+        if (!running) {
+            delegate.sendOneway(message);
+            return;
+        }
+        send(message, null);
+    }
+
+    @Override
+    public void send(final List<Message> messages) {
+        handOver(messages, new HandOver<Void>() {
+            @Override public Void send() {
+                delegate.send(messages);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public Future<SendResult> sendAsync(final List<Message> messages) {
+        return handOver(messages, new HandOver<Future<SendResult>>() {
+            @Override public Future<SendResult> send() {
+                return delegate.sendAsync(messages);
+            }
+        });
+    }
+
+    @Override
+    public void sendOneway(final List<Message> messages) {
+        handOver(messages, new HandOver<Void>() {
+            @Override public Void send() {
+                delegate.sendOneway(messages);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void addInterceptor(ProducerInterceptor interceptor) {
+        delegate.addInterceptor(interceptor);
+    }
+
+    @Override
+    public void removeInterceptor(ProducerInterceptor interceptor) {
+        delegate.removeInterceptor(interceptor);
+    }
+
+    @Override
+    public TransactionalResult prepare(Message message) {
+        return delegate.prepare(message);
+    }
+
+    @Override
+    public void flush() {
+        for (Accumulator accumulator : accumulators.values()) {
+            accumulator.flush(null);
+        }
+    }
+
+    @Override
+    public int inFlightMessages() {
+        return window.messages();
+    }
+
+    @Override
+    public long inFlightBytes() {
+        return window.bytes();
+    }
+
+    @Override
+    public int maxInFlightMessages() {
+        return window.maxMessages();
+    }
+
+    @Override
+    public long maxInFlightBytes() {
+        return window.maxBytes();
+    }
+
+    @Override
+    public long overflowedMessages() {
+        return overflowed.get();
+    }
+
+    private void send(Message message, DefaultPromise<SendResult> promise) {
+        int size = message.getBodyLength();
+        OMSRuntimeException overflow = admit(size);
+        if (overflow != null) {
+            overflowed.incrementAndGet();
+            if (promise != null) {
+                promise.setFailure(overflow);
+            }
+            return;
+        }
+        String destination = message.header().getDestination();
+        ScheduledThreadPoolExecutor executor = scheduler;
+        if (destination == null || executor == null) {
+            new DirectSend(size, promise).send(message);
+            return;
+        }
+        Accumulator accumulator = accumulators.get(destination);
+        if (accumulator == null) {
+            Accumulator created = new Accumulator();
+            accumulator = accumulators.putIfAbsent(destination, created);
+            if (accumulator == null) {
+                accumulator = created;
+            }
+        }
+        accumulator.append(message, size, promise, executor);
+    }
+
+    private OMSRuntimeException admit(int size) {
+        if (window.tryAcquire(size)) {
+            return null;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                flush();
+                try {
+                    if (window.acquire(size, maxBlockMs)) {
+                        return null;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new OMSTimeOutException(OMSResponseStatus.STATUS_10006.getStatusCode(),
+                    windowFull("no room within " + maxBlockMs + " ms"));
+            case DROP_OLDEST:
+                while (dropOldest()) {
+                    if (window.tryAcquire(size)) {
+                        return null;
+                    }
+                }
+                return new OMSRuntimeException(OMSResponseStatus.STATUS_10006.getStatusCode(),
+                    windowFull("no buffered message left to drop"));
+            default:
+                return new OMSRuntimeException(OMSResponseStatus.STATUS_10006.getStatusCode(),
+                    windowFull(window.messages() + " messages, " + window.bytes() + " bytes"));
+        }
+    }
+
+    private boolean dropOldest() {
+        while (true) {
+            Accumulator oldest = null;
+            Batch oldestBatch = null;
+            for (Accumulator accumulator : accumulators.values()) {
+                Batch batch = accumulator.current();
+                if (batch != null && (oldestBatch == null || batch.createdNanos - oldestBatch.createdNanos < 0)) {
+                    oldest = accumulator;
+                    oldestBatch = batch;
+                }
+            }
+            if (oldest == null) {
+                return false;
+            }
+            if (oldest.dropFirst(oldestBatch)) {
+                return true;
+            }
+        }
+    }
+
+    private static String windowFull(String detail) {
+        return String.format(OMSResponseStatus.STATUS_10006.getMore(), detail);
+    }
+
+    /**
+     * Hands the specified messages over to the underlying producer once the pending batches of their destinations
+     * are. A single destination takes its turn in the order of its batches; the messages of several destinations
+     * wait for the batches pending on each of them, then are handed over by the calling thread.
+     */
+    private <V> V handOver(List<Message> messages, HandOver<V> send) {
+        Set<String> destinations = new LinkedHashSet<String>();
+        for (Message message : messages) {
+            String destination = message.header().getDestination();
+            if (destination != null) {
+                destinations.add(destination);
+            }
+        }
+        if (destinations.size() == 1) {
+            Accumulator accumulator = accumulators.get(destinations.iterator().next());
+            return accumulator == null ? send.send() : accumulator.handOver(send);
+        }
+        for (String destination : destinations) {
+            Accumulator accumulator = accumulators.get(destination);
+            if (accumulator != null) {
+                accumulator.handOver(NO_SEND);
+            }
+        }
+        return send.send();
+    }
+
+    private static <V> void complete(DefaultPromise<V> promise, V value) {
+        if (promise != null) {
+            promise.set(value);
+        }
+    }
+
+    private static void fail(DefaultPromise<?> promise, Throwable cause) {
+        if (promise != null) {
+            promise.setFailure(cause);
+        }
+    }
+
+    private final class Accumulator {
+        private final Sequencer sends = new Sequencer();
+        private Batch current;
+
+        synchronized Batch current() {
+            return current;
+        }
+
+        void append(Message message, int size, DefaultPromise<SendResult> promise,
+            ScheduledThreadPoolExecutor executor) {
+            Batch previous = null;
+            Batch sent = null;
+            synchronized (this) {
+                if (current != null && !current.fits(size)) {
+                    previous = detach();
+                }
+                if (current == null) {
+                    final Batch batch = new Batch();
+                    current = batch;
+                    try {
+                        batch.linger = executor.schedule(new Runnable() {
+                            @Override public void run() {
+                                flush(batch);
+                            }
+                        }, lingerMs, TimeUnit.MILLISECONDS);
+                    } catch (RuntimeException e) {
+                        // Stopped concurrently, the batch is sent right after this message is added.
+                        batch.linger = null;
+                    }
+                }
+                current.add(message, size, promise);
+                if (current.isFull() || current.linger == null) {
+                    sent = detach();
+                }
+            }
+            dispatch(previous);
+            dispatch(sent);
+        }
+
+        void flush(Batch expected) {
+            Batch sent = null;
+            synchronized (this) {
+                if (current != null && (expected == null || expected == current)) {
+                    sent = detach();
+                }
+            }
+            dispatch(sent);
+        }
+
+        boolean dropFirst(Batch expected) {
+            DefaultPromise<SendResult> promise;
+            synchronized (this) {
+                if (current != expected) {
+                    return false;
+                }
+                int size = current.sizes[0];
+                current.messages.remove(0);
+                promise = current.promises.remove(0);
+                current.bytes -= size;
+                System.arraycopy(current.sizes, 1, current.sizes, 0, current.messages.size());
+                if (current.messages.isEmpty()) {
+                    current.cancelLinger();
+                    current = null;
+                }
+                window.release(1, size);
+            }
+            overflowed.incrementAndGet();
+            fail(promise, new OMSRuntimeException(OMSResponseStatus.STATUS_10006.getStatusCode(),
+                windowFull("the message was dropped to make room for newer ones")));
+            return true;
+        }
+
+        /**
+         * Detaches the current batch and reserves its turn to be sent, so the batches are sent in order once handed
+         * to {@link #dispatch(Batch)} outside the lock.
+         */
+        /**
+         * Sends the pending batch, then runs the specified send in its turn and waits for it. A send made while this
+         * thread runs the turns of this destination, from a listener completed synchronously, runs right away.
+         */
+        <V> V handOver(final HandOver<V> send) {
+            if (sends.isDraining()) {
+                flush(null);
+                return send.send();
+            }
+            Batch sent = null;
+            Sequencer.Slot slot;
+            synchronized (this) {
+                if (current != null) {
+                    sent = detach();
+                }
+                slot = sends.reserve();
+            }
+            dispatch(sent);
+            final DefaultPromise<V> result = new DefaultPromise<V>();
+            slot.run(new Runnable() {
+                @Override public void run() {
+                    try {
+                        result.set(send.send());
+                    } catch (RuntimeException | Error e) {
+                        result.setFailure(e);
+                    }
+                }
+            });
+            try {
+                return result.get();
+            } catch (OMSRuntimeException e) {
+                Throwable cause = result.getThrowable();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+
+        private Batch detach() {
+            Batch batch = current;
+            current = null;
+            batch.cancelLinger();
+            batch.slot = sends.reserve();
+            return batch;
+        }
+
+        private void dispatch(final Batch batch) {
+            if (batch != null) {
+                batch.slot.run(new Runnable() {
+                    @Override public void run() {
+                        batch.send();
+                    }
+                });
+            }
+        }
+    }
+
+    private interface HandOver<V> {
+        V send();
+    }
+
+    private final class Batch implements FutureListener<SendResult> {
+        private final List<Message> messages = new ArrayList<Message>();
+        private final List<DefaultPromise<SendResult>> promises = new ArrayList<DefaultPromise<SendResult>>();
+        private final long createdNanos = System.nanoTime();
+        private int[] sizes = new int[8];
+        private long bytes;
+        private ScheduledFuture<?> linger;
+        private Sequencer.Slot slot;
+
+        boolean fits(int size) {
+            return messages.size() < batchMessages && bytes + size <= batchBytes;
+        }
+
+        boolean isFull() {
+            return messages.size() >= batchMessages || bytes >= batchBytes;
+        }
+
+        void add(Message message, int size, DefaultPromise<SendResult> promise) {
+            if (messages.size() == sizes.length) {
+                sizes = Arrays.copyOf(sizes, sizes.length * 2);
+            }
+            sizes[messages.size()] = size;
+            messages.add(message);
+            promises.add(promise);
+            bytes += size;
+        }
+
+        void cancelLinger() {
+            if (linger != null) {
+                linger.cancel(false);
+            }
+        }
+
+        void send() {
+            Future<SendResult> future;
+            try {
+                future = delegate.sendAsync(messages);
+            } catch (RuntimeException e) {
+                window.release(messages.size(), bytes);
+                failAll(e);
+                return;
+            }
+            future.addListener(this);
+        }
+
+        @Override
+        public void operationComplete(Future<SendResult> future) {
+            window.release(messages.size(), bytes);
+            Throwable cause = future.getThrowable();
+            if (cause != null || future.isCancelled()) {
+                failAll(cause != null ? cause : new CancellationException());
+                return;
+            }
+            SendResult result = future.get();
+            for (int i = 0; i < messages.size(); i++) {
+                String messageId = messages.get(i).header().getMessageId();
+                complete(promises.get(i), messageId != null ? new DefaultSendResult(messageId) : result);
+            }
+        }
+
+        private void failAll(Throwable cause) {
+            for (DefaultPromise<SendResult> promise : promises) {
+                fail(promise, cause);
+            }
+        }
+    }
+
+    private final class DirectSend implements FutureListener<SendResult> {
+        private final int size;
+        private final DefaultPromise<SendResult> promise;
+
+        DirectSend(int size, DefaultPromise<SendResult> promise) {
+            this.size = size;
+            this.promise = promise;
+        }
+
+        void send(Message message) {
+            Future<SendResult> future;
+            try {
+                future = delegate.sendAsync(message);
+            } catch (RuntimeException e) {
+                window.release(1, size);
+                fail(promise, e);
+                return;
+            }
+            future.addListener(this);
+        }
+
+        @Override
+        public void operationComplete(Future<SendResult> future) {
+            window.release(1, size);
+            Throwable cause = future.getThrowable();
+            if (cause != null || future.isCancelled()) {
+                fail(promise, cause != null ? cause : new CancellationException());
+            } else {
+                complete(promise, future.get());
+            }
+        }
+    }
+}
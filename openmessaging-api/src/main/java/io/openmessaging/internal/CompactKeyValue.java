@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.ImmutableKeyValue;
+import io.openmessaging.KeyValue;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A compact, thread-confined implementation of the interface {@link KeyValue}, used by OMS internally.
+ * <p>
+ * Entries are kept in parallel arrays and looked up by a linear scan, which beats hashing for the handful of
+ * properties a message usually carries and costs a few dozen bytes instead of a hash table. Values are stored in their
+ * native types with the same conversion rules as {@link TypedKeyValue}.
+ * <p>
+ * An instance of {@code CompactKeyValue} is <strong>not</strong> safe for concurrent use, it must be confined to one
+ * thread at a time, or be handed over between threads through a happens-before edge such as a queue or an executor
+ * submission. It is meant for per-message properties, see {@link io.openmessaging.OMS#newCompactKeyValue()}.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class CompactKeyValue implements KeyValue, TypedValues.Source {
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private String[] keys;
+    private byte[] types;
+    private long[] bits;
+    private String[] texts;
+    private int size;
+    private int modCount;
+
+    public CompactKeyValue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CompactKeyValue(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        keys = new String[capacity];
+        types = new byte[capacity];
+        bits = new long[capacity];
+        texts = new String[capacity];
+    }
+
+    @Override
+    public KeyValue put(String key, boolean value) {
+        set(key, TypedValues.BOOLEAN, TypedValues.bits(value), null);
+        return this;
+    }
+
+    @Override
+    public KeyValue put(String key, short value) {
+        set(key, TypedValues.SHORT, value, null);
+        return this;
+    }
+
+    @Override
+    public KeyValue put(String key, int value) {
+        set(key, TypedValues.INT, value, null);
+        return this;
+    }
+
+    @Override
+    public KeyValue put(String key, long value) {
+        set(key, TypedValues.LONG, value, null);
+        return this;
+    }
+
+    @Override
+    public KeyValue put(String key, double value) {
+        set(key, TypedValues.DOUBLE, TypedValues.bits(value), null);
+        return this;
+    }
+
+    @Override
+    public KeyValue put(String key, String value) {
+        set(key, TypedValues.STRING, 0L, String.valueOf(value));
+        return this;
+    }
+
+    @Override
+    public boolean getBoolean(String key) {
+        return getBoolean(key, false);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : TypedValues.toBoolean(types[index], bits[index], texts[index]);
+    }
+
+    @Override
+    public short getShort(String key) {
+        return getShort(key, (short) 0);
+    }
+
+    @Override
+    public short getShort(String key, short defaultValue) {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : TypedValues.toShort(types[index], bits[index], texts[index]);
+    }
+
+    @Override
+    public int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    @Override
+    public int getInt(String key, int defaultValue) {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : TypedValues.toInt(types[index], bits[index], texts[index]);
+    }
+
+    @Override
+    public long getLong(String key) {
+        return getLong(key, 0L);
+    }
+
+    @Override
+    public long getLong(String key, long defaultValue) {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : TypedValues.toLong(types[index], bits[index], texts[index]);
+    }
+
+    @Override
+    public double getDouble(String key) {
+        return getDouble(key, 0D);
+    }
+
+    @Override
+    public double getDouble(String key, double defaultValue) {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : TypedValues.toDouble(types[index], bits[index], texts[index]);
+    }
+
+    @Override
+    public String getString(String key) {
+        return getString(key, null);
+    }
+
+    @Override
+    public String getString(String key, String defaultValue) {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : TypedValues.toString(types[index], bits[index], texts[index]);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new KeySet();
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns the number of entries in this {@code KeyValue}.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an immutable snapshot of the current entries.
+     *
+     * @return the frozen copy of this {@code KeyValue}
+     */
+    public ImmutableKeyValue freeze() {
+        return LayeredKeyValue.copyOf(this);
+    }
+
+    @Override
+    public void forEach(TypedValues.Visitor visitor) {
+        for (int i = 0; i < size; i++) {
+            visitor.visit(keys[i], types[i], bits[i], texts[i]);
+        }
+    }
+
+    /**
+     * Removes all the entries, keeping the allocated arrays for reuse.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            keys[i] = null;
+            texts[i] = null;
+        }
+        size = 0;
+        modCount++;
+    }
+
+    private int indexOf(String key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        // Identity first: keys are mostly compile-time constants shared by the writer and the reader.
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        int hash = key.hashCode();
+        for (int i = 0; i < size; i++) {
+            String candidate = keys[i];
+            if (candidate.hashCode() == hash && candidate.equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void set(String key, byte type, long value, String text) {
+        int index = indexOf(key);
+        if (index < 0) {
+            if (size == keys.length) {
+                grow();
+            }
+            index = size++;
+            keys[index] = key;
+            modCount++;
+        }
+        types[index] = type;
+        bits[index] = value;
+        texts[index] = text;
+    }
+
+    private void grow() {
+        int capacity = keys.length << 1;
+        keys = Arrays.copyOf(keys, capacity);
+        types = Arrays.copyOf(types, capacity);
+        bits = Arrays.copyOf(bits, capacity);
+        texts = Arrays.copyOf(texts, capacity);
+    }
+
+    private void removeAt(int index) {
+        int last = --size;
+        if (index != last) {
+            keys[index] = keys[last];
+            types[index] = types[last];
+            bits[index] = bits[last];
+            texts[index] = texts[last];
+        }
+        keys[last] = null;
+        texts[last] = null;
+        modCount++;
+    }
+
+    private final class KeySet extends AbstractSet<String> {
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int cursor;
+                private int lastReturned = -1;
+                private int expectedModCount = modCount;
+
+                @Override
+                public boolean hasNext() {
+                    return cursor < size;
+                }
+
+                @Override
+                public String next() {
+                    if (expectedModCount != modCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (cursor >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    lastReturned = cursor++;
+                    return keys[lastReturned];
+                }
+
+                @Override
+                public void remove() {
+                    if (lastReturned < 0) {
+                        throw new IllegalStateException();
+                    }
+                    if (expectedModCount != modCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    // The last entry is moved into the freed slot, so it has to be visited again.
+                    removeAt(lastReturned);
+                    cursor = lastReturned;
+                    lastReturned = -1;
+                    expectedModCount = modCount;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String && indexOf((String) o) >= 0;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+            int index = indexOf((String) o);
+            if (index < 0) {
+                return false;
+            }
+            removeAt(index);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            CompactKeyValue.this.clear();
+        }
+    }
+}
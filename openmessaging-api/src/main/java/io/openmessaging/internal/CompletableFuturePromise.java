@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.FutureListener;
+import io.openmessaging.OMSResponseStatus;
+import io.openmessaging.Promise;
+import io.openmessaging.exception.OMSRuntimeException;
+import io.openmessaging.exception.OMSTimeOutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link Promise} backed by a {@link CompletableFuture}, used by OMS internally.
+ * <p>
+ * {@link #toCompletionStage()} returns the backing {@code CompletableFuture} itself, so converting back and forth
+ * allocates nothing. The listeners run on the thread completing the promise, like the dependent actions of a {@code
+ * CompletableFuture}.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class CompletableFuturePromise<V> implements Promise<V> {
+    private static final Logger LOGGER = Logger.getLogger(CompletableFuturePromise.class.getName());
+
+    private final CompletableFuture<V> future;
+
+    public CompletableFuturePromise() {
+        this(new CompletableFuture<V>());
+    }
+
+    public CompletableFuturePromise(CompletableFuture<V> future) {
+        this.future = future;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return future.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return future.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    @Override
+    public V get() {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    @Override
+    public V get(long timeout) {
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException ignored) {
+            // Reported below like an interrupted wait.
+        }
+        throw new OMSTimeOutException(OMSResponseStatus.STATUS_1410.getStatusCode(),
+            "The promise is not completed in " + timeout + " ms");
+    }
+
+    @Override
+    public void addListener(final FutureListener<V> listener) {
+        future.whenComplete(new BiConsumer<V, Throwable>() {
+            @Override public void accept(V value, Throwable cause) {
+                try {
+                    listener.operationComplete(CompletableFuturePromise.this);
+                } catch (Throwable t) {
+                    LOGGER.log(Level.WARNING, "The listener " + listener + " of " + CompletableFuturePromise.this
+                        + " threw an exception", t);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Throwable getThrowable() {
+        if (!future.isCompletedExceptionally()) {
+            return null;
+        }
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        } catch (CancellationException e) {
+            return e;
+        }
+    }
+
+    @Override
+    public boolean set(V value) {
+        return future.complete(value);
+    }
+
+    @Override
+    public boolean setFailure(Throwable cause) {
+        if (cause == null) {
+            throw new NullPointerException("cause");
+        }
+        return future.completeExceptionally(cause);
+    }
+
+    @Override
+    public CompletionStage<V> toCompletionStage() {
+        return future;
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof OMSRuntimeException) {
+            return (OMSRuntimeException) cause;
+        }
+        return new OMSRuntimeException(OMSResponseStatus.STATUS_1500.getStatusCode(), cause);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.interceptor.ConsumerInterceptor;
+import io.openmessaging.interceptor.Context;
+import io.openmessaging.message.Message;
+import java.util.List;
+
+/**
+ * An {@link InterceptorChain} of {@link ConsumerInterceptor}s, used by OMS internally.
+ * <p>
+ * A push consumer calls {@link #preReceive(Message)} before handing a message to its {@link MessageListener}, then
+ * {@link #postReceive(Message, Invocation)} with the returned invocation once the listener returned, or {@link
+ * #release(Invocation)} if it threw. The interceptors run in their registration order, and an exception thrown by one
+ * of them propagates to the consumer.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class ConsumerInterceptorChain extends InterceptorChain<ConsumerInterceptor> {
+
+    /**
+     * Invokes {@link ConsumerInterceptor#preReceive(Message, Context)} of every interceptor.
+     *
+     * @param message the received message
+     * @return the invocation to hand to {@link #postReceive(Message, Invocation)}
+     */
+    public Invocation preReceive(Message message) {
+        Invocation invocation = acquire();
+        ConsumerInterceptor interceptor = interceptor(invocation);
+        if (interceptor != null) {
+            try {
+                interceptor.preReceive(message, invocation);
+            } catch (RuntimeException | Error e) {
+                release(invocation);
+                throw e;
+            }
+        }
+        return invocation;
+    }
+
+    /**
+     * Invokes {@link ConsumerInterceptor#postReceive(Message, Context)} of the interceptors the message was
+     * pre-processed by, then gives back the invocation.
+     *
+     * @param message the received message
+     * @param invocation the invocation returned by {@link #preReceive(Message)}
+     */
+    public void postReceive(Message message, Invocation invocation) {
+        ConsumerInterceptor interceptor = interceptor(invocation);
+        try {
+            if (interceptor != null) {
+                interceptor.postReceive(message, invocation);
+            }
+        } finally {
+            release(invocation);
+        }
+    }
+
+    @Override
+    protected ConsumerInterceptor compile(List<ConsumerInterceptor> interceptors) {
+        switch (interceptors.size()) {
+            case 0:
+                return null;
+            case 1:
+                return interceptors.get(0);
+            default:
+                return new Composite(interceptors.toArray(new ConsumerInterceptor[interceptors.size()]));
+        }
+    }
+
+    private static final class Composite implements ConsumerInterceptor {
+        private final ConsumerInterceptor[] interceptors;
+
+        private Composite(ConsumerInterceptor[] interceptors) {
+            this.interceptors = interceptors;
+        }
+
+        @Override
+        public void preReceive(Message message, Context attributes) {
+            for (ConsumerInterceptor interceptor : interceptors) {
+                interceptor.preReceive(message, attributes);
+            }
+        }
+
+        @Override
+        public void postReceive(Message message, Context attributes) {
+            for (ConsumerInterceptor interceptor : interceptors) {
+                interceptor.postReceive(message, attributes);
+            }
+        }
+    }
+}
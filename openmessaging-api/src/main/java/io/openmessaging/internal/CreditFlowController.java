@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.consumer.PushConsumer;
+import io.openmessaging.message.Message;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link MessageListener} decorator suspending and resuming a {@link PushConsumer} according to the credits of its
+ * queues, used by OMS internally.
+ * <p>
+ * Each delivered message takes a credit of its queue, given back once the message is acknowledged through its {@link
+ * MessageListener.Context}, even if the acknowledgement fails, or right away if the listener throws. A message the
+ * listener leaves unacknowledged on purpose, for example to have it redelivered, or acknowledges through {@link
+ * io.openmessaging.consumer.Consumer#ack(io.openmessaging.consumer.MessageReceipt)}, keeps its credit until it is
+ * given back by {@link #release(MessageListener.Context)}, otherwise the consumer eventually stays suspended. The
+ * consumer is suspended as soon as a queue has
+ * used its {@link OMSBuiltinKeys#CONSUMER_FLOW_QUEUE_CREDITS} credits, or all the queues together {@link
+ * OMSBuiltinKeys#CONSUMER_FLOW_TOTAL_CREDITS}, which are the high watermarks. It is resumed once every queue and the
+ * total are back to {@link OMSBuiltinKeys#CONSUMER_FLOW_RESUME_PERCENT} percent of their credits in use, which are the
+ * low watermarks, so the listener keeps working at its own pace while the unacknowledged messages stay bounded.
+ * <p>
+ * The push consumer API cannot suspend a single queue, so a queue out of credits suspends the whole consumer. The
+ * listener may acknowledge asynchronously, which makes this controller compose with the dispatching listeners. The
+ * consumer is suspended and resumed outside the lock of this controller, in the order the transitions were decided.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class CreditFlowController implements MessageListener {
+    public static final int DEFAULT_QUEUE_CREDITS = 1000;
+    public static final int DEFAULT_TOTAL_CREDITS = 10000;
+    public static final int DEFAULT_RESUME_PERCENT = 50;
+
+    private final PushConsumer consumer;
+    private final MessageListener listener;
+    private final int queueCredits;
+    private final int totalCredits;
+    private final int queueLowWatermark;
+    private final int totalLowWatermark;
+    private final Map<String, int[]> used = new HashMap<String, int[]>();
+    private int totalUsed;
+    private int exhaustedQueues;
+    private int queuesAboveLowWatermark;
+    private boolean suspended;
+    private final Sequencer transitions = new Sequencer();
+    private final Runnable suspend = new Runnable() {
+        @Override public void run() {
+            consumer.suspend();
+        }
+    };
+    private final Runnable resume = new Runnable() {
+        @Override public void run() {
+            consumer.resume();
+        }
+    };
+
+    public CreditFlowController(PushConsumer consumer, MessageListener listener, KeyValue attributes) {
+        this(consumer, listener, attributes.getInt(OMSBuiltinKeys.CONSUMER_FLOW_QUEUE_CREDITS, DEFAULT_QUEUE_CREDITS),
+            attributes.getInt(OMSBuiltinKeys.CONSUMER_FLOW_TOTAL_CREDITS, DEFAULT_TOTAL_CREDITS),
+            attributes.getInt(OMSBuiltinKeys.CONSUMER_FLOW_RESUME_PERCENT, DEFAULT_RESUME_PERCENT));
+    }
+
+    public CreditFlowController(PushConsumer consumer, MessageListener listener, int queueCredits, int totalCredits,
+        int resumePercent) {
+        if (queueCredits <= 0 || totalCredits <= 0 || resumePercent < 0 || resumePercent >= 100) {
+            throw new IllegalArgumentException("Illegal flow control settings: " + queueCredits + " credits per queue, "
+                + totalCredits + " credits in total, resume at " + resumePercent + "%");
+        }
+        this.consumer = consumer;
+        this.listener = listener;
+        this.queueCredits = queueCredits;
+        this.totalCredits = totalCredits;
+        this.queueLowWatermark = (int) ((long) queueCredits * resumePercent / 100);
+        this.totalLowWatermark = (int) ((long) totalCredits * resumePercent / 100);
+    }
+
+    @Override
+    public void onReceived(Message message, Context context) {
+        CreditContext creditContext = new CreditContext(message.header().getDestination(), context);
+        Sequencer.Slot transition = take(creditContext.queueName);
+        if (transition != null) {
+            transition.run(suspend);
+        }
+        try {
+            listener.onReceived(message, creditContext);
+        } catch (RuntimeException | Error e) {
+            creditContext.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives back the credit taken by the message delivered with the specified context, for a message which is not
+     * acknowledged through that context. The credit is given back at most once, whether by this method or by an
+     * acknowledgement through the context.
+     *
+     * @param context the context the message was delivered with
+     * @return {@code true} if the context is the one of a message delivered by a {@code CreditFlowController}
+     */
+    public static boolean release(Context context) {
+        if (!(context instanceof CreditContext)) {
+            return false;
+        }
+        ((CreditContext) context).release();
+        return true;
+    }
+
+    /**
+     * Returns the number of credits of the specified queue in use, which is its number of unacknowledged messages.
+     *
+     * @param queueName the queue name
+     * @return the credits in use
+     */
+    public synchronized int usedCredits(String queueName) {
+        int[] counter = used.get(queueName);
+        return counter == null ? 0 : counter[0];
+    }
+
+    /**
+     * Returns the number of credits in use over all the queues.
+     *
+     * @return the credits in use
+     */
+    public synchronized int usedCredits() {
+        return totalUsed;
+    }
+
+    /**
+     * Returns whether this controller has suspended the consumer.
+     *
+     * @return {@code true} if the consumer is suspended for lack of credits
+     */
+    public synchronized boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * Takes a credit of the specified queue, returning the slot of the suspension to run once the lock is released, if
+     * the consumer must be suspended.
+     */
+    private synchronized Sequencer.Slot take(String queueName) {
+        int[] counter = used.get(queueName);
+        if (counter == null) {
+            counter = new int[1];
+            used.put(queueName, counter);
+        }
+        counter[0]++;
+        if (counter[0] == queueLowWatermark + 1) {
+            queuesAboveLowWatermark++;
+        }
+        if (counter[0] == queueCredits) {
+            exhaustedQueues++;
+        }
+        totalUsed++;
+        if (!suspended && (exhaustedQueues > 0 || totalUsed >= totalCredits)) {
+            suspended = true;
+            return transitions.reserve();
+        }
+        return null;
+    }
+
+    /**
+     * Gives back a credit of the specified queue, returning the slot of the resumption to run once the lock is
+     * released, if the consumer must be resumed.
+     */
+    private synchronized Sequencer.Slot give(String queueName) {
+        int[] counter = used.get(queueName);
+        if (counter[0] == queueCredits) {
+            exhaustedQueues--;
+        }
+        if (counter[0] == queueLowWatermark + 1) {
+            queuesAboveLowWatermark--;
+        }
+        if (--counter[0] == 0) {
+            used.remove(queueName);
+        }
+        totalUsed--;
+        if (suspended && queuesAboveLowWatermark == 0 && totalUsed <= totalLowWatermark) {
+            suspended = false;
+            return transitions.reserve();
+        }
+        return null;
+    }
+
+    private class CreditContext implements Context {
+        private final String queueName;
+        private final Context context;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private CreditContext(String queueName, Context context) {
+            this.queueName = queueName;
+            this.context = context;
+        }
+
+        @Override
+        public void ack() {
+            try {
+                context.ack();
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                Sequencer.Slot transition = give(queueName);
+                if (transition != null) {
+                    transition.run(resume);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.Future;
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.ServiceLifeState;
+import io.openmessaging.consumer.AckAggregator;
+import io.openmessaging.consumer.AckDurability;
+import io.openmessaging.consumer.BatchMessageListener;
+import io.openmessaging.consumer.Consumer;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.consumer.MessageReceipt;
+import io.openmessaging.consumer.PushConsumer;
+import io.openmessaging.consumer.RangeAcknowledger;
+import io.openmessaging.extension.Extension;
+import io.openmessaging.extension.QueueMetaData;
+import io.openmessaging.interceptor.ConsumerInterceptor;
+import io.openmessaging.message.Message;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An {@link AckAggregator} grouping the acknowledgements into batches completed by a single promise, used by OMS
+ * internally.
+ * <p>
+ * The offsets of each partition are sorted on flush and split into runs of contiguous offsets, each acknowledged by a
+ * single {@link RangeAcknowledger#ack(Object, long, long)} call, duplicated offsets being acknowledged once. The
+ * flushes are serialized, so the ranges of a partition reach the {@code RangeAcknowledger} in the order of their
+ * batches. A batch whose flush fails is not retried, since its messages are redelivered anyway, its promise fails
+ * with the first failure.
+ * <p>
+ * A push consumer decorated by {@link #decorate(PushConsumer)} flushes the batch before unbinding queues, so a
+ * rebalance does not hand over queues whose consumed messages are still waiting for their acknowledgement.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class DefaultAckAggregator implements AckAggregator {
+    public static final int DEFAULT_BATCH_MESSAGES = 1000;
+    public static final long DEFAULT_LINGER_MS = 100;
+
+    private static final Logger LOGGER = Logger.getLogger(DefaultAckAggregator.class.getName());
+
+    private final Consumer consumer;
+    private final RangeAcknowledger rangeAcknowledger;
+    private final int batchMessages;
+    private final long lingerMs;
+    private final AckDurability durability;
+    private final Object flushLock = new Object();
+    private final Runnable flushTask = new Runnable() {
+        @Override public void run() {
+            flush();
+        }
+    };
+
+    private final Object lock = new Object();
+    private Map<Object, Offsets> offsets = new HashMap<Object, Offsets>();
+    private List<MessageReceipt> receipts = new ArrayList<MessageReceipt>();
+    private int pending;
+    private DefaultPromise<Void> batch = new DefaultPromise<Void>();
+    private ScheduledFuture<?> lingerFuture;
+    private ScheduledThreadPoolExecutor scheduler;
+    private boolean stopped;
+
+    public DefaultAckAggregator(Consumer consumer, RangeAcknowledger rangeAcknowledger, KeyValue attributes) {
+        this(consumer, rangeAcknowledger,
+            attributes.getInt(OMSBuiltinKeys.CONSUMER_ACK_BATCH_MESSAGES, DEFAULT_BATCH_MESSAGES),
+            attributes.getLong(OMSBuiltinKeys.CONSUMER_ACK_LINGER_MS, DEFAULT_LINGER_MS),
+            AckDurability.valueOf(attributes.getString(OMSBuiltinKeys.CONSUMER_ACK_DURABILITY,
+                AckDurability.ASYNC.name())));
+    }
+
+    public DefaultAckAggregator(Consumer consumer, RangeAcknowledger rangeAcknowledger, int batchMessages,
+        long lingerMs, AckDurability durability) {
+        if (batchMessages <= 0 || lingerMs < 0) {
+            throw new IllegalArgumentException("Illegal ack batch settings: " + batchMessages + " messages, "
+                + lingerMs + " ms linger");
+        }
+        this.consumer = consumer;
+        this.rangeAcknowledger = rangeAcknowledger;
+        this.batchMessages = batchMessages;
+        this.lingerMs = lingerMs;
+        this.durability = durability;
+        if (lingerMs > 0) {
+            scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "OMS-AckAggregator-Linger");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    @Override
+    public Future<Void> ack(MessageReceipt receipt) {
+        Object partition = rangeAcknowledger == null ? null : rangeAcknowledger.partitionOf(receipt);
+        long offset = partition == null ? 0 : rangeAcknowledger.offsetOf(receipt);
+        DefaultPromise<Void> promise;
+        boolean flush;
+        synchronized (lock) {
+            if (stopped) {
+                promise = null;
+                flush = false;
+            } else {
+                if (partition == null) {
+                    receipts.add(receipt);
+                } else {
+                    Offsets partitionOffsets = offsets.get(partition);
+                    if (partitionOffsets == null) {
+                        partitionOffsets = new Offsets();
+                        offsets.put(partition, partitionOffsets);
+                    }
+                    partitionOffsets.add(offset);
+                }
+                promise = batch;
+                flush = ++pending >= batchMessages || scheduler == null;
+                if (!flush && lingerFuture == null) {
+                    lingerFuture = scheduler.schedule(flushTask, lingerMs, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        if (promise == null) {
+            promise = new DefaultPromise<Void>();
+            ack(partition, offset, receipt);
+            promise.set(null);
+            return promise;
+        }
+        if (flush) {
+            flush();
+        }
+        if (durability == AckDurability.SYNC) {
+            promise.get();
+        }
+        return promise;
+    }
+
+    @Override
+    public MessageListener decorate(final MessageListener listener) {
+        return new MessageListener() {
+            @Override
+            public void onReceived(final Message message, Context context) {
+                listener.onReceived(message, new Context() {
+                    @Override public void ack() {
+                        DefaultAckAggregator.this.ack(message.getMessageReceipt());
+                    }
+                });
+            }
+        };
+    }
+
+    @Override
+    public PushConsumer decorate(PushConsumer consumer) {
+        return new FlushingPushConsumer(consumer);
+    }
+
+    @Override
+    public void flush() {
+        synchronized (flushLock) {
+            Map<Object, Offsets> flushedOffsets;
+            List<MessageReceipt> flushedReceipts;
+            DefaultPromise<Void> promise;
+            synchronized (lock) {
+                if (lingerFuture != null) {
+                    lingerFuture.cancel(false);
+                    lingerFuture = null;
+                }
+                if (pending == 0) {
+                    return;
+                }
+                flushedOffsets = offsets;
+                flushedReceipts = receipts;
+                promise = batch;
+                offsets = new HashMap<Object, Offsets>();
+                receipts = new ArrayList<MessageReceipt>();
+                batch = new DefaultPromise<Void>();
+                pending = 0;
+            }
+            Throwable failure = null;
+            for (Map.Entry<Object, Offsets> entry : flushedOffsets.entrySet()) {
+                failure = ackRanges(entry.getKey(), entry.getValue(), failure);
+            }
+            for (MessageReceipt receipt : flushedReceipts) {
+                try {
+                    consumer.ack(receipt);
+                } catch (Throwable t) {
+                    failure = failed(failure, t);
+                }
+            }
+            if (failure == null) {
+                promise.set(null);
+            } else {
+                promise.setFailure(failure);
+            }
+        }
+    }
+
+    @Override
+    public int pendingAcks() {
+        synchronized (lock) {
+            return pending;
+        }
+    }
+
+    @Override
+    public void stop() {
+        ScheduledThreadPoolExecutor executor;
+        synchronized (lock) {
+            stopped = true;
+            executor = scheduler;
+            scheduler = null;
+        }
+        flush();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void ack(Object partition, long offset, MessageReceipt receipt) {
+        if (partition == null) {
+            consumer.ack(receipt);
+        } else {
+            rangeAcknowledger.ack(partition, offset, offset);
+        }
+    }
+
+    private Throwable ackRanges(Object partition, Offsets partitionOffsets, Throwable failure) {
+        long[] values = partitionOffsets.sorted();
+        int start = 0;
+        for (int i = 1; i <= values.length; i++) {
+            if (i == values.length || values[i] > values[i - 1] + 1) {
+                try {
+                    rangeAcknowledger.ack(partition, values[start], values[i - 1]);
+                } catch (Throwable t) {
+                    failure = failed(failure, t);
+                }
+                start = i;
+            }
+        }
+        return failure;
+    }
+
+    private static Throwable failed(Throwable failure, Throwable t) {
+        LOGGER.log(Level.WARNING, "Failed to flush acknowledgements, the messages will be redelivered", t);
+        return failure == null ? t : failure;
+    }
+
+    private class FlushingPushConsumer implements PushConsumer {
+        private final PushConsumer delegate;
+
+        FlushingPushConsumer(PushConsumer delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void resume() {
+            delegate.resume();
+        }
+
+        @Override
+        public void suspend() {
+            delegate.suspend();
+        }
+
+        @Override
+        public void suspend(long timeout) {
+            delegate.suspend(timeout);
+        }
+
+        @Override
+        public boolean isSuspended() {
+            return delegate.isSuspended();
+        }
+
+        @Override
+        public void bindQueue(Collection<String> queueNames, MessageListener listener) {
+            delegate.bindQueue(queueNames, decorate(listener));
+        }
+
+        @Override
+        public void bindQueue(Collection<String> queueNames, BatchMessageListener listener) {
+            delegate.bindQueue(queueNames, listener);
+        }
+
+        @Override
+        public void unbindQueue(Collection<String> queueNames) {
+            flush();
+            delegate.unbindQueue(queueNames);
+        }
+
+        @Override
+        public Set<String> getBindQueues() {
+            return delegate.getBindQueues();
+        }
+
+        @Override
+        public void addInterceptor(ConsumerInterceptor interceptor) {
+            delegate.addInterceptor(interceptor);
+        }
+
+        @Override
+        public void removeInterceptor(ConsumerInterceptor interceptor) {
+            delegate.removeInterceptor(interceptor);
+        }
+
+        @Override
+        public void ack(MessageReceipt receipt) {
+            DefaultAckAggregator.this.ack(receipt);
+        }
+
+        @Override
+        public Optional<Extension> getExtension() {
+            return delegate.getExtension();
+        }
+
+        @Override
+        public void start() {
+            delegate.start();
+        }
+
+        @Override
+        public void stop() {
+            DefaultAckAggregator.this.stop();
+            delegate.stop();
+        }
+
+        @Override
+        public ServiceLifeState currentState() {
+            return delegate.currentState();
+        }
+
+        @Override
+        public Set<QueueMetaData> getQueueMetaData(String queueName) {
+            return delegate.getQueueMetaData(queueName);
+        }
+    }
+
+    private static class Offsets {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long offset) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = offset;
+        }
+
+        long[] sorted() {
+            long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.message.Header;
+
+/**
+ * The default implementation of the interface {@link Header}, used by OMS internally.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class DefaultHeader implements Header {
+    /**
+     * The priority of a message whose {@code PRIORITY} field isn't set explicitly.
+     */
+    public static final short DEFAULT_PRIORITY = 5;
+
+    private String destination;
+    private String messageId;
+    private long bornTimestamp;
+    private String bornHost;
+    private short priority = DEFAULT_PRIORITY;
+    private short durability;
+    private int deliveryCount;
+    private short compression;
+
+    @Override
+    public Header setDestination(String destination) {
+        this.destination = destination;
+        return this;
+    }
+
+    @Override
+    public Header setMessageId(String messageId) {
+        this.messageId = messageId;
+        return this;
+    }
+
+    @Override
+    public Header setBornTimestamp(long bornTimestamp) {
+        this.bornTimestamp = bornTimestamp;
+        return this;
+    }
+
+    @Override
+    public Header setBornHost(String bornHost) {
+        this.bornHost = bornHost;
+        return this;
+    }
+
+    @Override
+    public Header setPriority(short priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    @Override
+    public Header setDurability(short durability) {
+        this.durability = durability;
+        return this;
+    }
+
+    @Override
+    public Header setDeliveryCount(int deliveryCount) {
+        this.deliveryCount = deliveryCount;
+        return this;
+    }
+
+    @Override
+    public Header setCompression(short compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    void clear() {
+        destination = null;
+        messageId = null;
+        bornTimestamp = 0;
+        bornHost = null;
+        priority = DEFAULT_PRIORITY;
+        durability = 0;
+        deliveryCount = 0;
+        compression = 0;
+    }
+
+    @Override
+    public String getDestination() {
+        return destination;
+    }
+
+    @Override
+    public String getMessageId() {
+        return messageId;
+    }
+
+    @Override
+    public long getBornTimestamp() {
+        return bornTimestamp;
+    }
+
+    @Override
+    public String getBornHost() {
+        return bornHost;
+    }
+
+    @Override
+    public short getPriority() {
+        return priority;
+    }
+
+    @Override
+    public short getDurability() {
+        return durability;
+    }
+
+    @Override
+    public int getDeliveryCount() {
+        return deliveryCount;
+    }
+
+    @Override
+    public short getCompression() {
+        return compression;
+    }
+}
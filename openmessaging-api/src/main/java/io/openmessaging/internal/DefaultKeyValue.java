@@ -17,6 +17,7 @@
 
 package io.openmessaging.internal;
 
+import io.openmessaging.ImmutableKeyValue;
 import io.openmessaging.KeyValue;
 import java.util.Map;
 import java.util.Set;
@@ -24,6 +25,10 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The default implementation of the interface {@link KeyValue}, used by OMS internally.
+ * <p>
+ * Values are stored in their {@code String} form. Since the backing {@link ConcurrentHashMap} never holds a
+ * {@code null} value, a {@code null} result of a single {@code get} is used as the miss sentinel, so every getter costs
+ * exactly one hash lookup.
  *
  * @version OMS 1.0.0
  * @since OMS 1.0.0
@@ -39,28 +44,24 @@ public class DefaultKeyValue implements KeyValue {
 
     @Override
     public boolean getBoolean(String key) {
-        if (!properties.containsKey(key)) {
-            return false;
-        }
-        return Boolean.valueOf(properties.get(key));
+        return getBoolean(key, false);
     }
 
     @Override
     public boolean getBoolean(String key, boolean defaultValue) {
-        return properties.containsKey(key) ? getBoolean(key) : defaultValue;
+        String value = properties.get(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
     }
 
     @Override
     public short getShort(String key) {
-        if (!properties.containsKey(key)) {
-            return 0;
-        }
-        return Short.valueOf(properties.get(key));
+        return getShort(key, (short) 0);
     }
 
     @Override
     public short getShort(String key, short defaultValue) {
-        return properties.containsKey(key) ? getShort(key) : defaultValue;
+        String value = properties.get(key);
+        return value == null ? defaultValue : Short.parseShort(value);
     }
 
     @Override
@@ -99,41 +100,35 @@ public class DefaultKeyValue implements KeyValue {
 
     @Override
     public int getInt(String key) {
-        if (!properties.containsKey(key)) {
-            return 0;
-        }
-        return Integer.valueOf(properties.get(key));
+        return getInt(key, 0);
     }
 
     @Override
     public int getInt(final String key, final int defaultValue) {
-        return properties.containsKey(key) ? getInt(key) : defaultValue;
+        String value = properties.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
     }
 
     @Override
     public long getLong(String key) {
-        if (!properties.containsKey(key)) {
-            return 0;
-        }
-        return Long.valueOf(properties.get(key));
+        return getLong(key, 0L);
     }
 
     @Override
     public long getLong(final String key, final long defaultValue) {
-        return properties.containsKey(key) ? getLong(key) : defaultValue;
+        String value = properties.get(key);
+        return value == null ? defaultValue : Long.parseLong(value);
     }
 
     @Override
     public double getDouble(String key) {
-        if (!properties.containsKey(key)) {
-            return 0;
-        }
-        return Double.valueOf(properties.get(key));
+        return getDouble(key, 0D);
     }
 
     @Override
     public double getDouble(final String key, final double defaultValue) {
-        return properties.containsKey(key) ? getDouble(key) : defaultValue;
+        String value = properties.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
     }
 
     @Override
@@ -143,7 +138,8 @@ public class DefaultKeyValue implements KeyValue {
 
     @Override
     public String getString(final String key, final String defaultValue) {
-        return properties.containsKey(key) ? getString(key) : defaultValue;
+        String value = properties.get(key);
+        return value == null ? defaultValue : value;
     }
 
     @Override
@@ -155,4 +151,13 @@ public class DefaultKeyValue implements KeyValue {
     public boolean containsKey(String key) {
         return properties.containsKey(key);
     }
+
+    /**
+     * Returns an immutable snapshot of the current entries.
+     *
+     * @return the frozen copy of this {@code KeyValue}
+     */
+    public ImmutableKeyValue freeze() {
+        return LayeredKeyValue.copyOf(this);
+    }
 }
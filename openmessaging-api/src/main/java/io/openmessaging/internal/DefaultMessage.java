@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.consumer.MessageReceipt;
+import io.openmessaging.extension.ExtensionHeader;
+import io.openmessaging.message.Header;
+import io.openmessaging.message.Message;
+import java.nio.ByteBuffer;
+
+/**
+ * The default implementation of the interface {@link Message}, used by OMS internally.
+ * <p>
+ * The body is kept as one or more {@link ByteBuffer}s exactly as it was set, heap or direct, and is only copied when
+ * it has to be returned in another shape: {@link #getData()} copies unless the body wraps a whole array, and {@link
+ * #getBody()} merges the components of a composite body. A body set by {@link #setData(byte[])} is kept as the array
+ * itself and only wrapped into a buffer once read as one, so setting it allocates nothing. The properties and the
+ * extension header are allocated on first access, the properties are a thread-confined {@link CompactKeyValue}, or an
+ * {@link IndexedKeyValue} when the message is created by a factory indexing the properties.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class DefaultMessage implements Message {
+    private static final ByteBuffer[] NO_BUFFERS = new ByteBuffer[0];
+
+    private final DefaultHeader header = new DefaultHeader();
+    private DefaultExtensionHeader extensionHeader;
+    private KeyValue properties;
+    private boolean indexedProperties;
+    private byte[] data;
+    private ByteBuffer body;
+    private ByteBuffer[] components;
+    private MessageReceipt messageReceipt;
+
+    public DefaultMessage() {
+    }
+
+    public DefaultMessage(String destination, byte[] data) {
+        header.setDestination(destination);
+        setData(data);
+    }
+
+    public DefaultMessage(String destination, ByteBuffer... body) {
+        header.setDestination(destination);
+        setBody(body);
+    }
+
+    @Override
+    public Header header() {
+        return header;
+    }
+
+    @Override
+    public ExtensionHeader extensionHeader() {
+        if (extensionHeader == null) {
+            extensionHeader = new DefaultExtensionHeader();
+        }
+        return extensionHeader;
+    }
+
+    @Override
+    public KeyValue properties() {
+        if (properties == null) {
+            properties = indexedProperties ? new IndexedKeyValue() : new CompactKeyValue();
+        }
+        return properties;
+    }
+
+    /**
+     * Makes the properties allocated on first access an {@link IndexedKeyValue}, whose interned keys are read and
+     * written without hashing.
+     */
+    void indexProperties() {
+        indexedProperties = true;
+    }
+
+    /**
+     * Returns the extension header if it has been accessed before, without allocating it.
+     */
+    DefaultExtensionHeader extensionHeaderIfPresent() {
+        return extensionHeader;
+    }
+
+    /**
+     * Returns the properties if they have been accessed or set before, without allocating them.
+     */
+    KeyValue propertiesIfPresent() {
+        return properties;
+    }
+
+    /**
+     * Replaces the properties of this message, for example with a shared {@link io.openmessaging.ImmutableKeyValue}.
+     *
+     * @param properties the new properties
+     */
+    public void setProperties(KeyValue properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public byte[] getData() {
+        if (data != null) {
+            return data;
+        }
+        if (components != null) {
+            return merge().array();
+        }
+        if (body == null) {
+            return null;
+        }
+        if (body.hasArray() && body.arrayOffset() == 0 && body.position() == 0
+            && body.remaining() == body.array().length) {
+            return body.array();
+        }
+        byte[] data = new byte[body.remaining()];
+        body.duplicate().get(data);
+        return data;
+    }
+
+    @Override
+    public void setData(byte[] data) {
+        this.data = data;
+        this.body = null;
+        this.components = null;
+    }
+
+    @Override
+    public ByteBuffer getBody() {
+        if (components != null) {
+            return merge().asReadOnlyBuffer();
+        }
+        ByteBuffer body = body();
+        return body == null ? null : body.asReadOnlyBuffer();
+    }
+
+    @Override
+    public ByteBuffer[] getBodyBuffers() {
+        if (components != null) {
+            ByteBuffer[] views = new ByteBuffer[components.length];
+            for (int i = 0; i < components.length; i++) {
+                views[i] = components[i].asReadOnlyBuffer();
+            }
+            return views;
+        }
+        ByteBuffer body = body();
+        return body == null ? NO_BUFFERS : new ByteBuffer[] {body.asReadOnlyBuffer()};
+    }
+
+    @Override
+    public void setBody(ByteBuffer... body) {
+        if (body == null) {
+            throw new NullPointerException("body");
+        }
+        for (ByteBuffer component : body) {
+            if (component == null) {
+                throw new NullPointerException("body component");
+            }
+        }
+        this.data = null;
+        if (body.length == 0) {
+            this.body = null;
+            this.components = null;
+        } else if (body.length == 1) {
+            this.body = body[0].slice();
+            this.components = null;
+        } else {
+            ByteBuffer[] slices = new ByteBuffer[body.length];
+            for (int i = 0; i < body.length; i++) {
+                slices[i] = body[i].slice();
+            }
+            this.body = null;
+            this.components = slices;
+        }
+    }
+
+    @Override
+    public int getBodyLength() {
+        if (components != null) {
+            int length = 0;
+            for (ByteBuffer component : components) {
+                length += component.remaining();
+            }
+            return length;
+        }
+        if (data != null) {
+            return data.length;
+        }
+        return body == null ? 0 : body.remaining();
+    }
+
+    @Override
+    public MessageReceipt getMessageReceipt() {
+        return messageReceipt;
+    }
+
+    public void setMessageReceipt(MessageReceipt messageReceipt) {
+        this.messageReceipt = messageReceipt;
+    }
+
+    /**
+     * Resets this message to the state of a newly created one, keeping the reusable parts allocated.
+     */
+    void clear() {
+        header.clear();
+        if (extensionHeader != null) {
+            extensionHeader.clear();
+        }
+        if (properties instanceof CompactKeyValue) {
+            ((CompactKeyValue) properties).clear();
+        } else if (properties instanceof IndexedKeyValue) {
+            ((IndexedKeyValue) properties).clear();
+        } else {
+            properties = null;
+        }
+        data = null;
+        body = null;
+        components = null;
+        messageReceipt = null;
+    }
+
+    /**
+     * Returns the single buffer of the body, wrapping the array set by {@link #setData(byte[])} on first use.
+     */
+    private ByteBuffer body() {
+        if (body == null && data != null) {
+            body = ByteBuffer.wrap(data);
+        }
+        return body;
+    }
+
+    private ByteBuffer merge() {
+        ByteBuffer merged = ByteBuffer.allocate(getBodyLength());
+        for (ByteBuffer component : components) {
+            merged.put(component.duplicate());
+        }
+        merged.flip();
+        return merged;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.message.Message;
+import io.openmessaging.message.MessageFactory;
+import java.nio.ByteBuffer;
+
+/**
+ * The default implementation of the interface {@link MessageFactory}, which creates {@link DefaultMessage}s, used by
+ * OMS internally.
+ * <p>
+ * The properties of the created messages are a {@link CompactKeyValue} by default. A factory created with indexed
+ * properties gives them an {@link IndexedKeyValue} instead, which suits messages whose properties mostly use the keys
+ * interned by {@link KeyRegistry}.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class DefaultMessageFactory implements MessageFactory {
+    private final boolean indexedProperties;
+
+    public DefaultMessageFactory() {
+        this(false);
+    }
+
+    public DefaultMessageFactory(boolean indexedProperties) {
+        this.indexedProperties = indexedProperties;
+    }
+
+    @Override
+    public Message createMessage(String queueName, byte[] body) {
+        return init(new DefaultMessage(queueName, body));
+    }
+
+    /**
+     * Creates a {@code Message} whose body is the remaining bytes of the specified buffers, which are not copied.
+     *
+     * @param queueName the target queue to send
+     * @param body the components of the message body
+     * @return the created {@code Message} object
+     */
+    public Message createMessage(String queueName, ByteBuffer... body) {
+        return init(new DefaultMessage(queueName, body));
+    }
+
+    private Message init(DefaultMessage message) {
+        if (indexedProperties) {
+            message.indexProperties();
+        }
+        return message;
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.Future;
+import io.openmessaging.FutureListener;
+import io.openmessaging.OMSResponseStatus;
+import io.openmessaging.Promise;
+import io.openmessaging.exception.OMSRuntimeException;
+import io.openmessaging.exception.OMSTimeOutException;
+import io.openmessaging.timer.Timeout;
+import io.openmessaging.timer.Timer;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A lock-free implementation of {@link Promise}, used by OMS internally and by vendor drivers.
+ * <p>
+ * The whole state is a single field updated by CAS: either a stack of the pending listeners and waiting threads, or
+ * the outcome once completed. Completing the promise swaps the stack out, unparks the waiting threads and notifies the
+ * listeners in the order they were added. A waiting thread parks instead of blocking on a monitor, so neither
+ * completing nor adding a listener ever contends on a lock.
+ * <p>
+ * The listeners run on the listener executor if one is given, and otherwise on the thread completing the promise, or
+ * on the thread adding them once the promise is done. {@link #get()} rethrows the cause of a failed promise, wrapped
+ * in an {@link OMSRuntimeException} unless it is one already.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class DefaultPromise<V> implements Promise<V> {
+    private static final Logger LOGGER = Logger.getLogger(DefaultPromise.class.getName());
+
+    private static final Object NULL_VALUE = new Object();
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<DefaultPromise, Object> STATE =
+        AtomicReferenceFieldUpdater.newUpdater(DefaultPromise.class, Object.class, "state");
+
+    private final Executor listenerExecutor;
+
+    /**
+     * {@code null} or a {@link Node} while pending, then {@link #NULL_VALUE}, a {@link Failure} or the value itself.
+     */
+    private volatile Object state;
+
+    public DefaultPromise() {
+        this(null);
+    }
+
+    /**
+     * @param listenerExecutor the executor notifying the listeners, or {@code null} to notify them on the completing
+     * thread
+     */
+    public DefaultPromise(Executor listenerExecutor) {
+        this.listenerExecutor = listenerExecutor;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(new Failure(new CancellationException(), true));
+    }
+
+    @Override
+    public boolean isCancelled() {
+        Object current = state;
+        return current instanceof Failure && ((Failure) current).cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return isDone(state);
+    }
+
+    @Override
+    public V get() {
+        Object current = state;
+        if (!isDone(current)) {
+            current = await(0L);
+        }
+        return report(current);
+    }
+
+    @Override
+    public V get(long timeout) {
+        Object current = state;
+        if (!isDone(current) && (timeout <= 0 || !isDone(current = await(TimeUnit.MILLISECONDS.toNanos(timeout))))) {
+            throw new OMSTimeOutException(OMSResponseStatus.STATUS_1410.getStatusCode(),
+                "The promise is not completed in " + timeout + " ms");
+        }
+        return report(current);
+    }
+
+    @Override
+    public void addListener(FutureListener<V> listener) {
+        addListener(listener, listenerExecutor);
+    }
+
+    /**
+     * Adds the specified listener to this promise, to be notified by the specified executor.
+     *
+     * @param listener the listener
+     * @param executor the executor notifying the listener, or {@code null} to notify it on the completing thread
+     */
+    public void addListener(FutureListener<V> listener, Executor executor) {
+        if (listener == null) {
+            throw new NullPointerException("listener");
+        }
+        Node node = new Node(listener, executor);
+        for (Object current = state; ; current = state) {
+            if (isDone(current)) {
+                notifyListener(listener, executor);
+                return;
+            }
+            node.next = (Node) current;
+            if (STATE.compareAndSet(this, current, node)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fails this promise with an {@link OMSTimeOutException} unless it completes within the specified timeout. The
+     * timeout is cancelled as soon as this promise completes.
+     *
+     * @param timeout the timeout
+     * @param unit the unit of the timeout
+     * @param timer the timer scheduling the timeout
+     * @return this promise
+     */
+    public DefaultPromise<V> failAfter(final long timeout, final TimeUnit unit, Timer timer) {
+        if (isDone()) {
+            return this;
+        }
+        final Timeout handle = timer.newTimeout(new Runnable() {
+            @Override public void run() {
+                setFailure(new OMSTimeOutException(OMSResponseStatus.STATUS_1410.getStatusCode(),
+                    "The promise is not completed in " + unit.toMillis(timeout) + " ms"));
+            }
+        }, timeout, unit);
+        addListener(new FutureListener<V>() {
+            @Override public void operationComplete(Future<V> future) {
+                handle.cancel();
+            }
+        }, null);
+        return this;
+    }
+
+    @Override
+    public Throwable getThrowable() {
+        Object current = state;
+        return current instanceof Failure ? ((Failure) current).cause : null;
+    }
+
+    @Override
+    public boolean set(V value) {
+        return complete(value == null ? NULL_VALUE : value);
+    }
+
+    @Override
+    public boolean setFailure(Throwable cause) {
+        if (cause == null) {
+            throw new NullPointerException("cause");
+        }
+        return complete(new Failure(cause, false));
+    }
+
+    private static boolean isDone(Object state) {
+        return state != null && !(state instanceof Node);
+    }
+
+    private boolean complete(Object outcome) {
+        for (Object current = state; ; current = state) {
+            if (isDone(current)) {
+                return false;
+            }
+            if (STATE.compareAndSet(this, current, outcome)) {
+                release((Node) current);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Wakes the waiting threads up first, then notifies the listeners in the order they were added. The links of the
+     * stack are left untouched, since a timed-out waiter may still be unlinking itself from it.
+     */
+    @SuppressWarnings("unchecked")
+    private void release(Node stack) {
+        Node[] listeners = null;
+        int count = 0;
+        for (Node node = stack; node != null; node = node.next) {
+            if (node.listener == null) {
+                Thread waiter = node.waiter;
+                if (waiter != null) {
+                    LockSupport.unpark(waiter);
+                }
+            } else {
+                if (listeners == null) {
+                    listeners = new Node[4];
+                } else if (count == listeners.length) {
+                    listeners = Arrays.copyOf(listeners, count * 2);
+                }
+                listeners[count++] = node;
+            }
+        }
+        while (count > 0) {
+            Node node = listeners[--count];
+            notifyListener((FutureListener<V>) node.listener, node.executor);
+        }
+    }
+
+    /**
+     * Parks the current thread until this promise is done or the timeout elapses, {@code 0} meaning no timeout. An
+     * interrupt does not end the wait, but the interrupt status is restored before returning. A wait timing out
+     * unlinks its node, so polling a pending promise does not grow its stack.
+     */
+    private Object await(long timeoutNanos) {
+        Node node = new Node(Thread.currentThread());
+        long deadline = timeoutNanos == 0L ? 0L : System.nanoTime() + timeoutNanos;
+        boolean interrupted = false;
+        try {
+            for (Object current = state; ; current = state) {
+                if (isDone(current)) {
+                    return current;
+                }
+                node.next = (Node) current;
+                if (STATE.compareAndSet(this, current, node)) {
+                    break;
+                }
+            }
+            while (true) {
+                Object current = state;
+                if (isDone(current)) {
+                    return current;
+                }
+                if (deadline == 0L) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0L) {
+                        removeWaiter(node);
+                        return state;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Cancels the specified waiting node and unlinks every cancelled one from the stack, restarting whenever a
+     * concurrent removal or push changed the part of the stack being traversed.
+     */
+    private void removeWaiter(Node node) {
+        node.waiter = null;
+        retry:
+        while (true) {
+            Object current = state;
+            if (isDone(current)) {
+                return;
+            }
+            Node pred = null;
+            for (Node q = (Node) current; q != null; ) {
+                if (isDone(state)) {
+                    return;
+                }
+                Node next = q.next;
+                if (!q.isCancelled()) {
+                    pred = q;
+                } else if (pred != null) {
+                    pred.next = next;
+                    if (pred.isCancelled()) {
+                        continue retry;
+                    }
+                } else if (!STATE.compareAndSet(this, q, next)) {
+                    continue retry;
+                }
+                q = next;
+            }
+            return;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V report(Object outcome) {
+        if (outcome == NULL_VALUE) {
+            return null;
+        }
+        if (!(outcome instanceof Failure)) {
+            return (V) outcome;
+        }
+        Throwable cause = ((Failure) outcome).cause;
+        if (cause instanceof CancellationException) {
+            throw (CancellationException) cause;
+        }
+        if (cause instanceof OMSRuntimeException) {
+            throw (OMSRuntimeException) cause;
+        }
+        throw new OMSRuntimeException(OMSResponseStatus.STATUS_1500.getStatusCode(), cause);
+    }
+
+    private void notifyListener(final FutureListener<V> listener, Executor executor) {
+        if (executor == null) {
+            notifyListener(listener);
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override public void run() {
+                    notifyListener(listener);
+                }
+            });
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to notify the listener " + listener + " of " + this, e);
+        }
+    }
+
+    private void notifyListener(FutureListener<V> listener) {
+        try {
+            listener.operationComplete(this);
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "The listener " + listener + " of " + this + " threw an exception", t);
+        }
+    }
+
+    private static final class Failure {
+        private final Throwable cause;
+        private final boolean cancelled;
+
+        private Failure(Throwable cause, boolean cancelled) {
+            this.cause = cause;
+            this.cancelled = cancelled;
+        }
+    }
+
+    /**
+     * A pending listener, or a waiting thread if {@link #listener} is not set, cancelled once {@link #waiter} is
+     * cleared.
+     */
+    private static final class Node {
+        private final FutureListener<?> listener;
+        private final Executor executor;
+        private volatile Thread waiter;
+        private volatile Node next;
+
+        private Node(FutureListener<?> listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+            this.waiter = null;
+        }
+
+        private Node(Thread waiter) {
+            this.listener = null;
+            this.executor = null;
+            this.waiter = waiter;
+        }
+
+        private boolean isCancelled() {
+            return listener == null && waiter == null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.compression.CompressionCodec;
+import io.openmessaging.compression.CompressionCodecs;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@link CompressionCodec} producing the zlib format with {@link Deflater}, used by OMS internally.
+ * <p>
+ * Creating a {@code Deflater} allocates native memory, so every thread reuses its own {@code Deflater} and {@code
+ * Inflater} together with a scratch array for the buffers without an accessible array.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public final class DeflateCodec implements CompressionCodec {
+    private final short id;
+    private final int level;
+    private final ThreadLocal<State> states = new ThreadLocal<State>() {
+        @Override protected State initialValue() {
+            return new State(level);
+        }
+    };
+
+    /**
+     * Creates the built-in deflate codec, with the id {@link CompressionCodecs#DEFLATE}.
+     */
+    public DeflateCodec() {
+        this(CompressionCodecs.DEFLATE);
+    }
+
+    public DeflateCodec(short id) {
+        this(id, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public DeflateCodec(short id, int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION
+            && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Illegal compression level: " + level);
+        }
+        this.id = id;
+        this.level = level;
+    }
+
+    @Override
+    public short id() {
+        return id;
+    }
+
+    @Override
+    public String name() {
+        return "deflate";
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return length + (length >>> 12) + (length >>> 14) + (length >>> 25) + 13;
+    }
+
+    @Override
+    public void compress(ByteBuffer source, ByteBuffer target) {
+        State state = states.get();
+        Deflater deflater = state.deflater;
+        try {
+            setInput(state, deflater, source);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (!target.hasRemaining()) {
+                    throw new IllegalArgumentException("The target buffer is too small");
+                }
+                deflate(state, deflater, target);
+            }
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuffer source, ByteBuffer target) {
+        State state = states.get();
+        Inflater inflater = state.inflater;
+        try {
+            int consumed = source.remaining();
+            if (source.hasArray()) {
+                inflater.setInput(source.array(), source.arrayOffset() + source.position(), consumed);
+            } else {
+                byte[] input = state.input(consumed);
+                source.duplicate().get(input, 0, consumed);
+                inflater.setInput(input, 0, consumed);
+            }
+            while (!inflater.finished()) {
+                if (!target.hasRemaining()) {
+                    if (inflater.inflate(state.output(1), 0, 1) != 0 || !inflater.finished()) {
+                        throw WireFormat.malformed("the deflate stream exceeds the uncompressed length");
+                    }
+                    break;
+                }
+                if (inflate(state, inflater, target) == 0 && !inflater.finished()) {
+                    throw WireFormat.malformed("truncated deflate stream");
+                }
+            }
+            if (target.hasRemaining() || inflater.getRemaining() != 0) {
+                throw WireFormat.malformed("the deflate stream does not match the uncompressed length");
+            }
+            source.position(source.limit());
+        } catch (DataFormatException e) {
+            throw WireFormat.malformed(e.getMessage());
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    private static void setInput(State state, Deflater deflater, ByteBuffer source) {
+        int length = source.remaining();
+        if (source.hasArray()) {
+            deflater.setInput(source.array(), source.arrayOffset() + source.position(), length);
+        } else {
+            byte[] input = state.input(length);
+            source.duplicate().get(input, 0, length);
+            deflater.setInput(input, 0, length);
+        }
+        source.position(source.limit());
+    }
+
+    private static void deflate(State state, Deflater deflater, ByteBuffer target) {
+        if (target.hasArray()) {
+            int written = deflater.deflate(target.array(), target.arrayOffset() + target.position(), target.remaining());
+            target.position(target.position() + written);
+        } else {
+            byte[] output = state.output(target.remaining());
+            int written = deflater.deflate(output, 0, Math.min(output.length, target.remaining()));
+            target.put(output, 0, written);
+        }
+    }
+
+    private static int inflate(State state, Inflater inflater, ByteBuffer target) throws DataFormatException {
+        int written;
+        if (target.hasArray()) {
+            written = inflater.inflate(target.array(), target.arrayOffset() + target.position(), target.remaining());
+            target.position(target.position() + written);
+        } else {
+            byte[] output = state.output(target.remaining());
+            written = inflater.inflate(output, 0, Math.min(output.length, target.remaining()));
+            target.put(output, 0, written);
+        }
+        return written;
+    }
+
+    private static final class State {
+        private static final int MAX_SCRATCH = 64 * 1024;
+
+        private final Deflater deflater;
+        private final Inflater inflater = new Inflater();
+        private byte[] input = new byte[0];
+        private byte[] output = new byte[0];
+
+        private State(int level) {
+            this.deflater = new Deflater(level);
+        }
+
+        private byte[] input(int length) {
+            if (input.length < length) {
+                input = new byte[length];
+            }
+            return input;
+        }
+
+        private byte[] output(int length) {
+            if (output.length < length && output.length < MAX_SCRATCH) {
+                output = new byte[Math.min(Math.max(length, 256), MAX_SCRATCH)];
+            }
+            return output;
+        }
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.consumer.MessageReceipt;
+import io.openmessaging.extension.ExtensionHeader;
+import io.openmessaging.message.Header;
+import io.openmessaging.message.Message;
+import java.nio.ByteBuffer;
+
+import static io.openmessaging.internal.MessageCodec.BORN_HOST;
+import static io.openmessaging.internal.MessageCodec.BORN_TIMESTAMP;
+import static io.openmessaging.internal.MessageCodec.BODY_OFFSET;
+import static io.openmessaging.internal.MessageCodec.COMPRESSION;
+import static io.openmessaging.internal.MessageCodec.CORRELATION_ID;
+import static io.openmessaging.internal.MessageCodec.DELAY_TIME;
+import static io.openmessaging.internal.MessageCodec.DELIVERY_COUNT;
+import static io.openmessaging.internal.MessageCodec.DESTINATION;
+import static io.openmessaging.internal.MessageCodec.DURABILITY;
+import static io.openmessaging.internal.MessageCodec.EXPIRE_TIME;
+import static io.openmessaging.internal.MessageCodec.FIXED_SIZE;
+import static io.openmessaging.internal.MessageCodec.MESSAGE_ID;
+import static io.openmessaging.internal.MessageCodec.MESSAGE_KEY;
+import static io.openmessaging.internal.MessageCodec.OFFSET;
+import static io.openmessaging.internal.MessageCodec.PARTITION;
+import static io.openmessaging.internal.MessageCodec.PRIORITY;
+import static io.openmessaging.internal.MessageCodec.PROPERTIES_OFFSET;
+import static io.openmessaging.internal.MessageCodec.STORE_HOST;
+import static io.openmessaging.internal.MessageCodec.STORE_TIMESTAMP;
+import static io.openmessaging.internal.MessageCodec.STRING_COUNT;
+import static io.openmessaging.internal.MessageCodec.TRACE_ID;
+import static io.openmessaging.internal.MessageCodec.TRANSACTION_ID;
+
+/**
+ * A {@link Message} which reads its fields in place from the form written by {@link MessageCodec}, used by OMS
+ * internally.
+ * <p>
+ * Fixed-width header fields are single absolute reads of the buffer, string header fields are decoded and cached on
+ * first access, the properties are decoded as a whole on the first call of {@link #properties()}, and the body is a
+ * view of the buffer which is never copied. A filter that only looks at {@link Header#getDestination()} or at one
+ * property thus never pays for decoding the rest.
+ * <p>
+ * The message stays writable: the first call of a header setter copies that header out of the buffer, and setting the
+ * body replaces the view. As long as nothing has been modified, {@link MessageCodec#encode(Message, ByteBuffer)}
+ * forwards the original bytes without decoding them. Like the messages created by {@link DefaultMessageFactory}, a
+ * {@code FlyweightMessage} is not safe for concurrent use.
+ *
+ * @version OMS 1.0.0
+ * @see MessageCodec#decode(ByteBuffer)
+ * @since OMS 1.0.0
+ */
+public class FlyweightMessage implements Message {
+    private final ByteBuffer encoded;
+    private final FlyweightHeader header = new FlyweightHeader();
+    private FlyweightExtensionHeader extensionHeader;
+    private int[] stringOffsets;
+    private final String[] strings = new String[STRING_COUNT];
+    private int decodedStrings;
+    private KeyValue properties;
+    private DefaultMessage modifiedBody;
+    private MessageReceipt messageReceipt;
+
+    FlyweightMessage(ByteBuffer encoded) {
+        this.encoded = encoded;
+    }
+
+    /**
+     * Returns whether any header field, property or the body may differ from the encoded form.
+     *
+     * @return {@code true} if the message has been modified, or its properties accessed, since it was decoded
+     */
+    public boolean isModified() {
+        return header.materialized != null || extensionHeader != null && extensionHeader.materialized != null
+            || properties != null || modifiedBody != null;
+    }
+
+    /**
+     * Returns a view of the encoded form of this message, as it was decoded.
+     *
+     * @return a read-only buffer whose position is zero and limit is the encoded length
+     */
+    public ByteBuffer encoded() {
+        return encoded.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the encoded properties section if the properties have not been decoded, otherwise {@code null}.
+     */
+    ByteBuffer rawProperties() {
+        if (properties != null) {
+            return null;
+        }
+        ByteBuffer section = encoded.duplicate();
+        section.position(encoded.getInt(PROPERTIES_OFFSET));
+        section.limit(encoded.getInt(BODY_OFFSET));
+        return section;
+    }
+
+    @Override
+    public Header header() {
+        return header;
+    }
+
+    @Override
+    public ExtensionHeader extensionHeader() {
+        if (extensionHeader == null) {
+            extensionHeader = new FlyweightExtensionHeader();
+        }
+        return extensionHeader;
+    }
+
+    @Override
+    public KeyValue properties() {
+        if (properties == null) {
+            properties = KeyValueCodec.decode(rawProperties());
+        }
+        return properties;
+    }
+
+    @Override
+    public byte[] getData() {
+        if (modifiedBody != null) {
+            return modifiedBody.getData();
+        }
+        ByteBuffer body = body();
+        byte[] data = new byte[body.remaining()];
+        body.get(data);
+        return data;
+    }
+
+    @Override
+    public void setData(byte[] data) {
+        modifiedBody().setData(data);
+    }
+
+    @Override
+    public ByteBuffer getBody() {
+        return modifiedBody != null ? modifiedBody.getBody() : body().asReadOnlyBuffer();
+    }
+
+    @Override
+    public ByteBuffer[] getBodyBuffers() {
+        return modifiedBody != null ? modifiedBody.getBodyBuffers() : new ByteBuffer[] {getBody()};
+    }
+
+    @Override
+    public void setBody(ByteBuffer... body) {
+        modifiedBody().setBody(body);
+    }
+
+    @Override
+    public int getBodyLength() {
+        return modifiedBody != null ? modifiedBody.getBodyLength() : body().remaining();
+    }
+
+    @Override
+    public MessageReceipt getMessageReceipt() {
+        return messageReceipt;
+    }
+
+    public void setMessageReceipt(MessageReceipt messageReceipt) {
+        this.messageReceipt = messageReceipt;
+    }
+
+    private DefaultMessage modifiedBody() {
+        if (modifiedBody == null) {
+            modifiedBody = new DefaultMessage();
+        }
+        return modifiedBody;
+    }
+
+    private ByteBuffer body() {
+        ByteBuffer body = encoded.duplicate();
+        body.position(encoded.getInt(BODY_OFFSET));
+        int length = WireFormat.readLength(body);
+        body.limit(body.position() + length);
+        return body.slice();
+    }
+
+    private String string(int index) {
+        if ((decodedStrings & 1 << index) == 0) {
+            if (stringOffsets == null) {
+                stringOffsets = scanStrings();
+            }
+            ByteBuffer field = encoded.duplicate();
+            field.position(stringOffsets[index]);
+            int length = (int) WireFormat.readVarint(field);
+            strings[index] = length == 0 ? null : WireFormat.readUtf8(field, length - 1);
+            decodedStrings |= 1 << index;
+        }
+        return strings[index];
+    }
+
+    private int[] scanStrings() {
+        int[] offsets = new int[STRING_COUNT];
+        ByteBuffer scanner = encoded.duplicate();
+        scanner.position(FIXED_SIZE);
+        for (int i = 0; i < STRING_COUNT; i++) {
+            offsets[i] = scanner.position();
+            long length = WireFormat.readVarint(scanner);
+            if (length < 0 || length - 1 > scanner.remaining()) {
+                throw WireFormat.malformed("illegal string length " + length);
+            }
+            if (length > 0) {
+                scanner.position(scanner.position() + (int) length - 1);
+            }
+        }
+        return offsets;
+    }
+
+    private final class FlyweightHeader implements Header {
+        private DefaultHeader materialized;
+
+        private DefaultHeader materialize() {
+            if (materialized == null) {
+                DefaultHeader copy = new DefaultHeader();
+                copy.setDestination(getDestination()).setMessageId(getMessageId())
+                    .setBornTimestamp(getBornTimestamp()).setBornHost(getBornHost()).setPriority(getPriority())
+                    .setDurability(getDurability()).setDeliveryCount(getDeliveryCount())
+                    .setCompression(getCompression());
+                materialized = copy;
+            }
+            return materialized;
+        }
+
+        @Override
+        public Header setDestination(String destination) {
+            materialize().setDestination(destination);
+            return this;
+        }
+
+        @Override
+        public Header setMessageId(String messageId) {
+            materialize().setMessageId(messageId);
+            return this;
+        }
+
+        @Override
+        public Header setBornTimestamp(long bornTimestamp) {
+            materialize().setBornTimestamp(bornTimestamp);
+            return this;
+        }
+
+        @Override
+        public Header setBornHost(String bornHost) {
+            materialize().setBornHost(bornHost);
+            return this;
+        }
+
+        @Override
+        public Header setPriority(short priority) {
+            materialize().setPriority(priority);
+            return this;
+        }
+
+        @Override
+        public Header setDurability(short durability) {
+            materialize().setDurability(durability);
+            return this;
+        }
+
+        @Override
+        public Header setDeliveryCount(int deliveryCount) {
+            materialize().setDeliveryCount(deliveryCount);
+            return this;
+        }
+
+        @Override
+        public Header setCompression(short compression) {
+            materialize().setCompression(compression);
+            return this;
+        }
+
+        @Override
+        public String getDestination() {
+            return materialized != null ? materialized.getDestination() : string(DESTINATION);
+        }
+
+        @Override
+        public String getMessageId() {
+            return materialized != null ? materialized.getMessageId() : string(MESSAGE_ID);
+        }
+
+        @Override
+        public long getBornTimestamp() {
+            return materialized != null ? materialized.getBornTimestamp() : encoded.getLong(BORN_TIMESTAMP);
+        }
+
+        @Override
+        public String getBornHost() {
+            return materialized != null ? materialized.getBornHost() : string(BORN_HOST);
+        }
+
+        @Override
+        public short getPriority() {
+            return materialized != null ? materialized.getPriority() : encoded.getShort(PRIORITY);
+        }
+
+        @Override
+        public short getDurability() {
+            return materialized != null ? materialized.getDurability() : encoded.getShort(DURABILITY);
+        }
+
+        @Override
+        public int getDeliveryCount() {
+            return materialized != null ? materialized.getDeliveryCount() : encoded.getInt(DELIVERY_COUNT);
+        }
+
+        @Override
+        public short getCompression() {
+            return materialized != null ? materialized.getCompression() : encoded.getShort(COMPRESSION);
+        }
+    }
+
+    private final class FlyweightExtensionHeader implements ExtensionHeader {
+        private DefaultExtensionHeader materialized;
+
+        private DefaultExtensionHeader materialize() {
+            if (materialized == null) {
+                DefaultExtensionHeader copy = new DefaultExtensionHeader();
+                copy.setPartition(getPartiton()).setOffset(getOffset()).setCorrelationId(getCorrelationId())
+                    .setTransactionId(getTransactionId()).setStoreTimestamp(getStoreTimestamp())
+                    .setStoreHost(getStoreHost()).setMessageKey(getMessageKey()).setTraceId(getTraceId())
+                    .setDelayTime(getDelayTime()).setExpireTime(getExpireTime());
+                materialized = copy;
+            }
+            return materialized;
+        }
+
+        @Override
+        public ExtensionHeader setPartition(int partition) {
+            materialize().setPartition(partition);
+            return this;
+        }
+
+        @Override
+        public ExtensionHeader setOffset(long offset) {
+            materialize().setOffset(offset);
+            return this;
+        }
+
+        @Override
+        public ExtensionHeader setCorrelationId(String correlationId) {
+            materialize().setCorrelationId(correlationId);
+            return this;
+        }
+
+        @Override
+        public ExtensionHeader setTransactionId(String transactionId) {
+            materialize().setTransactionId(transactionId);
+            return this;
+        }
+
+        @Override
+        public ExtensionHeader setStoreTimestamp(long storeTimestamp) {
+            materialize().setStoreTimestamp(storeTimestamp);
+            return this;
+        }
+
+        @Override
+        public ExtensionHeader setStoreHost(String storeHost) {
+            materialize().setStoreHost(storeHost);
+            return this;
+        }
+
+        @Override
+        public ExtensionHeader setMessageKey(String messageKey) {
+            materialize().setMessageKey(messageKey);
+            return this;
+        }
+
+        @Override
+        public ExtensionHeader setTraceId(String traceId) {
+            materialize().setTraceId(traceId);
+            return this;
+        }
+
+        @Override
+        public ExtensionHeader setDelayTime(long delayTime) {
+            materialize().setDelayTime(delayTime);
+            return this;
+        }
+
+        @Override
+        public ExtensionHeader setExpireTime(long expireTime) {
+            materialize().setExpireTime(expireTime);
+            return this;
+        }
+
+        @Override
+        public int getPartiton() {
+            return materialized != null ? materialized.getPartiton() : encoded.getInt(PARTITION);
+        }
+
+        @Override
+        public long getOffset() {
+            return materialized != null ? materialized.getOffset() : encoded.getLong(OFFSET);
+        }
+
+        @Override
+        public String getCorrelationId() {
+            return materialized != null ? materialized.getCorrelationId() : string(CORRELATION_ID);
+        }
+
+        @Override
+        public String getTransactionId() {
+            return materialized != null ? materialized.getTransactionId() : string(TRANSACTION_ID);
+        }
+
+        @Override
+        public long getStoreTimestamp() {
+            return materialized != null ? materialized.getStoreTimestamp() : encoded.getLong(STORE_TIMESTAMP);
+        }
+
+        @Override
+        public String getStoreHost() {
+            return materialized != null ? materialized.getStoreHost() : string(STORE_HOST);
+        }
+
+        @Override
+        public long getDelayTime() {
+            return materialized != null ? materialized.getDelayTime() : encoded.getLong(DELAY_TIME);
+        }
+
+        @Override
+        public long getExpireTime() {
+            return materialized != null ? materialized.getExpireTime() : encoded.getLong(EXPIRE_TIME);
+        }
+
+        @Override
+        public String getMessageKey() {
+            return materialized != null ? materialized.getMessageKey() : string(MESSAGE_KEY);
+        }
+
+        @Override
+        public String getTraceId() {
+            return materialized != null ? materialized.getTraceId() : string(TRACE_ID);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.Future;
+import io.openmessaging.FutureListener;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link CompletableFuture} completed by a {@link Future} through a listener, used by OMS internally.
+ * <p>
+ * Cancelling this {@code CompletableFuture} cancels the source future, and a cancelled source cancels this {@code
+ * CompletableFuture}.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class FutureCompletionStage<V> extends CompletableFuture<V> implements FutureListener<V> {
+    private final Future<V> source;
+
+    public FutureCompletionStage(Future<V> source) {
+        this.source = source;
+        source.addListener(this);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            source.cancel(mayInterruptIfRunning);
+        }
+        return cancelled;
+    }
+
+    @Override
+    public void operationComplete(Future<V> future) {
+        if (future.isCancelled()) {
+            super.cancel(false);
+            return;
+        }
+        Throwable cause = future.getThrowable();
+        if (cause != null) {
+            completeExceptionally(cause);
+        } else {
+            complete(future.get());
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.timer.Timeout;
+import io.openmessaging.timer.Timer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link Timer} based on a hashed wheel, used by OMS internally and by vendor drivers.
+ * <p>
+ * The wheel is an array of buckets, each holding the timeouts expiring in the same tick modulo the wheel length. A
+ * single worker thread advances one bucket per tick and runs the timeouts of the bucket whose round has come, so
+ * scheduling and cancelling a timeout are O(1) and lock-free: a new timeout is queued until the next tick and a
+ * cancelled one is unlinked by the worker. The price is the precision, a task runs up to one tick late.
+ * <p>
+ * The worker thread is a daemon thread, started by the first timeout.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class HashedWheelTimer implements Timer {
+    private static final Logger LOGGER = Logger.getLogger(HashedWheelTimer.class.getName());
+
+    private static final int WORKER_INIT = 0;
+    private static final int WORKER_STARTED = 1;
+    private static final int WORKER_SHUTDOWN = 2;
+
+    /**
+     * The maximum number of new timeouts moved into the wheel per tick, so a burst cannot starve the expiration.
+     */
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<WheelTimeout> pending = new ConcurrentLinkedQueue<WheelTimeout>();
+    private final Queue<WheelTimeout> cancelled = new ConcurrentLinkedQueue<WheelTimeout>();
+    private final AtomicInteger workerState = new AtomicInteger(WORKER_INIT);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final Thread worker;
+    private volatile long startTime;
+
+    public HashedWheelTimer() {
+        this("OMS-HashedWheelTimer", 10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * @param threadName the name of the worker thread
+     * @param tickDuration the duration of a tick
+     * @param unit the unit of the tick duration
+     * @param ticksPerWheel the number of buckets, rounded up to a power of two
+     */
+    public HashedWheelTimer(String threadName, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("Illegal wheel: " + ticksPerWheel + " ticks of " + tickDuration
+                + " " + unit);
+        }
+        this.tickNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+        int length = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.wheel = new Bucket[Math.max(length, 1)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.worker = new Thread(new Worker(), threadName);
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * Returns the timer shared by the whole process, with a tick of 10 milliseconds. Its {@link #stop()} throws an
+     * {@link UnsupportedOperationException}.
+     *
+     * @return the shared timer
+     */
+    public static HashedWheelTimer shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    @Override
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        start();
+        long deadline = System.nanoTime() + Math.max(unit.toNanos(delay), 0L) - startTime;
+        WheelTimeout timeout = new WheelTimeout(task, deadline < 0 ? Long.MAX_VALUE : deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    @Override
+    public void stop() {
+        if (workerState.getAndSet(WORKER_SHUTDOWN) == WORKER_STARTED && Thread.currentThread() != worker) {
+            boolean interrupted = false;
+            while (worker.isAlive()) {
+                worker.interrupt();
+                try {
+                    worker.join(100);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void start() {
+        switch (workerState.get()) {
+            case WORKER_INIT:
+                if (workerState.compareAndSet(WORKER_INIT, WORKER_STARTED)) {
+                    worker.start();
+                }
+                break;
+            case WORKER_STARTED:
+                break;
+            default:
+                throw new IllegalStateException("The timer is stopped");
+        }
+        boolean interrupted = false;
+        while (startTime == 0) {
+            try {
+                started.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private long tick;
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            startTime = now == 0 ? 1 : now;
+            started.countDown();
+            while (workerState.get() == WORKER_STARTED) {
+                if (waitForNextTick() > 0) {
+                    removeCancelled();
+                    transferPending();
+                    wheel[(int) (tick & mask)].expire();
+                    tick++;
+                }
+            }
+            for (Bucket bucket : wheel) {
+                bucket.clear();
+            }
+            for (WheelTimeout timeout = pending.poll(); timeout != null; timeout = pending.poll()) {
+                timeout.cancel();
+            }
+            cancelled.clear();
+        }
+
+        /**
+         * Sleeps until the next tick, and returns its time relative to the start time, or a negative value if the
+         * timer is stopped.
+         */
+        private long waitForNextTick() {
+            long deadline = tickNanos * (tick + 1);
+            while (true) {
+                long current = System.nanoTime() - startTime;
+                long sleepMillis = (deadline - current + 999999) / 1000000;
+                if (sleepMillis <= 0) {
+                    return current;
+                }
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    if (workerState.get() == WORKER_SHUTDOWN) {
+                        return Long.MIN_VALUE;
+                    }
+                }
+            }
+        }
+
+        private void transferPending() {
+            for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+                WheelTimeout timeout = pending.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (timeout.state != WheelTimeout.ST_INIT) {
+                    continue;
+                }
+                long calculated = timeout.deadline / tickNanos;
+                timeout.remainingRounds = (calculated - tick) / wheel.length;
+                long ticks = Math.max(calculated, tick);
+                wheel[(int) (ticks & mask)].add(timeout);
+            }
+        }
+
+        private void removeCancelled() {
+            for (WheelTimeout timeout = cancelled.poll(); timeout != null; timeout = cancelled.poll()) {
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                }
+            }
+        }
+    }
+
+    /**
+     * A doubly linked list of timeouts, only accessed by the worker thread.
+     */
+    private static final class Bucket {
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire() {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(WheelTimeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            WheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void clear() {
+            while (head != null) {
+                WheelTimeout timeout = head;
+                remove(timeout);
+                timeout.cancel();
+            }
+        }
+    }
+
+    private final class WheelTimeout implements Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        volatile int state = ST_INIT;
+
+        // Only accessed by the worker thread.
+        private long remainingRounds;
+        private Bucket bucket;
+        private WheelTimeout prev;
+        private WheelTimeout next;
+
+        private WheelTimeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            if (workerState.get() == WORKER_STARTED) {
+                cancelled.add(this);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "The timer task " + task + " threw an exception", t);
+            }
+        }
+    }
+
+    private static final class SharedHolder {
+        private static final HashedWheelTimer INSTANCE = new HashedWheelTimer("OMS-SharedTimer", 10,
+            TimeUnit.MILLISECONDS, 512) {
+            @Override public void stop() {
+                throw new UnsupportedOperationException("The shared timer cannot be stopped");
+            }
+        };
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.ImmutableKeyValue;
+import io.openmessaging.KeyValue;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A thread-confined implementation of the interface {@link KeyValue} which stores the keys interned by {@link
+ * KeyRegistry} in arrays indexed by their ids, used by OMS internally.
+ * <p>
+ * A {@code String} key costs one probe of the registry table and then a plain array access. Callers that resolve the
+ * id once, usually into a constant, can use the id-based accessors and skip hashing altogether. Keys that are not
+ * interned are kept in a {@link CompactKeyValue} which is only allocated when such a key is put. The arrays start
+ * empty and grow up to the highest id put, so an instance holding a few header fields stays small whatever the number
+ * of interned keys.
+ * <p>
+ * Like {@link CompactKeyValue}, an instance of {@code IndexedKeyValue} is <strong>not</strong> safe for concurrent
+ * use.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class IndexedKeyValue implements KeyValue, TypedValues.Source {
+    private static final byte[] EMPTY_TYPES = new byte[0];
+    private static final long[] EMPTY_BITS = new long[0];
+    private static final String[] EMPTY_TEXTS = new String[0];
+
+    private byte[] types = EMPTY_TYPES;
+    private long[] bits = EMPTY_BITS;
+    private String[] texts = EMPTY_TEXTS;
+    private int indexedSize;
+    private CompactKeyValue overflow;
+
+    @Override
+    public KeyValue put(String key, boolean value) {
+        return put(key, TypedValues.BOOLEAN, TypedValues.bits(value), null);
+    }
+
+    @Override
+    public KeyValue put(String key, short value) {
+        return put(key, TypedValues.SHORT, value, null);
+    }
+
+    @Override
+    public KeyValue put(String key, int value) {
+        return put(key, TypedValues.INT, value, null);
+    }
+
+    @Override
+    public KeyValue put(String key, long value) {
+        return put(key, TypedValues.LONG, value, null);
+    }
+
+    @Override
+    public KeyValue put(String key, double value) {
+        return put(key, TypedValues.DOUBLE, TypedValues.bits(value), null);
+    }
+
+    @Override
+    public KeyValue put(String key, String value) {
+        return put(key, TypedValues.STRING, 0L, String.valueOf(value));
+    }
+
+    /**
+     * Inserts or replaces {@code int} value for the key interned with the specified id.
+     *
+     * @param keyId the id returned by {@link KeyRegistry#register(String)}
+     * @param value the value corresponding to the key
+     * @return this {@code KeyValue}
+     */
+    public IndexedKeyValue put(int keyId, int value) {
+        set(keyId, TypedValues.INT, value, null);
+        return this;
+    }
+
+    /**
+     * Inserts or replaces {@code long} value for the key interned with the specified id.
+     *
+     * @param keyId the id returned by {@link KeyRegistry#register(String)}
+     * @param value the value corresponding to the key
+     * @return this {@code KeyValue}
+     */
+    public IndexedKeyValue put(int keyId, long value) {
+        set(keyId, TypedValues.LONG, value, null);
+        return this;
+    }
+
+    /**
+     * Inserts or replaces {@code String} value for the key interned with the specified id.
+     *
+     * @param keyId the id returned by {@link KeyRegistry#register(String)}
+     * @param value the value corresponding to the key
+     * @return this {@code KeyValue}
+     */
+    public IndexedKeyValue put(int keyId, String value) {
+        set(keyId, TypedValues.STRING, 0L, String.valueOf(value));
+        return this;
+    }
+
+    @Override
+    public boolean getBoolean(String key) {
+        return getBoolean(key, false);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        int id = indexOf(key);
+        if (id >= 0) {
+            return TypedValues.toBoolean(types[id], bits[id], texts[id]);
+        }
+        return overflow == null ? defaultValue : overflow.getBoolean(key, defaultValue);
+    }
+
+    @Override
+    public short getShort(String key) {
+        return getShort(key, (short) 0);
+    }
+
+    @Override
+    public short getShort(String key, short defaultValue) {
+        int id = indexOf(key);
+        if (id >= 0) {
+            return TypedValues.toShort(types[id], bits[id], texts[id]);
+        }
+        return overflow == null ? defaultValue : overflow.getShort(key, defaultValue);
+    }
+
+    @Override
+    public int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    @Override
+    public int getInt(String key, int defaultValue) {
+        int id = indexOf(key);
+        if (id >= 0) {
+            return TypedValues.toInt(types[id], bits[id], texts[id]);
+        }
+        return overflow == null ? defaultValue : overflow.getInt(key, defaultValue);
+    }
+
+    /**
+     * Returns the {@code int} value of the key interned with the specified id.
+     *
+     * @param keyId the id returned by {@link KeyRegistry#register(String)}
+     * @param defaultValue a default value
+     * @return the value, or the default value if the key is absent
+     */
+    public int getInt(int keyId, int defaultValue) {
+        return isSet(keyId) ? TypedValues.toInt(types[keyId], bits[keyId], texts[keyId]) :
+            overflow == null ? defaultValue : overflow.getInt(KeyRegistry.keyOf(keyId), defaultValue);
+    }
+
+    @Override
+    public long getLong(String key) {
+        return getLong(key, 0L);
+    }
+
+    @Override
+    public long getLong(String key, long defaultValue) {
+        int id = indexOf(key);
+        if (id >= 0) {
+            return TypedValues.toLong(types[id], bits[id], texts[id]);
+        }
+        return overflow == null ? defaultValue : overflow.getLong(key, defaultValue);
+    }
+
+    /**
+     * Returns the {@code long} value of the key interned with the specified id.
+     *
+     * @param keyId the id returned by {@link KeyRegistry#register(String)}
+     * @param defaultValue a default value
+     * @return the value, or the default value if the key is absent
+     */
+    public long getLong(int keyId, long defaultValue) {
+        return isSet(keyId) ? TypedValues.toLong(types[keyId], bits[keyId], texts[keyId]) :
+            overflow == null ? defaultValue : overflow.getLong(KeyRegistry.keyOf(keyId), defaultValue);
+    }
+
+    @Override
+    public double getDouble(String key) {
+        return getDouble(key, 0D);
+    }
+
+    @Override
+    public double getDouble(String key, double defaultValue) {
+        int id = indexOf(key);
+        if (id >= 0) {
+            return TypedValues.toDouble(types[id], bits[id], texts[id]);
+        }
+        return overflow == null ? defaultValue : overflow.getDouble(key, defaultValue);
+    }
+
+    @Override
+    public String getString(String key) {
+        return getString(key, null);
+    }
+
+    @Override
+    public String getString(String key, String defaultValue) {
+        int id = indexOf(key);
+        if (id >= 0) {
+            return TypedValues.toString(types[id], bits[id], texts[id]);
+        }
+        return overflow == null ? defaultValue : overflow.getString(key, defaultValue);
+    }
+
+    /**
+     * Returns the {@code String} value of the key interned with the specified id.
+     *
+     * @param keyId the id returned by {@link KeyRegistry#register(String)}
+     * @param defaultValue a default value
+     * @return the value, or the default value if the key is absent
+     */
+    public String getString(int keyId, String defaultValue) {
+        return isSet(keyId) ? TypedValues.toString(types[keyId], bits[keyId], texts[keyId]) :
+            overflow == null ? defaultValue : overflow.getString(KeyRegistry.keyOf(keyId), defaultValue);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new KeySet();
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return indexOf(key) >= 0 || overflow != null && overflow.containsKey(key);
+    }
+
+    /**
+     * Returns an immutable snapshot of the current entries.
+     *
+     * @return the frozen copy of this {@code KeyValue}
+     */
+    public ImmutableKeyValue freeze() {
+        return LayeredKeyValue.copyOf(this);
+    }
+
+    @Override
+    public void forEach(TypedValues.Visitor visitor) {
+        for (int id = 0; id < types.length; id++) {
+            if (types[id] != 0) {
+                visitor.visit(KeyRegistry.keyOf(id), types[id], bits[id], texts[id]);
+            }
+        }
+        if (overflow != null) {
+            overflow.forEach(visitor);
+        }
+    }
+
+    /**
+     * Removes all the entries, keeping the allocated arrays for reuse.
+     */
+    public void clear() {
+        Arrays.fill(types, (byte) 0);
+        Arrays.fill(texts, null);
+        indexedSize = 0;
+        if (overflow != null) {
+            overflow.clear();
+        }
+    }
+
+    private boolean isSet(int keyId) {
+        return keyId < types.length && types[keyId] != 0;
+    }
+
+    /**
+     * Returns the id of the key if it is interned and present in the indexed part, otherwise -1.
+     */
+    private int indexOf(String key) {
+        int id = KeyRegistry.idOf(key);
+        return id >= 0 && isSet(id) ? id : -1;
+    }
+
+    private KeyValue put(String key, byte type, long value, String text) {
+        int id = KeyRegistry.idOf(key);
+        if (id >= 0) {
+            if (overflow != null) {
+                // The key may have been put before it was interned.
+                overflow.keySet().remove(key);
+            }
+            set(id, type, value, text);
+            return this;
+        }
+        if (overflow == null) {
+            overflow = new CompactKeyValue();
+        }
+        switch (type) {
+            case TypedValues.BOOLEAN:
+                overflow.put(key, value != 0);
+                break;
+            case TypedValues.SHORT:
+                overflow.put(key, (short) value);
+                break;
+            case TypedValues.INT:
+                overflow.put(key, (int) value);
+                break;
+            case TypedValues.LONG:
+                overflow.put(key, value);
+                break;
+            case TypedValues.DOUBLE:
+                overflow.put(key, Double.longBitsToDouble(value));
+                break;
+            default:
+                overflow.put(key, text);
+                break;
+        }
+        return this;
+    }
+
+    private void set(int keyId, byte type, long value, String text) {
+        if (keyId < 0) {
+            throw new IllegalArgumentException("Illegal key id: " + keyId);
+        }
+        if (keyId >= types.length) {
+            int capacity = Math.max(keyId + 1, Math.min(types.length * 2, KeyRegistry.size()));
+            types = Arrays.copyOf(types, capacity);
+            bits = Arrays.copyOf(bits, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+        }
+        if (types[keyId] == 0) {
+            indexedSize++;
+        }
+        types[keyId] = type;
+        bits[keyId] = value;
+        texts[keyId] = text;
+    }
+
+    private void unset(int keyId) {
+        types[keyId] = 0;
+        texts[keyId] = null;
+        indexedSize--;
+    }
+
+    private final class KeySet extends AbstractSet<String> {
+        @Override
+        public Iterator<String> iterator() {
+            final Iterator<String> overflowIterator = overflow == null ? null : overflow.keySet().iterator();
+            return new Iterator<String>() {
+                private int next = advance(0);
+                private int lastReturned = -1;
+                private boolean inOverflow;
+
+                private int advance(int from) {
+                    int id = from;
+                    while (id < types.length && types[id] == 0) {
+                        id++;
+                    }
+                    return id;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < types.length || overflowIterator != null && overflowIterator.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    if (next < types.length) {
+                        lastReturned = next;
+                        next = advance(next + 1);
+                        return KeyRegistry.keyOf(lastReturned);
+                    }
+                    if (overflowIterator == null) {
+                        throw new NoSuchElementException();
+                    }
+                    inOverflow = true;
+                    return overflowIterator.next();
+                }
+
+                @Override
+                public void remove() {
+                    if (inOverflow) {
+                        overflowIterator.remove();
+                        return;
+                    }
+                    if (lastReturned < 0) {
+                        throw new IllegalStateException();
+                    }
+                    unset(lastReturned);
+                    lastReturned = -1;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return indexedSize + (overflow == null ? 0 : overflow.size());
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String && containsKey((String) o);
+        }
+    }
+}
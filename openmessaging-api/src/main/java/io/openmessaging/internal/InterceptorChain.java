@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.interceptor.Context;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The base of the interceptor chains, used by OMS internally.
+ * <p>
+ * The registered interceptors are compiled on every change into a single interceptor, {@code null} when there is none,
+ * the interceptor itself when there is one, or a composite looping over an array otherwise, and published through a
+ * volatile field. Dispatching a message reads that field once, so it neither locks nor iterates a list, and the
+ * post-processing sees the same snapshot as the pre-processing even if the chain changed in between.
+ * <p>
+ * The {@link Context} of an interception is an {@link Invocation} taken from a one-slot pool of the current thread and
+ * given back when the interception ends, possibly on another thread. Its attributes are only allocated when an
+ * interceptor reads them, and are cleared and kept for the next interception otherwise, so a steady flow of messages
+ * dispatches without allocating.
+ *
+ * @param <I> the interceptor type
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public abstract class InterceptorChain<I> {
+    private static final Invocation NONE = new Invocation(null);
+
+    private final List<I> interceptors = new ArrayList<I>();
+    private volatile I compiled;
+    private final ThreadLocal<Invocation[]> slots = new ThreadLocal<Invocation[]>() {
+        @Override
+        protected Invocation[] initialValue() {
+            return new Invocation[1];
+        }
+    };
+
+    /**
+     * Appends the specified interceptor to this chain.
+     *
+     * @param interceptor the interceptor to append
+     */
+    public synchronized void addInterceptor(I interceptor) {
+        if (interceptor == null) {
+            throw new NullPointerException("interceptor");
+        }
+        interceptors.add(interceptor);
+        compiled = compile(new ArrayList<I>(interceptors));
+    }
+
+    /**
+     * Removes the specified interceptor from this chain.
+     *
+     * @param interceptor the interceptor to remove
+     * @return {@code true} if the interceptor was in this chain
+     */
+    public synchronized boolean removeInterceptor(I interceptor) {
+        if (!interceptors.remove(interceptor)) {
+            return false;
+        }
+        compiled = compile(new ArrayList<I>(interceptors));
+        return true;
+    }
+
+    /**
+     * Returns the number of interceptors in this chain.
+     *
+     * @return the number of interceptors
+     */
+    public synchronized int size() {
+        return interceptors.size();
+    }
+
+    /**
+     * Gives back the specified invocation without post-processing, when the intercepted operation failed.
+     *
+     * @param invocation the invocation returned by the pre-processing
+     */
+    public void release(Invocation invocation) {
+        if (invocation == NONE || !invocation.inUse) {
+            return;
+        }
+        invocation.inUse = false;
+        invocation.interceptor = null;
+        if (invocation.attributes != null) {
+            invocation.attributes.clear();
+        }
+        Invocation[] slot = slots.get();
+        if (slot[0] == null) {
+            slot[0] = invocation;
+        }
+    }
+
+    /**
+     * Compiles the specified interceptors into one.
+     *
+     * @param interceptors the interceptors in order, never modified afterwards
+     * @return {@code null} if there is no interceptor, the only interceptor, or a composite interceptor
+     */
+    protected abstract I compile(List<I> interceptors);
+
+    /**
+     * Returns an invocation over the current compiled interceptor, which is {@code null} if the chain is empty.
+     *
+     * @return the invocation
+     */
+    protected final Invocation acquire() {
+        I interceptor = compiled;
+        if (interceptor == null) {
+            return NONE;
+        }
+        Invocation[] slot = slots.get();
+        Invocation invocation = slot[0];
+        if (invocation == null) {
+            invocation = new Invocation(interceptor);
+        } else {
+            slot[0] = null;
+            invocation.interceptor = interceptor;
+        }
+        invocation.inUse = true;
+        return invocation;
+    }
+
+    /**
+     * Returns the compiled interceptor the specified invocation was acquired with.
+     *
+     * @param invocation the invocation
+     * @return the compiled interceptor, {@code null} if the chain was empty
+     */
+    @SuppressWarnings("unchecked")
+    protected final I interceptor(Invocation invocation) {
+        return (I) invocation.interceptor;
+    }
+
+    /**
+     * The {@link Context} of one interception, which must not be used once given back to its chain.
+     * <p>
+     * An invocation is confined to the thread intercepting, the pre-processing and the post-processing may run on
+     * different threads if they are ordered by a happens-before edge, such as the completion of a send future.
+     */
+    public static final class Invocation implements Context {
+        private Object interceptor;
+        private CompactKeyValue attributes;
+        private boolean inUse;
+
+        private Invocation(Object interceptor) {
+            this.interceptor = interceptor;
+        }
+
+        @Override
+        public KeyValue attributes() {
+            if (this == NONE) {
+                return new CompactKeyValue();
+            }
+            if (attributes == null) {
+                attributes = new CompactKeyValue();
+            }
+            return attributes;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.OMSResponseStatus;
+import io.openmessaging.consumer.DispatchingMessageListener;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.consumer.OrderingKey;
+import io.openmessaging.message.Message;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link DispatchingMessageListener} processing the messages of different keys in parallel, and the messages of the
+ * same key in their order of reception, used by OMS internally.
+ * <p>
+ * Each ordering key with pending messages owns a serial queue, drained by a single task of the shared executor at a
+ * time. A task processes at most {@link #DRAIN_BATCH} messages before yielding the executor to the other keys, so a
+ * hot key cannot starve the others. The consume thread blocks while the queue of its key holds {@link
+ * OMSBuiltinKeys#CONSUMER_DISPATCH_KEY_MESSAGES} messages, which pushes back on the consumer. The queue of a key is
+ * discarded as soon as it is drained, so the memory held does not grow with the number of keys ever seen.
+ * <p>
+ * The messages without a key are processed in no particular order, each by its own task. They are not bounded by any
+ * key queue, so the consume thread also blocks while {@link OMSBuiltinKeys#CONSUMER_DISPATCH_MAX_PENDING} messages,
+ * with or without a key, are pending.
+ * <p>
+ * With {@link OMSBuiltinKeys#CONSUMER_DISPATCH_VIRTUAL_THREADS} set, the keys are drained on virtual threads when the
+ * running JDK supports them, so listeners blocking on I/O do not hold platform threads.
+ * <p>
+ * An exception thrown by the listener is logged and the processing goes on with the next message of the key, the
+ * message is not acknowledged unless the listener did it.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class KeyOrderedDispatcher implements DispatchingMessageListener {
+    public static final int DEFAULT_KEY_MESSAGES = 1000;
+    public static final int DEFAULT_MAX_PENDING = 10000;
+    public static final int DRAIN_BATCH = 16;
+
+    private static final Logger LOGGER = Logger.getLogger(KeyOrderedDispatcher.class.getName());
+
+    private final MessageListener listener;
+    private final OrderingKey orderingKey;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final int keyMessages;
+    private final Semaphore permits;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Object, KeyQueue> queues = new HashMap<Object, KeyQueue>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    public KeyOrderedDispatcher(MessageListener listener, OrderingKey orderingKey, KeyValue attributes) {
+        this(listener, orderingKey, newExecutor(attributes), true,
+            attributes.getInt(OMSBuiltinKeys.CONSUMER_DISPATCH_KEY_MESSAGES, DEFAULT_KEY_MESSAGES),
+            attributes.getInt(OMSBuiltinKeys.CONSUMER_DISPATCH_MAX_PENDING, DEFAULT_MAX_PENDING));
+    }
+
+    public KeyOrderedDispatcher(MessageListener listener, OrderingKey orderingKey, Executor executor,
+        int keyMessages, int maxPending) {
+        this(listener, orderingKey, executor, false, keyMessages, maxPending);
+    }
+
+    private KeyOrderedDispatcher(MessageListener listener, OrderingKey orderingKey, Executor executor, boolean owned,
+        int keyMessages, int maxPending) {
+        if (keyMessages <= 0 || maxPending <= 0) {
+            throw new IllegalArgumentException("Illegal dispatch settings: " + keyMessages
+                + " queued messages per key, " + maxPending + " pending messages");
+        }
+        this.listener = listener;
+        this.orderingKey = orderingKey;
+        this.executor = executor;
+        this.ownedExecutor = owned ? (ExecutorService) executor : null;
+        this.keyMessages = keyMessages;
+        this.permits = new Semaphore(maxPending);
+    }
+
+    private static ExecutorService newExecutor(KeyValue attributes) {
+        if (attributes.getBoolean(OMSBuiltinKeys.CONSUMER_DISPATCH_VIRTUAL_THREADS, false)) {
+            ExecutorService executor = VirtualThreads.newExecutor();
+            if (executor != null) {
+                return executor;
+            }
+        }
+        int threads = attributes.getInt(OMSBuiltinKeys.CONSUMER_DISPATCH_THREADS,
+            Runtime.getRuntime().availableProcessors());
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Illegal number of dispatch threads: " + threads);
+        }
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger();
+
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "OMS-KeyOrderedDispatcher-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void onReceived(Message message, Context context) {
+        if (shutdown) {
+            throw OMSResponseStatus.generateException(OMSResponseStatus.STATUS_10007, toString());
+        }
+        Object key = orderingKey.of(message);
+        permits.acquireUninterruptibly();
+        KeyQueue queue;
+        boolean schedule;
+        lock.lock();
+        try {
+            if (key == null) {
+                queue = new KeyQueue(null);
+            } else {
+                // The queue may be drained and discarded while waiting, so it is looked up again on each wake-up.
+                while ((queue = queues.get(key)) != null && queue.deliveries.size() >= keyMessages) {
+                    queue.notFull.awaitUninterruptibly();
+                }
+                if (queue == null) {
+                    queue = new KeyQueue(key);
+                    queues.put(key, queue);
+                }
+            }
+            queue.deliveries.add(new Delivery(message, context));
+            pending.incrementAndGet();
+            schedule = !queue.scheduled;
+            queue.scheduled = true;
+        } finally {
+            lock.unlock();
+        }
+        if (schedule) {
+            schedule(queue);
+        }
+    }
+
+    @Override
+    public int pendingMessages() {
+        return pending.get();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private void schedule(KeyQueue queue) {
+        try {
+            executor.execute(queue);
+        } catch (RejectedExecutionException e) {
+            queue.run();
+        }
+    }
+
+    private static class Delivery {
+        private final Message message;
+        private final Context context;
+
+        Delivery(Message message, Context context) {
+            this.message = message;
+            this.context = context;
+        }
+    }
+
+    private class KeyQueue implements Runnable {
+        private final Object key;
+        private final ArrayDeque<Delivery> deliveries = new ArrayDeque<Delivery>();
+        private final Condition notFull = lock.newCondition();
+        private boolean scheduled;
+
+        KeyQueue(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                Delivery delivery;
+                lock.lock();
+                try {
+                    delivery = deliveries.poll();
+                    if (delivery == null) {
+                        scheduled = false;
+                        if (key != null) {
+                            queues.remove(key);
+                        }
+                        return;
+                    }
+                    notFull.signal();
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    listener.onReceived(delivery.message, delivery.context);
+                } catch (Throwable t) {
+                    LOGGER.log(Level.WARNING, "The listener " + listener + " failed to process a message of key "
+                        + key, t);
+                } finally {
+                    pending.decrementAndGet();
+                    permits.release();
+                }
+            }
+            schedule(this);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.OMSBuiltinKeys;
+
+/**
+ * A process-wide registry which interns the frequently used {@code KeyValue} keys into small integer ids, used by OMS
+ * internally.
+ * <p>
+ * Resolving a key costs one probe of a shared open-addressing table, and a caller holding the id can skip even that,
+ * see {@link IndexedKeyValue}. The table is replaced as a whole on registration, so lookups never lock. The number of
+ * ids is bounded by {@link #MAX_KEYS}, keys beyond that limit are simply not interned and callers fall back to plain
+ * {@code String} lookups.
+ * <p>
+ * The {@link OMSBuiltinKeys} and the standard message header field names are registered up front, in a fixed order.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public final class KeyRegistry {
+    /**
+     * The maximum number of keys that can be interned.
+     */
+    public static final int MAX_KEYS = 1024;
+
+    /**
+     * The id returned for keys that are not interned.
+     */
+    public static final int UNKNOWN = -1;
+
+    private static final Object LOCK = new Object();
+
+    private static volatile Table table = new Table(new String[0]);
+
+    private static final int BUILTIN_SIZE;
+
+    static {
+        register(OMSBuiltinKeys.DRIVER_IMPL);
+        register(OMSBuiltinKeys.ACCESS_POINTS);
+        register(OMSBuiltinKeys.ACCOUNT_ID);
+        register(OMSBuiltinKeys.ACCOUNT_KEY);
+        register(OMSBuiltinKeys.REGION);
+
+        register("DESTINATION");
+        register("MESSAGE_ID");
+        register("BORN_TIMESTAMP");
+        register("BORN_HOST");
+        register("PRIORITY");
+        register("DURABILITY");
+        register("DELIVERY_COUNT");
+        register("COMPRESSION");
+        BUILTIN_SIZE = size();
+    }
+
+    private KeyRegistry() {
+    }
+
+    /**
+     * Interns the specified key.
+     *
+     * @param key the key to be interned
+     * @return the id of the key, or {@link #UNKNOWN} if the registry is full
+     */
+    public static int register(String key) {
+        int id = idOf(key);
+        if (id != UNKNOWN) {
+            return id;
+        }
+        synchronized (LOCK) {
+            Table current = table;
+            id = current.idOf(key);
+            if (id == UNKNOWN && current.keys.length < MAX_KEYS) {
+                String[] keys = new String[current.keys.length + 1];
+                System.arraycopy(current.keys, 0, keys, 0, current.keys.length);
+                id = current.keys.length;
+                keys[id] = key;
+                table = new Table(keys);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Returns the id of the specified key.
+     *
+     * @param key the key
+     * @return the id of the key, or {@link #UNKNOWN} if the key has not been interned
+     */
+    public static int idOf(String key) {
+        return table.idOf(key);
+    }
+
+    /**
+     * Returns the key interned with the specified id.
+     *
+     * @param id the id
+     * @return the key
+     * @throws IndexOutOfBoundsException if no key has been interned with the id
+     */
+    public static String keyOf(int id) {
+        String[] keys = table.keys;
+        if (id < 0 || id >= keys.length) {
+            throw new IndexOutOfBoundsException("Unknown key id: " + id);
+        }
+        return keys[id];
+    }
+
+    /**
+     * Returns the number of interned keys, all the ids are lower than this value.
+     *
+     * @return the number of interned keys
+     */
+    public static int size() {
+        return table.keys.length;
+    }
+
+    /**
+     * Returns the number of keys registered up front. Their ids are the same in every process, so unlike the ids of
+     * the keys registered at runtime they can be written to the wire.
+     *
+     * @return the number of builtin keys
+     */
+    public static int builtinSize() {
+        return BUILTIN_SIZE;
+    }
+
+    /**
+     * An immutable open-addressing table from keys to ids, at most half full.
+     */
+    private static final class Table {
+        private final String[] keys;
+        private final String[] slots;
+        private final int[] ids;
+        private final int mask;
+
+        Table(String[] keys) {
+            int capacity = Integer.highestOneBit(Math.max(keys.length, 4) * 2 - 1) << 1;
+            this.keys = keys;
+            this.slots = new String[capacity];
+            this.ids = new int[capacity];
+            this.mask = capacity - 1;
+            for (int id = 0; id < keys.length; id++) {
+                int index = spread(keys[id].hashCode()) & mask;
+                while (slots[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                slots[index] = keys[id];
+                ids[index] = id;
+            }
+        }
+
+        int idOf(String key) {
+            int index = spread(key.hashCode()) & mask;
+            String candidate;
+            while ((candidate = slots[index]) != null) {
+                if (candidate == key || candidate.equals(key)) {
+                    return ids[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return UNKNOWN;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import java.nio.ByteBuffer;
+import java.util.ConcurrentModificationException;
+
+/**
+ * A compact binary codec for {@link KeyValue}, used by OMS internally and by vendor drivers that need a wire form for
+ * {@code Message#properties()}.
+ * <p>
+ * The encoded form is:
+ * <pre>
+ * keyValue := version:byte count:varint entry*
+ * entry    := key type:byte value
+ * key      := (id &lt;&lt; 1 | 1):varint              a builtin key of {@link KeyRegistry}
+ *           | (length &lt;&lt; 1):varint utf8:byte*    any other key
+ * value    := byte                                  boolean
+ *           | zigzag:varint                         short, int, long
+ *           | bits:8 bytes big-endian               double
+ *           | length:varint utf8:byte*              String
+ * </pre>
+ * Primitive values are encoded from and decoded into their native types without going through a {@code String}, as
+ * long as the {@code KeyValue} is one of the typed implementations. The entries of other implementations are encoded
+ * as {@code String} values.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public final class KeyValueCodec {
+    /**
+     * The version of the encoded form.
+     */
+    public static final byte VERSION = 1;
+
+    private KeyValueCodec() {
+    }
+
+    /**
+     * Returns the number of bytes {@link #encode(KeyValue, ByteBuffer)} writes for the specified {@code KeyValue}.
+     *
+     * @param keyValue the {@code KeyValue} to be encoded
+     * @return the encoded size in bytes
+     */
+    public static int encodedSize(KeyValue keyValue) {
+        SizeVisitor visitor = new SizeVisitor();
+        accept(keyValue, visitor);
+        return 1 + WireFormat.varintSize(visitor.count) + visitor.size;
+    }
+
+    /**
+     * Encodes the specified {@code KeyValue} at the current position of the buffer.
+     *
+     * @param keyValue the {@code KeyValue} to be encoded
+     * @param buffer the target buffer
+     * @throws java.nio.BufferOverflowException if the buffer has not enough space remaining, see {@link
+     * #encodedSize(KeyValue)}
+     */
+    public static void encode(KeyValue keyValue, ByteBuffer buffer) {
+        SizeVisitor counter = new SizeVisitor();
+        accept(keyValue, counter);
+        buffer.put(VERSION);
+        WireFormat.writeVarint(buffer, counter.count);
+        EncodeVisitor encoder = new EncodeVisitor(buffer);
+        accept(keyValue, encoder);
+        if (encoder.count != counter.count) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Decodes a {@code KeyValue} from the current position of the buffer into a new thread-confined {@code
+     * KeyValue}.
+     *
+     * @param buffer the source buffer
+     * @return the decoded {@code KeyValue}
+     * @throws io.openmessaging.exception.OMSMessageFormatException if the data is malformed
+     */
+    public static KeyValue decode(ByteBuffer buffer) {
+        return decode(buffer, new CompactKeyValue());
+    }
+
+    /**
+     * Decodes the entries encoded at the current position of the buffer into the specified {@code KeyValue}.
+     *
+     * @param buffer the source buffer
+     * @param target the {@code KeyValue} receiving the entries
+     * @return the {@code target}
+     * @throws io.openmessaging.exception.OMSMessageFormatException if the data is malformed
+     */
+    public static KeyValue decode(ByteBuffer buffer, KeyValue target) {
+        byte version = WireFormat.get(buffer);
+        if (version != VERSION) {
+            throw WireFormat.malformed("unsupported KeyValue version " + version);
+        }
+        long count = WireFormat.readVarint(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw WireFormat.malformed("illegal entry count " + count);
+        }
+        for (long i = 0; i < count; i++) {
+            String key = readKey(buffer);
+            byte type = WireFormat.get(buffer);
+            switch (type) {
+                case TypedValues.BOOLEAN:
+                    target.put(key, WireFormat.get(buffer) != 0);
+                    break;
+                case TypedValues.SHORT:
+                    target.put(key, (short) WireFormat.unzigzag(WireFormat.readVarint(buffer)));
+                    break;
+                case TypedValues.INT:
+                    target.put(key, (int) WireFormat.unzigzag(WireFormat.readVarint(buffer)));
+                    break;
+                case TypedValues.LONG:
+                    target.put(key, WireFormat.unzigzag(WireFormat.readVarint(buffer)));
+                    break;
+                case TypedValues.DOUBLE:
+                    target.put(key, Double.longBitsToDouble(WireFormat.readFixed64(buffer)));
+                    break;
+                case TypedValues.STRING:
+                    target.put(key, WireFormat.readString(buffer));
+                    break;
+                default:
+                    throw WireFormat.malformed("unknown value type " + type);
+            }
+        }
+        return target;
+    }
+
+    private static String readKey(ByteBuffer buffer) {
+        long header = WireFormat.readVarint(buffer);
+        if ((header & 1) != 0) {
+            long id = header >>> 1;
+            if (id >= KeyRegistry.builtinSize()) {
+                throw WireFormat.malformed("unknown key id " + id);
+            }
+            return KeyRegistry.keyOf((int) id);
+        }
+        long length = header >>> 1;
+        if (length > buffer.remaining()) {
+            throw WireFormat.malformed("length " + length + " exceeds the remaining " + buffer.remaining() + " bytes");
+        }
+        return WireFormat.readUtf8(buffer, (int) length);
+    }
+
+    private static void accept(KeyValue keyValue, TypedValues.Visitor visitor) {
+        if (keyValue instanceof TypedValues.Source) {
+            ((TypedValues.Source) keyValue).forEach(visitor);
+            return;
+        }
+        for (String key : keyValue.keySet()) {
+            String value = keyValue.getString(key);
+            if (value != null) {
+                visitor.visit(key, TypedValues.STRING, 0L, value);
+            }
+        }
+    }
+
+    private static int builtinId(String key) {
+        int id = KeyRegistry.idOf(key);
+        return id < KeyRegistry.builtinSize() ? id : KeyRegistry.UNKNOWN;
+    }
+
+    private static int keySize(String key) {
+        int id = builtinId(key);
+        if (id != KeyRegistry.UNKNOWN) {
+            return WireFormat.varintSize((long) id << 1 | 1);
+        }
+        int length = WireFormat.utf8Size(key);
+        return WireFormat.varintSize((long) length << 1) + length;
+    }
+
+    private static int valueSize(byte type, long bits, String text) {
+        switch (type) {
+            case TypedValues.BOOLEAN:
+                return 1;
+            case TypedValues.SHORT:
+            case TypedValues.INT:
+            case TypedValues.LONG:
+                return WireFormat.varintSize(WireFormat.zigzag(bits));
+            case TypedValues.DOUBLE:
+                return 8;
+            default:
+                return WireFormat.stringSize(text);
+        }
+    }
+
+    private static final class SizeVisitor implements TypedValues.Visitor {
+        private int count;
+        private int size;
+
+        @Override
+        public void visit(String key, byte type, long bits, String text) {
+            count++;
+            size += keySize(key) + 1 + valueSize(type, bits, text);
+        }
+    }
+
+    private static final class EncodeVisitor implements TypedValues.Visitor {
+        private final ByteBuffer buffer;
+        private int count;
+
+        EncodeVisitor(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void visit(String key, byte type, long bits, String text) {
+            count++;
+            int id = builtinId(key);
+            if (id != KeyRegistry.UNKNOWN) {
+                WireFormat.writeVarint(buffer, (long) id << 1 | 1);
+            } else {
+                WireFormat.writeVarint(buffer, (long) WireFormat.utf8Size(key) << 1);
+                WireFormat.writeUtf8(buffer, key);
+            }
+            buffer.put(type);
+            switch (type) {
+                case TypedValues.BOOLEAN:
+                    buffer.put((byte) bits);
+                    break;
+                case TypedValues.SHORT:
+                case TypedValues.INT:
+                case TypedValues.LONG:
+                    WireFormat.writeVarint(buffer, WireFormat.zigzag(bits));
+                    break;
+                case TypedValues.DOUBLE:
+                    WireFormat.writeFixed64(buffer, bits);
+                    break;
+                default:
+                    WireFormat.writeString(buffer, text);
+                    break;
+            }
+        }
+    }
+}
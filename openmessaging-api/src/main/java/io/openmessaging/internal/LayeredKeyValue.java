@@ -0,0 +1,355 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.ImmutableKeyValue;
+import io.openmessaging.KeyValue;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A persistent implementation of the interface {@link ImmutableKeyValue}, used by OMS internally.
+ * <p>
+ * Every instance is a small immutable layer of entries on top of an optional parent layer. {@link #with(String,
+ * String)} and its overloads allocate a one-entry layer which points at this one, so a base block of attributes is
+ * stored once no matter how many derived instances exist. Lookups scan the layers from the newest to the oldest, and
+ * the chain is flattened into a single layer once it grows deeper than {@value #MAX_DEPTH}.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public final class LayeredKeyValue implements ImmutableKeyValue, TypedValues.Source {
+    private static final int MAX_DEPTH = 8;
+
+    private static final String[] NO_KEYS = new String[0];
+
+    /**
+     * The empty {@code ImmutableKeyValue}.
+     */
+    public static final LayeredKeyValue EMPTY =
+        new LayeredKeyValue(null, NO_KEYS, new byte[0], new long[0], new String[0]);
+
+    private final LayeredKeyValue parent;
+    private final int depth;
+    private final String[] keys;
+    private final byte[] types;
+    private final long[] bits;
+    private final String[] texts;
+
+    private volatile Set<String> keySet;
+
+    private LayeredKeyValue(LayeredKeyValue parent, String[] keys, byte[] types, long[] bits, String[] texts) {
+        this.parent = parent;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+        this.keys = keys;
+        this.types = types;
+        this.bits = bits;
+        this.texts = texts;
+    }
+
+    /**
+     * Returns an immutable snapshot of the specified {@code KeyValue}. The entries of the typed implementations keep
+     * their types, the others are copied in their {@code String} form.
+     *
+     * @param keyValue the {@code KeyValue} to be copied
+     * @return the snapshot, or the argument itself if it is already immutable
+     */
+    public static ImmutableKeyValue copyOf(KeyValue keyValue) {
+        if (keyValue instanceof ImmutableKeyValue) {
+            return (ImmutableKeyValue) keyValue;
+        }
+        Builder builder = new Builder();
+        if (keyValue instanceof TypedValues.Source) {
+            ((TypedValues.Source) keyValue).forEach(builder);
+        } else {
+            for (String key : keyValue.keySet()) {
+                String value = keyValue.getString(key);
+                if (value != null) {
+                    builder.visit(key, TypedValues.STRING, 0L, value);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public ImmutableKeyValue with(String key, boolean value) {
+        return with(key, TypedValues.BOOLEAN, TypedValues.bits(value), null);
+    }
+
+    @Override
+    public ImmutableKeyValue with(String key, short value) {
+        return with(key, TypedValues.SHORT, value, null);
+    }
+
+    @Override
+    public ImmutableKeyValue with(String key, int value) {
+        return with(key, TypedValues.INT, value, null);
+    }
+
+    @Override
+    public ImmutableKeyValue with(String key, long value) {
+        return with(key, TypedValues.LONG, value, null);
+    }
+
+    @Override
+    public ImmutableKeyValue with(String key, double value) {
+        return with(key, TypedValues.DOUBLE, TypedValues.bits(value), null);
+    }
+
+    @Override
+    public ImmutableKeyValue with(String key, String value) {
+        return with(key, TypedValues.STRING, 0L, String.valueOf(value));
+    }
+
+    @Override
+    public KeyValue put(String key, boolean value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public KeyValue put(String key, short value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public KeyValue put(String key, int value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public KeyValue put(String key, long value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public KeyValue put(String key, double value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public KeyValue put(String key, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean getBoolean(String key) {
+        return getBoolean(key, false);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        for (LayeredKeyValue layer = this; layer != null; layer = layer.parent) {
+            int index = layer.indexOf(key);
+            if (index >= 0) {
+                return TypedValues.toBoolean(layer.types[index], layer.bits[index], layer.texts[index]);
+            }
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public short getShort(String key) {
+        return getShort(key, (short) 0);
+    }
+
+    @Override
+    public short getShort(String key, short defaultValue) {
+        for (LayeredKeyValue layer = this; layer != null; layer = layer.parent) {
+            int index = layer.indexOf(key);
+            if (index >= 0) {
+                return TypedValues.toShort(layer.types[index], layer.bits[index], layer.texts[index]);
+            }
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    @Override
+    public int getInt(String key, int defaultValue) {
+        for (LayeredKeyValue layer = this; layer != null; layer = layer.parent) {
+            int index = layer.indexOf(key);
+            if (index >= 0) {
+                return TypedValues.toInt(layer.types[index], layer.bits[index], layer.texts[index]);
+            }
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public long getLong(String key) {
+        return getLong(key, 0L);
+    }
+
+    @Override
+    public long getLong(String key, long defaultValue) {
+        for (LayeredKeyValue layer = this; layer != null; layer = layer.parent) {
+            int index = layer.indexOf(key);
+            if (index >= 0) {
+                return TypedValues.toLong(layer.types[index], layer.bits[index], layer.texts[index]);
+            }
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public double getDouble(String key) {
+        return getDouble(key, 0D);
+    }
+
+    @Override
+    public double getDouble(String key, double defaultValue) {
+        for (LayeredKeyValue layer = this; layer != null; layer = layer.parent) {
+            int index = layer.indexOf(key);
+            if (index >= 0) {
+                return TypedValues.toDouble(layer.types[index], layer.bits[index], layer.texts[index]);
+            }
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public String getString(String key) {
+        return getString(key, null);
+    }
+
+    @Override
+    public String getString(String key, String defaultValue) {
+        for (LayeredKeyValue layer = this; layer != null; layer = layer.parent) {
+            int index = layer.indexOf(key);
+            if (index >= 0) {
+                return TypedValues.toString(layer.types[index], layer.bits[index], layer.texts[index]);
+            }
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        Set<String> result = keySet;
+        if (result == null) {
+            final Set<String> keys = new LinkedHashSet<String>();
+            forEach(new TypedValues.Visitor() {
+                @Override
+                public void visit(String key, byte type, long bits, String text) {
+                    keys.add(key);
+                }
+            });
+            result = Collections.unmodifiableSet(keys);
+            keySet = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        for (LayeredKeyValue layer = this; layer != null; layer = layer.parent) {
+            if (layer.indexOf(key) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEach(TypedValues.Visitor visitor) {
+        Set<String> visited = parent == null ? null : new HashSet<String>();
+        for (LayeredKeyValue layer = this; layer != null; layer = layer.parent) {
+            for (int i = 0; i < layer.keys.length; i++) {
+                if (visited == null || visited.add(layer.keys[i])) {
+                    visitor.visit(layer.keys[i], layer.types[i], layer.bits[i], layer.texts[i]);
+                }
+            }
+        }
+    }
+
+    private ImmutableKeyValue with(String key, byte type, long value, String text) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        if (depth >= MAX_DEPTH) {
+            Builder builder = new Builder();
+            builder.visit(key, type, value, text);
+            forEach(builder);
+            return builder.build();
+        }
+        return new LayeredKeyValue(keys.length == 0 ? parent : this, new String[] {key}, new byte[] {type},
+            new long[] {value}, new String[] {text});
+    }
+
+    private int indexOf(String key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        int hash = key.hashCode();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].hashCode() == hash && keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects distinct entries into a single layer, the first visit of a key wins.
+     */
+    private static final class Builder implements TypedValues.Visitor {
+        private String[] keys = new String[8];
+        private byte[] types = new byte[8];
+        private long[] bits = new long[8];
+        private String[] texts = new String[8];
+        private int size;
+        private final Set<String> seen = new HashSet<String>();
+
+        @Override
+        public void visit(String key, byte type, long bits, String text) {
+            if (!seen.add(key)) {
+                return;
+            }
+            if (size == keys.length) {
+                int capacity = size << 1;
+                this.keys = Arrays.copyOf(this.keys, capacity);
+                this.types = Arrays.copyOf(this.types, capacity);
+                this.bits = Arrays.copyOf(this.bits, capacity);
+                this.texts = Arrays.copyOf(this.texts, capacity);
+            }
+            this.keys[size] = key;
+            this.types[size] = type;
+            this.bits[size] = bits;
+            this.texts[size] = text;
+            size++;
+        }
+
+        LayeredKeyValue build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            return new LayeredKeyValue(null, Arrays.copyOf(keys, size), Arrays.copyOf(types, size),
+                Arrays.copyOf(bits, size), Arrays.copyOf(texts, size));
+        }
+    }
+}
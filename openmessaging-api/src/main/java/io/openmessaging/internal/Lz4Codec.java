@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.compression.CompressionCodec;
+import io.openmessaging.compression.CompressionCodecs;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A pure Java {@link CompressionCodec} producing the LZ4 block format, used by OMS internally.
+ * <p>
+ * The compressor is the greedy single-probe variant: a 4-byte hash of each position is looked up in a table of the
+ * last position with the same hash, and the step grows while no match is found so that incompressible bodies are
+ * skipped quickly. Every thread reuses its own hash table and the scratch arrays for the buffers without an accessible
+ * array.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public final class Lz4Codec implements CompressionCodec {
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MIN_LENGTH = MF_LIMIT + 1;
+    private static final int MAX_DISTANCE = 0xFFFF;
+    private static final int HASH_LOG = 12;
+    private static final int SKIP_STRENGTH = 6;
+    private static final int RUN_MASK = 0xF;
+
+    private static final ThreadLocal<State> STATES = new ThreadLocal<State>() {
+        @Override protected State initialValue() {
+            return new State();
+        }
+    };
+
+    private final short id;
+
+    /**
+     * Creates the built-in LZ4 codec, with the id {@link CompressionCodecs#LZ4}.
+     */
+    public Lz4Codec() {
+        this(CompressionCodecs.LZ4);
+    }
+
+    public Lz4Codec(short id) {
+        this.id = id;
+    }
+
+    @Override
+    public short id() {
+        return id;
+    }
+
+    @Override
+    public String name() {
+        return "lz4";
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    @Override
+    public void compress(ByteBuffer source, ByteBuffer target) {
+        State state = STATES.get();
+        int length = source.remaining();
+        if (target.remaining() < maxCompressedLength(length)) {
+            throw new IllegalArgumentException("The target buffer is too small");
+        }
+        byte[] src;
+        int srcOff;
+        if (source.hasArray()) {
+            src = source.array();
+            srcOff = source.arrayOffset() + source.position();
+        } else {
+            src = state.input(length);
+            srcOff = 0;
+            source.duplicate().get(src, 0, length);
+        }
+        source.position(source.limit());
+        if (target.hasArray()) {
+            int written = compress(src, srcOff, length, target.array(), target.arrayOffset() + target.position(),
+                state.table);
+            target.position(target.position() + written);
+        } else {
+            byte[] dst = state.output(maxCompressedLength(length));
+            int written = compress(src, srcOff, length, dst, 0, state.table);
+            target.put(dst, 0, written);
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuffer source, ByteBuffer target) {
+        State state = STATES.get();
+        int length = source.remaining();
+        byte[] src;
+        int srcOff;
+        if (source.hasArray()) {
+            src = source.array();
+            srcOff = source.arrayOffset() + source.position();
+        } else {
+            src = state.input(length);
+            srcOff = 0;
+            source.duplicate().get(src, 0, length);
+        }
+        if (target.hasArray()) {
+            decompress(src, srcOff, srcOff + length, target.array(), target.arrayOffset() + target.position(),
+                target.remaining());
+        } else {
+            byte[] dst = state.output(target.remaining());
+            decompress(src, srcOff, srcOff + length, dst, 0, target.remaining());
+            target.put(dst, 0, target.remaining());
+        }
+        source.position(source.limit());
+        target.position(target.limit());
+    }
+
+    static int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int[] table) {
+        int srcEnd = srcOff + srcLen;
+        int anchor = srcOff;
+        int dp = dstOff;
+        if (srcLen >= MIN_LENGTH) {
+            Arrays.fill(table, -1);
+            int matchLimit = srcEnd - LAST_LITERALS;
+            int mfLimit = srcEnd - MF_LIMIT;
+            int ip = srcOff;
+            while (ip < mfLimit) {
+                int sequence = readInt(src, ip);
+                int hash = hash(sequence);
+                int ref = table[hash];
+                table[hash] = ip;
+                if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                    ip += 1 + ((ip - anchor) >>> SKIP_STRENGTH);
+                    continue;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+                    matchLength++;
+                }
+                dp = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, dp);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+        int literals = srcEnd - anchor;
+        dst[dp++] = (byte) (Math.min(literals, RUN_MASK) << 4);
+        dp = writeLength(literals, dst, dp);
+        System.arraycopy(src, anchor, dst, dp, literals);
+        return dp + literals - dstOff;
+    }
+
+    static void decompress(byte[] src, int sp, int srcEnd, byte[] dst, int dstOff, int dstLen) {
+        int dp = dstOff;
+        int dstEnd = dstOff + dstLen;
+        while (true) {
+            if (sp >= srcEnd) {
+                throw WireFormat.malformed("truncated lz4 block");
+            }
+            int token = src[sp++] & 0xFF;
+            int literals = token >>> 4;
+            if (literals == RUN_MASK) {
+                int b;
+                do {
+                    if (sp >= srcEnd) {
+                        throw WireFormat.malformed("truncated lz4 block");
+                    }
+                    b = src[sp++] & 0xFF;
+                    literals += b;
+                } while (b == 0xFF && literals <= dstLen);
+            }
+            if (literals > srcEnd - sp || literals > dstEnd - dp) {
+                throw WireFormat.malformed("lz4 literals overrun the block");
+            }
+            System.arraycopy(src, sp, dst, dp, literals);
+            sp += literals;
+            dp += literals;
+            if (sp == srcEnd) {
+                break;
+            }
+            if (srcEnd - sp < 2) {
+                throw WireFormat.malformed("truncated lz4 block");
+            }
+            int offset = (src[sp] & 0xFF) | (src[sp + 1] & 0xFF) << 8;
+            sp += 2;
+            if (offset == 0 || offset > dp - dstOff) {
+                throw WireFormat.malformed("lz4 match offset " + offset + " is out of the block");
+            }
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK) {
+                int b;
+                do {
+                    if (sp >= srcEnd) {
+                        throw WireFormat.malformed("truncated lz4 block");
+                    }
+                    b = src[sp++] & 0xFF;
+                    matchLength += b;
+                } while (b == 0xFF && matchLength <= dstLen);
+            }
+            matchLength += MIN_MATCH;
+            if (matchLength > dstEnd - dp) {
+                throw WireFormat.malformed("lz4 match overruns the block");
+            }
+            int ref = dp - offset;
+            if (offset >= matchLength) {
+                System.arraycopy(dst, ref, dst, dp, matchLength);
+                dp += matchLength;
+            } else {
+                for (int end = dp + matchLength; dp < end; ) {
+                    dst[dp++] = dst[ref++];
+                }
+            }
+        }
+        if (dp != dstEnd) {
+            throw WireFormat.malformed("the lz4 block does not match the uncompressed length");
+        }
+    }
+
+    private static int writeSequence(byte[] src, int anchor, int literals, int offset, int matchLength, byte[] dst,
+        int dp) {
+        int runLength = matchLength - MIN_MATCH;
+        dst[dp++] = (byte) (Math.min(literals, RUN_MASK) << 4 | Math.min(runLength, RUN_MASK));
+        dp = writeLength(literals, dst, dp);
+        System.arraycopy(src, anchor, dst, dp, literals);
+        dp += literals;
+        dst[dp++] = (byte) offset;
+        dst[dp++] = (byte) (offset >>> 8);
+        return writeLength(runLength, dst, dp);
+    }
+
+    private static int writeLength(int length, byte[] dst, int dp) {
+        if (length >= RUN_MASK) {
+            length -= RUN_MASK;
+            while (length >= 0xFF) {
+                dst[dp++] = (byte) 0xFF;
+                length -= 0xFF;
+            }
+            dst[dp++] = (byte) length;
+        }
+        return dp;
+    }
+
+    private static int readInt(byte[] bytes, int index) {
+        return (bytes[index] & 0xFF) | (bytes[index + 1] & 0xFF) << 8 | (bytes[index + 2] & 0xFF) << 16
+            | bytes[index + 3] << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static final class State {
+        private final int[] table = new int[1 << HASH_LOG];
+        private byte[] input = new byte[0];
+        private byte[] output = new byte[0];
+
+        private byte[] input(int length) {
+            if (input.length < length) {
+                input = new byte[length];
+            }
+            return input;
+        }
+
+        private byte[] output(int length) {
+            if (output.length < length) {
+                output = new byte[length];
+            }
+            return output;
+        }
+    }
+}
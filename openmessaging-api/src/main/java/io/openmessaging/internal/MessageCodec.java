@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.exception.OMSUnsupportException;
+import io.openmessaging.extension.ExtensionHeader;
+import io.openmessaging.message.Header;
+import io.openmessaging.message.Message;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A binary codec for {@link Message}, whose encoded form can be read in place by {@link FlyweightMessage}, used by OMS
+ * internally and by vendor drivers.
+ * <p>
+ * The encoded form starts with a fixed-size block holding the version, the total length, the fixed-width header fields
+ * and the offsets of the properties and body sections, so any fixed-width field is a single absolute read. It
+ * continues with the string header fields, the properties encoded by {@link KeyValueCodec}, and the body:
+ * <pre>
+ * message    := fixed strings properties body
+ * fixed      := version:byte flags:byte totalLength:int32 propertiesOffset:int32 bodyOffset:int32
+ *               bornTimestamp:int64 priority:int16 durability:int16 deliveryCount:int32 compression:int16
+ *               partition:int32 offset:int64 storeTimestamp:int64 delayTime:int64 expireTime:int64
+ * strings    := (length + 1:varint utf8:byte*){8}      0 for null: destination, messageId, bornHost,
+ *                                                      correlationId, transactionId, storeHost, messageKey, traceId
+ * properties := {@link KeyValueCodec} form
+ * body       := length:varint byte*
+ * </pre>
+ * All the fixed-width values are big-endian and the offsets are relative to the start of the message.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public final class MessageCodec {
+    /**
+     * The version of the encoded form.
+     */
+    public static final byte VERSION = 1;
+
+    static final int FLAG_EXTENSION_HEADER = 1;
+
+    static final int TOTAL_LENGTH = 2;
+    static final int PROPERTIES_OFFSET = 6;
+    static final int BODY_OFFSET = 10;
+    static final int BORN_TIMESTAMP = 14;
+    static final int PRIORITY = 22;
+    static final int DURABILITY = 24;
+    static final int DELIVERY_COUNT = 26;
+    static final int COMPRESSION = 30;
+    static final int PARTITION = 32;
+    static final int OFFSET = 36;
+    static final int STORE_TIMESTAMP = 44;
+    static final int DELAY_TIME = 52;
+    static final int EXPIRE_TIME = 60;
+    static final int FIXED_SIZE = 68;
+
+    static final int DESTINATION = 0;
+    static final int MESSAGE_ID = 1;
+    static final int BORN_HOST = 2;
+    static final int CORRELATION_ID = 3;
+    static final int TRANSACTION_ID = 4;
+    static final int STORE_HOST = 5;
+    static final int MESSAGE_KEY = 6;
+    static final int TRACE_ID = 7;
+    static final int STRING_COUNT = 8;
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Returns the number of bytes {@link #encode(Message, ByteBuffer)} writes for the specified message.
+     *
+     * @param message the message to be encoded
+     * @return the encoded size in bytes
+     */
+    public static int encodedSize(Message message) {
+        if (message instanceof FlyweightMessage && !((FlyweightMessage) message).isModified()) {
+            return ((FlyweightMessage) message).encoded().remaining();
+        }
+        String[] strings = strings(message.header(), extensionHeaderOf(message));
+        int size = FIXED_SIZE;
+        for (String value : strings) {
+            size += stringSize(value);
+        }
+        ByteBuffer rawProperties = rawPropertiesOf(message);
+        size += rawProperties != null ? rawProperties.remaining() : KeyValueCodec.encodedSize(propertiesOf(message));
+        int bodyLength = message.getBodyLength();
+        return size + WireFormat.varintSize(bodyLength) + bodyLength;
+    }
+
+    /**
+     * Encodes the specified message at the current position of the buffer. An unmodified {@link FlyweightMessage} is
+     * copied as is, without being decoded.
+     *
+     * @param message the message to be encoded
+     * @param buffer the target buffer
+     * @throws java.nio.BufferOverflowException if the buffer has not enough space remaining, see {@link
+     * #encodedSize(Message)}
+     */
+    public static void encode(Message message, ByteBuffer buffer) {
+        if (message instanceof FlyweightMessage && !((FlyweightMessage) message).isModified()) {
+            buffer.put(((FlyweightMessage) message).encoded());
+            return;
+        }
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            encode0(message, buffer);
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    /**
+     * Wraps the message encoded at the current position of the buffer, and advances the position past it. Nothing
+     * but the fixed-size block is read, the other fields are decoded on first access.
+     *
+     * @param buffer the source buffer, which must not be modified while the returned message is in use
+     * @return the flyweight message
+     * @throws io.openmessaging.exception.OMSMessageFormatException if the data is malformed
+     */
+    public static FlyweightMessage decode(ByteBuffer buffer) {
+        if (buffer.remaining() < FIXED_SIZE) {
+            throw WireFormat.malformed("unexpected end of data");
+        }
+        ByteBuffer encoded = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        byte version = encoded.get(0);
+        if (version != VERSION) {
+            throw WireFormat.malformed("unsupported Message version " + version);
+        }
+        int totalLength = encoded.getInt(TOTAL_LENGTH);
+        int propertiesOffset = encoded.getInt(PROPERTIES_OFFSET);
+        int bodyOffset = encoded.getInt(BODY_OFFSET);
+        if (totalLength < FIXED_SIZE || totalLength > encoded.remaining() || propertiesOffset < FIXED_SIZE
+            || bodyOffset < propertiesOffset || bodyOffset >= totalLength) {
+            throw WireFormat.malformed("illegal message layout");
+        }
+        encoded.limit(totalLength);
+        buffer.position(buffer.position() + totalLength);
+        return new FlyweightMessage(encoded);
+    }
+
+    private static void encode0(Message message, ByteBuffer buffer) {
+        Header header = message.header();
+        ExtensionHeader extensionHeader = extensionHeaderOf(message);
+        int start = buffer.position();
+
+        buffer.put(VERSION);
+        buffer.put((byte) (extensionHeader == null ? 0 : FLAG_EXTENSION_HEADER));
+        buffer.position(start + BORN_TIMESTAMP);
+        buffer.putLong(header.getBornTimestamp());
+        buffer.putShort(header.getPriority());
+        buffer.putShort(header.getDurability());
+        buffer.putInt(header.getDeliveryCount());
+        buffer.putShort(header.getCompression());
+        if (extensionHeader != null) {
+            buffer.putInt(extensionHeader.getPartiton());
+            buffer.putLong(extensionHeader.getOffset());
+            buffer.putLong(extensionHeader.getStoreTimestamp());
+            buffer.putLong(extensionHeader.getDelayTime());
+            buffer.putLong(extensionHeader.getExpireTime());
+        } else {
+            buffer.putInt(0).putLong(0L).putLong(0L).putLong(0L).putLong(0L);
+        }
+
+        for (String value : strings(header, extensionHeader)) {
+            if (value == null) {
+                buffer.put((byte) 0);
+            } else {
+                WireFormat.writeVarint(buffer, WireFormat.utf8Size(value) + 1L);
+                WireFormat.writeUtf8(buffer, value);
+            }
+        }
+
+        int propertiesOffset = buffer.position() - start;
+        ByteBuffer rawProperties = rawPropertiesOf(message);
+        if (rawProperties != null) {
+            buffer.put(rawProperties);
+        } else {
+            KeyValueCodec.encode(propertiesOf(message), buffer);
+        }
+
+        int bodyOffset = buffer.position() - start;
+        WireFormat.writeVarint(buffer, message.getBodyLength());
+        for (ByteBuffer component : message.getBodyBuffers()) {
+            buffer.put(component);
+        }
+
+        buffer.putInt(start + TOTAL_LENGTH, buffer.position() - start);
+        buffer.putInt(start + PROPERTIES_OFFSET, propertiesOffset);
+        buffer.putInt(start + BODY_OFFSET, bodyOffset);
+    }
+
+    private static String[] strings(Header header, ExtensionHeader extensionHeader) {
+        String[] strings = new String[STRING_COUNT];
+        strings[DESTINATION] = header.getDestination();
+        strings[MESSAGE_ID] = header.getMessageId();
+        strings[BORN_HOST] = header.getBornHost();
+        if (extensionHeader != null) {
+            strings[CORRELATION_ID] = extensionHeader.getCorrelationId();
+            strings[TRANSACTION_ID] = extensionHeader.getTransactionId();
+            strings[STORE_HOST] = extensionHeader.getStoreHost();
+            strings[MESSAGE_KEY] = extensionHeader.getMessageKey();
+            strings[TRACE_ID] = extensionHeader.getTraceId();
+        }
+        return strings;
+    }
+
+    private static int stringSize(String value) {
+        if (value == null) {
+            return 1;
+        }
+        int length = WireFormat.utf8Size(value);
+        return WireFormat.varintSize(length + 1L) + length;
+    }
+
+    private static ExtensionHeader extensionHeaderOf(Message message) {
+        if (message instanceof DefaultMessage) {
+            return ((DefaultMessage) message).extensionHeaderIfPresent();
+        }
+        try {
+            return message.extensionHeader();
+        } catch (OMSUnsupportException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the still encoded properties of a modified {@link FlyweightMessage}, so they are copied instead of being
+     * decoded and encoded again.
+     */
+    private static ByteBuffer rawPropertiesOf(Message message) {
+        return message instanceof FlyweightMessage ? ((FlyweightMessage) message).rawProperties() : null;
+    }
+
+    private static KeyValue propertiesOf(Message message) {
+        KeyValue properties;
+        if (message instanceof DefaultMessage) {
+            properties = ((DefaultMessage) message).propertiesIfPresent();
+        } else {
+            properties = message.properties();
+        }
+        return properties == null ? LayeredKeyValue.EMPTY : properties;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.OMSResponseStatus;
+import io.openmessaging.compression.CompressionCodec;
+import io.openmessaging.compression.CompressionCodecs;
+import io.openmessaging.compression.CompressionPolicy;
+import io.openmessaging.exception.OMSUnsupportException;
+import io.openmessaging.message.Message;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compresses message bodies according to a {@link CompressionPolicy} chosen per destination, used by OMS internally and
+ * by vendor drivers.
+ * <p>
+ * A compressed body starts with the uncompressed length, so the receiver allocates the decompressed body once:
+ * <pre>
+ * body  := uncompressedLength:varint codec-compressed-bytes
+ * batch := version:byte codec:int16 count:varint uncompressedLength:varint codec-compressed-messages
+ * </pre>
+ * where the messages of a batch are concatenated in the {@link MessageCodec} form and compressed together, which
+ * yields a much better ratio than compressing small bodies one by one. The intermediate buffers are pooled per thread,
+ * only the final compressed bytes are allocated.
+ * <p>
+ * The uncompressed length read from the data is trusted for the allocation only up to {@link #MAX_COMPRESSION_RATIO}
+ * times the compressed size, the highest ratio of deflate, so a corrupt or hostile message cannot make the receiver
+ * allocate gigabytes.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public final class MessageCompressor {
+    /**
+     * The version of the batch form.
+     */
+    public static final byte BATCH_VERSION = 1;
+
+    /**
+     * The highest ratio between an uncompressed length and its compressed size, above which data is malformed.
+     */
+    public static final int MAX_COMPRESSION_RATIO = 1032;
+
+    private static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+    private static final int ENCODE_SCRATCH = 0;
+    private static final int COMPRESS_SCRATCH = 1;
+
+    private static final ThreadLocal<ByteBuffer[]> SCRATCH = new ThreadLocal<ByteBuffer[]>() {
+        @Override protected ByteBuffer[] initialValue() {
+            return new ByteBuffer[2];
+        }
+    };
+
+    private final CompressionPolicy defaultPolicy;
+    private final ConcurrentMap<String, CompressionPolicy> policies = new ConcurrentHashMap<String, CompressionPolicy>();
+
+    public MessageCompressor(CompressionPolicy defaultPolicy) {
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    /**
+     * Overrides the policy for the specified destination.
+     *
+     * @param destination the destination
+     * @param policy the policy, or {@code null} to fall back to the default policy
+     */
+    public void setPolicy(String destination, CompressionPolicy policy) {
+        if (policy == null) {
+            policies.remove(destination);
+        } else {
+            policies.put(destination, policy);
+        }
+    }
+
+    /**
+     * Returns the policy for the specified destination.
+     *
+     * @param destination the destination, may be {@code null}
+     * @return the policy
+     */
+    public CompressionPolicy policy(String destination) {
+        CompressionPolicy policy = destination == null ? null : policies.get(destination);
+        return policy == null ? defaultPolicy : policy;
+    }
+
+    /**
+     * Compresses the body of the specified message in place and records the codec in its {@code COMPRESSION} header,
+     * unless the policy of its destination says otherwise, the message is already compressed or compressing does not
+     * make the body smaller.
+     *
+     * @param message the message
+     * @return {@code true} if the body was compressed
+     */
+    public boolean compress(Message message) {
+        if (message.header().getCompression() != CompressionCodecs.NONE) {
+            return false;
+        }
+        CompressionPolicy policy = policy(message.header().getDestination());
+        ByteBuffer body = message.getBody();
+        if (body == null || !policy.shouldCompress(body.remaining())) {
+            return false;
+        }
+        int length = body.remaining();
+        CompressionCodec codec = policy.codec();
+        ByteBuffer compressed = scratch(COMPRESS_SCRATCH, WireFormat.varintSize(length)
+            + codec.maxCompressedLength(length));
+        WireFormat.writeVarint(compressed, length);
+        codec.compress(body, compressed);
+        compressed.flip();
+        if (compressed.remaining() >= length) {
+            return false;
+        }
+        message.setBody(copyOf(compressed));
+        message.header().setCompression(codec.id());
+        return true;
+    }
+
+    /**
+     * Restores the body of the specified message compressed by {@link #compress(Message)}, and resets its {@code
+     * COMPRESSION} header.
+     *
+     * @param message the message
+     * @return {@code true} if the body was compressed
+     * @throws OMSUnsupportException if the codec of the message is unknown
+     * @throws io.openmessaging.exception.OMSMessageFormatException if the body is malformed
+     */
+    public static boolean decompress(Message message) {
+        short id = message.header().getCompression();
+        if (id == CompressionCodecs.NONE) {
+            return false;
+        }
+        CompressionCodec codec = codecOf(id);
+        ByteBuffer body = message.getBody();
+        if (body == null) {
+            throw WireFormat.malformed("the compressed body is missing");
+        }
+        int length = uncompressedLength(body);
+        checkRatio(length, body.remaining());
+        ByteBuffer decompressed = ByteBuffer.allocate(length);
+        codec.decompress(body, decompressed);
+        decompressed.flip();
+        message.setBody(decompressed);
+        message.header().setCompression(CompressionCodecs.NONE);
+        return true;
+    }
+
+    /**
+     * Encodes the specified messages into a single batch, compressed according to the policy of the destination of
+     * the first message, the threshold applying to the whole batch.
+     *
+     * @param messages the messages to be sent together
+     * @return the batch, from position to limit
+     */
+    public ByteBuffer compressBatch(List<? extends Message> messages) {
+        int length = 0;
+        for (Message message : messages) {
+            length += MessageCodec.encodedSize(message);
+        }
+        ByteBuffer encoded = scratch(ENCODE_SCRATCH, length);
+        for (Message message : messages) {
+            MessageCodec.encode(message, encoded);
+        }
+        encoded.flip();
+
+        CompressionPolicy policy = messages.isEmpty() ? CompressionPolicy.NONE
+            : policy(messages.get(0).header().getDestination());
+        CompressionCodec codec = policy.shouldCompress(length) ? policy.codec() : null;
+        int headerSize = 1 + 2 + WireFormat.varintSize(messages.size()) + WireFormat.varintSize(length);
+        ByteBuffer batch = scratch(COMPRESS_SCRATCH, headerSize
+            + (codec == null ? length : Math.max(length, codec.maxCompressedLength(length))));
+        batch.put(BATCH_VERSION).putShort(codec == null ? CompressionCodecs.NONE : codec.id());
+        WireFormat.writeVarint(batch, messages.size());
+        WireFormat.writeVarint(batch, length);
+        if (codec != null) {
+            codec.compress(encoded.duplicate(), batch);
+            if (batch.position() - headerSize >= length) {
+                batch.clear();
+                batch.put(BATCH_VERSION).putShort(CompressionCodecs.NONE);
+                WireFormat.writeVarint(batch, messages.size());
+                WireFormat.writeVarint(batch, length);
+                batch.put(encoded);
+            }
+        } else {
+            batch.put(encoded);
+        }
+        batch.flip();
+        return copyOf(batch);
+    }
+
+    /**
+     * Decodes a batch built by {@link #compressBatch(List)}. The returned messages are read lazily from a single
+     * decompressed buffer.
+     *
+     * @param batch the batch, consumed from position to limit
+     * @return the messages of the batch
+     * @throws OMSUnsupportException if the codec of the batch is unknown
+     * @throws io.openmessaging.exception.OMSMessageFormatException if the batch is malformed
+     */
+    public static List<Message> decompressBatch(ByteBuffer batch) {
+        if (batch.remaining() < 3) {
+            throw WireFormat.malformed("unexpected end of data");
+        }
+        byte version = batch.get();
+        if (version != BATCH_VERSION) {
+            throw WireFormat.malformed("unsupported batch version " + version);
+        }
+        short id = batch.getShort();
+        long count = WireFormat.readVarint(batch);
+        long length = WireFormat.readVarint(batch);
+        if (count < 0 || length < 0 || length > Integer.MAX_VALUE || count > length / MessageCodec.FIXED_SIZE) {
+            throw WireFormat.malformed("illegal batch layout");
+        }
+        ByteBuffer encoded;
+        if (id == CompressionCodecs.NONE) {
+            if (length != batch.remaining()) {
+                throw WireFormat.malformed("the batch does not match its length");
+            }
+            encoded = batch.slice();
+            batch.position(batch.limit());
+        } else {
+            checkRatio(length, batch.remaining());
+            encoded = ByteBuffer.allocate((int) length);
+            codecOf(id).decompress(batch, encoded);
+            encoded.flip();
+        }
+        List<Message> messages = new ArrayList<Message>((int) count);
+        for (long i = 0; i < count; i++) {
+            messages.add(MessageCodec.decode(encoded));
+        }
+        if (encoded.hasRemaining()) {
+            throw WireFormat.malformed("trailing data after the last message of the batch");
+        }
+        return messages;
+    }
+
+    private static CompressionCodec codecOf(short id) {
+        CompressionCodec codec = CompressionCodecs.codec(id);
+        if (codec == null) {
+            throw new OMSUnsupportException(OMSResponseStatus.STATUS_10005.getStatusCode(),
+                String.format(OMSResponseStatus.STATUS_10005.getMore(), id));
+        }
+        return codec;
+    }
+
+    private static int uncompressedLength(ByteBuffer body) {
+        long length = WireFormat.readVarint(body);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw WireFormat.malformed("illegal uncompressed length " + length);
+        }
+        return (int) length;
+    }
+
+    private static void checkRatio(long uncompressedLength, int compressedLength) {
+        if (uncompressedLength > (long) compressedLength * MAX_COMPRESSION_RATIO) {
+            throw WireFormat.malformed("the uncompressed length " + uncompressedLength + " does not match "
+                + compressedLength + " compressed bytes");
+        }
+    }
+
+    private static ByteBuffer scratch(int slot, int capacity) {
+        ByteBuffer[] buffers = SCRATCH.get();
+        ByteBuffer buffer = buffers[slot];
+        if (buffer == null || buffer.capacity() < capacity) {
+            buffer = ByteBuffer.allocate(capacity);
+            if (capacity <= MAX_POOLED_CAPACITY) {
+                buffers[slot] = buffer;
+            }
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static ByteBuffer copyOf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.message.Message;
+import io.openmessaging.message.MessageFactory;
+import io.openmessaging.message.Recyclable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link MessageFactory} which hands out {@link Recyclable} messages from thread-local pools, used by OMS
+ * internally.
+ * <p>
+ * Each thread creating messages owns a bounded stack of free messages. A message released on its owner thread goes
+ * straight back to that stack; a message released on another thread, typically the I/O thread completing the send, is
+ * pushed onto a lock-free list of the owner pool which the owner drains when its stack runs empty. The pushes link the
+ * messages themselves, so recycling never allocates. A message released while its owner stack is full, or still on the
+ * foreign list once a drain has filled the stack, is not pooled and left to the garbage collector.
+ * <p>
+ * When leak detection is enabled, by the constructor or the system property {@value #LEAK_DETECTION_PROPERTY}, every
+ * message handed out is tracked by a weak reference carrying the stack trace of its creation, and messages that are
+ * garbage collected without being released are reported through {@link java.util.logging}. Leak detection is meant
+ * for debugging, it costs an allocation and a stack walk per message.
+ * <p>
+ * Like {@link DefaultMessageFactory}, the factory can give the messages {@link IndexedKeyValue} properties, which are
+ * cleared and kept with the message when it is recycled.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class PooledMessageFactory implements MessageFactory {
+    /**
+     * The system property enabling leak detection for the factories created by the default constructor.
+     */
+    public static final String LEAK_DETECTION_PROPERTY = "oms.message.pool.leakDetection";
+
+    private static final int DEFAULT_MAX_POOLED_PER_THREAD = 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(PooledMessageFactory.class.getName());
+
+    private final int maxPooledPerThread;
+    private final boolean indexedProperties;
+    private final ThreadLocal<Pool> pools;
+    private final LeakDetector leakDetector;
+
+    public PooledMessageFactory() {
+        this(DEFAULT_MAX_POOLED_PER_THREAD, Boolean.getBoolean(LEAK_DETECTION_PROPERTY));
+    }
+
+    public PooledMessageFactory(int maxPooledPerThread, boolean leakDetection) {
+        this(maxPooledPerThread, leakDetection, false);
+    }
+
+    public PooledMessageFactory(int maxPooledPerThread, boolean leakDetection, boolean indexedProperties) {
+        if (maxPooledPerThread < 0) {
+            throw new IllegalArgumentException("maxPooledPerThread must not be negative: " + maxPooledPerThread);
+        }
+        this.maxPooledPerThread = maxPooledPerThread;
+        this.indexedProperties = indexedProperties;
+        this.leakDetector = leakDetection ? new LeakDetector() : null;
+        this.pools = new ThreadLocal<Pool>() {
+            @Override
+            protected Pool initialValue() {
+                return new Pool(Thread.currentThread(), PooledMessageFactory.this.maxPooledPerThread);
+            }
+        };
+    }
+
+    @Override
+    public Message createMessage(String queueName, byte[] body) {
+        PooledMessage message = acquire();
+        message.header().setDestination(queueName);
+        message.setData(body);
+        return message;
+    }
+
+    /**
+     * Creates a {@code Message} whose body is the remaining bytes of the specified buffers, which are not copied.
+     *
+     * @param queueName the target queue to send
+     * @param body the components of the message body
+     * @return the created {@code Message} object, which must be released once no longer used
+     */
+    public Message createMessage(String queueName, ByteBuffer... body) {
+        PooledMessage message = acquire();
+        message.header().setDestination(queueName);
+        message.setBody(body);
+        return message;
+    }
+
+    /**
+     * Returns the number of leaked messages detected so far, always zero if leak detection is disabled.
+     *
+     * @return the number of messages garbage collected without being released
+     */
+    public long leakCount() {
+        if (leakDetector == null) {
+            return 0;
+        }
+        leakDetector.poll();
+        return leakDetector.leaks.get();
+    }
+
+    private PooledMessage acquire() {
+        Pool pool = pools.get();
+        PooledMessage message = pool.pop();
+        if (message == null) {
+            message = new PooledMessage(pool);
+            if (indexedProperties) {
+                message.indexProperties();
+            }
+        }
+        message.released = 0;
+        if (leakDetector != null) {
+            leakDetector.poll();
+            message.leak = leakDetector.track(message);
+        }
+        return message;
+    }
+
+    /**
+     * A free list owned by one thread.
+     */
+    private static final class Pool {
+        private final Thread owner;
+        private final PooledMessage[] stack;
+        private int size;
+        private final AtomicReference<PooledMessage> foreign = new AtomicReference<PooledMessage>();
+
+        Pool(Thread owner, int capacity) {
+            this.owner = owner;
+            this.stack = new PooledMessage[capacity];
+        }
+
+        PooledMessage pop() {
+            if (size == 0 && !drainForeign()) {
+                return null;
+            }
+            PooledMessage message = stack[--size];
+            stack[size] = null;
+            return message;
+        }
+
+        void push(PooledMessage message) {
+            if (Thread.currentThread() == owner) {
+                if (size < stack.length) {
+                    stack[size++] = message;
+                }
+                return;
+            }
+            PooledMessage head;
+            do {
+                head = foreign.get();
+                message.next = head;
+            } while (!foreign.compareAndSet(head, message));
+        }
+
+        private boolean drainForeign() {
+            PooledMessage message = foreign.getAndSet(null);
+            // The messages left once the stack is full are dropped to the garbage collector.
+            while (message != null && size < stack.length) {
+                PooledMessage next = message.next;
+                message.next = null;
+                stack[size++] = message;
+                message = next;
+            }
+            return size > 0;
+        }
+    }
+
+    private static final class PooledMessage extends DefaultMessage implements Recyclable {
+        private static final AtomicIntegerFieldUpdater<PooledMessage> RELEASED =
+            AtomicIntegerFieldUpdater.newUpdater(PooledMessage.class, "released");
+
+        private final Pool pool;
+        private PooledMessage next;
+        private volatile int released;
+        private LeakTracker leak;
+
+        PooledMessage(Pool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void release() {
+            if (!RELEASED.compareAndSet(this, 0, 1)) {
+                throw new IllegalStateException("The message has already been released");
+            }
+            if (leak != null) {
+                leak.close();
+                leak = null;
+            }
+            clear();
+            pool.push(this);
+        }
+    }
+
+    private static final class LeakTracker extends WeakReference<Object> {
+        private final Throwable creation;
+        private final Set<LeakTracker> live;
+
+        LeakTracker(Object referent, ReferenceQueue<Object> queue, Set<LeakTracker> live) {
+            super(referent, queue);
+            this.creation = new Throwable("Created at");
+            this.live = live;
+            live.add(this);
+        }
+
+        void close() {
+            live.remove(this);
+            clear();
+        }
+    }
+
+    private static final class LeakDetector {
+        private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+        private final Set<LeakTracker> live = ConcurrentHashMap.newKeySet();
+        private final AtomicLong leaks = new AtomicLong();
+
+        LeakTracker track(PooledMessage message) {
+            return new LeakTracker(message, queue, live);
+        }
+
+        void poll() {
+            LeakTracker tracker;
+            while ((tracker = (LeakTracker) queue.poll()) != null) {
+                // Released trackers are cleared before collection and never enqueued, so this one leaked.
+                if (live.remove(tracker)) {
+                    leaks.incrementAndGet();
+                    LOGGER.log(Level.WARNING, "A pooled message was garbage collected without being released",
+                        tracker.creation);
+                }
+            }
+        }
+    }
+}
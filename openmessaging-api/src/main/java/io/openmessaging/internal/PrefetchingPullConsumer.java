@@ -0,0 +1,465 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.ServiceLifeState;
+import io.openmessaging.consumer.MessageReceipt;
+import io.openmessaging.consumer.PullConsumer;
+import io.openmessaging.extension.Extension;
+import io.openmessaging.extension.QueueMetaData;
+import io.openmessaging.interceptor.ConsumerInterceptor;
+import io.openmessaging.message.Message;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link PullConsumer} decorator prefetching messages from the underlying consumer on a background thread and
+ * serving {@link #receive(long)} and {@link #batchReceive(long)} from memory, used by OMS internally.
+ * <p>
+ * The fetched messages are buffered per queue, and served round-robin over the queues. The fetcher keeps about one
+ * fetch size of messages buffered, and pauses while a queue holds {@link
+ * OMSBuiltinKeys#CONSUMER_PREFETCH_QUEUE_MESSAGES} messages or the whole consumer {@link
+ * OMSBuiltinKeys#CONSUMER_PREFETCH_MAX_BYTES} body bytes, since the underlying consumer cannot be told which queue to
+ * fetch from.
+ * <p>
+ * The fetch size adapts to the consumption rate, following Little's law: it tracks twice the number of messages
+ * consumed during one fetch round trip, grows twofold when a receive finds the buffer empty while the server still
+ * had messages to serve, and shrinks by a quarter at most per fetch otherwise, within {@link
+ * OMSBuiltinKeys#CONSUMER_FETCH_MIN_MESSAGES} and {@link OMSBuiltinKeys#CONSUMER_FETCH_MAX_MESSAGES}. The adaptive
+ * fetch size also bounds the messages returned by a single {@link #batchReceive(long)}.
+ * <p>
+ * Buffered messages are never acknowledged, so those dropped by {@link #unbindQueue(Collection)} or {@link #stop()}
+ * are redelivered by the server. The receive methods positioned by a {@link MessageReceipt} bypass the buffer.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class PrefetchingPullConsumer implements PullConsumer {
+    public static final int DEFAULT_QUEUE_MESSAGES = 1000;
+    public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+    public static final int DEFAULT_FETCH_MIN_MESSAGES = 16;
+    public static final int DEFAULT_FETCH_MAX_MESSAGES = 4096;
+    public static final long DEFAULT_FETCH_TIMEOUT_MS = 100;
+
+    private static final Logger LOGGER = Logger.getLogger(PrefetchingPullConsumer.class.getName());
+    private static final double SMOOTHING = 0.2;
+
+    private final PullConsumer delegate;
+    private final int queueMessages;
+    private final long maxBytes;
+    private final int fetchMinMessages;
+    private final int fetchMaxMessages;
+    private final long fetchTimeoutMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition needFetch = lock.newCondition();
+    private final Map<String, ArrayDeque<Message>> buffers = new LinkedHashMap<String, ArrayDeque<Message>>();
+    private final List<ArrayDeque<Message>> order = new ArrayList<ArrayDeque<Message>>();
+    private int cursor;
+    private int bufferedMessages;
+    private long bufferedBytes;
+    private int fullQueues;
+    private int fetchSize;
+    private boolean starved;
+    private boolean lastFetchHit;
+    private long consumed;
+    private long lastAdaptNanos;
+    private double consumptionRate;
+    private double fetchLatencyNanos;
+
+    private volatile boolean running;
+    private volatile Thread fetcher;
+
+    public PrefetchingPullConsumer(PullConsumer delegate, KeyValue attributes) {
+        this(delegate, attributes.getInt(OMSBuiltinKeys.CONSUMER_PREFETCH_QUEUE_MESSAGES, DEFAULT_QUEUE_MESSAGES),
+            attributes.getLong(OMSBuiltinKeys.CONSUMER_PREFETCH_MAX_BYTES, DEFAULT_MAX_BYTES),
+            attributes.getInt(OMSBuiltinKeys.CONSUMER_FETCH_MIN_MESSAGES, DEFAULT_FETCH_MIN_MESSAGES),
+            attributes.getInt(OMSBuiltinKeys.CONSUMER_FETCH_MAX_MESSAGES, DEFAULT_FETCH_MAX_MESSAGES),
+            attributes.getLong(OMSBuiltinKeys.CONSUMER_FETCH_TIMEOUT_MS, DEFAULT_FETCH_TIMEOUT_MS));
+    }
+
+    public PrefetchingPullConsumer(PullConsumer delegate, int queueMessages, long maxBytes, int fetchMinMessages,
+        int fetchMaxMessages, long fetchTimeoutMs) {
+        if (queueMessages <= 0 || maxBytes <= 0 || fetchMinMessages <= 0 || fetchMaxMessages < fetchMinMessages
+            || fetchTimeoutMs <= 0) {
+            throw new IllegalArgumentException("Illegal prefetch settings: " + queueMessages + " messages per queue, "
+                + maxBytes + " bytes, " + fetchMinMessages + " to " + fetchMaxMessages + " messages per fetch, "
+                + fetchTimeoutMs + " ms timeout");
+        }
+        this.delegate = delegate;
+        this.queueMessages = queueMessages;
+        this.maxBytes = maxBytes;
+        this.fetchMinMessages = fetchMinMessages;
+        this.fetchMaxMessages = fetchMaxMessages;
+        this.fetchTimeoutMs = fetchTimeoutMs;
+        this.fetchSize = fetchMinMessages;
+    }
+
+    @Override
+    public void start() {
+        delegate.start();
+        if (fetcher == null) {
+            running = true;
+            Thread thread = new Thread(new Runnable() {
+                @Override public void run() {
+                    fetch();
+                }
+            }, "OMS-PrefetchingPullConsumer-Fetcher");
+            thread.setDaemon(true);
+            fetcher = thread;
+            lastAdaptNanos = System.nanoTime();
+            thread.start();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = fetcher;
+        fetcher = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(fetchTimeoutMs * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            buffers.clear();
+            order.clear();
+            bufferedMessages = 0;
+            bufferedBytes = 0;
+            fullQueues = 0;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        delegate.stop();
+    }
+
+    @Override
+    public ServiceLifeState currentState() {
+        return delegate.currentState();
+    }
+
+    @Override
+    public Set<QueueMetaData> getQueueMetaData(String queueName) {
+        return delegate.getQueueMetaData(queueName);
+    }
+
+    @Override
+    public Optional<Extension> getExtension() {
+        return delegate.getExtension();
+    }
+
+    @Override
+    public Set<String> getBindQueues() {
+        return delegate.getBindQueues();
+    }
+
+    @Override
+    public void addInterceptor(ConsumerInterceptor interceptor) {
+        delegate.addInterceptor(interceptor);
+    }
+
+    @Override
+    public void removeInterceptor(ConsumerInterceptor interceptor) {
+        delegate.removeInterceptor(interceptor);
+    }
+
+    @Override
+    public void bindQueue(Collection<String> queueNames) {
+        delegate.bindQueue(queueNames);
+    }
+
+    @Override
+    public void unbindQueue(Collection<String> queueNames) {
+        delegate.unbindQueue(queueNames);
+        lock.lock();
+        try {
+            for (String queueName : queueNames) {
+                ArrayDeque<Message> buffer = buffers.remove(queueName);
+                if (buffer != null) {
+                    order.remove(buffer);
+                    if (buffer.size() >= queueMessages) {
+                        fullQueues--;
+                    }
+                    for (Message message : buffer) {
+                        bufferedMessages--;
+                        bufferedBytes -= message.getBodyLength();
+                    }
+                }
+            }
+            needFetch.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message receive() {
+        if (!running) {
+            return delegate.receive();
+        }
+        lock.lock();
+        try {
+            Message message;
+            while ((message = poll()) == null && running) {
+                notEmpty.awaitUninterruptibly();
+            }
+            return message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message receive(long timeout) {
+        if (!running) {
+            return delegate.receive(timeout);
+        }
+        lock.lock();
+        try {
+            return await(timeout) ? poll() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message receive(String queueName, QueueMetaData queueMetaData, MessageReceipt messageReceipt,
+        long timeout) {
+        return delegate.receive(queueName, queueMetaData, messageReceipt, timeout);
+    }
+
+    @Override
+    public List<Message> batchReceive(long timeout) {
+        if (!running) {
+            return delegate.batchReceive(timeout);
+        }
+        lock.lock();
+        try {
+            if (!await(timeout)) {
+                return Collections.emptyList();
+            }
+            int max = Math.min(fetchSize, bufferedMessages);
+            List<Message> messages = new ArrayList<Message>(max);
+            Message message;
+            while (messages.size() < max && (message = poll()) != null) {
+                messages.add(message);
+            }
+            return messages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Message> batchReceive(String queueName, QueueMetaData queueMetaData, MessageReceipt messageReceipt,
+        long timeout) {
+        return delegate.batchReceive(queueName, queueMetaData, messageReceipt, timeout);
+    }
+
+    @Override
+    public void ack(MessageReceipt receiptHandle) {
+        delegate.ack(receiptHandle);
+    }
+
+    /**
+     * Returns the current adaptive fetch size.
+     *
+     * @return the number of messages the fetcher keeps buffered
+     */
+    public int fetchSize() {
+        lock.lock();
+        try {
+            return fetchSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of messages buffered over all the queues.
+     *
+     * @return the buffered messages
+     */
+    public int bufferedMessages() {
+        lock.lock();
+        try {
+            return bufferedMessages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of body bytes buffered over all the queues.
+     *
+     * @return the buffered body bytes
+     */
+    public long bufferedBytes() {
+        lock.lock();
+        try {
+            return bufferedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean await(long timeout) {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (bufferedMessages == 0) {
+            starved = true;
+            needFetch.signal();
+            if (nanos <= 0 || !running) {
+                return false;
+            }
+            try {
+                nanos = notEmpty.awaitNanos(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Message poll() {
+        if (bufferedMessages == 0) {
+            starved = true;
+            needFetch.signal();
+            return null;
+        }
+        ArrayDeque<Message> buffer;
+        do {
+            buffer = order.get(cursor++ % order.size());
+        }
+        while (buffer.isEmpty());
+        cursor %= order.size();
+        if (buffer.size() == queueMessages) {
+            fullQueues--;
+        }
+        Message message = buffer.poll();
+        bufferedMessages--;
+        bufferedBytes -= message.getBodyLength();
+        consumed++;
+        if (bufferedMessages < fetchSize) {
+            needFetch.signal();
+        }
+        return message;
+    }
+
+    private void fetch() {
+        while (running) {
+            lock.lock();
+            try {
+                while (running && (bufferedMessages >= fetchSize || bufferedBytes >= maxBytes || fullQueues > 0)) {
+                    needFetch.await();
+                }
+                adapt();
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                lock.unlock();
+            }
+            if (!running) {
+                break;
+            }
+            try {
+                long start = System.nanoTime();
+                List<Message> messages = delegate.batchReceive(fetchTimeoutMs);
+                long latency = System.nanoTime() - start;
+                lastFetchHit = messages != null && !messages.isEmpty();
+                if (lastFetchHit) {
+                    offer(messages, latency);
+                }
+            } catch (Throwable e) {
+                if (!running) {
+                    break;
+                }
+                LOGGER.log(Level.WARNING, "Failed to prefetch messages, retrying in " + fetchTimeoutMs + " ms", e);
+                try {
+                    Thread.sleep(fetchTimeoutMs);
+                } catch (InterruptedException ignored) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void offer(List<Message> messages, long latency) {
+        lock.lock();
+        try {
+            fetchLatencyNanos = fetchLatencyNanos == 0 ? latency
+                : fetchLatencyNanos + SMOOTHING * (latency - fetchLatencyNanos);
+            for (Message message : messages) {
+                String queueName = message.header().getDestination();
+                ArrayDeque<Message> buffer = buffers.get(queueName);
+                if (buffer == null) {
+                    buffer = new ArrayDeque<Message>();
+                    buffers.put(queueName, buffer);
+                    order.add(buffer);
+                }
+                buffer.add(message);
+                if (buffer.size() == queueMessages) {
+                    fullQueues++;
+                }
+                bufferedMessages++;
+                bufferedBytes += message.getBodyLength();
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adapt() {
+        long now = System.nanoTime();
+        long elapsed = now - lastAdaptNanos;
+        if (elapsed > 0) {
+            double rate = (double) consumed / elapsed;
+            consumptionRate = consumptionRate + SMOOTHING * (rate - consumptionRate);
+        }
+        consumed = 0;
+        lastAdaptNanos = now;
+        int target = (int) Math.min(fetchMaxMessages, Math.ceil(2 * consumptionRate * fetchLatencyNanos));
+        long next = starved && lastFetchHit ? Math.max(target, 2L * fetchSize)
+            : Math.max(target, fetchSize - fetchSize / 4);
+        fetchSize = (int) Math.max(fetchMinMessages, Math.min(fetchMaxMessages, next));
+        starved = false;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.interceptor.Context;
+import io.openmessaging.interceptor.ProducerInterceptor;
+import io.openmessaging.message.Message;
+import java.util.List;
+
+/**
+ * An {@link InterceptorChain} of {@link ProducerInterceptor}s, used by OMS internally.
+ * <p>
+ * A producer calls {@link #preSend(Message)} before sending a message, then {@link #postSend(Message, Invocation)}
+ * with the returned invocation once the send succeeded, or {@link #release(Invocation)} if it failed. The interceptors
+ * run in their registration order, and an exception thrown by one of them propagates to the producer.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class ProducerInterceptorChain extends InterceptorChain<ProducerInterceptor> {
+
+    /**
+     * Invokes {@link ProducerInterceptor#preSend(Message, Context)} of every interceptor.
+     *
+     * @param message the message to send
+     * @return the invocation to hand to {@link #postSend(Message, Invocation)}
+     */
+    public Invocation preSend(Message message) {
+        Invocation invocation = acquire();
+        ProducerInterceptor interceptor = interceptor(invocation);
+        if (interceptor != null) {
+            try {
+                interceptor.preSend(message, invocation);
+            } catch (RuntimeException | Error e) {
+                release(invocation);
+                throw e;
+            }
+        }
+        return invocation;
+    }
+
+    /**
+     * Invokes {@link ProducerInterceptor#postSend(Message, Context)} of the interceptors the message was pre-processed
+     * by, then gives back the invocation.
+     *
+     * @param message the sent message
+     * @param invocation the invocation returned by {@link #preSend(Message)}
+     */
+    public void postSend(Message message, Invocation invocation) {
+        ProducerInterceptor interceptor = interceptor(invocation);
+        try {
+            if (interceptor != null) {
+                interceptor.postSend(message, invocation);
+            }
+        } finally {
+            release(invocation);
+        }
+    }
+
+    @Override
+    protected ProducerInterceptor compile(List<ProducerInterceptor> interceptors) {
+        switch (interceptors.size()) {
+            case 0:
+                return null;
+            case 1:
+                return interceptors.get(0);
+            default:
+                return new Composite(interceptors.toArray(new ProducerInterceptor[interceptors.size()]));
+        }
+    }
+
+    private static final class Composite implements ProducerInterceptor {
+        private final ProducerInterceptor[] interceptors;
+
+        private Composite(ProducerInterceptor[] interceptors) {
+            this.interceptors = interceptors;
+        }
+
+        @Override
+        public void preSend(Message message, Context attributes) {
+            for (ProducerInterceptor interceptor : interceptors) {
+                interceptor.preSend(message, attributes);
+            }
+        }
+
+        @Override
+        public void postSend(Message message, Context attributes) {
+            for (ProducerInterceptor interceptor : interceptors) {
+                interceptor.postSend(message, attributes);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A budget of in-flight messages and bytes. A message larger than the whole budget is admitted when nothing else is in
+ * flight, so it can never wait forever.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+final class SendWindow {
+    private final int maxMessages;
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private volatile int messages;
+    private volatile long bytes;
+
+    SendWindow(int maxMessages, long maxBytes) {
+        if (maxMessages <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Illegal in-flight window: " + maxMessages + " messages, "
+                + maxBytes + " bytes");
+        }
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+    }
+
+    boolean tryAcquire(int size) {
+        lock.lock();
+        try {
+            if (!fits(size)) {
+                return false;
+            }
+            add(1, size);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean acquire(int size, long timeoutMillis) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lockInterruptibly();
+        try {
+            while (!fits(size)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = released.awaitNanos(nanos);
+            }
+            add(1, size);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(int count, long size) {
+        lock.lock();
+        try {
+            add(-count, -size);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int messages() {
+        return messages;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    int maxMessages() {
+        return maxMessages;
+    }
+
+    long maxBytes() {
+        return maxBytes;
+    }
+
+    private boolean fits(int size) {
+        return messages == 0 || messages < maxMessages && bytes + size <= maxBytes;
+    }
+
+    private void add(int count, long size) {
+        messages += count;
+        bytes += size;
+    }
+}
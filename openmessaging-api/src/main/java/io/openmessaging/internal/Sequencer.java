@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs actions in the order their slots were reserved, whatever the order the actions are supplied in.
+ * <p>
+ * An action supplied before the ones of its preceding slots waits for them without blocking any thread. The actions
+ * ready in order are run one at a time, by the thread supplying the last missing action, or by the executor of the
+ * sequencer if it has one, so the supplying thread, possibly an I/O thread, never runs them. An executor rejecting the
+ * run, typically once shut down, makes the supplying thread run the actions instead.
+ */
+final class Sequencer {
+    private static final Logger LOGGER = Logger.getLogger(Sequencer.class.getName());
+
+    private final ArrayDeque<Slot> slots = new ArrayDeque<Slot>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final Executor executor;
+    private volatile Thread drainer;
+    private final Runnable drainTask = new Runnable() {
+        @Override public void run() {
+            drainLoop();
+        }
+    };
+
+    Sequencer() {
+        this(null);
+    }
+
+    Sequencer(Executor executor) {
+        this.executor = executor;
+    }
+
+    Slot reserve() {
+        Slot slot = new Slot();
+        synchronized (slots) {
+            slots.add(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Returns whether the current thread is running the actions of this sequencer, in which case an action supplied
+     * to a slot reserved after the running one cannot run before the current action returns.
+     */
+    boolean isDraining() {
+        return drainer == Thread.currentThread();
+    }
+
+    int size() {
+        synchronized (slots) {
+            return slots.size();
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        if (executor != null) {
+            try {
+                executor.execute(drainTask);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Shut down, the remaining actions run on this thread.
+            }
+        }
+        drainLoop();
+    }
+
+    private void drainLoop() {
+        int missed = 1;
+        do {
+            drainer = Thread.currentThread();
+            while (true) {
+                Runnable action;
+                synchronized (slots) {
+                    Slot head = slots.peek();
+                    if (head == null || head.action == null) {
+                        break;
+                    }
+                    slots.poll();
+                    action = head.action;
+                }
+                try {
+                    action.run();
+                } catch (Throwable t) {
+                    LOGGER.log(Level.WARNING, "A sequenced action failed", t);
+                }
+            }
+            // Cleared while this thread still owns the drain, before another thread may take it over.
+            drainer = null;
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    final class Slot {
+        private volatile Runnable action;
+
+        void run(Runnable action) {
+            this.action = action;
+            drain();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.ImmutableKeyValue;
+import io.openmessaging.KeyValue;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link KeyValue} implementation which keeps every value in its native type, used by OMS internally.
+ * <p>
+ * Unlike {@link DefaultKeyValue}, primitive values are neither formatted into a {@code String} on {@code put} nor
+ * parsed back on {@code get}: each entry is a single tagged slot holding the raw bits of the value. A value read back
+ * with the type it was put with, or with a wider numeric type, is returned directly; any other combination is
+ * converted through the {@code String} form so the results stay identical to {@link DefaultKeyValue}.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class TypedKeyValue implements KeyValue, TypedValues.Source {
+    private final Map<String, TypedValues.Slot> properties;
+
+    public TypedKeyValue() {
+        properties = new ConcurrentHashMap<String, TypedValues.Slot>();
+    }
+
+    @Override
+    public KeyValue put(String key, boolean value) {
+        properties.put(key, TypedValues.Slot.of(value));
+        return this;
+    }
+
+    @Override
+    public KeyValue put(String key, short value) {
+        properties.put(key, TypedValues.Slot.of(value));
+        return this;
+    }
+
+    @Override
+    public KeyValue put(String key, int value) {
+        properties.put(key, TypedValues.Slot.of(value));
+        return this;
+    }
+
+    @Override
+    public KeyValue put(String key, long value) {
+        properties.put(key, TypedValues.Slot.of(value));
+        return this;
+    }
+
+    @Override
+    public KeyValue put(String key, double value) {
+        properties.put(key, TypedValues.Slot.of(value));
+        return this;
+    }
+
+    @Override
+    public KeyValue put(String key, String value) {
+        properties.put(key, TypedValues.Slot.of(value));
+        return this;
+    }
+
+    @Override
+    public boolean getBoolean(String key) {
+        return getBoolean(key, false);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        TypedValues.Slot slot = properties.get(key);
+        return slot == null ? defaultValue : TypedValues.toBoolean(slot.type, slot.bits, slot.text);
+    }
+
+    @Override
+    public short getShort(String key) {
+        return getShort(key, (short) 0);
+    }
+
+    @Override
+    public short getShort(String key, short defaultValue) {
+        TypedValues.Slot slot = properties.get(key);
+        return slot == null ? defaultValue : TypedValues.toShort(slot.type, slot.bits, slot.text);
+    }
+
+    @Override
+    public int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    @Override
+    public int getInt(String key, int defaultValue) {
+        TypedValues.Slot slot = properties.get(key);
+        return slot == null ? defaultValue : TypedValues.toInt(slot.type, slot.bits, slot.text);
+    }
+
+    @Override
+    public long getLong(String key) {
+        return getLong(key, 0L);
+    }
+
+    @Override
+    public long getLong(String key, long defaultValue) {
+        TypedValues.Slot slot = properties.get(key);
+        return slot == null ? defaultValue : TypedValues.toLong(slot.type, slot.bits, slot.text);
+    }
+
+    @Override
+    public double getDouble(String key) {
+        return getDouble(key, 0D);
+    }
+
+    @Override
+    public double getDouble(String key, double defaultValue) {
+        TypedValues.Slot slot = properties.get(key);
+        return slot == null ? defaultValue : TypedValues.toDouble(slot.type, slot.bits, slot.text);
+    }
+
+    @Override
+    public String getString(String key) {
+        return getString(key, null);
+    }
+
+    @Override
+    public String getString(String key, String defaultValue) {
+        TypedValues.Slot slot = properties.get(key);
+        return slot == null ? defaultValue : TypedValues.toString(slot.type, slot.bits, slot.text);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return properties.keySet();
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return properties.containsKey(key);
+    }
+
+    /**
+     * Returns an immutable snapshot of the current entries.
+     *
+     * @return the frozen copy of this {@code KeyValue}
+     */
+    public ImmutableKeyValue freeze() {
+        return LayeredKeyValue.copyOf(this);
+    }
+
+    @Override
+    public void forEach(TypedValues.Visitor visitor) {
+        for (Map.Entry<String, TypedValues.Slot> entry : properties.entrySet()) {
+            TypedValues.Slot slot = entry.getValue();
+            visitor.visit(entry.getKey(), slot.type, slot.bits, slot.text);
+        }
+    }
+}
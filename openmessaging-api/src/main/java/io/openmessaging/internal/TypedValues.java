@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+/**
+ * Type tags and conversion rules shared by the typed {@code KeyValue} implementations.
+ * <p>
+ * A typed value is represented by a tag, the raw bits of a primitive value and, for {@code String} values only, the
+ * text itself. Reads with a matching or wider numeric type are served from the raw bits, every other combination goes
+ * through the {@code String} form, the same way {@link DefaultKeyValue} does.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+final class TypedValues {
+    static final byte BOOLEAN = 1;
+    static final byte SHORT = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte DOUBLE = 5;
+    static final byte STRING = 6;
+
+    private TypedValues() {
+    }
+
+    static long bits(boolean value) {
+        return value ? 1L : 0L;
+    }
+
+    static long bits(double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+
+    static boolean toBoolean(byte type, long bits, String text) {
+        if (type == BOOLEAN) {
+            return bits != 0;
+        }
+        return Boolean.valueOf(toString(type, bits, text));
+    }
+
+    static short toShort(byte type, long bits, String text) {
+        if (type == SHORT) {
+            return (short) bits;
+        }
+        return Short.valueOf(toString(type, bits, text));
+    }
+
+    static int toInt(byte type, long bits, String text) {
+        if (type == SHORT || type == INT) {
+            return (int) bits;
+        }
+        return Integer.valueOf(toString(type, bits, text));
+    }
+
+    static long toLong(byte type, long bits, String text) {
+        if (type == SHORT || type == INT || type == LONG) {
+            return bits;
+        }
+        return Long.valueOf(toString(type, bits, text));
+    }
+
+    static double toDouble(byte type, long bits, String text) {
+        switch (type) {
+            case SHORT:
+            case INT:
+            case LONG:
+                return (double) bits;
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            default:
+                return Double.valueOf(toString(type, bits, text));
+        }
+    }
+
+    static String toString(byte type, long bits, String text) {
+        switch (type) {
+            case BOOLEAN:
+                return String.valueOf(bits != 0);
+            case SHORT:
+                return String.valueOf((short) bits);
+            case INT:
+                return String.valueOf((int) bits);
+            case LONG:
+                return String.valueOf(bits);
+            case DOUBLE:
+                return String.valueOf(Double.longBitsToDouble(bits));
+            default:
+                return text;
+        }
+    }
+
+    /**
+     * Receives the entries of a typed {@code KeyValue} together with their type tags.
+     */
+    interface Visitor {
+        void visit(String key, byte type, long bits, String text);
+    }
+
+    /**
+     * Implemented by the typed {@code KeyValue} implementations, so the entries can be copied or encoded without
+     * going through their {@code String} form.
+     */
+    interface Source {
+        void forEach(Visitor visitor);
+    }
+
+    /**
+     * An immutable tagged value, one instance per entry.
+     */
+    static final class Slot {
+        private static final Slot TRUE = new Slot(BOOLEAN, 1L, null);
+        private static final Slot FALSE = new Slot(BOOLEAN, 0L, null);
+
+        final byte type;
+        final long bits;
+        final String text;
+
+        private Slot(byte type, long bits, String text) {
+            this.type = type;
+            this.bits = bits;
+            this.text = text;
+        }
+
+        static Slot of(boolean value) {
+            return value ? TRUE : FALSE;
+        }
+
+        static Slot of(short value) {
+            return new Slot(SHORT, value, null);
+        }
+
+        static Slot of(int value) {
+            return new Slot(INT, value, null);
+        }
+
+        static Slot of(long value) {
+            return new Slot(LONG, value, null);
+        }
+
+        static Slot of(double value) {
+            return new Slot(DOUBLE, bits(value), null);
+        }
+
+        static Slot of(String value) {
+            return new Slot(STRING, 0L, String.valueOf(value));
+        }
+    }
+}
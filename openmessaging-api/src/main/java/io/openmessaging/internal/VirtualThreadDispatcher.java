@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.OMSResponseStatus;
+import io.openmessaging.consumer.DispatchingMessageListener;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.message.Message;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link DispatchingMessageListener} processing each message on its own virtual thread, so listeners blocking on
+ * I/O scale to a large number of concurrent messages, used by OMS internally.
+ * <p>
+ * The number of messages processed concurrently is bounded by {@link
+ * OMSBuiltinKeys#CONSUMER_DISPATCH_MAX_CONCURRENCY}, the consume thread blocks beyond. On a JDK without virtual threads
+ * the messages are processed by {@link OMSBuiltinKeys#CONSUMER_DISPATCH_THREADS} platform threads instead, still within
+ * the same concurrency bound. The messages are processed in no particular order, see {@link KeyOrderedDispatcher} for
+ * ordered processing.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class VirtualThreadDispatcher implements DispatchingMessageListener {
+    public static final int DEFAULT_MAX_CONCURRENCY = 10000;
+    public static final int DEFAULT_PLATFORM_THREADS = 64;
+
+    private static final Logger LOGGER = Logger.getLogger(VirtualThreadDispatcher.class.getName());
+
+    private final MessageListener listener;
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final Semaphore permits;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    public VirtualThreadDispatcher(MessageListener listener, KeyValue attributes) {
+        this(listener, attributes.getInt(OMSBuiltinKeys.CONSUMER_DISPATCH_MAX_CONCURRENCY, DEFAULT_MAX_CONCURRENCY),
+            attributes.getInt(OMSBuiltinKeys.CONSUMER_DISPATCH_THREADS, DEFAULT_PLATFORM_THREADS));
+    }
+
+    public VirtualThreadDispatcher(MessageListener listener, int maxConcurrency, int platformThreads) {
+        this(listener, maxConcurrency, VirtualThreads.newExecutor(), platformThreads);
+    }
+
+    VirtualThreadDispatcher(MessageListener listener, int maxConcurrency, ExecutorService virtualExecutor,
+        int platformThreads) {
+        if (maxConcurrency <= 0 || platformThreads <= 0) {
+            throw new IllegalArgumentException("Illegal dispatch settings: " + maxConcurrency + " concurrent messages, "
+                + platformThreads + " platform threads");
+        }
+        this.listener = listener;
+        this.virtual = virtualExecutor != null;
+        this.executor = virtual ? virtualExecutor : newPlatformExecutor(platformThreads);
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    static ExecutorService newPlatformExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger();
+
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "OMS-VirtualThreadDispatcher-Fallback-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void onReceived(final Message message, final Context context) {
+        if (shutdown) {
+            throw OMSResponseStatus.generateException(OMSResponseStatus.STATUS_10007, toString());
+        }
+        permits.acquireUninterruptibly();
+        pending.incrementAndGet();
+        try {
+            executor.execute(new Runnable() {
+                @Override public void run() {
+                    process(message, context);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release();
+            throw OMSResponseStatus.generateException(OMSResponseStatus.STATUS_10007, toString());
+        }
+    }
+
+    /**
+     * Returns whether the messages are processed on virtual threads, or on platform threads since the running JDK
+     * does not support virtual threads.
+     *
+     * @return {@code true} if the messages are processed on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public int pendingMessages() {
+        return pending.get();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        executor.shutdown();
+    }
+
+    private void process(Message message, Context context) {
+        try {
+            listener.onReceived(message, context);
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "The listener " + listener + " failed to process a message", t);
+        } finally {
+            release();
+        }
+    }
+
+    private void release() {
+        pending.decrementAndGet();
+        permits.release();
+    }
+}
@@ -122,6 +122,9 @@ public interface Header {
     /**
      * The field {@code COMPRESSION} in headers represents the message body compress algorithm. vendors are free to
      * choose the compression algorithm, but must ensure that the decompressed message is delivered to the user.
+     * <p>
+     * The value is the id of a {@link io.openmessaging.compression.CompressionCodec}, {@code 0} means the body is not
+     * compressed.
      */
     Header setCompression(short compression);
 
@@ -25,6 +25,7 @@ import io.openmessaging.consumer.MessageListener;
 import io.openmessaging.consumer.MessageReceipt;
 import io.openmessaging.exception.OMSMessageFormatException;
 import io.openmessaging.extension.ExtensionHeader;
+import java.nio.ByteBuffer;
 
 /**
  * The {@code Message} interface is the root interface of all OMS messages, and the most commonly used OMS message is
@@ -54,6 +55,11 @@ import io.openmessaging.extension.ExtensionHeader;
  * In BytesMessage, the body is just a byte array, may be compressed and uncompressed in the transmitting process by the
  * messaging system. The application is responsible for explaining the concrete content and format of the message body,
  * OMS is never aware of that.
+ * <p>
+ * Besides the {@code byte[]} accessors, the body can be accessed as {@link ByteBuffer}s, so a body received into a
+ * direct buffer or built in a pooled buffer can flow between the application and the network without being copied
+ * into a heap array. The default implementations of these methods are based on {@link #getData()} and {@link
+ * #setData(byte[])}, implementations that keep the body in buffers should override them.
  *
  * The body part is placed in the implementation classes of {@code Message}.
  *
@@ -100,6 +106,73 @@ public interface Message {
      */
     void setData(byte[] data);
 
+    /**
+     * Get the message body as a read-only {@code ByteBuffer}, whose position is zero and limit is the body length.
+     * <p>
+     * The returned buffer may be a direct buffer. A body held as a single buffer is returned as a view, without
+     * copying, but a body set from several buffers may be merged into a copy, see {@link #getBodyBuffers()} to read
+     * it without copying.
+     *
+     * @return a read-only view of the message body, or {@code null} if the message has no body
+     */
+    default ByteBuffer getBody() {
+        byte[] data = getData();
+        return data == null ? null : ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    /**
+     * Get the message body as a sequence of read-only {@code ByteBuffer}s, which is suitable for gathering writes.
+     * <p>
+     * A body set by {@link #setBody(ByteBuffer...)} with several buffers is returned as the same components, without
+     * being merged.
+     *
+     * @return read-only views of the components of the message body, empty if the message has no body
+     */
+    default ByteBuffer[] getBodyBuffers() {
+        ByteBuffer body = getBody();
+        return body == null ? new ByteBuffer[0] : new ByteBuffer[] {body};
+    }
+
+    /**
+     * Set the message body from the remaining bytes of the specified buffers.
+     * <p>
+     * Implementations may keep references to the buffers instead of copying them, so the caller must not modify the
+     * content of the buffers after this call. The positions and limits of the arguments are left unchanged.
+     *
+     * @param body the components of the message body
+     * @throws NullPointerException if {@code body} or one of its buffers is {@code null}
+     */
+    default void setBody(ByteBuffer... body) {
+        if (body == null) {
+            throw new NullPointerException("body");
+        }
+        int length = 0;
+        for (ByteBuffer buffer : body) {
+            length += buffer.remaining();
+        }
+        byte[] data = new byte[length];
+        int offset = 0;
+        for (ByteBuffer buffer : body) {
+            int remaining = buffer.remaining();
+            buffer.duplicate().get(data, offset, remaining);
+            offset += remaining;
+        }
+        setData(data);
+    }
+
+    /**
+     * Returns the length of the message body in bytes.
+     *
+     * @return the body length, zero if the message has no body
+     */
+    default int getBodyLength() {
+        int length = 0;
+        for (ByteBuffer buffer : getBodyBuffers()) {
+            length += buffer.remaining();
+        }
+        return length;
+    }
+
     /**
      * Get the {@code MessageReceipt} of this Message, which will be used to acknowledge this message.
      *
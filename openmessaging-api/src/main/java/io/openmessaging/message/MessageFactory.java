@@ -32,6 +32,10 @@ public interface MessageFactory {
      * uninterpreted bytes.
      * <p>
      * The returned {@code Message} object only can be sent to the specified queue.
+     * <p>
+     * The properties of a message are usually touched by one thread at a time, implementations may back {@link
+     * Message#properties()} with {@link io.openmessaging.OMS#newCompactKeyValue()} to keep the per-message footprint
+     * small, in which case the properties must not be shared between threads without synchronization.
      *
      * @param queueName the target queue to send
      * @param body the body data for a message
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.message;
+
+/**
+ * A {@code Recyclable} message is borrowed from a pool by {@link MessageFactory#createMessage(String, byte[])} and
+ * must be given back by {@link #release()} once it is no longer used, so steady-state producing doesn't allocate.
+ * <p>
+ * Whoever holds the message last releases it, usually the producer implementation once the send request completes,
+ * or the application for messages which are never sent. After {@code release} the message, including its header,
+ * properties and body, must not be accessed anymore, as it may already have been handed out again.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public interface Recyclable {
+    /**
+     * Gives this message back to its pool.
+     *
+     * @throws IllegalStateException if this message has already been released
+     */
+    void release();
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.producer;
+
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.message.Message;
+
+/**
+ * A {@code BufferedProducer} is a {@link Producer} buffering the asynchronous and oneway sends in process, within a
+ * bounded in-flight window.
+ * <p>
+ * A message is in flight from the call of {@link #sendAsync(Message)} or {@link #sendOneway(Message)} until its send
+ * completes. The window is bounded by {@link OMSBuiltinKeys#PRODUCER_MAX_IN_FLIGHT_MESSAGES} messages and {@link
+ * OMSBuiltinKeys#PRODUCER_MAX_IN_FLIGHT_BYTES} body bytes, so the memory held by a producer stays bounded when the
+ * server stalls. A send exceeding the window is handled according to the {@link OverflowPolicy} set by {@link
+ * OMSBuiltinKeys#PRODUCER_OVERFLOW_POLICY}: the future returned by {@code sendAsync} fails, while {@code sendOneway}
+ * drops the message silently.
+ * <p>
+ * A message larger than the whole window is still accepted when nothing else is in flight.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public interface BufferedProducer extends Producer {
+    /**
+     * Sends the buffered messages of all the destinations without waiting any longer.
+     */
+    void flush();
+
+    /**
+     * Returns the number of messages currently in flight.
+     *
+     * @return the in-flight messages
+     */
+    int inFlightMessages();
+
+    /**
+     * Returns the number of body bytes currently in flight.
+     *
+     * @return the in-flight bytes
+     */
+    long inFlightBytes();
+
+    /**
+     * Returns the maximum number of messages in flight.
+     *
+     * @return the message budget of the window
+     */
+    int maxInFlightMessages();
+
+    /**
+     * Returns the maximum number of body bytes in flight.
+     *
+     * @return the byte budget of the window
+     */
+    long maxInFlightBytes();
+
+    /**
+     * Returns the number of messages rejected or dropped because the window was full since this producer was created.
+     *
+     * @return the overflowed messages
+     */
+    long overflowedMessages();
+}
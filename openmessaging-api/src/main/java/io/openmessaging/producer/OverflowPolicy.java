@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.producer;
+
+/**
+ * The policies applied by a {@link BufferedProducer} when a send would exceed its in-flight window.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The sending thread waits until enough in-flight sends complete, for at most the configured block time.
+     */
+    BLOCK,
+
+    /**
+     * The send fails immediately.
+     */
+    FAIL_FAST,
+
+    /**
+     * The oldest messages not yet handed to the server are dropped to make room, their futures fail. The send fails
+     * immediately if no message can be dropped.
+     */
+    DROP_OLDEST,
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.timer;
+
+/**
+ * A handle of a task scheduled by {@link Timer#newTimeout(Runnable, long, java.util.concurrent.TimeUnit)}.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public interface Timeout {
+    /**
+     * Cancels the task. Cancelling is cheap, the task is discarded lazily by the timer.
+     *
+     * @return {@code true} if the task was cancelled, {@code false} if it has already run or been cancelled
+     */
+    boolean cancel();
+
+    /**
+     * Returns {@code true} if the task has been cancelled.
+     *
+     * @return whether the task has been cancelled
+     */
+    boolean isCancelled();
+
+    /**
+     * Returns {@code true} if the delay has elapsed and the task has been run.
+     *
+     * @return whether the task has expired
+     */
+    boolean isExpired();
+}
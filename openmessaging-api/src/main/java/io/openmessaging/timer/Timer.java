@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@code Timer} runs tasks after a delay. It is meant for the large number of short-lived timeouts of a messaging
+ * client, like the timeout of each asynchronous send, which are nearly always cancelled before they expire.
+ * <p>
+ * A shared instance is returned by {@link io.openmessaging.OMS#timer()}.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public interface Timer {
+    /**
+     * Schedules the specified task to run once after the specified delay. The task should be short and must not
+     * block, since it may run on the thread driving the timer.
+     *
+     * @param task the task to run
+     * @param delay the delay
+     * @param unit the unit of the delay
+     * @return the handle of the scheduled task
+     * @throws IllegalStateException if this timer is stopped
+     */
+    Timeout newTimeout(Runnable task, long delay, TimeUnit unit);
+
+    /**
+     * Stops this timer and cancels all the tasks not run yet.
+     *
+     * @throws UnsupportedOperationException if this timer is shared and cannot be stopped, like {@link
+     * io.openmessaging.OMS#timer()}
+     */
+    void stop();
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.OMS;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.consumer.BatchMessageListener;
+import io.openmessaging.consumer.DispatchingMessageListener;
+import io.openmessaging.consumer.MessageReceipt;
+import io.openmessaging.message.Message;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveBatchListenerTest {
+
+    @Test
+    public void testControllerConvergesToTargetLatency() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(1, 10000, TimeUnit.MILLISECONDS.toNanos(11));
+        for (int i = 0; i < 100; i++) {
+            int size = controller.batchSize();
+            controller.record(size, cost(size));
+        }
+        assertThat(controller.batchSize()).isBetween(95, 105);
+
+        for (int i = 0; i < 100; i++) {
+            int size = controller.batchSize();
+            controller.record(size, 2 * cost(size));
+        }
+        assertThat(controller.batchSize()).isBetween(40, 50);
+    }
+
+    @Test
+    public void testControllerBounds() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(4, 32, TimeUnit.MILLISECONDS.toNanos(100));
+        for (int i = 0; i < 20; i++) {
+            controller.record(controller.batchSize(), TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertThat(controller.batchSize()).isEqualTo(32);
+        controller.record(8, TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(controller.batchSize()).isEqualTo(32);
+        for (int i = 0; i < 20; i++) {
+            controller.record(controller.batchSize(), TimeUnit.SECONDS.toNanos(1));
+        }
+        assertThat(controller.batchSize()).isEqualTo(4);
+    }
+
+    @Test
+    public void testPartialBatchOnlyLowersSizeAboveTarget() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(1, 1000, TimeUnit.MILLISECONDS.toNanos(10));
+        for (int i = 0; i < 20 && controller.batchSize() < 64; i++) {
+            controller.record(controller.batchSize(), TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        int size = controller.batchSize();
+        assertThat(size).isGreaterThanOrEqualTo(64);
+
+        controller.record(size / 4, TimeUnit.MILLISECONDS.toNanos(9));
+        assertThat(controller.batchSize()).isEqualTo(size);
+        controller.record(size / 4, TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat(controller.batchSize()).isEqualTo(size);
+
+        controller.record(size / 4, TimeUnit.MILLISECONDS.toNanos(20));
+        assertThat(controller.batchSize()).isLessThan(size);
+    }
+
+    @Test
+    public void testMaxWaitAndFullBatches() throws Exception {
+        final List<List<Message>> batches = new CopyOnWriteArrayList<List<Message>>();
+        RecordingConsumer consumer = new RecordingConsumer();
+        DispatchingMessageListener listener = new AdaptiveBatchListener(new BatchMessageListener() {
+            @Override public void onReceived(List<Message> batchMessage, Context context) {
+                batches.add(batchMessage);
+                context.ack();
+            }
+        }, 4, 4, 100, 1000);
+        consumer.bindQueue(Collections.singletonList("QUEUE_A"), listener);
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < 11; i++) {
+                consumer.push(message(i));
+            }
+            awaitBatches(batches, 2);
+            assertThat(batches.get(0)).hasSize(4);
+            assertThat(batches.get(1)).hasSize(4);
+
+            awaitBatches(batches, 3);
+            assertThat(batches.get(2)).hasSize(3);
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(99L);
+            assertThat(batches).hasSize(3);
+            List<Integer> ids = new ArrayList<Integer>();
+            for (List<Message> batch : batches) {
+                for (Message message : batch) {
+                    ids.add(((Receipt) message.getMessageReceipt()).id);
+                }
+            }
+            assertThat(ids).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+            assertThat(consumer.acks).hasSize(11);
+        } finally {
+            listener.shutdown();
+        }
+    }
+
+    @Test
+    public void testPartialSuccess() throws Exception {
+        final List<List<Message>> batches = new CopyOnWriteArrayList<List<Message>>();
+        RecordingConsumer consumer = new RecordingConsumer();
+        DispatchingMessageListener listener = OMS.newAdaptiveBatchListener(new BatchMessageListener() {
+            @Override public void onReceived(List<Message> batchMessage, Context context) {
+                List<MessageReceipt> even = new ArrayList<MessageReceipt>();
+                for (int i = 0; i < batchMessage.size(); i += 2) {
+                    even.add(batchMessage.get(i).getMessageReceipt());
+                }
+                context.success(even.toArray(new MessageReceipt[0]));
+                context.success(even.get(0));
+                batches.add(batchMessage);
+            }
+        }, OMS.newKeyValue().put(OMSBuiltinKeys.CONSUMER_BATCH_MIN_MESSAGES, 6)
+            .put(OMSBuiltinKeys.CONSUMER_BATCH_MAX_MESSAGES, 6));
+        consumer.bindQueue(Collections.singletonList("QUEUE_A"), listener);
+        try {
+            for (int i = 0; i < 6; i++) {
+                consumer.push(message(i));
+            }
+            awaitBatches(batches, 1);
+            assertThat(consumer.acks).hasSize(3);
+            for (MessageReceipt receipt : consumer.acks) {
+                assertThat(((Receipt) receipt).id % 2).isEqualTo(0);
+            }
+            assertThat(listener.pendingMessages()).isEqualTo(0);
+        } finally {
+            listener.shutdown();
+        }
+    }
+
+    private static long cost(int size) {
+        return TimeUnit.MICROSECONDS.toNanos(1000 + 100 * size);
+    }
+
+    private static void awaitBatches(List<List<Message>> batches, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (batches.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(batches.size()).isGreaterThanOrEqualTo(count);
+    }
+
+    private static Message message(int id) {
+        DefaultMessage message = new DefaultMessage("QUEUE_A", new byte[1]);
+        message.setMessageReceipt(new Receipt(id));
+        return message;
+    }
+
+    private static class Receipt implements MessageReceipt {
+        private final int id;
+
+        Receipt(int id) {
+            this.id = id;
+        }
+    }
+}
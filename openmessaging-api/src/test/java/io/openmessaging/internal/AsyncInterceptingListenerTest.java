@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.OMS;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.consumer.DispatchingMessageListener;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.exception.OMSRuntimeException;
+import io.openmessaging.interceptor.AsyncConsumerInterceptor;
+import io.openmessaging.interceptor.Context;
+import io.openmessaging.message.Message;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class AsyncInterceptingListenerTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void testMessagesProcessedInReceiveOrder() {
+        RecordingConsumer consumer = new RecordingConsumer();
+        DeferringInterceptor deferring = new DeferringInterceptor();
+        final List<String> processed = new CopyOnWriteArrayList<String>();
+        AsyncInterceptingListener listener = new AsyncInterceptingListener(new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+                processed.add(message.header().getMessageId());
+                context.ack();
+            }
+        }, AsyncInterceptingListener.DEFAULT_MAX_PENDING, DIRECT);
+        listener.addAsyncInterceptor(deferring);
+        consumer.bindQueue(Collections.singleton("QUEUE_A"), listener);
+
+        for (int i = 0; i < 3; i++) {
+            consumer.push(message(i));
+        }
+        assertThat(listener.pendingMessages()).isEqualTo(3);
+
+        deferring.stages.get(1).complete(null);
+        deferring.stages.get(2).completeExceptionally(new IllegalStateException("cache down"));
+        assertThat(processed).isEmpty();
+
+        deferring.stages.get(0).complete(null);
+        assertThat(processed).containsExactly("0", "1");
+        assertThat(consumer.acks).hasSize(2);
+        assertThat(deferring.posted).containsExactly("0", "1");
+        assertThat(listener.pendingMessages()).isEqualTo(0);
+    }
+
+    @Test
+    public void testBoundAndShutdown() throws Exception {
+        final RecordingConsumer consumer = new RecordingConsumer();
+        DeferringInterceptor deferring = new DeferringInterceptor();
+        DispatchingMessageListener listener = OMS.newAsyncInterceptingListener(new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+                throw new IllegalStateException("boom");
+            }
+        }, OMS.newKeyValue().put(OMSBuiltinKeys.CONSUMER_INTERCEPT_MAX_PENDING, 1), deferring);
+        consumer.bindQueue(Collections.singleton("QUEUE_A"), listener);
+
+        consumer.push(message(0));
+        Thread blocked = new Thread(new Runnable() {
+            @Override public void run() {
+                consumer.push(message(1));
+            }
+        });
+        blocked.start();
+        blocked.join(200);
+        assertThat(blocked.isAlive()).isTrue();
+        assertThat(deferring.stages).hasSize(1);
+
+        deferring.stages.get(0).complete(null);
+        blocked.join(5000);
+        assertThat(blocked.isAlive()).isFalse();
+        awaitSize(deferring.posted, 1);
+        assertThat(deferring.posted).containsExactly("0");
+
+        listener.shutdown();
+        try {
+            consumer.push(message(2));
+            fail("A shut down listener must reject messages");
+        } catch (OMSRuntimeException expected) {
+            assertThat(expected.getErrorCode()).isEqualTo(10007);
+        }
+    }
+
+    @Test
+    public void testListenerNotRunByCompletingThread() throws Exception {
+        RecordingConsumer consumer = new RecordingConsumer();
+        DeferringInterceptor deferring = new DeferringInterceptor();
+        final List<String> threads = new CopyOnWriteArrayList<String>();
+        DispatchingMessageListener listener = OMS.newAsyncInterceptingListener(new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+                threads.add(Thread.currentThread().getName());
+                context.ack();
+            }
+        }, OMS.newKeyValue(), deferring);
+        consumer.bindQueue(Collections.singleton("QUEUE_A"), listener);
+
+        consumer.push(message(0));
+        deferring.stages.get(0).complete(null);
+        awaitSize(threads, 1);
+        assertThat(threads).containsExactly("OMS-AsyncInterceptingListener-Delivery");
+        listener.shutdown();
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static Message message(int id) {
+        DefaultMessage message = new DefaultMessage("QUEUE_A", new byte[1]);
+        message.header().setMessageId(String.valueOf(id));
+        return message;
+    }
+
+    private static class DeferringInterceptor implements AsyncConsumerInterceptor {
+        private final List<CompletableFuture<Void>> stages = new CopyOnWriteArrayList<CompletableFuture<Void>>();
+        private final List<String> posted = new CopyOnWriteArrayList<String>();
+
+        @Override
+        public CompletionStage<Void> preReceive(Message message, Context attributes) {
+            CompletableFuture<Void> stage = new CompletableFuture<Void>();
+            stages.add(stage);
+            return stage;
+        }
+
+        @Override
+        public CompletionStage<Void> postReceive(Message message, Context attributes) {
+            posted.add(message.header().getMessageId());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.Future;
+import io.openmessaging.OMS;
+import io.openmessaging.interceptor.AsyncProducerInterceptor;
+import io.openmessaging.interceptor.Context;
+import io.openmessaging.message.Message;
+import io.openmessaging.producer.Producer;
+import io.openmessaging.producer.SendResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AsyncInterceptingProducerTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void testMessagesSentInSubmissionOrder() {
+        RecordingProducer delegate = new RecordingProducer();
+        EnrichingInterceptor enriching = new EnrichingInterceptor();
+        AsyncInterceptingProducer producer = new AsyncInterceptingProducer(delegate, DIRECT);
+        producer.addAsyncInterceptor(enriching);
+
+        List<Future<SendResult>> futures = new ArrayList<Future<SendResult>>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(producer.sendAsync(message(i)));
+        }
+        assertThat(delegate.sent).isEmpty();
+
+        enriching.stages.get(2).complete(null);
+        enriching.stages.get(1).complete(null);
+        assertThat(delegate.sent).isEmpty();
+
+        enriching.stages.get(0).complete(null);
+        assertThat(ids(delegate.sent)).containsExactly("0", "1", "2");
+        assertThat(delegate.sent.get(1).properties().getString("enriched")).isEqualTo("1");
+        assertThat(futures.get(0).isDone()).isFalse();
+        assertThat(enriching.posted).isEmpty();
+
+        delegate.promises.get(0).set(new DefaultSendResult("0"));
+        assertThat(futures.get(0).get().messageId()).isEqualTo("0");
+        assertThat(enriching.posted).containsExactly("0:1");
+    }
+
+    @Test
+    public void testFailedInterceptorFailsOnlyItsMessage() {
+        RecordingProducer delegate = new RecordingProducer();
+        EnrichingInterceptor enriching = new EnrichingInterceptor();
+        AsyncInterceptingProducer producer = new AsyncInterceptingProducer(delegate, DIRECT);
+        producer.addAsyncInterceptor(enriching);
+
+        Future<SendResult> failed = producer.sendAsync(message(0));
+        producer.sendAsync(Arrays.asList(message(1), message(2)));
+        producer.sendOneway(message(3));
+
+        enriching.stages.get(3).complete(null);
+        enriching.stages.get(2).complete(null);
+        enriching.stages.get(1).complete(null);
+        enriching.stages.get(0).completeExceptionally(new IllegalStateException("cache down"));
+
+        assertThat(failed.getThrowable()).isInstanceOf(IllegalStateException.class).hasMessage("cache down");
+        assertThat(delegate.batches).hasSize(1);
+        assertThat(ids(delegate.batches.get(0))).containsExactly("1", "2");
+        assertThat(ids(delegate.sent)).containsExactly("3");
+        assertThat(enriching.posted).containsExactly("3:1");
+    }
+
+    @Test
+    public void testInterceptorsRunOneAfterTheOther() {
+        RecordingProducer delegate = new RecordingProducer();
+        EnrichingInterceptor first = new EnrichingInterceptor();
+        EnrichingInterceptor second = new EnrichingInterceptor();
+        AsyncInterceptingProducer producer = new AsyncInterceptingProducer(delegate, DIRECT);
+        producer.addAsyncInterceptor(first);
+        producer.addAsyncInterceptor(second);
+
+        producer.sendOneway(message(0));
+        assertThat(second.stages).isEmpty();
+        assertThat(producer.pendingMessages()).isEqualTo(1);
+
+        first.stages.get(0).complete(null);
+        assertThat(second.stages).hasSize(1);
+        assertThat(delegate.sent).isEmpty();
+
+        second.stages.get(0).complete(null);
+        assertThat(ids(delegate.sent)).containsExactly("0");
+        assertThat(producer.pendingMessages()).isEqualTo(0);
+        assertThat(second.posted).containsExactly("0:2");
+    }
+
+    @Test
+    public void testOrderPreservedUnderConcurrentCompletion() throws Exception {
+        final ExecutorService cache = Executors.newFixedThreadPool(8);
+        RecordingProducer delegate = new RecordingProducer();
+        Producer producer = OMS.newAsyncInterceptingProducer(delegate, new AsyncProducerInterceptor() {
+            @Override public CompletionStage<Void> preSend(Message message, Context attributes) {
+                return CompletableFuture.runAsync(new Runnable() {
+                    @Override public void run() {
+                        try {
+                            TimeUnit.MICROSECONDS.sleep(ThreadLocalRandom.current().nextInt(200));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }, cache);
+            }
+
+            @Override public CompletionStage<Void> postSend(Message message, Context attributes) {
+                return CompletableFuture.completedFuture(null);
+            }
+        });
+        try {
+            final int count = 2000;
+            Future<SendResult> last = null;
+            for (int i = 0; i < count; i++) {
+                last = producer.sendAsync(message(i));
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while (delegate.sent.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            List<String> expected = new ArrayList<String>();
+            for (int i = 0; i < count; i++) {
+                expected.add(String.valueOf(i));
+            }
+            assertThat(ids(delegate.sent)).isEqualTo(expected);
+            delegate.promises.get(count - 1).set(new DefaultSendResult("last"));
+            assertThat(last.get().messageId()).isEqualTo("last");
+        } finally {
+            cache.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMessagesNotSentByCompletingThread() throws Exception {
+        final List<String> threads = new CopyOnWriteArrayList<String>();
+        RecordingProducer delegate = new RecordingProducer() {
+            @Override public void sendOneway(Message message) {
+                threads.add(Thread.currentThread().getName());
+                super.sendOneway(message);
+            }
+        };
+        EnrichingInterceptor enriching = new EnrichingInterceptor();
+        Producer producer = OMS.newAsyncInterceptingProducer(delegate, enriching);
+
+        producer.sendOneway(message(0));
+        enriching.stages.get(0).complete(null);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (threads.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(threads).containsExactly("OMS-AsyncInterceptingProducer-Dispatch");
+        producer.stop();
+    }
+
+    private static Message message(int id) {
+        DefaultMessage message = new DefaultMessage("QUEUE_A", new byte[1]);
+        message.header().setMessageId(String.valueOf(id));
+        return message;
+    }
+
+    private static List<String> ids(List<Message> messages) {
+        List<String> ids = new ArrayList<String>();
+        for (Message message : messages) {
+            ids.add(message.header().getMessageId());
+        }
+        return ids;
+    }
+
+    private static class EnrichingInterceptor implements AsyncProducerInterceptor {
+        private final List<CompletableFuture<Void>> stages = new CopyOnWriteArrayList<CompletableFuture<Void>>();
+        private final List<String> posted = new CopyOnWriteArrayList<String>();
+
+        @Override
+        public CompletionStage<Void> preSend(final Message message, final Context attributes) {
+            CompletableFuture<Void> stage = new CompletableFuture<Void>();
+            stages.add(stage);
+            return stage.thenRun(new Runnable() {
+                @Override public void run() {
+                    String id = message.header().getMessageId();
+                    message.properties().put("enriched", id);
+                    attributes.attributes().put("stage", attributes.attributes().getInt("stage", 0) + 1);
+                }
+            });
+        }
+
+        @Override
+        public CompletionStage<Void> postSend(Message message, Context attributes) {
+            posted.add(message.header().getMessageId() + ":" + attributes.attributes().getInt("stage"));
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.Future;
+import io.openmessaging.FutureListener;
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMS;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.ServiceLifeState;
+import io.openmessaging.exception.OMSRuntimeException;
+import io.openmessaging.exception.OMSTimeOutException;
+import io.openmessaging.message.Message;
+import io.openmessaging.producer.BufferedProducer;
+import io.openmessaging.producer.OverflowPolicy;
+import io.openmessaging.producer.Producer;
+import io.openmessaging.producer.SendResult;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class BatchingProducerTest {
+
+    private static Producer newProducer(RecordingProducer delegate, int bytes, int messages, long lingerMs) {
+        KeyValue attributes = OMS.newKeyValue()
+            .put(OMSBuiltinKeys.PRODUCER_BATCH_BYTES, bytes)
+            .put(OMSBuiltinKeys.PRODUCER_BATCH_MESSAGES, messages)
+            .put(OMSBuiltinKeys.PRODUCER_LINGER_MS, lingerMs);
+        Producer producer = OMS.newBatchingProducer(delegate, attributes);
+        producer.start();
+        return producer;
+    }
+
+    @Test
+    public void testCountTrigger() throws Exception {
+        RecordingProducer delegate = new RecordingProducer();
+        Producer producer = newProducer(delegate, 1024, 3, 60000);
+
+        Future<SendResult> first = producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[1]));
+        producer.sendAsync(new DefaultMessage("QUEUE_B", new byte[1]));
+        producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[1]));
+        assertThat(delegate.batches).isEmpty();
+
+        DefaultMessage third = new DefaultMessage("QUEUE_A", new byte[1]);
+        third.header().setMessageId("ID-3");
+        Future<SendResult> last = producer.sendAsync(third);
+        assertThat(delegate.batches).hasSize(1);
+        assertThat(delegate.batches.get(0)).hasSize(3);
+        assertThat(first.isDone()).isFalse();
+
+        delegate.promises.get(0).set(new DefaultSendResult("BATCH-ID"));
+        assertThat(first.get().messageId()).isEqualTo("BATCH-ID");
+        assertThat(last.get().messageId()).isEqualTo("ID-3");
+
+        producer.stop();
+        assertThat(delegate.batches).hasSize(2);
+        assertThat(delegate.batches.get(1).get(0).header().getDestination()).isEqualTo("QUEUE_B");
+    }
+
+    @Test
+    public void testSizeTrigger() throws Exception {
+        RecordingProducer delegate = new RecordingProducer();
+        Producer producer = newProducer(delegate, 100, 1000, 60000);
+
+        producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[60]));
+        producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[30]));
+        assertThat(delegate.batches).isEmpty();
+        producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[30]));
+        assertThat(delegate.batches).hasSize(1);
+        assertThat(delegate.batches.get(0)).hasSize(2);
+
+        producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[200]));
+        assertThat(delegate.batches).hasSize(3);
+        assertThat(delegate.batches.get(2)).hasSize(1);
+        producer.stop();
+    }
+
+    @Test
+    public void testLingerTrigger() throws Exception {
+        RecordingProducer delegate = new RecordingProducer();
+        Producer producer = newProducer(delegate, 1024, 1000, 10);
+
+        Future<SendResult> future = producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[1]));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delegate.batches.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(delegate.batches).hasSize(1);
+
+        delegate.promises.get(0).setFailure(new OMSRuntimeException(1500, "broker down"));
+        assertThat(future.getThrowable()).hasMessage("broker down");
+        try {
+            future.get();
+            fail("The batch failed");
+        } catch (OMSRuntimeException e) {
+            assertThat(e.getErrorCode()).isEqualTo(1500);
+        }
+        producer.stop();
+    }
+
+    @Test
+    public void testSyncSendKeepsOrder() throws Exception {
+        RecordingProducer delegate = new RecordingProducer();
+        Producer producer = newProducer(delegate, 1024, 1000, 60000);
+
+        producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[1]));
+        producer.send(new DefaultMessage("QUEUE_A", new byte[1]));
+        assertThat(delegate.batches).hasSize(1);
+        assertThat(delegate.sent).hasSize(1);
+        producer.stop();
+        assertThat(delegate.currentState()).isEqualTo(ServiceLifeState.STOPPED);
+    }
+
+    @Test
+    public void testListSendsKeepOrder() throws Exception {
+        RecordingProducer delegate = new RecordingProducer();
+        Producer producer = newProducer(delegate, 1024, 1000, 60000);
+        DefaultMessage a1 = new DefaultMessage("QUEUE_A", new byte[1]);
+        DefaultMessage a2 = new DefaultMessage("QUEUE_A", new byte[1]);
+        DefaultMessage a3 = new DefaultMessage("QUEUE_A", new byte[1]);
+        DefaultMessage b1 = new DefaultMessage("QUEUE_B", new byte[1]);
+        DefaultMessage b2 = new DefaultMessage("QUEUE_B", new byte[1]);
+
+        producer.sendAsync(a1);
+        producer.sendAsync(Collections.<Message>singletonList(a2));
+        producer.sendAsync(b1);
+        producer.sendOneway(Arrays.<Message>asList(a3, b2));
+
+        assertThat(delegate.batches).hasSize(4);
+        assertThat(delegate.batches.get(0)).containsExactly(a1);
+        assertThat(delegate.batches.get(1)).containsExactly(a2);
+        assertThat(delegate.batches.get(2)).containsExactly(b1);
+        assertThat(delegate.batches.get(3)).containsExactly(a3, b2);
+        producer.stop();
+    }
+
+    @Test(timeout = 10000)
+    public void testSyncSendWaitsForBatchBeingSent() throws Exception {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RecordingProducer delegate = new RecordingProducer() {
+            @Override public Future<SendResult> sendAsync(List<Message> messages) {
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.sendAsync(messages);
+            }
+        };
+        final Producer producer = newProducer(delegate, 1024, 1000, 1);
+        producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[1]));
+        sending.await();
+
+        Thread sender = new Thread(new Runnable() {
+            @Override public void run() {
+                producer.send(new DefaultMessage("QUEUE_A", new byte[1]));
+            }
+        });
+        sender.start();
+        sender.join(200);
+        assertThat(sender.isAlive()).isTrue();
+        assertThat(delegate.sent).isEmpty();
+
+        release.countDown();
+        sender.join();
+        assertThat(delegate.batches).hasSize(1);
+        assertThat(delegate.sent).hasSize(1);
+        producer.stop();
+    }
+
+    @Test(timeout = 10000)
+    public void testSyncSendFromCompletionListener() throws Exception {
+        RecordingProducer delegate = new RecordingProducer() {
+            @Override public Future<SendResult> sendAsync(List<Message> messages) {
+                Future<SendResult> future = super.sendAsync(messages);
+                promises.get(promises.size() - 1).set(new DefaultSendResult("batch"));
+                return future;
+            }
+        };
+        final Producer producer = newProducer(delegate, 1024, 1, 60000);
+        producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[1])).addListener(new FutureListener<SendResult>() {
+            @Override public void operationComplete(Future<SendResult> future) {
+                producer.send(new DefaultMessage("QUEUE_A", new byte[1]));
+            }
+        });
+        assertThat(delegate.batches).hasSize(1);
+        assertThat(delegate.sent).hasSize(1);
+        producer.stop();
+    }
+
+    @Test
+    public void testStopRacingAppendsLosesNothing() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            final RecordingProducer delegate = new RecordingProducer();
+            final Producer producer = newProducer(delegate, 1024, 1000, 60000);
+            final int threads = 4;
+            final int perThread = 200;
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread[] senders = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                senders[t] = new Thread(new Runnable() {
+                    @Override public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int i = 0; i < perThread; i++) {
+                            producer.sendAsync(delegate.createMessage("QUEUE_" + i % 2, new byte[1]));
+                        }
+                    }
+                });
+                senders[t].start();
+            }
+            start.countDown();
+            producer.stop();
+            for (Thread sender : senders) {
+                sender.join();
+            }
+
+            int handedOver = delegate.sent.size();
+            for (List<?> batch : delegate.batches) {
+                handedOver += batch.size();
+            }
+            assertThat(handedOver).isEqualTo(threads * perThread);
+        }
+    }
+
+    @Test
+    public void testLingerDisabled() throws Exception {
+        RecordingProducer delegate = new RecordingProducer();
+        Producer producer = newProducer(delegate, 1024, 1000, 0);
+
+        producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[1]));
+        assertThat(delegate.batches).isEmpty();
+        assertThat(delegate.sent).hasSize(1);
+        producer.stop();
+    }
+
+    private static BufferedProducer newWindowedProducer(RecordingProducer delegate, long lingerMs,
+        OverflowPolicy policy) {
+        KeyValue attributes = OMS.newKeyValue()
+            .put(OMSBuiltinKeys.PRODUCER_LINGER_MS, lingerMs)
+            .put(OMSBuiltinKeys.PRODUCER_MAX_IN_FLIGHT_MESSAGES, 2)
+            .put(OMSBuiltinKeys.PRODUCER_MAX_IN_FLIGHT_BYTES, 100)
+            .put(OMSBuiltinKeys.PRODUCER_OVERFLOW_POLICY, policy.name())
+            .put(OMSBuiltinKeys.PRODUCER_MAX_BLOCK_MS, 50);
+        BufferedProducer producer = OMS.newBatchingProducer(delegate, attributes);
+        producer.start();
+        return producer;
+    }
+
+    @Test
+    public void testWindowFailFast() throws Exception {
+        RecordingProducer delegate = new RecordingProducer();
+        BufferedProducer producer = newWindowedProducer(delegate, 0, OverflowPolicy.FAIL_FAST);
+
+        producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[60]));
+        producer.sendOneway(new DefaultMessage("QUEUE_A", new byte[30]));
+        assertThat(producer.inFlightMessages()).isEqualTo(2);
+        assertThat(producer.inFlightBytes()).isEqualTo(90L);
+
+        Future<SendResult> rejected = producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[1]));
+        assertThat(((OMSRuntimeException) rejected.getThrowable()).getErrorCode()).isEqualTo(10006);
+        producer.sendOneway(new DefaultMessage("QUEUE_A", new byte[1]));
+        assertThat(producer.overflowedMessages()).isEqualTo(2L);
+        assertThat(delegate.sent).hasSize(2);
+
+        delegate.promises.get(0).set(new DefaultSendResult("ID-1"));
+        assertThat(producer.inFlightMessages()).isEqualTo(1);
+        assertThat(producer.inFlightBytes()).isEqualTo(30L);
+        assertThat(producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[70])).isDone()).isFalse();
+        producer.stop();
+    }
+
+    @Test
+    public void testWindowBlock() throws Exception {
+        final RecordingProducer delegate = new RecordingProducer();
+        final BufferedProducer producer = newWindowedProducer(delegate, 0, OverflowPolicy.BLOCK);
+
+        producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[10]));
+        producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[10]));
+        Future<SendResult> timedOut = producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[10]));
+        assertThat(timedOut.getThrowable()).isInstanceOf(OMSTimeOutException.class);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicReference<Future<SendResult>> blocked = new AtomicReference<Future<SendResult>>();
+        Thread sender = new Thread(new Runnable() {
+            @Override public void run() {
+                started.countDown();
+                blocked.set(producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[10])));
+            }
+        });
+        sender.start();
+        started.await();
+        delegate.promises.get(0).set(new DefaultSendResult("ID-1"));
+        sender.join(5000);
+        assertThat(blocked.get().getThrowable()).isNull();
+        assertThat(delegate.sent).hasSize(3);
+        producer.stop();
+    }
+
+    @Test
+    public void testWindowDropOldest() throws Exception {
+        RecordingProducer delegate = new RecordingProducer();
+        BufferedProducer producer = newWindowedProducer(delegate, 60000, OverflowPolicy.DROP_OLDEST);
+
+        Future<SendResult> oldest = producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[10]));
+        Future<SendResult> older = producer.sendAsync(new DefaultMessage("QUEUE_B", new byte[10]));
+        Future<SendResult> newest = producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[10]));
+
+        assertThat(((OMSRuntimeException) oldest.getThrowable()).getErrorCode()).isEqualTo(10006);
+        assertThat(older.isDone()).isFalse();
+        assertThat(newest.isDone()).isFalse();
+        assertThat(producer.overflowedMessages()).isEqualTo(1L);
+        assertThat(producer.inFlightMessages()).isEqualTo(2);
+
+        producer.flush();
+        assertThat(delegate.batches).hasSize(2);
+        Future<SendResult> rejected = producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[10]));
+        assertThat(rejected.getThrowable()).isNotNull();
+
+        delegate.promises.get(0).set(new DefaultSendResult("ID"));
+        delegate.promises.get(1).set(new DefaultSendResult("ID"));
+        assertThat(producer.inFlightMessages()).isEqualTo(0);
+        assertThat(producer.inFlightBytes()).isEqualTo(0L);
+        producer.stop();
+    }
+
+    @Test
+    public void testSendTimeout() throws Exception {
+        RecordingProducer delegate = new RecordingProducer();
+        KeyValue attributes = OMS.newKeyValue()
+            .put(OMSBuiltinKeys.PRODUCER_LINGER_MS, 0)
+            .put(OMSBuiltinKeys.PRODUCER_SEND_TIMEOUT_MS, 20);
+        BufferedProducer producer = OMS.newBatchingProducer(delegate, attributes);
+        producer.start();
+
+        Future<SendResult> future = producer.sendAsync(new DefaultMessage("QUEUE_A", new byte[10]));
+        try {
+            future.get(5000);
+            fail("The send timed out");
+        } catch (OMSTimeOutException e) {
+            assertThat(future.getThrowable()).isSameAs(e);
+        }
+        assertThat(producer.inFlightMessages()).isEqualTo(1);
+        delegate.promises.get(0).set(new DefaultSendResult("ID"));
+        assertThat(producer.inFlightMessages()).isEqualTo(0);
+        producer.stop();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import java.util.Iterator;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompactKeyValueTest {
+    private CompactKeyValue keyValue = new CompactKeyValue(1);
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        keyValue.put("IntKey", 123);
+        assertThat(keyValue.getInt("IntKey")).isEqualTo(123);
+
+        keyValue.put("StringKey", "HELLO");
+        assertThat(keyValue.getString("StringKey")).isEqualTo("HELLO");
+
+        keyValue.put("LongKey", 123L);
+        assertThat(keyValue.getLong("LongKey")).isEqualTo(123L);
+
+        keyValue.put("DoubleKey", 1.23);
+        assertThat(keyValue.getDouble("DoubleKey")).isEqualTo(1.23);
+
+        keyValue.put("IntKey", "456");
+        assertThat(keyValue.getInt("IntKey")).isEqualTo(456);
+        assertThat(keyValue.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void testLookupByEqualKey() throws Exception {
+        keyValue.put("EqualKey", 123);
+        assertThat(keyValue.getInt(new String("EqualKey"))).isEqualTo(123);
+        assertThat(keyValue.getInt("MissingKey", 7)).isEqualTo(7);
+    }
+
+    @Test
+    public void testKeySet() throws Exception {
+        keyValue.put("K1", 1).put("K2", 2).put("K3", 3);
+        assertThat(keyValue.keySet()).containsOnly("K1", "K2", "K3");
+
+        Iterator<String> iterator = keyValue.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (!"K2".equals(iterator.next())) {
+                iterator.remove();
+            }
+        }
+        assertThat(keyValue.keySet()).containsOnly("K2");
+        assertThat(keyValue.getInt("K2")).isEqualTo(2);
+        assertThat(keyValue.containsKey("K1")).isFalse();
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        keyValue.put("ContainsKey", 123);
+        keyValue.clear();
+        assertThat(keyValue.containsKey("ContainsKey")).isFalse();
+        assertThat(keyValue.keySet()).isEmpty();
+    }
+}
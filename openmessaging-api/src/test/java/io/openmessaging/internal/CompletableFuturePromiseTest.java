@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.Future;
+import io.openmessaging.FutureListener;
+import io.openmessaging.OMS;
+import io.openmessaging.Promise;
+import io.openmessaging.exception.OMSRuntimeException;
+import io.openmessaging.exception.OMSTimeOutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class CompletableFuturePromiseTest {
+
+    @Test
+    public void testToCompletionStage() throws Exception {
+        DefaultPromise<String> promise = new DefaultPromise<String>();
+        final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+        CompletableFuture<Integer> length = promise.toCompletionStage().thenApply(value -> {
+            thread.set(Thread.currentThread());
+            return value.length();
+        }).toCompletableFuture();
+
+        Thread completer = new Thread(() -> promise.set("HELLO"));
+        completer.start();
+        completer.join();
+        assertThat(length.get()).isEqualTo(5);
+        assertThat(thread.get()).isSameAs(completer);
+    }
+
+    @Test
+    public void testToCompletionStageFailure() throws Exception {
+        DefaultPromise<String> promise = new DefaultPromise<String>();
+        CompletableFuture<String> stage = promise.toCompletionStage().toCompletableFuture();
+        OMSRuntimeException cause = new OMSRuntimeException(1500, "broker down");
+        promise.setFailure(cause);
+        assertThat(stage.isCompletedExceptionally()).isTrue();
+        assertThat(stage.handle((value, t) -> t).get()).isSameAs(cause);
+    }
+
+    @Test
+    public void testCancellationPropagation() throws Exception {
+        DefaultPromise<String> promise = new DefaultPromise<String>();
+        promise.toCompletionStage().toCompletableFuture().cancel(false);
+        assertThat(promise.isCancelled()).isTrue();
+
+        DefaultPromise<String> source = new DefaultPromise<String>();
+        CompletableFuture<String> stage = source.toCompletionStage().toCompletableFuture();
+        source.cancel(false);
+        assertThat(stage.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void testPromise() throws Exception {
+        Promise<String> promise = new CompletableFuturePromise<String>();
+        final AtomicReference<String> notified = new AtomicReference<String>();
+        promise.addListener(new FutureListener<String>() {
+            @Override public void operationComplete(Future<String> future) {
+                notified.set(future.get());
+            }
+        });
+        try {
+            promise.get(1);
+            fail("The promise is not completed");
+        } catch (OMSTimeOutException e) {
+            assertThat(e.getErrorCode()).isEqualTo(1410);
+        }
+        assertThat(promise.set("HELLO")).isTrue();
+        assertThat(promise.set("AGAIN")).isFalse();
+        assertThat(notified.get()).isEqualTo("HELLO");
+        assertThat(promise.getThrowable()).isNull();
+        assertThat(promise.toCompletionStage().toCompletableFuture().getNow(null)).isEqualTo("HELLO");
+    }
+
+    @Test
+    public void testPromiseFailure() throws Exception {
+        Promise<String> promise = new CompletableFuturePromise<String>();
+        OMSRuntimeException cause = new OMSRuntimeException(1500, "broker down");
+        promise.setFailure(cause);
+        assertThat(promise.getThrowable()).isSameAs(cause);
+        try {
+            promise.get();
+            fail("The promise failed");
+        } catch (OMSRuntimeException e) {
+            assertThat(e).isSameAs(cause);
+        }
+
+        Promise<String> cancelled = new CompletableFuturePromise<String>();
+        cancelled.cancel(true);
+        assertThat(cancelled.getThrowable()).isInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    public void testFromCompletionStage() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<String>();
+        Promise<String> promise = OMS.fromCompletionStage(future);
+        CompletionStage<String> stage = promise.toCompletionStage();
+        assertThat(stage).isSameAs(future);
+        future.complete("HELLO");
+        assertThat(promise.isDone()).isTrue();
+        assertThat(promise.get()).isEqualTo("HELLO");
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.OMS;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.message.Message;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class CreditFlowControllerTest {
+
+    @Test
+    public void testQueueCreditsSuspendAndResume() {
+        RecordingConsumer consumer = new RecordingConsumer();
+        HoldingListener holding = new HoldingListener();
+        CreditFlowController controller = new CreditFlowController(consumer, holding, 4, 100, 50);
+        consumer.bindQueue(Collections.singleton("QUEUE_A"), controller);
+
+        for (int i = 0; i < 3; i++) {
+            consumer.push(new DefaultMessage("QUEUE_A", new byte[1]));
+        }
+        assertThat(consumer.suspended).isFalse();
+        consumer.push(new DefaultMessage("QUEUE_B", new byte[1]));
+        consumer.push(new DefaultMessage("QUEUE_A", new byte[1]));
+        assertThat(consumer.suspended).isTrue();
+        assertThat(controller.usedCredits("QUEUE_A")).isEqualTo(4);
+        assertThat(controller.usedCredits()).isEqualTo(5);
+
+        holding.contexts.get(0).ack();
+        holding.contexts.get(0).ack();
+        assertThat(controller.usedCredits("QUEUE_A")).isEqualTo(3);
+        assertThat(consumer.suspended).isTrue();
+
+        holding.contexts.get(1).ack();
+        assertThat(controller.usedCredits("QUEUE_A")).isEqualTo(2);
+        assertThat(controller.isSuspended()).isFalse();
+        assertThat(consumer.suspended).isFalse();
+        assertThat(consumer.suspensions).isEqualTo(1);
+        assertThat(consumer.acks).hasSize(3);
+    }
+
+    @Test
+    public void testTotalCredits() {
+        RecordingConsumer consumer = new RecordingConsumer();
+        HoldingListener holding = new HoldingListener();
+        MessageListener listener = OMS.newCreditFlowListener(consumer, holding, OMS.newKeyValue()
+            .put(OMSBuiltinKeys.CONSUMER_FLOW_QUEUE_CREDITS, 10)
+            .put(OMSBuiltinKeys.CONSUMER_FLOW_TOTAL_CREDITS, 6)
+            .put(OMSBuiltinKeys.CONSUMER_FLOW_RESUME_PERCENT, 0));
+        consumer.bindQueue(Collections.singleton("QUEUE_A"), listener);
+
+        for (int i = 0; i < 6; i++) {
+            consumer.push(new DefaultMessage("QUEUE_" + i % 3, new byte[1]));
+        }
+        assertThat(consumer.suspended).isTrue();
+        for (int i = 0; i < 5; i++) {
+            holding.contexts.get(i).ack();
+            assertThat(consumer.suspended).isTrue();
+        }
+        holding.contexts.get(5).ack();
+        assertThat(consumer.suspended).isFalse();
+    }
+
+    @Test
+    public void testFailedDeliveryReleasesCredit() {
+        RecordingConsumer consumer = new RecordingConsumer();
+        CreditFlowController controller = new CreditFlowController(consumer, new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+                throw new IllegalStateException("boom");
+            }
+        }, 1, 1, 0);
+        consumer.bindQueue(Collections.singleton("QUEUE_A"), controller);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                consumer.push(new DefaultMessage("QUEUE_A", new byte[1]));
+                fail("The listener failure must propagate");
+            } catch (IllegalStateException expected) {
+                assertThat(expected).hasMessage("boom");
+            }
+        }
+        assertThat(controller.usedCredits()).isEqualTo(0);
+        assertThat(consumer.suspended).isFalse();
+        assertThat(consumer.suspensions).isEqualTo(3);
+        assertThat(consumer.acks).isEmpty();
+    }
+
+    @Test
+    public void testFailedAckReleasesCredit() {
+        RecordingConsumer consumer = new RecordingConsumer() {
+            @Override void push(Message message) {
+                listener.onReceived(message, new MessageListener.Context() {
+                    @Override public void ack() {
+                        throw new IllegalStateException("ack failed");
+                    }
+                });
+            }
+        };
+        HoldingListener holding = new HoldingListener();
+        CreditFlowController controller = new CreditFlowController(consumer, holding, 1, 1, 0);
+        consumer.bindQueue(Collections.singleton("QUEUE_A"), controller);
+
+        consumer.push(new DefaultMessage("QUEUE_A", new byte[1]));
+        assertThat(consumer.suspended).isTrue();
+        try {
+            holding.contexts.get(0).ack();
+            fail("The ack failure must propagate");
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("ack failed");
+        }
+        assertThat(controller.usedCredits()).isEqualTo(0);
+        assertThat(consumer.suspended).isFalse();
+    }
+
+    @Test
+    public void testReleaseMessageAckedThroughConsumer() {
+        RecordingConsumer consumer = new RecordingConsumer();
+        HoldingListener holding = new HoldingListener();
+        MessageListener listener = OMS.newCreditFlowListener(consumer, holding, OMS.newKeyValue()
+            .put(OMSBuiltinKeys.CONSUMER_FLOW_QUEUE_CREDITS, 2)
+            .put(OMSBuiltinKeys.CONSUMER_FLOW_RESUME_PERCENT, 0));
+        consumer.bindQueue(Collections.singleton("QUEUE_A"), listener);
+
+        consumer.push(new DefaultMessage("QUEUE_A", new byte[1]));
+        consumer.push(new DefaultMessage("QUEUE_A", new byte[1]));
+        assertThat(consumer.suspended).isTrue();
+
+        consumer.ack(null);
+        assertThat(OMS.releaseCredit(holding.contexts.get(0))).isTrue();
+        assertThat(consumer.suspended).isTrue();
+        assertThat(OMS.releaseCredit(holding.contexts.get(1))).isTrue();
+        assertThat(consumer.suspended).isFalse();
+
+        holding.contexts.get(1).ack();
+        assertThat(OMS.releaseCredit(holding.contexts.get(1))).isTrue();
+        assertThat(((CreditFlowController) listener).usedCredits()).isEqualTo(0);
+        assertThat(OMS.releaseCredit(new MessageListener.Context() {
+            @Override public void ack() {
+            }
+        })).isFalse();
+    }
+
+    @Test
+    public void testConsumerCalledOutsideTheLock() {
+        final List<Boolean> locked = new ArrayList<Boolean>();
+        final CreditFlowController[] controller = new CreditFlowController[1];
+        RecordingConsumer consumer = new RecordingConsumer() {
+            @Override public void suspend() {
+                locked.add(Thread.holdsLock(controller[0]));
+                super.suspend();
+            }
+
+            @Override public void resume() {
+                locked.add(Thread.holdsLock(controller[0]));
+                super.resume();
+            }
+        };
+        HoldingListener holding = new HoldingListener();
+        controller[0] = new CreditFlowController(consumer, holding, 1, 1, 0);
+        consumer.bindQueue(Collections.singleton("QUEUE_A"), controller[0]);
+
+        consumer.push(new DefaultMessage("QUEUE_A", new byte[1]));
+        assertThat(consumer.suspended).isTrue();
+        holding.contexts.get(0).ack();
+        assertThat(consumer.suspended).isFalse();
+        assertThat(locked).containsExactly(false, false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalResumePercent() {
+        new CreditFlowController(new RecordingConsumer(), new HoldingListener(), 10, 10, 100);
+    }
+
+    private static class HoldingListener implements MessageListener {
+        private final List<Context> contexts = new ArrayList<Context>();
+
+        @Override
+        public void onReceived(Message message, Context context) {
+            contexts.add(context);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.Future;
+import io.openmessaging.OMS;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.consumer.AckAggregator;
+import io.openmessaging.consumer.AckDurability;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.consumer.MessageReceipt;
+import io.openmessaging.consumer.PushConsumer;
+import io.openmessaging.consumer.RangeAcknowledger;
+import io.openmessaging.exception.OMSRuntimeException;
+import io.openmessaging.message.Message;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class DefaultAckAggregatorTest {
+
+    @Test
+    public void testContiguousOffsetsCollapse() {
+        RecordingRangeAcknowledger ranges = new RecordingRangeAcknowledger(1, 16);
+        AckAggregator aggregator = new DefaultAckAggregator(new RecordingConsumer(), ranges, 1000, 60000,
+            AckDurability.ASYNC);
+        try {
+            Future<Void> first = null;
+            for (long offset : new long[] {6, 0, 2, 1, 9, 5, 1}) {
+                Future<Void> future = aggregator.ack(new Receipt(0, offset));
+                first = first == null ? future : first;
+                assertThat(future).isSameAs(first);
+            }
+            assertThat(aggregator.pendingAcks()).isEqualTo(7);
+            assertThat(ranges.ranges).isEmpty();
+
+            aggregator.flush();
+            assertThat(first.isDone()).isTrue();
+            assertThat(ranges.ranges).containsExactly("0:[0,2]", "0:[5,6]", "0:[9,9]");
+            assertThat(aggregator.pendingAcks()).isEqualTo(0);
+            assertThat(aggregator.ack(new Receipt(0, 10))).isNotSameAs(first);
+        } finally {
+            aggregator.stop();
+        }
+        assertThat(ranges.ranges).contains("0:[10,10]");
+    }
+
+    @Test
+    public void testNoAckLost() throws Exception {
+        final int threads = 8;
+        final int partitions = 4;
+        final int offsetsPerPartition = 20000;
+        final RecordingRangeAcknowledger ranges = new RecordingRangeAcknowledger(partitions, offsetsPerPartition);
+        final RecordingConsumer consumer = new RecordingConsumer();
+        final AckAggregator aggregator = OMS.newAckAggregator(consumer, ranges, OMS.newKeyValue()
+            .put(OMSBuiltinKeys.CONSUMER_ACK_BATCH_MESSAGES, 500)
+            .put(OMSBuiltinKeys.CONSUMER_ACK_LINGER_MS, 1L));
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int worker = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override public void run() {
+                    List<MessageReceipt> receipts = new ArrayList<MessageReceipt>();
+                    for (int p = 0; p < partitions; p++) {
+                        for (int o = worker; o < offsetsPerPartition; o += threads) {
+                            receipts.add(new Receipt(p, o));
+                        }
+                    }
+                    receipts.add(new Receipt(-1, worker));
+                    Collections.shuffle(receipts, new Random(worker));
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (MessageReceipt receipt : receipts) {
+                        aggregator.ack(receipt);
+                    }
+                }
+            });
+            thread.start();
+            workers.add(thread);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        aggregator.stop();
+
+        assertThat(aggregator.pendingAcks()).isEqualTo(0);
+        int wrong = 0;
+        for (int i = 0; i < ranges.acked.length(); i++) {
+            if (ranges.acked.get(i) != 1) {
+                wrong++;
+            }
+        }
+        assertThat(wrong).isEqualTo(0);
+        assertThat(consumer.acks).hasSize(threads);
+    }
+
+    @Test
+    public void testSyncDurability() {
+        RecordingRangeAcknowledger ranges = new RecordingRangeAcknowledger(1, 16);
+        AckAggregator aggregator = new DefaultAckAggregator(new RecordingConsumer(), ranges, 1000, 1,
+            AckDurability.SYNC);
+        try {
+            Future<Void> future = aggregator.ack(new Receipt(0, 3));
+            assertThat(future.isDone()).isTrue();
+            assertThat(ranges.ranges).containsExactly("0:[3,3]");
+
+            ranges.failure = new OMSRuntimeException(1500, "broker down");
+            try {
+                aggregator.ack(new Receipt(0, 4));
+                fail("The failed flush must be reported");
+            } catch (OMSRuntimeException e) {
+                assertThat(e).isSameAs(ranges.failure);
+            }
+        } finally {
+            aggregator.stop();
+        }
+    }
+
+    @Test
+    public void testDecoratedListenerAndStop() {
+        RecordingConsumer consumer = new RecordingConsumer();
+        AckAggregator aggregator = new DefaultAckAggregator(consumer, null, 2, 60000, AckDurability.ASYNC);
+        MessageListener listener = aggregator.decorate(new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+                context.ack();
+            }
+        });
+        MessageListener.Context consumerContext = new MessageListener.Context() {
+            @Override public void ack() {
+                fail("The acknowledgement must go through the aggregator");
+            }
+        };
+        DefaultMessage message = new DefaultMessage("QUEUE_A", new byte[1]);
+        message.setMessageReceipt(new Receipt(-1, 1));
+        listener.onReceived(message, consumerContext);
+        assertThat(consumer.acks).isEmpty();
+        listener.onReceived(message, consumerContext);
+        assertThat(consumer.acks).hasSize(2);
+
+        aggregator.stop();
+        aggregator.ack(new Receipt(-1, 2));
+        assertThat(consumer.acks).hasSize(3);
+        assertThat(aggregator.pendingAcks()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDecoratedConsumerFlushesOnUnbind() {
+        final List<Integer> acksAtUnbind = new ArrayList<Integer>();
+        final RecordingConsumer consumer = new RecordingConsumer() {
+            @Override public void unbindQueue(Collection<String> queueNames) {
+                acksAtUnbind.add(acks.size());
+                super.unbindQueue(queueNames);
+            }
+        };
+        AckAggregator aggregator = new DefaultAckAggregator(consumer, null, 1000, 60000, AckDurability.ASYNC);
+        PushConsumer decorated = aggregator.decorate(consumer);
+        decorated.bindQueue(Collections.singleton("QUEUE_A"), new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+                context.ack();
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            DefaultMessage message = new DefaultMessage("QUEUE_A", new byte[1]);
+            message.setMessageReceipt(new Receipt(-1, i));
+            consumer.push(message);
+        }
+        decorated.ack(new Receipt(-1, 3));
+        assertThat(consumer.acks).isEmpty();
+        assertThat(aggregator.pendingAcks()).isEqualTo(4);
+
+        decorated.unbindQueue(Collections.singleton("QUEUE_A"));
+        assertThat(acksAtUnbind).containsExactly(4);
+        assertThat(decorated.getBindQueues()).isEmpty();
+
+        decorated.stop();
+        decorated.ack(new Receipt(-1, 4));
+        assertThat(consumer.acks).hasSize(5);
+    }
+
+    private static class Receipt implements MessageReceipt {
+        private final int partition;
+        private final long offset;
+
+        Receipt(int partition, long offset) {
+            this.partition = partition;
+            this.offset = offset;
+        }
+    }
+
+    private static class RecordingRangeAcknowledger implements RangeAcknowledger {
+        final List<String> ranges = new CopyOnWriteArrayList<String>();
+        final AtomicIntegerArray acked;
+        final int offsetsPerPartition;
+        volatile OMSRuntimeException failure;
+
+        RecordingRangeAcknowledger(int partitions, int offsetsPerPartition) {
+            this.acked = new AtomicIntegerArray(partitions * offsetsPerPartition);
+            this.offsetsPerPartition = offsetsPerPartition;
+        }
+
+        @Override
+        public Object partitionOf(MessageReceipt receipt) {
+            int partition = ((Receipt) receipt).partition;
+            return partition < 0 ? null : partition;
+        }
+
+        @Override
+        public long offsetOf(MessageReceipt receipt) {
+            return ((Receipt) receipt).offset;
+        }
+
+        @Override
+        public void ack(Object partition, long fromOffset, long toOffset) {
+            if (failure != null) {
+                throw failure;
+            }
+            ranges.add(partition + ":[" + fromOffset + "," + toOffset + "]");
+            for (long offset = fromOffset; offset <= toOffset; offset++) {
+                acked.incrementAndGet((Integer) partition * offsetsPerPartition + (int) offset);
+            }
+        }
+    }
+}
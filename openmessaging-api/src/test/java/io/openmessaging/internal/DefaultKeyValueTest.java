@@ -40,6 +40,22 @@ public class DefaultKeyValueTest {
         assertThat(keyValue.getDouble("DoubleKey")).isEqualTo(1.23);
     }
 
+    @Test
+    public void testGetWithDefault() throws Exception {
+        assertThat(keyValue.getBoolean("MissingKey", true)).isTrue();
+        assertThat(keyValue.getShort("MissingKey", (short) 7)).isEqualTo((short) 7);
+        assertThat(keyValue.getInt("MissingKey")).isEqualTo(0);
+        assertThat(keyValue.getInt("MissingKey", 7)).isEqualTo(7);
+        assertThat(keyValue.getLong("MissingKey", 7L)).isEqualTo(7L);
+        assertThat(keyValue.getDouble("MissingKey", 0.7)).isEqualTo(0.7);
+        assertThat(keyValue.getString("MissingKey")).isNull();
+        assertThat(keyValue.getString("MissingKey", "DEFAULT")).isEqualTo("DEFAULT");
+
+        keyValue.put("IntKey", 123);
+        assertThat(keyValue.getInt("IntKey", 7)).isEqualTo(123);
+        assertThat(keyValue.getString("IntKey", "DEFAULT")).isEqualTo("123");
+    }
+
     @Test
     public void testKeySet() throws Exception {
         keyValue.put("IndexKey", 123);
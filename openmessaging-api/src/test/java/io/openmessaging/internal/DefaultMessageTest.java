@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.consumer.MessageReceipt;
+import io.openmessaging.extension.ExtensionHeader;
+import io.openmessaging.message.Header;
+import io.openmessaging.message.Message;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefaultMessageTest {
+
+    @Test
+    public void testByteArrayBodyIsNotCopied() throws Exception {
+        byte[] data = "HELLO".getBytes();
+        Message message = new DefaultMessage("HELLO_QUEUE", data);
+        assertThat(message.getData()).isSameAs(data);
+        assertThat(message.getBodyLength()).isEqualTo(5);
+        assertThat(message.header().getDestination()).isEqualTo("HELLO_QUEUE");
+        assertThat(message.header().getPriority()).isEqualTo(DefaultHeader.DEFAULT_PRIORITY);
+    }
+
+    @Test
+    public void testDirectBody() throws Exception {
+        ByteBuffer direct = ByteBuffer.allocateDirect(16);
+        direct.put("xxHELLO".getBytes());
+        direct.flip();
+        direct.position(2);
+
+        Message message = new DefaultMessage("HELLO_QUEUE", direct);
+        ByteBuffer body = message.getBody();
+        assertThat(body.isDirect()).isTrue();
+        assertThat(body.isReadOnly()).isTrue();
+        assertThat(body.position()).isEqualTo(0);
+        assertThat(body.remaining()).isEqualTo(5);
+        assertThat(new String(message.getData())).isEqualTo("HELLO");
+        assertThat(direct.position()).isEqualTo(2);
+    }
+
+    @Test
+    public void testCompositeBody() throws Exception {
+        Message message = new DefaultMessage("HELLO_QUEUE", ByteBuffer.wrap("HEL".getBytes()),
+            ByteBuffer.wrap("LO".getBytes()));
+        assertThat(message.getBodyBuffers()).hasSize(2);
+        assertThat(message.getBodyLength()).isEqualTo(5);
+        assertThat(new String(message.getData())).isEqualTo("HELLO");
+        assertThat(message.getBody().remaining()).isEqualTo(5);
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testBodyIsReadOnly() throws Exception {
+        new DefaultMessage("HELLO_QUEUE", "HELLO".getBytes()).getBody().put((byte) 0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullBodyRejected() throws Exception {
+        new DefaultMessage("HELLO_QUEUE", new byte[1]).setBody((ByteBuffer[]) null);
+    }
+
+    @Test
+    public void testDefaultBodyMethods() throws Exception {
+        final DefaultMessage delegate = new DefaultMessage();
+        Message message = new Message() {
+            @Override
+            public Header header() {
+                return delegate.header();
+            }
+
+            @Override
+            public ExtensionHeader extensionHeader() {
+                return delegate.extensionHeader();
+            }
+
+            @Override
+            public KeyValue properties() {
+                return delegate.properties();
+            }
+
+            @Override
+            public byte[] getData() {
+                return delegate.getData();
+            }
+
+            @Override
+            public void setData(byte[] data) {
+                delegate.setData(data);
+            }
+
+            @Override
+            public MessageReceipt getMessageReceipt() {
+                return null;
+            }
+        };
+        message.setBody(ByteBuffer.wrap("HEL".getBytes()), ByteBuffer.wrap("LO".getBytes()));
+        assertThat(new String(message.getData())).isEqualTo("HELLO");
+        assertThat(message.getBody().remaining()).isEqualTo(5);
+        assertThat(message.getBodyBuffers()).hasSize(1);
+        assertThat(message.getBodyLength()).isEqualTo(5);
+    }
+}
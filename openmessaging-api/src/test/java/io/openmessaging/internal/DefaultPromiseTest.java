@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.Future;
+import io.openmessaging.FutureListener;
+import io.openmessaging.OMS;
+import io.openmessaging.Promise;
+import io.openmessaging.exception.OMSRuntimeException;
+import io.openmessaging.exception.OMSTimeOutException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class DefaultPromiseTest {
+
+    @Test
+    public void testSet() throws Exception {
+        Promise<String> promise = OMS.newPromise();
+        final List<String> notified = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            final int index = i;
+            promise.addListener(new FutureListener<String>() {
+                @Override public void operationComplete(Future<String> future) {
+                    notified.add(index + future.get());
+                }
+            });
+        }
+        assertThat(promise.isDone()).isFalse();
+        assertThat(promise.set("A")).isTrue();
+        assertThat(promise.set("B")).isFalse();
+        assertThat(promise.setFailure(new RuntimeException())).isFalse();
+        assertThat(promise.cancel(false)).isFalse();
+        assertThat(notified).containsExactly("0A", "1A", "2A");
+        assertThat(promise.get()).isEqualTo("A");
+        assertThat(promise.get(0)).isEqualTo("A");
+        assertThat(promise.getThrowable()).isNull();
+
+        promise.addListener(new FutureListener<String>() {
+            @Override public void operationComplete(Future<String> future) {
+                notified.add("late" + future.get());
+            }
+        });
+        assertThat(notified).contains("lateA");
+
+        Promise<String> empty = OMS.newPromise();
+        empty.set(null);
+        assertThat(empty.isDone()).isTrue();
+        assertThat(empty.get()).isNull();
+    }
+
+    @Test
+    public void testFailureAndCancel() throws Exception {
+        Promise<String> failed = OMS.newPromise();
+        failed.setFailure(new IllegalStateException("boom"));
+        assertThat(failed.isCancelled()).isFalse();
+        assertThat(failed.getThrowable()).isInstanceOf(IllegalStateException.class);
+        try {
+            failed.get();
+            fail("The promise failed");
+        } catch (OMSRuntimeException e) {
+            assertThat(e.getCause()).isSameAs(failed.getThrowable());
+        }
+
+        Promise<String> cancelled = OMS.newPromise();
+        assertThat(cancelled.cancel(true)).isTrue();
+        assertThat(cancelled.isCancelled()).isTrue();
+        assertThat(cancelled.isDone()).isTrue();
+        try {
+            cancelled.get();
+            fail("The promise is cancelled");
+        } catch (CancellationException ignored) {
+        }
+    }
+
+    @Test
+    public void testTimeoutAndInterrupt() throws Exception {
+        Promise<String> promise = OMS.newPromise();
+        long start = System.nanoTime();
+        try {
+            promise.get(20);
+            fail("The promise is not completed");
+        } catch (OMSTimeOutException e) {
+            assertThat(e.getErrorCode()).isEqualTo(1410);
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(19L);
+
+        Thread.currentThread().interrupt();
+        try {
+            promise.get(1);
+            fail("The promise is not completed");
+        } catch (OMSTimeOutException ignored) {
+            assertThat(Thread.interrupted()).isTrue();
+        }
+        promise.set("A");
+        assertThat(promise.get(1)).isEqualTo("A");
+    }
+
+    @Test
+    public void testTimedOutWaitersUnlinked() throws Exception {
+        DefaultPromise<String> promise = new DefaultPromise<String>();
+        final List<Integer> notified = new ArrayList<Integer>();
+        for (int i = 0; i < 100; i++) {
+            final int index = i;
+            promise.addListener(new FutureListener<String>() {
+                @Override public void operationComplete(Future<String> future) {
+                    notified.add(index);
+                }
+            });
+            try {
+                promise.get(1);
+                fail("The promise is not completed");
+            } catch (OMSTimeOutException expected) {
+            }
+        }
+        assertThat(stackDepth(promise)).isEqualTo(100);
+
+        promise.set("A");
+        assertThat(notified).hasSize(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(notified.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testTimedWaitsRacingCompletion() throws Exception {
+        final int rounds = 2000;
+        final int waiters = 3;
+        for (int round = 0; round < rounds; round++) {
+            final DefaultPromise<String> promise = new DefaultPromise<String>();
+            final AtomicInteger notified = new AtomicInteger();
+            FutureListener<String> listener = new FutureListener<String>() {
+                @Override public void operationComplete(Future<String> future) {
+                    notified.incrementAndGet();
+                }
+            };
+            promise.addListener(listener);
+            final CyclicBarrier barrier = new CyclicBarrier(waiters + 1);
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int w = 0; w < waiters; w++) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override public void run() {
+                        await(barrier);
+                        while (!promise.isDone()) {
+                            try {
+                                promise.get(1);
+                            } catch (OMSTimeOutException expected) {
+                            }
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+                promise.addListener(listener);
+            }
+            await(barrier);
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(TimeUnit.MILLISECONDS.toNanos(2)));
+            promise.set("A");
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertThat(notified.get()).isEqualTo(waiters + 1);
+        }
+    }
+
+    @Test
+    public void testListenerExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Promise<String> promise = OMS.newPromise(executor);
+            final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+            final CountDownLatch notified = new CountDownLatch(1);
+            promise.addListener(new FutureListener<String>() {
+                @Override public void operationComplete(Future<String> future) {
+                    thread.set(Thread.currentThread());
+                    notified.countDown();
+                }
+            });
+            promise.set("A");
+            assertThat(notified.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(thread.get()).isNotSameAs(Thread.currentThread());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStress() throws Exception {
+        final int threads = 4;
+        final int promises = 2000;
+        final List<DefaultPromise<Integer>> list = new ArrayList<DefaultPromise<Integer>>();
+        for (int i = 0; i < promises; i++) {
+            list.add(new DefaultPromise<Integer>());
+        }
+        final AtomicInteger notified = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger wrong = new AtomicInteger();
+        final CyclicBarrier barrier = new CyclicBarrier(threads * 3);
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            workers.add(new Thread(new Runnable() {
+                @Override public void run() {
+                    await(barrier);
+                    for (int i = 0; i < promises; i++) {
+                        list.get((i + offset * 7) % promises).addListener(new FutureListener<Integer>() {
+                            @Override public void operationComplete(Future<Integer> future) {
+                                notified.incrementAndGet();
+                            }
+                        });
+                    }
+                }
+            }));
+            workers.add(new Thread(new Runnable() {
+                @Override public void run() {
+                    await(barrier);
+                    for (int i = 0; i < promises; i++) {
+                        if (list.get((i + offset * 13) % promises).set(i)) {
+                            completed.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+            workers.add(new Thread(new Runnable() {
+                @Override public void run() {
+                    await(barrier);
+                    for (int i = promises - 1; i >= 0; i--) {
+                        DefaultPromise<Integer> promise = list.get(i);
+                        if (promise.get() == null || !promise.isDone()) {
+                            wrong.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join(30000);
+            assertThat(worker.isAlive()).isFalse();
+        }
+        assertThat(completed.get()).isEqualTo(promises);
+        assertThat(notified.get()).isEqualTo(promises * threads);
+        assertThat(wrong.get()).isEqualTo(0);
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int stackDepth(DefaultPromise<?> promise) throws Exception {
+        Field state = DefaultPromise.class.getDeclaredField("state");
+        state.setAccessible(true);
+        int depth = 0;
+        for (Object node = state.get(promise); node != null; depth++) {
+            Field next = node.getClass().getDeclaredField("next");
+            next.setAccessible(true);
+            node = next.get(node);
+        }
+        return depth;
+    }
+}
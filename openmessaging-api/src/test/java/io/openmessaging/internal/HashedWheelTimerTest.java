@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.OMS;
+import io.openmessaging.exception.OMSTimeOutException;
+import io.openmessaging.timer.Timeout;
+import io.openmessaging.timer.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class HashedWheelTimerTest {
+
+    @Test
+    public void testExpire() throws Exception {
+        Timer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 8);
+        try {
+            final CountDownLatch fired = new CountDownLatch(1);
+            long start = System.nanoTime();
+            Timeout timeout = timer.newTimeout(new Runnable() {
+                @Override public void run() {
+                    fired.countDown();
+                }
+            }, 50, TimeUnit.MILLISECONDS);
+
+            assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(49L);
+            assertThat(timeout.isExpired()).isTrue();
+            assertThat(timeout.cancel()).isFalse();
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        Timer timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 4);
+        try {
+            final AtomicInteger fired = new AtomicInteger();
+            Runnable task = new Runnable() {
+                @Override public void run() {
+                    fired.incrementAndGet();
+                }
+            };
+            List<Timeout> timeouts = new ArrayList<Timeout>();
+            for (int i = 0; i < 10000; i++) {
+                timeouts.add(timer.newTimeout(task, 500 + i % 50, TimeUnit.MILLISECONDS));
+            }
+            for (int i = 0; i < timeouts.size(); i += 2) {
+                assertThat(timeouts.get(i).cancel()).isTrue();
+                assertThat(timeouts.get(i).isCancelled()).isTrue();
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (fired.get() < 5000 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(50);
+            assertThat(fired.get()).isEqualTo(5000);
+            for (int i = 1; i < timeouts.size(); i += 2) {
+                assertThat(timeouts.get(i).isExpired()).isTrue();
+            }
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        Timer timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 4);
+        Timeout timeout = timer.newTimeout(new Runnable() {
+            @Override public void run() {
+            }
+        }, 1, TimeUnit.HOURS);
+        timer.stop();
+        assertThat(timeout.isCancelled()).isTrue();
+        try {
+            timer.newTimeout(new Runnable() {
+                @Override public void run() {
+                }
+            }, 1, TimeUnit.MILLISECONDS);
+            fail("The timer is stopped");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Test
+    public void testSharedTimerCannotBeStopped() throws Exception {
+        try {
+            OMS.timer().stop();
+            fail("The shared timer must refuse to stop");
+        } catch (UnsupportedOperationException expected) {
+            assertThat(expected).hasMessageContaining("shared timer");
+        }
+        final CountDownLatch fired = new CountDownLatch(1);
+        OMS.timer().newTimeout(new Runnable() {
+            @Override public void run() {
+                fired.countDown();
+            }
+        }, 1, TimeUnit.MILLISECONDS);
+        assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testPromiseFailAfter() throws Exception {
+        DefaultPromise<String> expired = new DefaultPromise<String>().failAfter(10, TimeUnit.MILLISECONDS, OMS.timer());
+        try {
+            expired.get(5000);
+            fail("The promise timed out");
+        } catch (OMSTimeOutException e) {
+            assertThat(e.getErrorCode()).isEqualTo(1410);
+            assertThat(expired.getThrowable()).isSameAs(e);
+        }
+
+        DefaultPromise<String> completed = new DefaultPromise<String>().failAfter(10, TimeUnit.MILLISECONDS,
+            OMS.timer());
+        completed.set("A");
+        Thread.sleep(50);
+        assertThat(completed.get()).isEqualTo("A");
+    }
+}
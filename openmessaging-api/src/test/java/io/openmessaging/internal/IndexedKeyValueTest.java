@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.OMSBuiltinKeys;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexedKeyValueTest {
+    private IndexedKeyValue keyValue = new IndexedKeyValue();
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        keyValue.put(OMSBuiltinKeys.REGION, "us-east");
+        assertThat(keyValue.getString(OMSBuiltinKeys.REGION)).isEqualTo("us-east");
+
+        keyValue.put("UnknownKey", 123L);
+        assertThat(keyValue.getLong("UnknownKey")).isEqualTo(123L);
+        assertThat(keyValue.getInt("MissingKey", 7)).isEqualTo(7);
+        assertThat(keyValue.keySet()).containsOnly(OMSBuiltinKeys.REGION, "UnknownKey");
+    }
+
+    @Test
+    public void testIdAccess() throws Exception {
+        int id = KeyRegistry.register("IndexedKeyValueTest.Key");
+        keyValue.put(id, 123);
+        assertThat(keyValue.getInt("IndexedKeyValueTest.Key")).isEqualTo(123);
+        assertThat(keyValue.getLong(id, 0L)).isEqualTo(123L);
+        assertThat(keyValue.getString(KeyRegistry.idOf(OMSBuiltinKeys.REGION), "DEFAULT")).isEqualTo("DEFAULT");
+    }
+
+    @Test
+    public void testKeyRegisteredAfterPut() throws Exception {
+        keyValue.put("IndexedKeyValueTest.LateKey", "BEFORE");
+        int id = KeyRegistry.register("IndexedKeyValueTest.LateKey");
+        assertThat(keyValue.getString(id, null)).isEqualTo("BEFORE");
+
+        keyValue.put("IndexedKeyValueTest.LateKey", "AFTER");
+        assertThat(keyValue.getString("IndexedKeyValueTest.LateKey")).isEqualTo("AFTER");
+        assertThat(keyValue.keySet()).hasSize(1);
+    }
+
+    @Test
+    public void testArraysGrowOnDemand() throws Exception {
+        int high = KeyRegistry.register("IndexedKeyValueTest.HighKey");
+        int low = KeyRegistry.idOf(OMSBuiltinKeys.DRIVER_IMPL);
+        assertThat(keyValue.getLong(high, 5L)).isEqualTo(5L);
+        assertThat(keyValue.getString(low, "DEFAULT")).isEqualTo("DEFAULT");
+
+        keyValue.put(low, "driver");
+        assertThat(keyValue.getLong(high, 5L)).isEqualTo(5L);
+        keyValue.put(high, 9L);
+        assertThat(keyValue.getLong(high, 0L)).isEqualTo(9L);
+        assertThat(keyValue.getString(low, null)).isEqualTo("driver");
+        assertThat(keyValue.keySet()).containsOnly(OMSBuiltinKeys.DRIVER_IMPL, "IndexedKeyValueTest.HighKey");
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        keyValue.put(OMSBuiltinKeys.REGION, "us-east").put("UnknownKey", 1);
+        keyValue.clear();
+        assertThat(keyValue.keySet()).isEmpty();
+        assertThat(keyValue.containsKey(OMSBuiltinKeys.REGION)).isFalse();
+    }
+}
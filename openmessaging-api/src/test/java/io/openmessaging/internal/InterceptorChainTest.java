@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.interceptor.ConsumerInterceptor;
+import io.openmessaging.interceptor.Context;
+import io.openmessaging.interceptor.ProducerInterceptor;
+import io.openmessaging.message.Message;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class InterceptorChainTest {
+    private final Message message = new DefaultMessage("QUEUE_A", new byte[1]);
+
+    @Test
+    public void testOrderAndAttributes() {
+        final List<String> calls = new ArrayList<String>();
+        ProducerInterceptorChain chain = new ProducerInterceptorChain();
+        for (int i = 0; i < 3; i++) {
+            final String name = "i" + i;
+            chain.addInterceptor(new ProducerInterceptor() {
+                @Override public void preSend(Message message, Context attributes) {
+                    calls.add("pre-" + name);
+                    attributes.attributes().put(name, name.length());
+                }
+
+                @Override public void postSend(Message message, Context attributes) {
+                    calls.add("post-" + name + "-" + attributes.attributes().keySet().size());
+                }
+            });
+        }
+
+        InterceptorChain.Invocation invocation = chain.preSend(message);
+        chain.postSend(message, invocation);
+        assertThat(calls).containsExactly("pre-i0", "pre-i1", "pre-i2", "post-i0-3", "post-i1-3", "post-i2-3");
+
+        InterceptorChain.Invocation next = chain.preSend(message);
+        assertThat(next).isSameAs(invocation);
+        assertThat(next.attributes().keySet()).containsOnly("i0", "i1", "i2");
+        chain.release(next);
+        assertThat(next.attributes().keySet()).isEmpty();
+    }
+
+    @Test
+    public void testSnapshotSurvivesChainChanges() {
+        ConsumerInterceptorChain chain = new ConsumerInterceptorChain();
+        CountingConsumerInterceptor first = new CountingConsumerInterceptor();
+        CountingConsumerInterceptor second = new CountingConsumerInterceptor();
+        chain.addInterceptor(first);
+
+        InterceptorChain.Invocation invocation = chain.preReceive(message);
+        chain.addInterceptor(second);
+        chain.postReceive(message, invocation);
+        assertThat(first.pre).isEqualTo(1);
+        assertThat(first.post).isEqualTo(1);
+        assertThat(second.post).isEqualTo(0);
+
+        invocation = chain.preReceive(message);
+        assertThat(chain.removeInterceptor(first)).isTrue();
+        assertThat(chain.removeInterceptor(first)).isFalse();
+        chain.postReceive(message, invocation);
+        assertThat(first.post).isEqualTo(2);
+        assertThat(second.post).isEqualTo(1);
+        assertThat(chain.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailingInterceptorReleasesInvocation() {
+        ProducerInterceptorChain chain = new ProducerInterceptorChain();
+        ProducerInterceptor failing = new ProducerInterceptor() {
+            @Override public void preSend(Message message, Context attributes) {
+                attributes.attributes().put("seen", true);
+                throw new IllegalStateException("boom");
+            }
+
+            @Override public void postSend(Message message, Context attributes) {
+            }
+        };
+        chain.addInterceptor(failing);
+        try {
+            chain.preSend(message);
+            fail("The interceptor failure must propagate");
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("boom");
+        }
+
+        chain.removeInterceptor(failing);
+        chain.addInterceptor(new CountingProducerInterceptor());
+        InterceptorChain.Invocation invocation = chain.preSend(message);
+        assertThat(invocation.attributes().containsKey("seen")).isFalse();
+        chain.postSend(message, invocation);
+    }
+
+    @Test
+    public void testDispatchWithZeroToEightInterceptors() {
+        for (int size = 0; size <= 8; size++) {
+            ProducerInterceptorChain chain = new ProducerInterceptorChain();
+            CountingProducerInterceptor counting = new CountingProducerInterceptor();
+            for (int i = 0; i < size; i++) {
+                chain.addInterceptor(counting);
+            }
+            InterceptorChain.Invocation first = chain.preSend(message);
+            chain.postSend(message, first);
+            InterceptorChain.Invocation second = chain.preSend(message);
+            chain.postSend(message, second);
+            assertThat(second).isSameAs(first);
+            assertThat(counting.pre).isEqualTo(2L * size);
+        }
+    }
+
+    private static class CountingProducerInterceptor implements ProducerInterceptor {
+        private long pre;
+
+        @Override
+        public void preSend(Message message, Context attributes) {
+            pre++;
+        }
+
+        @Override
+        public void postSend(Message message, Context attributes) {
+        }
+    }
+
+    private static class CountingConsumerInterceptor implements ConsumerInterceptor {
+        private int pre;
+        private int post;
+
+        @Override
+        public void preReceive(Message message, Context attributes) {
+            pre++;
+        }
+
+        @Override
+        public void postReceive(Message message, Context attributes) {
+            post++;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.OMS;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.consumer.DispatchingMessageListener;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.consumer.OrderingKey;
+import io.openmessaging.exception.OMSRuntimeException;
+import io.openmessaging.message.Message;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class KeyOrderedDispatcherTest {
+    private static final MessageListener.Context NO_ACK = new MessageListener.Context() {
+        @Override public void ack() {
+        }
+    };
+
+    @Test
+    public void testOrderPerKey() throws Exception {
+        final int keys = 32;
+        final int messagesPerKey = 200;
+        final ConcurrentHashMap<String, Integer> last = new ConcurrentHashMap<String, Integer>();
+        final ConcurrentHashMap<String, AtomicBoolean> busy = new ConcurrentHashMap<String, AtomicBoolean>();
+        final CountDownLatch parallel = new CountDownLatch(4);
+        final AtomicBoolean parallelReached = new AtomicBoolean(true);
+        final AtomicInteger violations = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(keys * messagesPerKey);
+        for (int k = 0; k < keys; k++) {
+            last.put("key-" + k, -1);
+            busy.put("key-" + k, new AtomicBoolean());
+        }
+        DispatchingMessageListener dispatcher = OMS.newKeyOrderedListener(new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+                String key = message.extensionHeader().getMessageKey();
+                if (!busy.get(key).compareAndSet(false, true)) {
+                    violations.incrementAndGet();
+                }
+                int seq = message.properties().getInt("seq");
+                if (seq == 0) {
+                    parallel.countDown();
+                    try {
+                        if (!parallel.await(5, TimeUnit.SECONDS)) {
+                            parallelReached.set(false);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (last.put(key, seq) != seq - 1) {
+                    violations.incrementAndGet();
+                }
+                busy.get(key).set(false);
+                done.countDown();
+            }
+        }, OrderingKey.MESSAGE_KEY, OMS.newKeyValue().put(OMSBuiltinKeys.CONSUMER_DISPATCH_THREADS, 8)
+            .put(OMSBuiltinKeys.CONSUMER_DISPATCH_KEY_MESSAGES, 16));
+        try {
+            for (int i = 0; i < messagesPerKey; i++) {
+                for (int k = 0; k < keys; k++) {
+                    dispatcher.onReceived(message("key-" + k, i), NO_ACK);
+                }
+            }
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(violations.get()).isEqualTo(0);
+            assertThat(parallelReached.get()).isTrue();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (dispatcher.pendingMessages() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertThat(dispatcher.pendingMessages()).isEqualTo(0);
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testKeyQueueBound() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        final List<Message> processed = new ArrayList<Message>();
+        final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+                processed.add(message);
+            }
+        }, OrderingKey.MESSAGE_KEY, executor, 2, 100);
+
+        dispatcher.onReceived(message("A", 0), NO_ACK);
+        dispatcher.onReceived(message("A", 1), NO_ACK);
+        final CountDownLatch queued = new CountDownLatch(1);
+        Thread blocked = new Thread(new Runnable() {
+            @Override public void run() {
+                dispatcher.onReceived(message("A", 2), NO_ACK);
+                queued.countDown();
+            }
+        });
+        blocked.start();
+        assertThat(queued.await(100, TimeUnit.MILLISECONDS)).isFalse();
+
+        dispatcher.onReceived(message("B", 0), NO_ACK);
+        assertThat(executor.tasks).hasSize(2);
+        assertThat(dispatcher.pendingMessages()).isEqualTo(3);
+
+        executor.runAll();
+        assertThat(queued.await(5, TimeUnit.SECONDS)).isTrue();
+        blocked.join();
+        executor.runAll();
+        assertThat(processed).hasSize(4);
+        assertThat(processed.get(0).properties().getInt("seq")).isEqualTo(0);
+        assertThat(dispatcher.pendingMessages()).isEqualTo(0);
+    }
+
+    @Test
+    public void testMessagesWithoutKeyAreUnordered() {
+        ManualExecutor executor = new ManualExecutor();
+        KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+            }
+        }, OrderingKey.MESSAGE_KEY, executor, 1, 100);
+
+        dispatcher.onReceived(message(null, 0), NO_ACK);
+        dispatcher.onReceived(message(null, 1), NO_ACK);
+        assertThat(executor.tasks).hasSize(2);
+    }
+
+    @Test
+    public void testPendingBoundCoversMessagesWithoutKey() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+            }
+        }, OrderingKey.MESSAGE_KEY, executor, 100, 2);
+
+        dispatcher.onReceived(message(null, 0), NO_ACK);
+        dispatcher.onReceived(message("A", 0), NO_ACK);
+        final CountDownLatch queued = new CountDownLatch(1);
+        Thread blocked = new Thread(new Runnable() {
+            @Override public void run() {
+                dispatcher.onReceived(message(null, 1), NO_ACK);
+                queued.countDown();
+            }
+        });
+        blocked.start();
+        assertThat(queued.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(dispatcher.pendingMessages()).isEqualTo(2);
+
+        executor.runAll();
+        assertThat(queued.await(5, TimeUnit.SECONDS)).isTrue();
+        blocked.join();
+        executor.runAll();
+        assertThat(dispatcher.pendingMessages()).isEqualTo(0);
+    }
+
+    @Test
+    public void testShutdown() {
+        ManualExecutor executor = new ManualExecutor();
+        KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+            }
+        }, OrderingKey.PARTITION, executor, 1, 100);
+        dispatcher.shutdown();
+        try {
+            dispatcher.onReceived(message("A", 0), NO_ACK);
+            fail("The message must be rejected");
+        } catch (OMSRuntimeException e) {
+            assertThat(e.getErrorCode()).isEqualTo(10007);
+        }
+    }
+
+    private static Message message(String key, int seq) {
+        DefaultMessage message = new DefaultMessage("QUEUE_A", new byte[1]);
+        if (key != null) {
+            message.extensionHeader().setMessageKey(key);
+        }
+        message.properties().put("seq", seq);
+        return message;
+    }
+
+    private static class ManualExecutor implements Executor {
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+}
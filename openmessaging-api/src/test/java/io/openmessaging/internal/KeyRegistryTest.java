@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.OMSBuiltinKeys;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeyRegistryTest {
+
+    @Test
+    public void testBuiltinKeysAreRegistered() throws Exception {
+        int id = KeyRegistry.idOf(OMSBuiltinKeys.REGION);
+        assertThat(id).isGreaterThanOrEqualTo(0);
+        assertThat(KeyRegistry.keyOf(id)).isEqualTo(OMSBuiltinKeys.REGION);
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+        assertThat(KeyRegistry.idOf("KeyRegistryTest.Key")).isEqualTo(KeyRegistry.UNKNOWN);
+
+        int id = KeyRegistry.register("KeyRegistryTest.Key");
+        assertThat(KeyRegistry.register(new String("KeyRegistryTest.Key"))).isEqualTo(id);
+        assertThat(KeyRegistry.idOf("KeyRegistryTest.Key")).isEqualTo(id);
+        assertThat(KeyRegistry.size()).isGreaterThan(id);
+    }
+
+    @Test
+    public void testManyKeys() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            KeyRegistry.register("KeyRegistryTest.Key" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            int id = KeyRegistry.idOf("KeyRegistryTest.Key" + i);
+            assertThat(KeyRegistry.keyOf(id)).isEqualTo("KeyRegistryTest.Key" + i);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMS;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.exception.OMSMessageFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Fail.failBecauseExceptionWasNotThrown;
+
+public class KeyValueCodecTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        KeyValue source = OMS.newKeyValue()
+            .put("BooleanKey", true)
+            .put("ShortKey", (short) -12)
+            .put("IntKey", Integer.MIN_VALUE)
+            .put("LongKey", Long.MAX_VALUE)
+            .put("DoubleKey", -1.23)
+            .put("StringKey", "HELLO é世😀")
+            .put(OMSBuiltinKeys.REGION, "us-east");
+
+        for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(256),
+            ByteBuffer.allocateDirect(256).order(ByteOrder.LITTLE_ENDIAN)}) {
+            KeyValueCodec.encode(source, buffer);
+            assertThat(buffer.position()).isEqualTo(KeyValueCodec.encodedSize(source));
+            buffer.flip();
+
+            KeyValue decoded = KeyValueCodec.decode(buffer);
+            assertThat(buffer.hasRemaining()).isFalse();
+            assertThat(decoded.keySet()).isEqualTo(source.keySet());
+            assertThat(decoded.getBoolean("BooleanKey")).isTrue();
+            assertThat(decoded.getShort("ShortKey")).isEqualTo((short) -12);
+            assertThat(decoded.getInt("IntKey")).isEqualTo(Integer.MIN_VALUE);
+            assertThat(decoded.getLong("LongKey")).isEqualTo(Long.MAX_VALUE);
+            assertThat(decoded.getDouble("DoubleKey")).isEqualTo(-1.23);
+            assertThat(decoded.getString("StringKey")).isEqualTo("HELLO é世😀");
+            assertThat(decoded.getString(OMSBuiltinKeys.REGION)).isEqualTo("us-east");
+        }
+    }
+
+    @Test
+    public void testBuiltinKeyIsReferenced() throws Exception {
+        KeyValue builtin = new CompactKeyValue().put(OMSBuiltinKeys.ACCESS_POINTS, 1);
+        KeyValue literal = new CompactKeyValue().put("X", 1);
+        assertThat(KeyValueCodec.encodedSize(builtin)).isEqualTo(KeyValueCodec.encodedSize(literal) - 1);
+    }
+
+    @Test
+    public void testEncodeDefaultKeyValue() throws Exception {
+        KeyValue source = new DefaultKeyValue().put("IntKey", 123);
+        ByteBuffer buffer = ByteBuffer.allocate(KeyValueCodec.encodedSize(source));
+        KeyValueCodec.encode(source, buffer);
+        buffer.flip();
+        assertThat(KeyValueCodec.decode(buffer).getInt("IntKey")).isEqualTo(123);
+    }
+
+    @Test
+    public void testDecodeMalformed() throws Exception {
+        KeyValue source = new CompactKeyValue().put("StringKey", "HELLO");
+        ByteBuffer buffer = ByteBuffer.allocate(KeyValueCodec.encodedSize(source));
+        KeyValueCodec.encode(source, buffer);
+        buffer.flip();
+        buffer.limit(buffer.limit() - 1);
+        try {
+            KeyValueCodec.decode(buffer);
+            failBecauseExceptionWasNotThrown(OMSMessageFormatException.class);
+        } catch (OMSMessageFormatException e) {
+            assertThat(e).hasMessageContaining("The encoded data is malformed");
+        }
+    }
+
+    @Test
+    public void testRepeatedRoundTrip() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+        CompactKeyValue target = new CompactKeyValue();
+        for (int i = 0; i < 100000; i++) {
+            KeyValue source = new CompactKeyValue().put("Sequence", (long) i).put("Tag", "T" + (i & 15));
+            buffer.clear();
+            KeyValueCodec.encode(source, buffer);
+            buffer.flip();
+            target.clear();
+            KeyValueCodec.decode(buffer, target);
+            assertThat(target.getLong("Sequence")).isEqualTo(i);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.ImmutableKeyValue;
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMS;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LayeredKeyValueTest {
+
+    @Test
+    public void testFreeze() throws Exception {
+        KeyValue source = OMS.newKeyValue().put("IntKey", 123).put("StringKey", "HELLO");
+        ImmutableKeyValue frozen = OMS.freeze(source);
+        source.put("IntKey", 456);
+
+        assertThat(frozen.getInt("IntKey")).isEqualTo(123);
+        assertThat(frozen.getString("StringKey")).isEqualTo("HELLO");
+        assertThat(frozen.keySet()).containsOnly("IntKey", "StringKey");
+        assertThat(OMS.freeze(frozen)).isSameAs(frozen);
+    }
+
+    @Test
+    public void testFreezeDefaultKeyValue() throws Exception {
+        DefaultKeyValue source = new DefaultKeyValue();
+        source.put("LongKey", 123L);
+        assertThat(source.freeze().getLong("LongKey")).isEqualTo(123L);
+    }
+
+    @Test
+    public void testWithSharesBase() throws Exception {
+        ImmutableKeyValue base = LayeredKeyValue.EMPTY.with("TENANT", "t1").with("REGION", "us-east");
+        ImmutableKeyValue first = base.with("ORDER_ID", 1L);
+        ImmutableKeyValue second = base.with("ORDER_ID", 2L).with("REGION", "us-west");
+
+        assertThat(first.getLong("ORDER_ID")).isEqualTo(1L);
+        assertThat(first.getString("REGION")).isEqualTo("us-east");
+        assertThat(second.getLong("ORDER_ID")).isEqualTo(2L);
+        assertThat(second.getString("REGION")).isEqualTo("us-west");
+        assertThat(second.keySet()).containsOnly("TENANT", "REGION", "ORDER_ID");
+        assertThat(base.containsKey("ORDER_ID")).isFalse();
+    }
+
+    @Test
+    public void testDeepChainIsFlattened() throws Exception {
+        ImmutableKeyValue keyValue = LayeredKeyValue.EMPTY;
+        for (int i = 0; i < 100; i++) {
+            keyValue = keyValue.with("Key" + i, i).with("Shared", i);
+        }
+        assertThat(keyValue.keySet()).hasSize(101);
+        assertThat(keyValue.getInt("Key42")).isEqualTo(42);
+        assertThat(keyValue.getInt("Shared")).isEqualTo(99);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPutIsUnsupported() throws Exception {
+        LayeredKeyValue.EMPTY.with("Key", 1).put("Key", 2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testKeySetIsUnmodifiable() throws Exception {
+        LayeredKeyValue.EMPTY.with("Key", 1).keySet().clear();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.message.Message;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageCodecTest {
+
+    private static Message newMessage() {
+        DefaultMessage message = new DefaultMessage("HELLO_QUEUE", "HELLO_BODY".getBytes());
+        message.header().setMessageId("ID-1").setBornTimestamp(1234L).setBornHost("127.0.0.1")
+            .setPriority((short) 7).setDeliveryCount(2);
+        message.extensionHeader().setPartition(3).setOffset(42L).setMessageKey("KEY").setTraceId("TRACE");
+        message.properties().put("IntKey", 123).put("StringKey", "VALUE");
+        return message;
+    }
+
+    private static ByteBuffer encode(Message message) {
+        ByteBuffer buffer = ByteBuffer.allocate(MessageCodec.encodedSize(message));
+        MessageCodec.encode(message, buffer);
+        assertThat(buffer.hasRemaining()).isFalse();
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        FlyweightMessage decoded = MessageCodec.decode(encode(newMessage()));
+
+        assertThat(decoded.header().getDestination()).isEqualTo("HELLO_QUEUE");
+        assertThat(decoded.header().getMessageId()).isEqualTo("ID-1");
+        assertThat(decoded.header().getBornTimestamp()).isEqualTo(1234L);
+        assertThat(decoded.header().getBornHost()).isEqualTo("127.0.0.1");
+        assertThat(decoded.header().getPriority()).isEqualTo((short) 7);
+        assertThat(decoded.header().getDeliveryCount()).isEqualTo(2);
+        assertThat(decoded.extensionHeader().getPartiton()).isEqualTo(3);
+        assertThat(decoded.extensionHeader().getOffset()).isEqualTo(42L);
+        assertThat(decoded.extensionHeader().getMessageKey()).isEqualTo("KEY");
+        assertThat(decoded.extensionHeader().getTraceId()).isEqualTo("TRACE");
+        assertThat(decoded.extensionHeader().getCorrelationId()).isNull();
+        assertThat(new String(decoded.getData())).isEqualTo("HELLO_BODY");
+        assertThat(decoded.isModified()).isFalse();
+
+        assertThat(decoded.properties().getInt("IntKey")).isEqualTo(123);
+        assertThat(decoded.properties().getString("StringKey")).isEqualTo("VALUE");
+    }
+
+    @Test
+    public void testBatchDecode() throws Exception {
+        Message message = newMessage();
+        int size = MessageCodec.encodedSize(message);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size * 3);
+        for (int i = 0; i < 3; i++) {
+            message.header().setMessageId("ID-" + i);
+            MessageCodec.encode(message, buffer);
+        }
+        buffer.flip();
+        for (int i = 0; i < 3; i++) {
+            FlyweightMessage decoded = MessageCodec.decode(buffer);
+            assertThat(decoded.header().getMessageId()).isEqualTo("ID-" + i);
+            assertThat(decoded.getBody().isDirect()).isTrue();
+        }
+        assertThat(buffer.hasRemaining()).isFalse();
+    }
+
+    @Test
+    public void testPassThrough() throws Exception {
+        ByteBuffer original = encode(newMessage());
+        FlyweightMessage decoded = MessageCodec.decode(original.duplicate());
+        decoded.header().getDestination();
+
+        assertThat(encode(decoded)).isEqualTo(original);
+    }
+
+    @Test
+    public void testModifyAndReencode() throws Exception {
+        FlyweightMessage decoded = MessageCodec.decode(encode(newMessage()));
+        decoded.header().setDeliveryCount(3);
+        decoded.setData("NEW_BODY".getBytes());
+        assertThat(decoded.isModified()).isTrue();
+
+        FlyweightMessage reencoded = MessageCodec.decode(encode(decoded));
+        assertThat(reencoded.header().getDeliveryCount()).isEqualTo(3);
+        assertThat(reencoded.header().getMessageId()).isEqualTo("ID-1");
+        assertThat(reencoded.properties().getInt("IntKey")).isEqualTo(123);
+        assertThat(new String(reencoded.getData())).isEqualTo("NEW_BODY");
+    }
+}
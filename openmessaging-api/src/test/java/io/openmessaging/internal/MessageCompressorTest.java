@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.compression.CompressionCodec;
+import io.openmessaging.compression.CompressionCodecs;
+import io.openmessaging.compression.CompressionPolicy;
+import io.openmessaging.exception.OMSMessageFormatException;
+import io.openmessaging.exception.OMSUnsupportException;
+import io.openmessaging.message.Message;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class MessageCompressorTest {
+
+    private static byte[] repetitive(int length) {
+        byte[] bytes = new byte[length];
+        byte[] pattern = "{\"name\":\"openmessaging\",\"value\":42}".getBytes();
+        for (int i = 0; i < length; i++) {
+            bytes[i] = pattern[i % pattern.length];
+        }
+        return bytes;
+    }
+
+    private static byte[] random(int length) {
+        byte[] bytes = new byte[length];
+        new Random(7).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] roundTrip(CompressionCodec codec, byte[] data, boolean direct) {
+        ByteBuffer source = direct ? ByteBuffer.allocateDirect(data.length) : ByteBuffer.allocate(data.length);
+        source.put(data).flip();
+        ByteBuffer compressed = direct ? ByteBuffer.allocateDirect(codec.maxCompressedLength(data.length))
+            : ByteBuffer.allocate(codec.maxCompressedLength(data.length));
+        codec.compress(source, compressed);
+        assertThat(source.hasRemaining()).isFalse();
+        compressed.flip();
+
+        ByteBuffer target = ByteBuffer.allocate(data.length);
+        codec.decompress(compressed, target);
+        assertThat(compressed.hasRemaining()).isFalse();
+        return target.array();
+    }
+
+    @Test
+    public void testBuiltinCodecs() throws Exception {
+        assertThat(CompressionCodecs.codec(CompressionCodecs.DEFLATE).name()).isEqualTo("deflate");
+        assertThat(CompressionCodecs.codec("lz4").id()).isEqualTo(CompressionCodecs.LZ4);
+        assertThat(CompressionCodecs.codec(CompressionCodecs.NONE)).isNull();
+
+        for (CompressionCodec codec : Arrays.asList(CompressionCodecs.codec(CompressionCodecs.DEFLATE),
+            CompressionCodecs.codec(CompressionCodecs.LZ4))) {
+            for (int length : new int[] {0, 1, 12, 13, 100, 70000}) {
+                for (boolean direct : new boolean[] {false, true}) {
+                    assertThat(roundTrip(codec, repetitive(length), direct)).isEqualTo(repetitive(length));
+                    assertThat(roundTrip(codec, random(length), direct)).isEqualTo(random(length));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRegisterConflict() throws Exception {
+        try {
+            CompressionCodecs.register(new Lz4Codec(CompressionCodecs.DEFLATE));
+            fail("The id is already taken");
+        } catch (IllegalArgumentException e) {
+            assertThat(CompressionCodecs.codec(CompressionCodecs.DEFLATE).name()).isEqualTo("deflate");
+        }
+    }
+
+    @Test
+    public void testCompressMessage() throws Exception {
+        MessageCompressor compressor = new MessageCompressor(CompressionPolicy.of("lz4", 64));
+        DefaultMessage message = new DefaultMessage("HELLO_QUEUE", repetitive(4096));
+
+        assertThat(compressor.compress(message)).isTrue();
+        assertThat(message.header().getCompression()).isEqualTo(CompressionCodecs.LZ4);
+        assertThat(message.getBodyLength()).isLessThan(4096);
+        assertThat(compressor.compress(message)).isFalse();
+
+        assertThat(MessageCompressor.decompress(message)).isTrue();
+        assertThat(message.header().getCompression()).isEqualTo(CompressionCodecs.NONE);
+        assertThat(message.getData()).isEqualTo(repetitive(4096));
+        assertThat(MessageCompressor.decompress(message)).isFalse();
+    }
+
+    @Test
+    public void testPolicy() throws Exception {
+        MessageCompressor compressor = new MessageCompressor(CompressionPolicy.of("deflate", 64));
+        compressor.setPolicy("RAW_QUEUE", CompressionPolicy.NONE);
+
+        DefaultMessage small = new DefaultMessage("HELLO_QUEUE", repetitive(63));
+        assertThat(compressor.compress(small)).isFalse();
+        assertThat(small.header().getCompression()).isEqualTo(CompressionCodecs.NONE);
+
+        DefaultMessage raw = new DefaultMessage("RAW_QUEUE", repetitive(4096));
+        assertThat(compressor.compress(raw)).isFalse();
+
+        DefaultMessage incompressible = new DefaultMessage("HELLO_QUEUE", random(4096));
+        assertThat(compressor.compress(incompressible)).isFalse();
+        assertThat(incompressible.getData()).isEqualTo(random(4096));
+
+        compressor.setPolicy("RAW_QUEUE", null);
+        assertThat(compressor.compress(raw)).isTrue();
+        assertThat(raw.header().getCompression()).isEqualTo(CompressionCodecs.DEFLATE);
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        MessageCompressor compressor = new MessageCompressor(CompressionPolicy.of("lz4", 256));
+        List<DefaultMessage> messages = Arrays.asList(
+            new DefaultMessage("HELLO_QUEUE", "HELLO_BODY_1".getBytes()),
+            new DefaultMessage("HELLO_QUEUE", "HELLO_BODY_2".getBytes()),
+            new DefaultMessage("HELLO_QUEUE", repetitive(1024)));
+        messages.get(0).properties().put("IntKey", 123);
+
+        ByteBuffer batch = compressor.compressBatch(messages);
+        assertThat(batch.get(1) << 8 | batch.get(2)).isEqualTo(CompressionCodecs.LZ4);
+
+        List<Message> decoded = MessageCompressor.decompressBatch(batch);
+        assertThat(decoded).hasSize(3);
+        assertThat(new String(decoded.get(0).getData())).isEqualTo("HELLO_BODY_1");
+        assertThat(decoded.get(0).properties().getInt("IntKey")).isEqualTo(123);
+        assertThat(new String(decoded.get(1).getData())).isEqualTo("HELLO_BODY_2");
+        assertThat(decoded.get(2).getData()).isEqualTo(repetitive(1024));
+        assertThat(decoded.get(2).header().getDestination()).isEqualTo("HELLO_QUEUE");
+
+        ByteBuffer small = compressor.compressBatch(messages.subList(0, 1));
+        assertThat(small.get(2)).isEqualTo((byte) CompressionCodecs.NONE);
+        assertThat(new String(MessageCompressor.decompressBatch(small).get(0).getData())).isEqualTo("HELLO_BODY_1");
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        DefaultMessage message = new DefaultMessage("HELLO_QUEUE", repetitive(4096));
+        new MessageCompressor(CompressionPolicy.of("lz4", 0)).compress(message);
+        byte[] compressed = message.getData();
+        message.setData(Arrays.copyOf(compressed, compressed.length - 3));
+        try {
+            MessageCompressor.decompress(message);
+            fail("The body is truncated");
+        } catch (OMSMessageFormatException e) {
+            assertThat(e.getErrorCode()).isEqualTo(10004);
+        }
+
+        message.header().setCompression((short) 999);
+        try {
+            MessageCompressor.decompress(message);
+            fail("The codec is unknown");
+        } catch (OMSUnsupportException e) {
+            assertThat(e.getErrorCode()).isEqualTo(10005);
+        }
+    }
+
+    @Test
+    public void testHostileUncompressedLength() throws Exception {
+        DefaultMessage message = new DefaultMessage("HELLO_QUEUE", new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+            (byte) 0xFF, 0x07, 0x01, 0x02, 0x03});
+        message.header().setCompression(CompressionCodecs.LZ4);
+        try {
+            MessageCompressor.decompress(message);
+            fail("A 2 GB body cannot come from 3 compressed bytes");
+        } catch (OMSMessageFormatException e) {
+            assertThat(e.getErrorCode()).isEqualTo(10004);
+        }
+
+        ByteBuffer batch = ByteBuffer.allocate(16);
+        batch.put(MessageCompressor.BATCH_VERSION).putShort(CompressionCodecs.DEFLATE);
+        WireFormat.writeVarint(batch, 1);
+        WireFormat.writeVarint(batch, Integer.MAX_VALUE);
+        batch.put(new byte[] {0x01, 0x02}).flip();
+        try {
+            MessageCompressor.decompressBatch(batch);
+            fail("A 2 GB batch cannot come from 2 compressed bytes");
+        } catch (OMSMessageFormatException e) {
+            assertThat(e.getErrorCode()).isEqualTo(10004);
+        }
+    }
+
+    @Test
+    public void testCompressWithoutBody() throws Exception {
+        DefaultMessage message = new DefaultMessage("HELLO_QUEUE", (byte[]) null);
+        assertThat(new MessageCompressor(CompressionPolicy.of("deflate", 0)).compress(message)).isFalse();
+        assertThat(message.header().getCompression()).isEqualTo(CompressionCodecs.NONE);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.message.Message;
+import io.openmessaging.message.Recyclable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PooledMessageFactoryTest {
+    private PooledMessageFactory factory = new PooledMessageFactory(16, false);
+
+    @Test
+    public void testRecycle() throws Exception {
+        Message message = factory.createMessage("HELLO_QUEUE", "HELLO".getBytes());
+        message.header().setMessageId("ID");
+        message.extensionHeader().setMessageKey("KEY");
+        message.properties().put("Key", 1);
+        ((Recyclable) message).release();
+
+        Message recycled = factory.createMessage("OTHER_QUEUE", "WORLD".getBytes());
+        assertThat(recycled).isSameAs(message);
+        assertThat(recycled.header().getDestination()).isEqualTo("OTHER_QUEUE");
+        assertThat(recycled.header().getMessageId()).isNull();
+        assertThat(recycled.extensionHeader().getMessageKey()).isNull();
+        assertThat(recycled.properties().keySet()).isEmpty();
+        assertThat(new String(recycled.getData())).isEqualTo("WORLD");
+    }
+
+    @Test
+    public void testIndexedPropertiesAreRecycled() throws Exception {
+        PooledMessageFactory indexed = new PooledMessageFactory(16, false, true);
+        Message message = indexed.createMessage("HELLO_QUEUE", "HELLO".getBytes());
+        message.properties().put(OMSBuiltinKeys.REGION, "REGION_A").put("Key", 1);
+        KeyValue properties = message.properties();
+        assertThat(properties).isInstanceOf(IndexedKeyValue.class);
+        ((Recyclable) message).release();
+
+        Message recycled = indexed.createMessage("HELLO_QUEUE", "WORLD".getBytes());
+        assertThat(recycled).isSameAs(message);
+        assertThat(recycled.properties()).isSameAs(properties);
+        assertThat(recycled.properties().keySet()).isEmpty();
+    }
+
+    @Test
+    public void testReleaseOnAnotherThread() throws Exception {
+        final Message message = factory.createMessage("HELLO_QUEUE", "HELLO".getBytes());
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ((Recyclable) message).release();
+            }
+        });
+        releaser.start();
+        releaser.join();
+
+        assertThat(factory.createMessage("HELLO_QUEUE", "HELLO".getBytes())).isSameAs(message);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDoubleRelease() throws Exception {
+        Recyclable message = (Recyclable) factory.createMessage("HELLO_QUEUE", "HELLO".getBytes());
+        message.release();
+        message.release();
+    }
+
+    @Test
+    public void testConcurrentDoubleReleasePoolsOnce() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            final Recyclable message = (Recyclable) factory.createMessage("HELLO_QUEUE", "HELLO".getBytes());
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicInteger released = new AtomicInteger();
+            Thread[] releasers = new Thread[2];
+            for (int i = 0; i < releasers.length; i++) {
+                releasers[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            message.release();
+                            released.incrementAndGet();
+                        } catch (InterruptedException | IllegalStateException ignored) {
+                        }
+                    }
+                });
+                releasers[i].start();
+            }
+            start.countDown();
+            for (Thread releaser : releasers) {
+                releaser.join();
+            }
+            assertThat(released.get()).isEqualTo(1);
+
+            Set<Message> created = Collections.newSetFromMap(new IdentityHashMap<Message, Boolean>());
+            for (int i = 0; i < 20; i++) {
+                assertThat(created.add(factory.createMessage("HELLO_QUEUE", "HELLO".getBytes()))).isTrue();
+            }
+            for (Message recycled : created) {
+                ((Recyclable) recycled).release();
+            }
+        }
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        PooledMessageFactory detecting = new PooledMessageFactory(16, true);
+        ((Recyclable) detecting.createMessage("HELLO_QUEUE", "RELEASED".getBytes())).release();
+
+        AtomicReference<Message> leaked = new AtomicReference<Message>(
+            detecting.createMessage("HELLO_QUEUE", "LEAKED".getBytes()));
+        leaked.set(null);
+        for (int i = 0; i < 50 && detecting.leakCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertThat(detecting.leakCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.ServiceLifeState;
+import io.openmessaging.consumer.MessageReceipt;
+import io.openmessaging.consumer.PullConsumer;
+import io.openmessaging.extension.Extension;
+import io.openmessaging.extension.QueueMetaData;
+import io.openmessaging.interceptor.ConsumerInterceptor;
+import io.openmessaging.message.Message;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrefetchingPullConsumerTest {
+
+    @Test
+    public void testRoundRobinOverQueues() throws Exception {
+        QueuePullConsumer delegate = new QueuePullConsumer(8);
+        for (int i = 0; i < 10; i++) {
+            delegate.source.add(new DefaultMessage("QUEUE_A", new byte[] {(byte) i}));
+        }
+        for (int i = 0; i < 10; i++) {
+            delegate.source.add(new DefaultMessage("QUEUE_B", new byte[] {(byte) i}));
+        }
+        PrefetchingPullConsumer consumer = new PrefetchingPullConsumer(delegate, 100, 1024, 16, 16, 10);
+        consumer.start();
+        try {
+            awaitBuffered(consumer, 16);
+            assertThat(delegate.source).hasSize(4);
+
+            List<Message> received = new ArrayList<Message>();
+            for (int i = 0; i < 20; i++) {
+                received.add(consumer.receive(1000));
+            }
+            assertThat(received.get(0).header().getDestination()).isEqualTo("QUEUE_A");
+            assertThat(received.get(1).header().getDestination()).isEqualTo("QUEUE_B");
+            assertThat(received.get(2).header().getDestination()).isEqualTo("QUEUE_A");
+            int a = 0;
+            int b = 0;
+            for (Message message : received) {
+                int expected = "QUEUE_A".equals(message.header().getDestination()) ? a++ : b++;
+                assertThat(message.getData()[0]).isEqualTo((byte) expected);
+            }
+            assertThat(a).isEqualTo(10);
+            assertThat(b).isEqualTo(10);
+            assertThat(consumer.receive(10)).isNull();
+        } finally {
+            consumer.stop();
+        }
+    }
+
+    @Test
+    public void testQueueAndMemoryCaps() throws Exception {
+        QueuePullConsumer delegate = new QueuePullConsumer(8);
+        for (int i = 0; i < 20; i++) {
+            delegate.source.add(new DefaultMessage("QUEUE_A", new byte[4]));
+        }
+        PrefetchingPullConsumer consumer = new PrefetchingPullConsumer(delegate, 5, 1024, 64, 64, 10);
+        consumer.start();
+        try {
+            awaitBuffered(consumer, 8);
+            Thread.sleep(50);
+            assertThat(consumer.bufferedMessages()).isEqualTo(8);
+            assertThat(consumer.bufferedBytes()).isEqualTo(32);
+
+            List<Message> messages = consumer.batchReceive(1000);
+            assertThat(messages).hasSize(8);
+            awaitBuffered(consumer, 8);
+        } finally {
+            consumer.stop();
+        }
+
+        delegate = new QueuePullConsumer(1);
+        for (int i = 0; i < 20; i++) {
+            delegate.source.add(new DefaultMessage("QUEUE_A", new byte[4]));
+        }
+        consumer = new PrefetchingPullConsumer(delegate, 100, 10, 64, 64, 10);
+        consumer.start();
+        try {
+            awaitBuffered(consumer, 3);
+            Thread.sleep(50);
+            assertThat(consumer.bufferedBytes()).isEqualTo(12);
+        } finally {
+            consumer.stop();
+        }
+        assertThat(delegate.acks.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testAdaptiveFetchSize() throws Exception {
+        QueuePullConsumer delegate = new QueuePullConsumer(4);
+        delegate.latencyMs = 2;
+        for (int i = 0; i < 5000; i++) {
+            delegate.source.add(new DefaultMessage("QUEUE_A", new byte[1]));
+        }
+        PrefetchingPullConsumer consumer = new PrefetchingPullConsumer(delegate, 10000, 1 << 20, 2, 256, 10);
+        consumer.start();
+        try {
+            assertThat(consumer.fetchSize()).isEqualTo(2);
+            for (int i = 0; i < 2000; i++) {
+                assertThat(consumer.receive(1000)).isNotNull();
+            }
+            int grown = consumer.fetchSize();
+            assertThat(grown).isGreaterThan(2);
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (consumer.fetchSize() >= grown && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                consumer.receive(10);
+            }
+            assertThat(consumer.fetchSize()).isLessThan(grown);
+        } finally {
+            consumer.stop();
+        }
+    }
+
+    @Test
+    public void testUnbindDropsBufferedMessages() throws Exception {
+        QueuePullConsumer delegate = new QueuePullConsumer(8);
+        for (int i = 0; i < 4; i++) {
+            delegate.source.add(new DefaultMessage("QUEUE_A", new byte[1]));
+            delegate.source.add(new DefaultMessage("QUEUE_B", new byte[1]));
+        }
+        PrefetchingPullConsumer consumer = new PrefetchingPullConsumer(delegate, 100, 1024, 16, 16, 10);
+        consumer.start();
+        try {
+            awaitBuffered(consumer, 8);
+            consumer.unbindQueue(Collections.singletonList("QUEUE_A"));
+            assertThat(consumer.bufferedMessages()).isEqualTo(4);
+            assertThat(consumer.bufferedBytes()).isEqualTo(4);
+            for (Message message : consumer.batchReceive(1000)) {
+                assertThat(message.header().getDestination()).isEqualTo("QUEUE_B");
+            }
+        } finally {
+            consumer.stop();
+        }
+        assertThat(consumer.bufferedMessages()).isEqualTo(0);
+    }
+
+    private static void awaitBuffered(PrefetchingPullConsumer consumer, int messages) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (consumer.bufferedMessages() < messages) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * A {@link PullConsumer} serving the messages of its source in batches of at most {@code batchLimit}.
+     */
+    private static class QueuePullConsumer implements PullConsumer {
+        final BlockingQueue<Message> source = new LinkedBlockingQueue<Message>();
+        final AtomicInteger acks = new AtomicInteger();
+        final int batchLimit;
+        volatile long latencyMs;
+
+        QueuePullConsumer(int batchLimit) {
+            this.batchLimit = batchLimit;
+        }
+
+        @Override
+        public List<Message> batchReceive(long timeout) {
+            List<Message> messages = new ArrayList<Message>();
+            try {
+                if (latencyMs > 0) {
+                    Thread.sleep(latencyMs);
+                }
+                Message first = source.poll(timeout, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    messages.add(first);
+                    source.drainTo(messages, batchLimit - 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return messages;
+        }
+
+        @Override
+        public Message receive() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Message receive(long timeout) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Message receive(String queueName, QueueMetaData queueMetaData, MessageReceipt messageReceipt,
+            long timeout) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Message> batchReceive(String queueName, QueueMetaData queueMetaData,
+            MessageReceipt messageReceipt, long timeout) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void ack(MessageReceipt receipt) {
+            acks.incrementAndGet();
+        }
+
+        @Override
+        public void bindQueue(Collection<String> queueNames) {
+        }
+
+        @Override
+        public void unbindQueue(Collection<String> queueNames) {
+        }
+
+        @Override
+        public Set<String> getBindQueues() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void addInterceptor(ConsumerInterceptor interceptor) {
+        }
+
+        @Override
+        public void removeInterceptor(ConsumerInterceptor interceptor) {
+        }
+
+        @Override
+        public Set<QueueMetaData> getQueueMetaData(String queueName) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Optional<Extension> getExtension() {
+            return Optional.empty();
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public ServiceLifeState currentState() {
+            return ServiceLifeState.STARTED;
+        }
+    }
+}
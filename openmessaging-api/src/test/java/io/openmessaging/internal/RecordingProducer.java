@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.Future;
+import io.openmessaging.ServiceLifeState;
+import io.openmessaging.extension.Extension;
+import io.openmessaging.extension.QueueMetaData;
+import io.openmessaging.interceptor.ProducerInterceptor;
+import io.openmessaging.message.Message;
+import io.openmessaging.producer.Producer;
+import io.openmessaging.producer.SendResult;
+import io.openmessaging.producer.TransactionalResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A {@link Producer} recording what is sent, whose asynchronous sends are completed by the test.
+ */
+class RecordingProducer implements Producer {
+    final List<Message> sent = new CopyOnWriteArrayList<Message>();
+    final List<List<Message>> batches = new CopyOnWriteArrayList<List<Message>>();
+    final List<DefaultPromise<SendResult>> promises = new CopyOnWriteArrayList<DefaultPromise<SendResult>>();
+    volatile ServiceLifeState state = ServiceLifeState.INITIALIZED;
+
+    @Override
+    public void start() {
+        state = ServiceLifeState.STARTED;
+    }
+
+    @Override
+    public void stop() {
+        state = ServiceLifeState.STOPPED;
+    }
+
+    @Override
+    public ServiceLifeState currentState() {
+        return state;
+    }
+
+    @Override
+    public Set<QueueMetaData> getQueueMetaData(String queueName) {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Optional<Extension> getExtension() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Message createMessage(String queueName, byte[] body) {
+        return new DefaultMessage(queueName, body);
+    }
+
+    @Override
+    public SendResult send(Message message) {
+        sent.add(message);
+        return new DefaultSendResult(message.header().getMessageId());
+    }
+
+    @Override
+    public Future<SendResult> sendAsync(Message message) {
+        sent.add(message);
+        DefaultPromise<SendResult> promise = new DefaultPromise<SendResult>();
+        promises.add(promise);
+        return promise;
+    }
+
+    @Override
+    public void sendOneway(Message message) {
+        sent.add(message);
+    }
+
+    @Override
+    public void send(List<Message> messages) {
+        batches.add(new ArrayList<Message>(messages));
+    }
+
+    @Override
+    public Future<SendResult> sendAsync(List<Message> messages) {
+        batches.add(new ArrayList<Message>(messages));
+        DefaultPromise<SendResult> promise = new DefaultPromise<SendResult>();
+        promises.add(promise);
+        return promise;
+    }
+
+    @Override
+    public void sendOneway(List<Message> messages) {
+        batches.add(new ArrayList<Message>(messages));
+    }
+
+    @Override
+    public void addInterceptor(ProducerInterceptor interceptor) {
+    }
+
+    @Override
+    public void removeInterceptor(ProducerInterceptor interceptor) {
+    }
+
+    @Override
+    public TransactionalResult prepare(Message message) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.KeyValue;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TypedKeyValueTest {
+    private KeyValue keyValue = new TypedKeyValue();
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        keyValue.put("BooleanKey", true);
+        assertThat(keyValue.getBoolean("BooleanKey")).isTrue();
+
+        keyValue.put("ShortKey", (short) 12);
+        assertThat(keyValue.getShort("ShortKey")).isEqualTo((short) 12);
+
+        keyValue.put("IntKey", 123);
+        assertThat(keyValue.getInt("IntKey")).isEqualTo(123);
+
+        keyValue.put("StringKey", "HELLO");
+        assertThat(keyValue.getString("StringKey")).isEqualTo("HELLO");
+
+        keyValue.put("LongKey", 123L);
+        assertThat(keyValue.getLong("LongKey")).isEqualTo(123L);
+
+        keyValue.put("DoubleKey", 1.23);
+        assertThat(keyValue.getDouble("DoubleKey")).isEqualTo(1.23);
+    }
+
+    @Test
+    public void testGetWithDefault() throws Exception {
+        assertThat(keyValue.getInt("MissingKey")).isEqualTo(0);
+        assertThat(keyValue.getInt("MissingKey", 7)).isEqualTo(7);
+        assertThat(keyValue.getLong("MissingKey", 7L)).isEqualTo(7L);
+        assertThat(keyValue.getString("MissingKey")).isNull();
+        assertThat(keyValue.getString("MissingKey", "DEFAULT")).isEqualTo("DEFAULT");
+
+        keyValue.put("IntKey", 123);
+        assertThat(keyValue.getInt("IntKey", 7)).isEqualTo(123);
+    }
+
+    @Test
+    public void testConvertLikeDefaultKeyValue() throws Exception {
+        KeyValue defaultKeyValue = new DefaultKeyValue();
+        for (KeyValue kv : new KeyValue[] {keyValue, defaultKeyValue}) {
+            kv.put("IntKey", 123).put("LongKey", 1L << 40).put("DoubleKey", 1.5).put("StringKey", "42")
+                .put("BooleanKey", true).put("NullKey", (String) null);
+        }
+
+        assertThat(keyValue.getString("IntKey")).isEqualTo(defaultKeyValue.getString("IntKey"));
+        assertThat(keyValue.getLong("IntKey")).isEqualTo(defaultKeyValue.getLong("IntKey"));
+        assertThat(keyValue.getDouble("IntKey")).isEqualTo(defaultKeyValue.getDouble("IntKey"));
+        assertThat(keyValue.getDouble("LongKey")).isEqualTo(defaultKeyValue.getDouble("LongKey"));
+        assertThat(keyValue.getString("DoubleKey")).isEqualTo(defaultKeyValue.getString("DoubleKey"));
+        assertThat(keyValue.getInt("StringKey")).isEqualTo(defaultKeyValue.getInt("StringKey"));
+        assertThat(keyValue.getString("BooleanKey")).isEqualTo(defaultKeyValue.getString("BooleanKey"));
+        assertThat(keyValue.getString("NullKey")).isEqualTo(defaultKeyValue.getString("NullKey"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testNarrowingOverflow() throws Exception {
+        keyValue.put("LongKey", 1L << 40);
+        keyValue.getInt("LongKey");
+    }
+
+    @Test
+    public void testKeySet() throws Exception {
+        keyValue.put("IndexKey", 123);
+        assertThat(keyValue.keySet()).contains("IndexKey");
+    }
+
+    @Test
+    public void testContainsKey() throws Exception {
+        keyValue.put("ContainsKey", 123);
+        assertThat(keyValue.containsKey("ContainsKey")).isTrue();
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.internal;
+
+import io.openmessaging.OMS;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.consumer.DispatchingMessageListener;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.message.Message;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VirtualThreadDispatcherTest {
+    private static final MessageListener.Context NO_ACK = new MessageListener.Context() {
+        @Override public void ack() {
+        }
+    };
+
+    @Test
+    public void testExecutionMode() throws Exception {
+        final AtomicBoolean onVirtualThread = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        VirtualThreadDispatcher dispatcher = (VirtualThreadDispatcher) OMS.newVirtualThreadListener(
+            new MessageListener() {
+                @Override public void onReceived(Message message, Context context) {
+                    onVirtualThread.set(isVirtual(Thread.currentThread()));
+                    done.countDown();
+                }
+            }, OMS.newKeyValue());
+        try {
+            assertThat(dispatcher.isVirtual()).isEqualTo(VirtualThreads.isSupported());
+            dispatcher.onReceived(new DefaultMessage("QUEUE_A", new byte[1]), NO_ACK);
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(onVirtualThread.get()).isEqualTo(dispatcher.isVirtual());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger processed = new AtomicInteger();
+        final VirtualThreadDispatcher dispatcher = new VirtualThreadDispatcher(new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                processed.incrementAndGet();
+            }
+        }, 3, null, 8);
+        try {
+            assertThat(dispatcher.isVirtual()).isFalse();
+            for (int i = 0; i < 3; i++) {
+                dispatcher.onReceived(new DefaultMessage("QUEUE_A", new byte[1]), NO_ACK);
+            }
+            final CountDownLatch fourth = new CountDownLatch(1);
+            Thread blocked = new Thread(new Runnable() {
+                @Override public void run() {
+                    dispatcher.onReceived(new DefaultMessage("QUEUE_A", new byte[1]), NO_ACK);
+                    fourth.countDown();
+                }
+            });
+            blocked.start();
+            assertThat(fourth.await(100, TimeUnit.MILLISECONDS)).isFalse();
+            assertThat(dispatcher.pendingMessages()).isEqualTo(3);
+
+            release.countDown();
+            assertThat(fourth.await(5, TimeUnit.SECONDS)).isTrue();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (processed.get() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertThat(processed.get()).isEqualTo(4);
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailingListenerReleasesPermit() throws Exception {
+        final CountDownLatch done = new CountDownLatch(2);
+        VirtualThreadDispatcher dispatcher = new VirtualThreadDispatcher(new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+                done.countDown();
+                throw new IllegalStateException("listener failure");
+            }
+        }, 1, 1);
+        try {
+            dispatcher.onReceived(new DefaultMessage("QUEUE_A", new byte[1]), NO_ACK);
+            dispatcher.onReceived(new DefaultMessage("QUEUE_A", new byte[1]), NO_ACK);
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testBlockingListenersScale() throws Exception {
+        Assume.assumeTrue(VirtualThreads.isSupported());
+        final int messages = 10000;
+        final CountDownLatch done = new CountDownLatch(messages);
+        DispatchingMessageListener dispatcher = OMS.newVirtualThreadListener(new MessageListener() {
+            @Override public void onReceived(Message message, Context context) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }
+        }, OMS.newKeyValue().put(OMSBuiltinKeys.CONSUMER_DISPATCH_MAX_CONCURRENCY, messages));
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                dispatcher.onReceived(new DefaultMessage("QUEUE_A", new byte[1]), NO_ACK);
+            }
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(5L);
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) {
+        try {
+            Method method = Thread.class.getMethod("isVirtual");
+            return (Boolean) method.invoke(thread);
+        } catch (NoSuchMethodException e) {
+            return false;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.benchmarks;
+
+import io.openmessaging.compression.CompressionCodec;
+import io.openmessaging.compression.CompressionCodecs;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the built-in compression codecs on JSON-like message bodies, whose fields repeat while their values vary.
+ * <p>
+ * Run with {@code java -jar openmessaging-benchmarks/target/benchmarks.jar CompressionBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionBenchmark {
+    @Param({"deflate", "lz4"})
+    private String codecName;
+
+    @Param({"1024", "16384"})
+    private int bodySize;
+
+    private CompressionCodec codec;
+    private ByteBuffer body;
+    private ByteBuffer compressed;
+    private ByteBuffer decompressed;
+
+    @Setup
+    public void setUp() {
+        codec = CompressionCodecs.codec(codecName);
+        body = ByteBuffer.wrap(body(bodySize));
+        compressed = ByteBuffer.allocate(codec.maxCompressedLength(bodySize));
+        codec.compress(body.duplicate(), compressed);
+        compressed.flip();
+        decompressed = ByteBuffer.allocate(bodySize);
+    }
+
+    @Benchmark
+    public ByteBuffer compress() {
+        ByteBuffer target = ByteBuffer.allocate(codec.maxCompressedLength(bodySize));
+        codec.compress(body.duplicate(), target);
+        return target;
+    }
+
+    @Benchmark
+    public ByteBuffer decompress() {
+        decompressed.clear();
+        codec.decompress(compressed.duplicate(), decompressed);
+        return decompressed;
+    }
+
+    private static byte[] body(int size) {
+        Random random = new Random(7);
+        StringBuilder builder = new StringBuilder(size + 128);
+        while (builder.length() < size) {
+            builder.append("{\"orderId\":").append(random.nextInt(1000000))
+                .append(",\"customer\":\"user-").append(random.nextInt(10000))
+                .append("\",\"amount\":").append(random.nextInt(100000) / 100.0)
+                .append(",\"status\":\"").append(random.nextBoolean() ? "PAID" : "PENDING").append("\"}");
+        }
+        return builder.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.benchmarks;
+
+import io.openmessaging.interceptor.Context;
+import io.openmessaging.interceptor.ProducerInterceptor;
+import io.openmessaging.internal.DefaultMessage;
+import io.openmessaging.internal.InterceptorChain;
+import io.openmessaging.internal.ProducerInterceptorChain;
+import io.openmessaging.message.Message;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the dispatch of a message through a {@link ProducerInterceptorChain} of 0 to 8 interceptors, a send being
+ * post-processed either before the next one, or after {@link #IN_FLIGHT} others like pipelined asynchronous sends.
+ * <p>
+ * Run with {@code java -jar openmessaging-benchmarks/target/benchmarks.jar InterceptorChainBenchmark -prof gc} to see
+ * the allocation per message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InterceptorChainBenchmark {
+    private static final int IN_FLIGHT = 16;
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8"})
+    private int interceptors;
+
+    private final Message message = new DefaultMessage("QUEUE_A", new byte[1]);
+    private final InterceptorChain.Invocation[] invocations = new InterceptorChain.Invocation[IN_FLIGHT];
+    private ProducerInterceptorChain chain;
+
+    @Setup
+    public void setUp() {
+        chain = new ProducerInterceptorChain();
+        for (int i = 0; i < interceptors; i++) {
+            chain.addInterceptor(new ProducerInterceptor() {
+                private long sent;
+
+                @Override public void preSend(Message message, Context attributes) {
+                    sent++;
+                }
+
+                @Override public void postSend(Message message, Context attributes) {
+                    sent--;
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void dispatch() {
+        chain.postSend(message, chain.preSend(message));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IN_FLIGHT)
+    public void pipelined() {
+        for (int i = 0; i < IN_FLIGHT; i++) {
+            invocations[i] = chain.preSend(message);
+        }
+        for (int i = 0; i < IN_FLIGHT; i++) {
+            chain.postSend(message, invocations[i]);
+        }
+    }
+}
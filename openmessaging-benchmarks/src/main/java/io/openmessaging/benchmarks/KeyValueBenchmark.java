@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.benchmarks;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.internal.DefaultKeyValue;
+import io.openmessaging.internal.IndexedKeyValue;
+import io.openmessaging.internal.KeyRegistry;
+import io.openmessaging.internal.TypedKeyValue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the {@code KeyValue} implementations on the typical header and property accesses of a message.
+ * {@link #getById(Blackhole)} only measures the id-based accessors of {@link IndexedKeyValue}, it does nothing for
+ * the other implementations.
+ * <p>
+ * {@link #put()} includes the creation of the instance, {@link #overwrite()} only replaces the values of a filled one.
+ * <p>
+ * Run with {@code java -jar openmessaging-benchmarks/target/benchmarks.jar KeyValueBenchmark -prof gc} to see the
+ * allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyValueBenchmark {
+    @Param({"default", "typed", "indexed"})
+    private String implementation;
+
+    private static final int PRIORITY = KeyRegistry.idOf("PRIORITY");
+    private static final int BORN_TIMESTAMP = KeyRegistry.idOf("BORN_TIMESTAMP");
+    private static final int MESSAGE_ID = KeyRegistry.idOf("MESSAGE_ID");
+
+    private KeyValue filled;
+
+    @Setup
+    public void setUp() {
+        filled = fill(newKeyValue());
+    }
+
+    @Benchmark
+    public KeyValue put() {
+        return fill(newKeyValue());
+    }
+
+    @Benchmark
+    public KeyValue overwrite() {
+        return fill(filled);
+    }
+
+    @Benchmark
+    public void get(Blackhole blackhole) {
+        blackhole.consume(filled.getInt("PRIORITY"));
+        blackhole.consume(filled.getLong("BORN_TIMESTAMP"));
+        blackhole.consume(filled.getBoolean("DURABILITY"));
+        blackhole.consume(filled.getString("MESSAGE_ID"));
+    }
+
+    @Benchmark
+    public void getById(Blackhole blackhole) {
+        if (filled instanceof IndexedKeyValue) {
+            IndexedKeyValue indexed = (IndexedKeyValue) filled;
+            blackhole.consume(indexed.getInt(PRIORITY, 0));
+            blackhole.consume(indexed.getLong(BORN_TIMESTAMP, 0L));
+            blackhole.consume(indexed.getString(MESSAGE_ID, null));
+        }
+    }
+
+    @Benchmark
+    public void getWithDefault(Blackhole blackhole) {
+        blackhole.consume(filled.getInt("PRIORITY", 4));
+        blackhole.consume(filled.getInt("DELIVERY_COUNT", 0));
+        blackhole.consume(filled.getString("MESSAGE_ID", null));
+        blackhole.consume(filled.getString("REGION", "DEFAULT"));
+    }
+
+    private KeyValue newKeyValue() {
+        if ("typed".equals(implementation)) {
+            return new TypedKeyValue();
+        }
+        return "indexed".equals(implementation) ? new IndexedKeyValue() : new DefaultKeyValue();
+    }
+
+    private static KeyValue fill(KeyValue keyValue) {
+        return keyValue.put("PRIORITY", 5)
+            .put("BORN_TIMESTAMP", 1514764800000L)
+            .put("DURABILITY", true)
+            .put("MESSAGE_ID", "0A0B0C0D00002A9F0000000000000001");
+    }
+}
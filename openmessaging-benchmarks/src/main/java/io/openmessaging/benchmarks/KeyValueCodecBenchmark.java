@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.benchmarks;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.internal.CompactKeyValue;
+import io.openmessaging.internal.DefaultKeyValue;
+import io.openmessaging.internal.KeyValueCodec;
+import io.openmessaging.internal.TypedKeyValue;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the binary encoding of the typical properties of a message by {@link KeyValueCodec}, from each {@code
+ * KeyValue} implementation into a direct buffer, and their decoding into a reused {@link CompactKeyValue}.
+ * <p>
+ * Run with {@code java -jar openmessaging-benchmarks/target/benchmarks.jar KeyValueCodecBenchmark -prof gc} to see
+ * the allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyValueCodecBenchmark {
+    @Param({"default", "typed", "compact"})
+    private String implementation;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+    private final CompactKeyValue target = new CompactKeyValue();
+    private KeyValue source;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() {
+        if ("typed".equals(implementation)) {
+            source = new TypedKeyValue();
+        } else {
+            source = "compact".equals(implementation) ? new CompactKeyValue() : new DefaultKeyValue();
+        }
+        source.put("PRIORITY", 5)
+            .put("BORN_TIMESTAMP", 1514764800000L)
+            .put("DURABILITY", true)
+            .put("MESSAGE_ID", "0A0B0C0D00002A9F0000000000000001")
+            .put("TraceId", "4BF92F3577B34DA6A3CE929D0E0E4736");
+        encoded = ByteBuffer.allocateDirect(KeyValueCodec.encodedSize(source));
+        KeyValueCodec.encode(source, encoded);
+        encoded.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        buffer.clear();
+        KeyValueCodec.encode(source, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public KeyValue decode() {
+        target.clear();
+        return KeyValueCodec.decode(encoded.duplicate(), target);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.benchmarks;
+
+import io.openmessaging.internal.DefaultMessageFactory;
+import io.openmessaging.internal.PooledMessageFactory;
+import io.openmessaging.message.Message;
+import io.openmessaging.message.MessageFactory;
+import io.openmessaging.message.Recyclable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the creation of a message with a byte array body, a header field and a property, by the {@link
+ * DefaultMessageFactory} or by a {@link PooledMessageFactory} releasing the message once used.
+ * <p>
+ * Run with {@code java -jar openmessaging-benchmarks/target/benchmarks.jar MessageFactoryBenchmark -prof gc} to see
+ * the allocation per message, which is expected to be zero for the pooled factory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageFactoryBenchmark {
+    @Param({"default", "pooled"})
+    private String factory;
+
+    private final byte[] body = new byte[128];
+    private MessageFactory messageFactory;
+
+    @Setup
+    public void setUp() {
+        messageFactory = "pooled".equals(factory) ? new PooledMessageFactory() : new DefaultMessageFactory();
+    }
+
+    @Benchmark
+    public int createAndRelease() {
+        Message message = messageFactory.createMessage("QUEUE_A", body);
+        message.header().setMessageId("MESSAGE_ID");
+        message.properties().put("TRACE_ID", "TRACE");
+        int length = message.getBodyLength() + message.properties().getString("TRACE_ID").length();
+        if (message instanceof Recyclable) {
+            ((Recyclable) message).release();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.benchmarks;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.internal.DefaultKeyValue;
+import io.openmessaging.internal.TypedKeyValue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the reads of a single {@code KeyValue} instance shared by {@value #THREADS} threads, like the attributes of
+ * a consumer read by the filters of all its delivery threads. Only the implementations safe for concurrent use are
+ * measured, see {@link KeyValueBenchmark} for the thread-confined ones.
+ * <p>
+ * Run with {@code java -jar openmessaging-benchmarks/target/benchmarks.jar SharedKeyValueBenchmark}, on a machine with
+ * at least {@value #THREADS} cores for the threads to actually read in parallel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(SharedKeyValueBenchmark.THREADS)
+@State(Scope.Benchmark)
+public class SharedKeyValueBenchmark {
+    static final int THREADS = 4;
+
+    @Param({"default", "typed"})
+    private String implementation;
+
+    private KeyValue shared;
+
+    @Setup
+    public void setUp() {
+        shared = "typed".equals(implementation) ? new TypedKeyValue() : new DefaultKeyValue();
+        shared.put("PRIORITY", 5)
+            .put("BORN_TIMESTAMP", 1514764800000L)
+            .put("DURABILITY", true)
+            .put("MESSAGE_ID", "0A0B0C0D00002A9F0000000000000001");
+    }
+
+    @Benchmark
+    public void get(Blackhole blackhole) {
+        blackhole.consume(shared.getInt("PRIORITY"));
+        blackhole.consume(shared.getLong("BORN_TIMESTAMP"));
+        blackhole.consume(shared.getBoolean("DURABILITY"));
+        blackhole.consume(shared.getString("MESSAGE_ID"));
+    }
+
+    @Benchmark
+    public void getWithDefault(Blackhole blackhole) {
+        blackhole.consume(shared.getInt("PRIORITY", 4));
+        blackhole.consume(shared.getInt("DELIVERY_COUNT", 0));
+        blackhole.consume(shared.getString("MESSAGE_ID", null));
+        blackhole.consume(shared.getString("REGION", "DEFAULT"));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import io.openmessaging.consumer.Consumer;
+import io.openmessaging.message.Message;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * The skeleton of a single-subscriber {@link MessagePublisher} over a {@link Consumer}.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+abstract class AbstractMessagePublisher implements MessagePublisher {
+    private static final Subscription REJECTED = new Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final Consumer consumer;
+    private final AckMode ackMode;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    AbstractMessagePublisher(Consumer consumer, AckMode ackMode) {
+        if (consumer == null || ackMode == null) {
+            throw new NullPointerException("consumer and ackMode must not be null");
+        }
+        this.consumer = consumer;
+        this.ackMode = ackMode;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Message> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber must not be null");
+        }
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(REJECTED);
+            subscriber.onError(new IllegalStateException(getClass().getSimpleName() + " supports a single subscriber"));
+            return;
+        }
+        MessageSubscription subscription = newSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+
+    @Override
+    public AckMode ackMode() {
+        return ackMode;
+    }
+
+    @Override
+    public void ack(Message message) {
+        consumer.ack(message.getMessageReceipt());
+    }
+
+    /**
+     * Creates the subscription feeding the specified subscriber.
+     *
+     * @param subscriber the only subscriber of this publisher
+     * @return the subscription, started once {@code onSubscribe} has returned
+     */
+    abstract MessageSubscription newSubscription(Subscriber<? super Message> subscriber);
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import io.openmessaging.consumer.Consumer;
+import io.openmessaging.consumer.MessageReceipt;
+
+/**
+ * Defines when a {@link MessagePublisher} acknowledges the messages it emits.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public enum AckMode {
+    /**
+     * Acknowledges each message through {@link Consumer#ack(MessageReceipt)} as soon as {@code onNext} returns.
+     */
+    AUTO,
+
+    /**
+     * Leaves the acknowledgement to the subscriber, which calls {@link MessagePublisher#ack} once the message has been
+     * processed. Messages that are never acknowledged may be redelivered.
+     */
+    MANUAL
+}
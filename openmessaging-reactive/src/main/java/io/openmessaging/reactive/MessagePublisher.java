@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import io.openmessaging.consumer.Consumer;
+import io.openmessaging.message.Message;
+import org.reactivestreams.Publisher;
+
+/**
+ * A backpressured {@link Publisher} of the messages received by a {@link Consumer}.
+ * <p>
+ * A {@code MessagePublisher} supports a single {@code Subscriber}, since the underlying consumer is a stateful resource
+ * whose messages cannot be replayed, a second subscriber is rejected with an {@code IllegalStateException}. The
+ * outstanding demand of the subscriber bounds the number of messages fetched from the consumer, and cancelling the
+ * subscription stops fetching without stopping the consumer, whose lifecycle stays with the application.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public interface MessagePublisher extends Publisher<Message> {
+    /**
+     * Returns the acknowledgement mode of this publisher.
+     *
+     * @return the acknowledgement mode
+     */
+    AckMode ackMode();
+
+    /**
+     * Acknowledges the specified message through {@link Consumer#ack(io.openmessaging.consumer.MessageReceipt)}.
+     * <p>
+     * With {@link AckMode#MANUAL}, the subscriber calls this method once it has processed the message.
+     *
+     * @param message a message emitted by this publisher
+     */
+    void ack(Message message);
+}
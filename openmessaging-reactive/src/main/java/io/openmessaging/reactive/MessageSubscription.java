@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import io.openmessaging.message.Message;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * A {@link Subscription} emitting the messages buffered by a consumer adapter, never more than requested.
+ * <p>
+ * Signals are serialized by a work-in-progress counter, so messages may be offered and demand requested from any
+ * thread, the thread that wins the counter drains the buffer on behalf of the others.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+abstract class MessageSubscription implements Subscription {
+    final Subscriber<? super Message> subscriber;
+    final AtomicLong requested = new AtomicLong();
+    final Queue<Message> buffer = new ConcurrentLinkedQueue<Message>();
+    final AtomicInteger buffered = new AtomicInteger();
+    volatile boolean cancelled;
+
+    private final MessagePublisher publisher;
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private volatile boolean done;
+    private volatile Throwable error;
+
+    MessageSubscription(MessagePublisher publisher, Subscriber<? super Message> subscriber) {
+        this.publisher = publisher;
+        this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            fail(new IllegalArgumentException("Non-positive request " + n + ", rule 3.9 of the Reactive Streams spec"));
+            return;
+        }
+        long current;
+        long next;
+        do {
+            current = requested.get();
+            if (current == Long.MAX_VALUE) {
+                return;
+            }
+            next = current + n < 0 ? Long.MAX_VALUE : current + n;
+        }
+        while (!requested.compareAndSet(current, next));
+        onRequest();
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        stop();
+        drain();
+    }
+
+    /**
+     * Returns the demand not yet covered by the buffered messages, which is the number of messages worth fetching.
+     *
+     * @return the uncovered demand, possibly negative
+     */
+    long uncoveredDemand() {
+        return requested.get() - buffered.get();
+    }
+
+    void offer(Message message) {
+        buffer.offer(message);
+        buffered.incrementAndGet();
+        drain();
+    }
+
+    void fail(Throwable throwable) {
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        for (; ; ) {
+            long demand = requested.get();
+            long emitted = 0;
+            while (emitted != demand) {
+                if (cancelled) {
+                    discard();
+                    return;
+                }
+                Throwable failure = error;
+                if (failure != null) {
+                    terminate(failure);
+                    return;
+                }
+                Message message = buffer.poll();
+                if (message == null) {
+                    break;
+                }
+                buffered.decrementAndGet();
+                subscriber.onNext(message);
+                if (publisher.ackMode() == AckMode.AUTO) {
+                    publisher.ack(message);
+                }
+                emitted++;
+            }
+            if (cancelled) {
+                discard();
+                return;
+            }
+            if (done && (error != null || buffer.isEmpty())) {
+                terminate(error);
+                return;
+            }
+            if (emitted != 0 && demand != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+            afterDrain();
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private void terminate(Throwable failure) {
+        cancelled = true;
+        stop();
+        discard();
+        if (failure != null) {
+            subscriber.onError(failure);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+
+    private void stop() {
+        if (stopped.compareAndSet(false, true)) {
+            onCancel();
+        }
+    }
+
+    private void discard() {
+        buffer.clear();
+        buffered.set(0);
+    }
+
+    /**
+     * Starts fetching messages from the consumer, invoked once the subscriber has received the subscription.
+     */
+    abstract void start();
+
+    /**
+     * Invoked after the demand has been raised.
+     */
+    abstract void onRequest();
+
+    /**
+     * Invoked once when the subscription is cancelled or terminated, the adapter stops fetching messages.
+     */
+    abstract void onCancel();
+
+    /**
+     * Invoked by the draining thread each time the buffer has been drained as far as the demand allows.
+     */
+    void afterDrain() {
+    }
+}
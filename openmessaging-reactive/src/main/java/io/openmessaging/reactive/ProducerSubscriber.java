@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import io.openmessaging.Future;
+import io.openmessaging.FutureListener;
+import io.openmessaging.OMS;
+import io.openmessaging.Promise;
+import io.openmessaging.message.Message;
+import io.openmessaging.producer.BufferedProducer;
+import io.openmessaging.producer.Producer;
+import io.openmessaging.producer.SendResult;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * A {@link Subscriber} writing the messages it receives into a {@link Producer}, through pipelined
+ * {@link Producer#sendAsync(Message)} calls.
+ * <p>
+ * The subscriber requests as many messages as it may have in flight, and replenishes the demand as the sends are
+ * acknowledged, in chunks of a quarter of the capacity to keep the request signals cheap. The first failed send
+ * cancels the upstream subscription and fails {@link #completion()}, which otherwise succeeds once the upstream has
+ * completed and every send has been acknowledged. A {@link BufferedProducer} is flushed on upstream completion, so its
+ * last batch does not wait for the linger time.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class ProducerSubscriber implements Subscriber<Message> {
+    /**
+     * The in-flight capacity used when the producer does not bound its own in-flight messages.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    private final Producer producer;
+    private final int maxInFlight;
+    private final int replenishThreshold;
+    private final Promise<Void> completion = OMS.newPromise();
+    private final AtomicReference<Subscription> subscription = new AtomicReference<Subscription>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger replenish = new AtomicInteger();
+    private final AtomicLong sentMessages = new AtomicLong();
+    private final FutureListener<SendResult> sendListener = new FutureListener<SendResult>() {
+        @Override
+        public void operationComplete(Future<SendResult> future) {
+            onSendComplete(future);
+        }
+    };
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile boolean failed;
+
+    /**
+     * Creates a subscriber whose in-flight capacity is the one of the producer when it is a {@link BufferedProducer}
+     * bounding its in-flight messages, {@link #DEFAULT_MAX_IN_FLIGHT} otherwise.
+     * <p>
+     * The capacity only accounts for messages, a {@link BufferedProducer} whose byte window fills up first may still
+     * block or reject a send according to its overflow policy.
+     *
+     * @param producer the started producer to send the messages with
+     */
+    public ProducerSubscriber(Producer producer) {
+        this(producer, capacityOf(producer));
+    }
+
+    /**
+     * Creates a subscriber with the specified in-flight capacity.
+     *
+     * @param producer the started producer to send the messages with
+     * @param maxInFlight the maximum number of sends not yet acknowledged
+     */
+    public ProducerSubscriber(Producer producer, int maxInFlight) {
+        if (producer == null) {
+            throw new NullPointerException("producer must not be null");
+        }
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.producer = producer;
+        this.maxInFlight = maxInFlight;
+        this.replenishThreshold = Math.max(1, maxInFlight / 4);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (s == null) {
+            throw new NullPointerException("subscription must not be null");
+        }
+        if (!subscription.compareAndSet(null, s)) {
+            s.cancel();
+            return;
+        }
+        s.request(maxInFlight);
+    }
+
+    @Override
+    public void onNext(Message message) {
+        if (message == null) {
+            throw new NullPointerException("message must not be null");
+        }
+        if (failed) {
+            return;
+        }
+        inFlight.incrementAndGet();
+        Future<SendResult> future;
+        try {
+            future = producer.sendAsync(message);
+        } catch (Throwable e) {
+            inFlight.decrementAndGet();
+            fail(e);
+            return;
+        }
+        future.addListener(sendListener);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (throwable == null) {
+            throw new NullPointerException("throwable must not be null");
+        }
+        upstreamError = throwable;
+        upstreamDone = true;
+        tryComplete();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        if (producer instanceof BufferedProducer && inFlight.get() > 0) {
+            ((BufferedProducer) producer).flush();
+        }
+        tryComplete();
+    }
+
+    /**
+     * Returns the future completed once the upstream has terminated and every send has been acknowledged, failed by
+     * the first failed send or by the upstream error.
+     *
+     * @return the completion of this subscriber
+     */
+    public Future<Void> completion() {
+        return completion;
+    }
+
+    /**
+     * Returns the number of sends not yet acknowledged.
+     *
+     * @return the in-flight messages
+     */
+    public int inFlightMessages() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the number of messages whose send has been acknowledged.
+     *
+     * @return the sent messages
+     */
+    public long sentMessages() {
+        return sentMessages.get();
+    }
+
+    private void onSendComplete(Future<SendResult> future) {
+        Throwable cause = future.isCancelled() ? new CancellationException("send cancelled") : future.getThrowable();
+        inFlight.decrementAndGet();
+        if (cause != null) {
+            fail(cause);
+            return;
+        }
+        sentMessages.incrementAndGet();
+        if (!upstreamDone && !failed && replenish.incrementAndGet() >= replenishThreshold) {
+            int n = replenish.getAndSet(0);
+            if (n > 0) {
+                subscription.get().request(n);
+            }
+        }
+        tryComplete();
+    }
+
+    private void fail(Throwable cause) {
+        if (!failed) {
+            failed = true;
+            Subscription s = subscription.get();
+            if (s != null) {
+                s.cancel();
+            }
+        }
+        completion.setFailure(cause);
+    }
+
+    private void tryComplete() {
+        if (upstreamDone && !failed && inFlight.get() == 0) {
+            Throwable error = upstreamError;
+            if (error != null) {
+                completion.setFailure(error);
+            } else {
+                completion.set(null);
+            }
+        }
+    }
+
+    private static int capacityOf(Producer producer) {
+        if (producer instanceof BufferedProducer) {
+            int maxInFlightMessages = ((BufferedProducer) producer).maxInFlightMessages();
+            if (maxInFlightMessages > 0 && maxInFlightMessages < Integer.MAX_VALUE) {
+                return maxInFlightMessages;
+            }
+        }
+        return DEFAULT_MAX_IN_FLIGHT;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import io.openmessaging.consumer.PullConsumer;
+import io.openmessaging.message.Message;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.reactivestreams.Subscriber;
+
+/**
+ * A {@link MessagePublisher} pulling messages from a {@link PullConsumer}.
+ * <p>
+ * The blocking receive calls run on a dedicated fetcher task, which only polls the consumer while the outstanding
+ * demand of the subscriber exceeds the buffered messages: a demand of one is served by {@link PullConsumer#receive(long)},
+ * a larger demand by {@link PullConsumer#batchReceive(long)}. A batch larger than the demand is kept in the buffer, and
+ * the consumer is not polled again until the subscriber has requested past it.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class PullConsumerPublisher extends AbstractMessagePublisher {
+    private final PullConsumer consumer;
+    private final Executor executor;
+    private final long pollTimeout;
+
+    /**
+     * Creates a publisher running its fetcher task on a new daemon thread.
+     *
+     * @param consumer the consumer to pull messages from, bound to its queues and started by the application
+     * @param ackMode the acknowledgement mode
+     * @param pollTimeout the maximum time in milliseconds a single receive call blocks
+     */
+    public PullConsumerPublisher(PullConsumer consumer, AckMode ackMode, long pollTimeout) {
+        this(consumer, ackMode, pollTimeout, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                Thread thread = new Thread(command, "OMS-PullConsumerPublisher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        });
+    }
+
+    /**
+     * Creates a publisher running its fetcher task on the specified executor, which must be able to dedicate a thread
+     * to it for the life of the subscription.
+     *
+     * @param consumer the consumer to pull messages from, bound to its queues and started by the application
+     * @param ackMode the acknowledgement mode
+     * @param pollTimeout the maximum time in milliseconds a single receive call blocks
+     * @param executor the executor running the fetcher task
+     */
+    public PullConsumerPublisher(PullConsumer consumer, AckMode ackMode, long pollTimeout, Executor executor) {
+        super(consumer, ackMode);
+        if (pollTimeout <= 0) {
+            throw new IllegalArgumentException("pollTimeout must be positive: " + pollTimeout);
+        }
+        this.consumer = consumer;
+        this.pollTimeout = pollTimeout;
+        this.executor = executor;
+    }
+
+    @Override
+    MessageSubscription newSubscription(Subscriber<? super Message> subscriber) {
+        return new PullSubscription(subscriber);
+    }
+
+    private class PullSubscription extends MessageSubscription implements Runnable {
+        private final Object demandLock = new Object();
+
+        PullSubscription(Subscriber<? super Message> subscriber) {
+            super(PullConsumerPublisher.this, subscriber);
+        }
+
+        @Override
+        void start() {
+            executor.execute(this);
+        }
+
+        @Override
+        void onRequest() {
+            signal();
+        }
+
+        @Override
+        void onCancel() {
+            signal();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (awaitDemand()) {
+                    if (uncoveredDemand() == 1) {
+                        Message message = consumer.receive(pollTimeout);
+                        if (message != null) {
+                            offer(message);
+                        }
+                    } else {
+                        List<Message> messages = consumer.batchReceive(pollTimeout);
+                        if (messages != null) {
+                            for (Message message : messages) {
+                                offer(message);
+                            }
+                        }
+                    }
+                }
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private boolean awaitDemand() throws InterruptedException {
+            synchronized (demandLock) {
+                while (!cancelled && uncoveredDemand() <= 0) {
+                    demandLock.wait();
+                }
+            }
+            return !cancelled;
+        }
+
+        private void signal() {
+            synchronized (demandLock) {
+                demandLock.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.consumer.PushConsumer;
+import io.openmessaging.message.Message;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.reactivestreams.Subscriber;
+
+/**
+ * A {@link MessagePublisher} over a {@link PushConsumer}, which binds the queues on subscription and unbinds them on
+ * cancellation.
+ * <p>
+ * A push consumer does not signal demand, so the pushed messages the subscriber has not requested yet are buffered and
+ * the consumer is suspended as soon as the buffer holds {@code prefetch} of them. It is resumed once the subscriber has
+ * drained the buffer down to half of {@code prefetch}. Since suspension takes effect asynchronously, a few more
+ * messages may be buffered in the meantime.
+ *
+ * @version OMS 1.0.0
+ * @since OMS 1.0.0
+ */
+public class PushConsumerPublisher extends AbstractMessagePublisher {
+    private final PushConsumer consumer;
+    private final Collection<String> queueNames;
+    private final int prefetch;
+
+    /**
+     * Creates a publisher over the specified queues.
+     *
+     * @param consumer the consumer pushing messages, started by the application
+     * @param queueNames the queues bound on subscription
+     * @param ackMode the acknowledgement mode
+     * @param prefetch the number of buffered messages suspending the consumer
+     */
+    public PushConsumerPublisher(PushConsumer consumer, Collection<String> queueNames, AckMode ackMode,
+        int prefetch) {
+        super(consumer, ackMode);
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch must be positive: " + prefetch);
+        }
+        this.consumer = consumer;
+        this.queueNames = new ArrayList<String>(queueNames);
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    MessageSubscription newSubscription(Subscriber<? super Message> subscriber) {
+        return new PushSubscription(subscriber);
+    }
+
+    private class PushSubscription extends MessageSubscription implements MessageListener {
+        private final AtomicBoolean suspended = new AtomicBoolean();
+
+        PushSubscription(Subscriber<? super Message> subscriber) {
+            super(PushConsumerPublisher.this, subscriber);
+        }
+
+        @Override
+        void start() {
+            consumer.bindQueue(queueNames, this);
+        }
+
+        @Override
+        public void onReceived(Message message, Context context) {
+            if (cancelled) {
+                return;
+            }
+            offer(message);
+            if (buffered.get() >= prefetch && suspended.compareAndSet(false, true)) {
+                consumer.suspend();
+                drain();
+            }
+        }
+
+        @Override
+        void onRequest() {
+        }
+
+        @Override
+        void afterDrain() {
+            if (buffered.get() <= prefetch / 2 && suspended.compareAndSet(true, false)) {
+                consumer.resume();
+            }
+        }
+
+        @Override
+        void onCancel() {
+            consumer.unbindQueue(queueNames);
+            if (suspended.compareAndSet(true, false)) {
+                consumer.resume();
+            }
+        }
+    }
+}
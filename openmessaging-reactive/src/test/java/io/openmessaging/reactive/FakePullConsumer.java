@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import io.openmessaging.ServiceLifeState;
+import io.openmessaging.consumer.MessageReceipt;
+import io.openmessaging.consumer.PullConsumer;
+import io.openmessaging.extension.Extension;
+import io.openmessaging.extension.QueueMetaData;
+import io.openmessaging.interceptor.ConsumerInterceptor;
+import io.openmessaging.message.Message;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link PullConsumer} serving the messages the test puts into its source, in batches of at most four.
+ */
+class FakePullConsumer implements PullConsumer {
+    final BlockingQueue<Message> source = new LinkedBlockingQueue<Message>();
+    final List<MessageReceipt> acks = new CopyOnWriteArrayList<MessageReceipt>();
+    final AtomicInteger receiveCalls = new AtomicInteger();
+    final AtomicInteger batchReceiveCalls = new AtomicInteger();
+
+    @Override
+    public Message receive() {
+        return receive(Long.MAX_VALUE);
+    }
+
+    @Override
+    public Message receive(long timeout) {
+        receiveCalls.incrementAndGet();
+        try {
+            return source.poll(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    @Override
+    public Message receive(String queueName, QueueMetaData queueMetaData, MessageReceipt messageReceipt,
+        long timeout) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Message> batchReceive(long timeout) {
+        batchReceiveCalls.incrementAndGet();
+        List<Message> messages = new ArrayList<Message>();
+        try {
+            Message first = source.poll(timeout, TimeUnit.MILLISECONDS);
+            if (first != null) {
+                messages.add(first);
+                source.drainTo(messages, 3);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return messages;
+    }
+
+    @Override
+    public List<Message> batchReceive(String queueName, QueueMetaData queueMetaData, MessageReceipt messageReceipt,
+        long timeout) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void ack(MessageReceipt receipt) {
+        acks.add(receipt);
+    }
+
+    @Override
+    public void bindQueue(Collection<String> queueNames) {
+    }
+
+    @Override
+    public void unbindQueue(Collection<String> queueNames) {
+    }
+
+    @Override
+    public Set<String> getBindQueues() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void addInterceptor(ConsumerInterceptor interceptor) {
+    }
+
+    @Override
+    public void removeInterceptor(ConsumerInterceptor interceptor) {
+    }
+
+    @Override
+    public Optional<Extension> getExtension() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Set<QueueMetaData> getQueueMetaData(String queueName) {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public ServiceLifeState currentState() {
+        return ServiceLifeState.STARTED;
+    }
+}
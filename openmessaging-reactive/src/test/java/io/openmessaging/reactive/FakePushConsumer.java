@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import io.openmessaging.ServiceLifeState;
+import io.openmessaging.consumer.BatchMessageListener;
+import io.openmessaging.consumer.MessageListener;
+import io.openmessaging.consumer.MessageReceipt;
+import io.openmessaging.consumer.PushConsumer;
+import io.openmessaging.extension.Extension;
+import io.openmessaging.extension.QueueMetaData;
+import io.openmessaging.interceptor.ConsumerInterceptor;
+import io.openmessaging.message.Message;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * A {@link PushConsumer} whose messages are pushed by the test, recording suspensions and acknowledgements.
+ */
+class FakePushConsumer implements PushConsumer {
+    final Set<String> bindQueues = new CopyOnWriteArraySet<String>();
+    final List<MessageReceipt> acks = new CopyOnWriteArrayList<MessageReceipt>();
+    volatile MessageListener listener;
+    volatile BatchMessageListener batchListener;
+    volatile boolean suspended;
+    volatile int suspensions;
+
+    void push(Message message) {
+        listener.onReceived(message, new MessageListener.Context() {
+            @Override
+            public void ack() {
+                acks.add(message.getMessageReceipt());
+            }
+        });
+    }
+
+    @Override
+    public void resume() {
+        suspended = false;
+    }
+
+    @Override
+    public void suspend() {
+        suspended = true;
+        suspensions++;
+    }
+
+    @Override
+    public void suspend(long timeout) {
+        suspend();
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    @Override
+    public void bindQueue(Collection<String> queueNames, MessageListener listener) {
+        bindQueues.addAll(queueNames);
+        this.listener = listener;
+    }
+
+    @Override
+    public void bindQueue(Collection<String> queueNames, BatchMessageListener listener) {
+        bindQueues.addAll(queueNames);
+        this.batchListener = listener;
+    }
+
+    @Override
+    public void unbindQueue(Collection<String> queueNames) {
+        bindQueues.removeAll(queueNames);
+    }
+
+    @Override
+    public void ack(MessageReceipt receipt) {
+        acks.add(receipt);
+    }
+
+    @Override
+    public Set<String> getBindQueues() {
+        return bindQueues;
+    }
+
+    @Override
+    public void addInterceptor(ConsumerInterceptor interceptor) {
+    }
+
+    @Override
+    public void removeInterceptor(ConsumerInterceptor interceptor) {
+    }
+
+    @Override
+    public Optional<Extension> getExtension() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Set<QueueMetaData> getQueueMetaData(String queueName) {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public ServiceLifeState currentState() {
+        return ServiceLifeState.STARTED;
+    }
+}
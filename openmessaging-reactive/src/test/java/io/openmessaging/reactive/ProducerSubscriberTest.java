@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import io.openmessaging.KeyValue;
+import io.openmessaging.OMS;
+import io.openmessaging.OMSBuiltinKeys;
+import io.openmessaging.internal.DefaultSendResult;
+import io.openmessaging.producer.BufferedProducer;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+
+import static io.openmessaging.reactive.TestMessages.message;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProducerSubscriberTest {
+
+    @Test
+    public void testDemandFollowsInFlightCapacity() {
+        FakeProducer producer = new FakeProducer();
+        ProducerSubscriber subscriber = new ProducerSubscriber(producer, 8);
+        RecordingSubscription subscription = new RecordingSubscription();
+        subscriber.onSubscribe(subscription);
+        assertThat(subscription.requested).isEqualTo(8);
+
+        for (int i = 0; i < 8; i++) {
+            subscriber.onNext(message(i));
+        }
+        assertThat(producer.sent).hasSize(8);
+        assertThat(subscriber.inFlightMessages()).isEqualTo(8);
+
+        producer.promises.get(0).set(new DefaultSendResult("0"));
+        assertThat(subscription.requested).isEqualTo(8);
+        producer.promises.get(1).set(new DefaultSendResult("1"));
+        assertThat(subscription.requested).isEqualTo(10);
+        assertThat(subscriber.inFlightMessages()).isEqualTo(6);
+
+        subscriber.onComplete();
+        assertThat(subscriber.completion().isDone()).isFalse();
+        for (int i = 2; i < 8; i++) {
+            producer.promises.get(i).set(new DefaultSendResult(String.valueOf(i)));
+        }
+        assertThat(subscription.requested).isEqualTo(10);
+        assertThat(subscriber.completion().isDone()).isTrue();
+        assertThat(subscriber.completion().getThrowable()).isNull();
+        assertThat(subscriber.sentMessages()).isEqualTo(8);
+    }
+
+    @Test
+    public void testSendFailureCancelsUpstream() {
+        FakeProducer producer = new FakeProducer();
+        ProducerSubscriber subscriber = new ProducerSubscriber(producer, 4);
+        RecordingSubscription subscription = new RecordingSubscription();
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(message(1));
+        subscriber.onNext(message(2));
+
+        IllegalStateException failure = new IllegalStateException("broker down");
+        producer.promises.get(0).setFailure(failure);
+        assertThat(subscription.cancelled).isTrue();
+        assertThat(subscriber.completion().getThrowable()).isSameAs(failure);
+
+        subscriber.onNext(message(3));
+        assertThat(producer.sent).hasSize(2);
+    }
+
+    @Test
+    public void testUpstreamError() {
+        FakeProducer producer = new FakeProducer();
+        producer.autoComplete = true;
+        ProducerSubscriber subscriber = new ProducerSubscriber(producer, 4);
+        subscriber.onSubscribe(new RecordingSubscription());
+        subscriber.onNext(message(1));
+
+        IllegalStateException failure = new IllegalStateException("upstream");
+        subscriber.onError(failure);
+        assertThat(subscriber.completion().getThrowable()).isSameAs(failure);
+        assertThat(subscriber.sentMessages()).isEqualTo(1);
+    }
+
+    @Test
+    public void testBufferedProducerFlushedOnComplete() {
+        FakeProducer delegate = new FakeProducer();
+        delegate.autoComplete = true;
+        KeyValue attributes = OMS.newKeyValue()
+            .put(OMSBuiltinKeys.PRODUCER_LINGER_MS, 60000L)
+            .put(OMSBuiltinKeys.PRODUCER_MAX_IN_FLIGHT_MESSAGES, 16);
+        BufferedProducer producer = OMS.newBatchingProducer(delegate, attributes);
+        producer.start();
+        try {
+            ProducerSubscriber subscriber = new ProducerSubscriber(producer);
+            RecordingSubscription subscription = new RecordingSubscription();
+            subscriber.onSubscribe(subscription);
+            assertThat(subscription.requested).isEqualTo(16);
+
+            for (int i = 0; i < 5; i++) {
+                subscriber.onNext(message(i));
+            }
+            assertThat(delegate.sent).isEmpty();
+
+            subscriber.onComplete();
+            assertThat(delegate.sent).hasSize(5);
+            assertThat(subscriber.completion().get(5000)).isNull();
+            assertThat(subscriber.completion().isDone()).isTrue();
+            assertThat(subscriber.sentMessages()).isEqualTo(5);
+        } finally {
+            producer.stop();
+        }
+    }
+
+    @Test
+    public void testUnboundedBufferedProducerUsesDefaultCapacity() {
+        BufferedProducer producer = OMS.newBatchingProducer(new FakeProducer(), OMS.newKeyValue());
+        assertThat(producer.maxInFlightMessages()).isEqualTo(Integer.MAX_VALUE);
+        ProducerSubscriber subscriber = new ProducerSubscriber(producer);
+        RecordingSubscription subscription = new RecordingSubscription();
+        subscriber.onSubscribe(subscription);
+        assertThat(subscription.requested).isEqualTo(ProducerSubscriber.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    @Test
+    public void testSecondSubscriptionCancelled() {
+        ProducerSubscriber subscriber = new ProducerSubscriber(new FakeProducer(), 4);
+        RecordingSubscription first = new RecordingSubscription();
+        RecordingSubscription second = new RecordingSubscription();
+        subscriber.onSubscribe(first);
+        subscriber.onSubscribe(second);
+
+        assertThat(first.cancelled).isFalse();
+        assertThat(second.cancelled).isTrue();
+        assertThat(second.requested).isEqualTo(0);
+    }
+
+    private static class RecordingSubscription implements Subscription {
+        volatile long requested;
+        volatile boolean cancelled;
+
+        @Override
+        public synchronized void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
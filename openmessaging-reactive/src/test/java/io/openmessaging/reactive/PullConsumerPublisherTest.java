@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import org.junit.Test;
+
+import static io.openmessaging.reactive.TestMessages.await;
+import static io.openmessaging.reactive.TestMessages.id;
+import static io.openmessaging.reactive.TestMessages.message;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PullConsumerPublisherTest {
+
+    @Test
+    public void testDemandDrivesFetching() throws Exception {
+        final FakePullConsumer consumer = new FakePullConsumer();
+        for (int i = 0; i < 20; i++) {
+            consumer.source.add(message(i));
+        }
+        PullConsumerPublisher publisher = new PullConsumerPublisher(consumer, AckMode.AUTO, 10);
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        Thread.sleep(50);
+        assertThat(consumer.source).hasSize(20);
+
+        subscriber.request(1);
+        await(() -> subscriber.received.size() == 1);
+        assertThat(consumer.receiveCalls.get()).isEqualTo(1);
+        assertThat(consumer.batchReceiveCalls.get()).isEqualTo(0);
+
+        subscriber.request(6);
+        await(() -> subscriber.received.size() == 7);
+        Thread.sleep(50);
+        assertThat(subscriber.received).hasSize(7);
+        // Two batches of four, the two messages beyond the demand stay buffered.
+        assertThat(consumer.source).hasSize(11);
+        assertThat(consumer.batchReceiveCalls.get()).isEqualTo(2);
+
+        subscriber.request(2);
+        await(() -> subscriber.received.size() == 9);
+        Thread.sleep(50);
+        assertThat(consumer.source).hasSize(11);
+        assertThat(consumer.batchReceiveCalls.get()).isEqualTo(2);
+
+        subscriber.request(Long.MAX_VALUE);
+        await(() -> subscriber.received.size() == 20);
+        for (int i = 0; i < 20; i++) {
+            assertThat(id(subscriber.received.get(i))).isEqualTo(i);
+        }
+        await(() -> consumer.acks.size() == 20);
+        assertThat(id(consumer.acks.get(19))).isEqualTo(19);
+
+        subscriber.subscription.cancel();
+        assertThat(subscriber.error).isNull();
+        assertThat(subscriber.completed).isFalse();
+    }
+
+    @Test
+    public void testManualAck() throws Exception {
+        final FakePullConsumer consumer = new FakePullConsumer();
+        consumer.source.add(message(1));
+        consumer.source.add(message(2));
+        PullConsumerPublisher publisher = new PullConsumerPublisher(consumer, AckMode.MANUAL, 10);
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.request(2);
+
+        await(() -> subscriber.received.size() == 2);
+        assertThat(consumer.acks).isEmpty();
+        publisher.ack(subscriber.received.get(1));
+        assertThat(consumer.acks).hasSize(1);
+        assertThat(id(consumer.acks.get(0))).isEqualTo(2);
+        subscriber.subscription.cancel();
+    }
+
+    @Test
+    public void testCancelStopsFetching() throws Exception {
+        final FakePullConsumer consumer = new FakePullConsumer();
+        PullConsumerPublisher publisher = new PullConsumerPublisher(consumer, AckMode.AUTO, 10);
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.request(5);
+        await(() -> consumer.batchReceiveCalls.get() > 0);
+
+        subscriber.subscription.cancel();
+        Thread.sleep(50);
+        int calls = consumer.batchReceiveCalls.get();
+        consumer.source.add(message(1));
+        Thread.sleep(50);
+        assertThat(consumer.batchReceiveCalls.get()).isEqualTo(calls);
+        assertThat(subscriber.received).isEmpty();
+        assertThat(consumer.source).hasSize(1);
+    }
+
+    @Test
+    public void testSingleSubscriber() {
+        PullConsumerPublisher publisher = new PullConsumerPublisher(new FakePullConsumer(), AckMode.AUTO, 10);
+        RecordingSubscriber first = new RecordingSubscriber();
+        RecordingSubscriber second = new RecordingSubscriber();
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+
+        assertThat(first.error).isNull();
+        assertThat(second.subscription).isNotNull();
+        assertThat(second.error).isInstanceOf(IllegalStateException.class);
+        first.subscription.cancel();
+    }
+
+    @Test
+    public void testNonPositiveRequest() throws Exception {
+        final FakePullConsumer consumer = new FakePullConsumer();
+        consumer.source.add(message(1));
+        PullConsumerPublisher publisher = new PullConsumerPublisher(consumer, AckMode.AUTO, 10);
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.request(0);
+
+        assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+        subscriber.request(1);
+        Thread.sleep(50);
+        assertThat(subscriber.received).isEmpty();
+    }
+}
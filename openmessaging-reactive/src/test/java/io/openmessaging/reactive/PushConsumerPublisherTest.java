@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+import static io.openmessaging.reactive.TestMessages.id;
+import static io.openmessaging.reactive.TestMessages.message;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PushConsumerPublisherTest {
+
+    @Test
+    public void testSuspendAndResume() {
+        FakePushConsumer consumer = new FakePushConsumer();
+        PushConsumerPublisher publisher = new PushConsumerPublisher(consumer, Arrays.asList("QUEUE_A"),
+            AckMode.AUTO, 4);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        assertThat(consumer.bindQueues).containsOnly("QUEUE_A");
+
+        subscriber.request(2);
+        for (int i = 0; i < 5; i++) {
+            consumer.push(message(i));
+        }
+        assertThat(subscriber.received).hasSize(2);
+        assertThat(consumer.isSuspended()).isFalse();
+
+        consumer.push(message(5));
+        assertThat(consumer.isSuspended()).isTrue();
+
+        subscriber.request(1);
+        assertThat(consumer.isSuspended()).isTrue();
+        subscriber.request(1);
+        assertThat(consumer.isSuspended()).isFalse();
+        assertThat(consumer.suspensions).isEqualTo(1);
+
+        subscriber.request(10);
+        assertThat(subscriber.received).hasSize(6);
+        for (int i = 0; i < 6; i++) {
+            assertThat(id(subscriber.received.get(i))).isEqualTo(i);
+            assertThat(id(consumer.acks.get(i))).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void testCancelUnbinds() {
+        FakePushConsumer consumer = new FakePushConsumer();
+        PushConsumerPublisher publisher = new PushConsumerPublisher(consumer, Arrays.asList("QUEUE_A"),
+            AckMode.MANUAL, 1);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        consumer.push(message(1));
+        assertThat(consumer.isSuspended()).isTrue();
+
+        subscriber.subscription.cancel();
+        assertThat(consumer.bindQueues).isEmpty();
+        assertThat(consumer.isSuspended()).isFalse();
+        assertThat(subscriber.received).isEmpty();
+        assertThat(consumer.acks).isEmpty();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.openmessaging.reactive;
+
+import io.openmessaging.consumer.MessageReceipt;
+import io.openmessaging.internal.DefaultMessage;
+import io.openmessaging.message.Message;
+
+/**
+ * Factory of test messages carrying a numbered receipt.
+ */
+final class TestMessages {
+    private TestMessages() {
+    }
+
+    static Message message(int id) {
+        DefaultMessage message = new DefaultMessage("QUEUE_A", new byte[] {(byte) id});
+        message.setMessageReceipt(new Receipt(id));
+        return message;
+    }
+
+    static int id(Message message) {
+        return ((Receipt) message.getMessageReceipt()).id;
+    }
+
+    static int id(MessageReceipt receipt) {
+        return ((Receipt) receipt).id;
+    }
+
+    static void await(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.holds()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met within 5 seconds");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    interface Condition {
+        boolean holds();
+    }
+
+    private static class Receipt implements MessageReceipt {
+        private final int id;
+
+        Receipt(int id) {
+            this.id = id;
+        }
+    }
+}